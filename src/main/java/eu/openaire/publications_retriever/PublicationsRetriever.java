@@ -1,19 +1,30 @@
 package eu.openaire.publications_retriever;
 
 import eu.openaire.publications_retriever.crawler.MetadataHandler;
+import eu.openaire.publications_retriever.crawler.BoilerplateLinks;
+import eu.openaire.publications_retriever.crawler.InternalLinkRanker;
+import eu.openaire.publications_retriever.crawler.ParsingPool;
+import eu.openaire.publications_retriever.crawler.RepositoryPlatforms;
 import eu.openaire.publications_retriever.crawler.PageCrawler;
 import eu.openaire.publications_retriever.machine_learning.MachineLearning;
+import eu.openaire.publications_retriever.machine_learning.MinedDocUrlRules;
 import eu.openaire.publications_retriever.machine_learning.PageStructureMLA;
 import eu.openaire.publications_retriever.util.args.ArgsUtils;
+import eu.openaire.publications_retriever.util.diagnostics.PinningDiagnostics;
+import eu.openaire.publications_retriever.util.file.BufferPool;
 import eu.openaire.publications_retriever.util.file.FileUtils;
 import eu.openaire.publications_retriever.util.file.HtmlFileUtils;
+import eu.openaire.publications_retriever.util.file.MemoryAdmission;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.http.DomainCircuitBreaker;
 import eu.openaire.publications_retriever.util.http.DomainConnectionData;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
 import eu.openaire.publications_retriever.util.signal.SignalUtils;
 import eu.openaire.publications_retriever.util.url.GenericUtils;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.UrlNormalizationCache;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
+import eu.openaire.publications_retriever.util.url.RetryQueue;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +40,7 @@ import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -95,6 +107,8 @@ public class PublicationsRetriever
 		if ( MachineLearning.useMLA )
 			new MachineLearning();
 
+		PinningDiagnostics.start();	// It is started only if the "-pinningDiagnostics" argument was given.
+
         executor = Executors.newVirtualThreadPerTaskExecutor();
 
 		try {
@@ -126,6 +140,9 @@ public class PublicationsRetriever
 			}
 		}
 
+		ParsingPool.shutdown();
+		PinningDiagnostics.stopAndReport();
+
 		showStatistics(startTime);
 
 		// Close the open streams (imported and exported content).
@@ -170,7 +187,7 @@ public class PublicationsRetriever
 			if ( !ArgsUtils.fileNameType.equals(ArgsUtils.fileNameTypeEnum.numberName) )	// If we have anything different from the numberName-type..
 				numOfStoredDocFiles = FileUtils.numOfDocFiles.get();
 			else
-				numOfStoredDocFiles = FileUtils.numOfDocFile - ArgsUtils.initialNumOfFile;
+				numOfStoredDocFiles = FileUtils.numOfDocFile - ArgsUtils.initialNumOfFile - FileUtils.numOfSkippedDocFileNumbers;
 			logger.info("From which docUrls, we were able to retrieve: " + numOfStoredDocFiles + " distinct docFiles. That's about: " + df.format(numOfStoredDocFiles * 100.0 / UrlUtils.sumOfDocUrlsFound.get()) + "%."
 					+ " The un-retrieved docFiles were either belonging to already-found " + ArgsUtils.targetUrlType + "s or they had connection-issues or they had problematic content.");
 		}
@@ -181,11 +198,12 @@ public class PublicationsRetriever
 			logger.info("Downloaded " + HtmlFileUtils.htmlFilesNum.get() + " HTML files. That's about: " + df.format(HtmlFileUtils.htmlFilesNum.get() * 100.0 / inputCheckedUrlNum) + "% from the total numOfUrls checked (" + inputCheckedUrlNum + "). The rest either were not pageUrls or they had various issues.");
 		else {
 			if ( MachineLearning.useMLA )
-				logger.debug("The legacy M.L.A. is responsible for the discovery of " + MachineLearning.docUrlsFoundByMLA.get() + " of the " + ArgsUtils.targetUrlType + "s (" + df.format(MachineLearning.docUrlsFoundByMLA.get() * 100.0 / UrlUtils.sumOfDocUrlsFound.get()) + "%). The M.L.A.'s average success-rate was: " + df.format(MachineLearning.getAverageSuccessRate()) + "%. Gathered data for " + MachineLearning.timesGatheredData.get() + " valid pageUrl-docUrl pairs.");
+				logger.debug("The legacy M.L.A. is responsible for the discovery of " + MachineLearning.docUrlsFoundByMLA.get() + " of the " + ArgsUtils.targetUrlType + "s (" + df.format(MachineLearning.docUrlsFoundByMLA.get() * 100.0 / UrlUtils.sumOfDocUrlsFound.get()) + "%). The M.L.A.'s average success-rate was: " + df.format(MachineLearning.getAverageSuccessRate()) + "%. Gathered data for " + MachineLearning.timesGatheredData.get() + " valid pageUrl-docUrl pairs, into the models of " + MachineLearning.getNumOfDomainModels() + " domains. The M.L.A. was disabled for " + MachineLearning.numOfDomainsDisabledFromMLA.get() + " domains and " + MachineLearning.numOfEvictedPagePaths.get() + " docPage-paths were evicted.");
 			else
 				logger.debug("The legacy M.L.A. was not enabled.");
 
 			logger.debug("The Structure-M.L.A. is responsible for the discovery of " + PageStructureMLA.structureValidatedDocLinks.get() + " of the " + ArgsUtils.targetUrlType + "s (" + df.format(PageStructureMLA.structureValidatedDocLinks.get() * 100.0 / UrlUtils.sumOfDocUrlsFound.get()) + "%).");
+			logger.debug("The platforms of " + RepositoryPlatforms.numOfDomainsFingerprinted.get() + " domains were fingerprinted and " + MinedDocUrlRules.numOfLoadedRules + " mined rules were loaded. The docUrls derived from the mined rules or the platforms of their domains were: " + RepositoryPlatforms.numOfDocUrlsFoundByDerivation.get() + " (avoiding the crawling of their pages), while " + RepositoryPlatforms.numOfFailedDerivations.get() + " derived docUrls failed.");
 			logger.debug("In total, it predicted " + PageStructureMLA.structurePredictedDocLinks.get() + " docLinks, with some of them not leading to a fulltext for various reasons (connection-problem, removed-file, unsupported docType, ect.).");
 		}
 
@@ -228,11 +246,30 @@ public class PublicationsRetriever
 		logger.debug("The number of offline-redirects to HTTPS (reducing the online-redirection-overhead), was: " + HttpConnUtils.timesDidOfflineHTTPSredirect.get());
 		logger.debug("The number of offline-redirects to slash-ending url (reducing the online-redirection-overhead), was: " + HttpConnUtils.timesDidOfflineSlashRedirect.get());
 
+		logger.debug("The number of pages which had their internal-links extracted by the fallback full Jsoup-parsing, instead of the streaming link-extractor, was: " + PageCrawler.numOfPagesWithJsoupLinkExtraction.get());
+		logger.debug("The number of pdf-links which were found inside the javaScript-code of pages and were checked along with the internal-links, was: " + PageCrawler.numOfJavascriptPdfLinksFound.get());
+		logger.debug("The url-normalization cache had " + UrlNormalizationCache.numOfNormalizationHits.get() + " hits and " + UrlNormalizationCache.numOfNormalizationMisses.get() + " misses, while the fully-formed-urls cache had " + UrlNormalizationCache.numOfFullyFormedUrlHits.get() + " hits and " + UrlNormalizationCache.numOfFullyFormedUrlMisses.get() + " misses.");
+		logger.debug("The number of boilerplate-links (shared by most pages of their domain) which were dropped before being normalized or checked, was: " + BoilerplateLinks.numOfSuppressedLinks.get() + ", in " + BoilerplateLinks.numOfDomainsWithBoilerplateLinks.get() + " domains.");
+		logger.debug("The number of connections to internal-links which did not give a " + ArgsUtils.targetUrlType + " (wasted connections) was: " + InternalLinkRanker.numOfWastedConnections.get() + ", in " + InternalLinkRanker.numOfPagesWithCheckedInternalLinks.get() + " crawled pages (about " + df.format(InternalLinkRanker.numOfWastedConnections.get() / (double) Math.max(1, InternalLinkRanker.numOfPagesWithCheckedInternalLinks.get())) + " per page)."
+				+ " The remaining-links were checked in " + PageCrawler.timesCheckedRemainingLinks.get() + " pages (giving " + PageCrawler.timesFoundDocOrDatasetUrlFromRemainingLinks.get() + " " + ArgsUtils.targetUrlType + "s) and they were skipped in " + InternalLinkRanker.numOfPagesWithSkippedRemainingLinks.get() + " pages, after their domains were evaluated.");
 		logger.debug("The number of contentTypes which were extracted from the body of http-responses was: " + ConnSupportUtils.numContentTypeExtractedFromPageContent.get());
+		if ( ArgsUtils.shouldDownloadDocFiles )
+			logger.debug("The number of docFiles which were downloaded from uncategorized internal-links connected directly with \"GET\" (avoiding the \"HEAD\"-then-\"GET\" double-connection), was: " + ConnSupportUtils.timesAvoidedReconnectionForDownload.get());
+		logger.debug("The number of contentTypes which were sniffed from the first bytes of partial (ranged) http-responses was: " + ConnSupportUtils.numContentTypesSniffedWithRangeRequests.get() + ". The number of domains which did not honour the \"Range\"-header was: " + ConnSupportUtils.domainsWithUnsupportedRangeRequests.size());
+		logger.debug("The number of urls which were deferred for retrying, after a transient failure, was: " + RetryQueue.numOfDeferredUrls.get() + ". The number of them which were successfully connected in a later retry, was: " + RetryQueue.numOfRecoveredUrls.get() + ". The number of them which were not retried, as another url of their id gave a result, was: " + RetryQueue.numOfSkippedRetries.get());
 
 		logger.debug("The number of domains blocked due to an \"SSL Exception\", was: " + HttpConnUtils.numOfDomainsBlockedDueToSSLException.get());
+		logger.debug("The number of times the circuit-breakers of domains were opened, was: " + DomainCircuitBreaker.numOfOpenedCircuits.get() + ", they were closed again after a successful probe: " + DomainCircuitBreaker.numOfRecoveredCircuits.get() + " times and they rejected: " + DomainCircuitBreaker.numOfRequestsRejectedByOpenCircuits.get() + " requests.");
+		logger.debug("The number of domains blocked after failing consecutive probe-requests of their circuit-breaker, was: " + DomainCircuitBreaker.numOfDomainsBlockedAfterFailedProbes.get());
 		logger.debug("The number of domains blocked in total, during runtime, was: " + HttpConnUtils.blacklistedDomains.size());
-		logger.debug("The number of paths blocked -due to HTTP 403- in total, was: " + ConnSupportUtils.domainsMultimapWithPaths403BlackListed.values().size());
+		logger.debug("The number of paths blocked -due to HTTP 403- in total, was: " + ConnSupportUtils.domainsWithPaths403BlackListed.values().stream().mapToInt(Set::size).sum());
+		logger.debug("The number of buffers created by the buffer-pool, was: " + BufferPool.numOfNewBuffers.get() + ", while: " + BufferPool.numOfReusedBuffers.get() + " buffers were reused. The tasks waited for the memory-budget of the buffers: " + BufferPool.numOfWaitsForMemory.get() + " times and the budget was exceeded temporarily: " + BufferPool.numOfTimesBudgetWasExceeded.get() + " times.");
+		int numOfMemoryWaits = MemoryAdmission.numOfWaitsForMemory.get();
+		logger.debug("The in-flight pages reached up to " + (MemoryAdmission.peakAdmittedBytes.get() / FileUtils.mb) + " MB of the " + (MemoryAdmission.memoryBudget / FileUtils.mb) + " MB memory-budget. From the " + MemoryAdmission.numOfAdmissions.get() + " pages, " + numOfMemoryWaits + " waited for memory"
+				+ ((numOfMemoryWaits > 0) ? (", for about " + df.format(MemoryAdmission.totalWaitNanos.get() / (numOfMemoryWaits * 1_000_000.0)) + " ms, on average.") : "."));
+		long numOfParsedPages = ParsingPool.numOfParsedPages.get();
+		if ( numOfParsedPages > 0 )
+			logger.debug("The parsing-pool parsed " + numOfParsedPages + " times, while each parsing waited for a free parsing-thread about " + df.format(ParsingPool.totalQueueWaitNanos.get() / (numOfParsedPages * 1_000_000.0)) + " ms, on average.");
 
 		calculateAndPrintElapsedTime(startTime, Instant.now(), null);
 
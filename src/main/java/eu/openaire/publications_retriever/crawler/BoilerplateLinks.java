@@ -0,0 +1,145 @@
+package eu.openaire.publications_retriever.crawler;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import eu.openaire.publications_retriever.machine_learning.PageStructureMLA;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This class learns the "boilerplate" links of each domain, i.e. the navigation, footer and sidebar links, which appear on most of its pages.
+ * From the first pages of a domain, it counts in how many pages each link appears. When enough pages are counted, the links which appeared in most of them become the boilerplate-links of the domain.
+ * In the later pages of the domain, these links are dropped right after their "href" is read, before any normalization, regex-check or connection.
+ * Only the absolute and the root-relative links are counted, as the relative ones (e.g. "download") lead to a different url in each page.
+ * The links are kept as 64-bit hashes, while the counts of a domain are dropped after its boilerplate-links are found, so the memory stays small.
+ * The domains are kept in a bounded cache, so the domains which never reach the "pagesToLearnFrom" (and keep their counts), are evicted when they become idle or the cache is full.
+ * @author Lampros Smyrnaios
+ */
+public class BoilerplateLinks
+{
+	private static final Logger logger = LoggerFactory.getLogger(BoilerplateLinks.class);
+
+	public static boolean useBoilerplateSuppression = true;	// Keep it "public" and "non-final", in order to be set by external services.
+
+	public static int pagesToLearnFrom = 10;	// Keep it "public" and "non-final", in order to be set by external services.
+	public static double leastAppearanceRatio = 0.8;	// Keep it "public" and "non-final", in order to be set by external services. A link which appears in at least 80% of the learned pages, is a boilerplate-link.
+
+	private static final int maxCountedLinksPerDomain = 500;	// The boilerplate-links appear in the first pages, so the links which come after the limit, are not needed.
+	private static final int maxDomainsWithLinks = 2_000;
+	private static final Duration maxIdleTimeOfDomain = Duration.ofMinutes(30);	// A domain which has not been visited for that long, will most likely not be visited again.
+
+
+	public static final class DomainLinks
+	{
+		final AtomicInteger numOfLearnedPages = new AtomicInteger(0);
+		final ConcurrentHashMap<Long, AtomicInteger> linksWithCounts = new ConcurrentHashMap<>();
+		volatile long[] boilerplateLinkHashes = null;	// Sorted. It is null, while the domain is still being learned.
+	}
+
+	public static final Cache<String, DomainLinks> domainsWithLinks = CacheBuilder.newBuilder().maximumSize(maxDomainsWithLinks).expireAfterAccess(maxIdleTimeOfDomain).build();
+
+	public static final AtomicInteger numOfDomainsWithBoilerplateLinks = new AtomicInteger(0);
+	public static final AtomicInteger numOfSuppressedLinks = new AtomicInteger(0);
+
+
+	/**
+	 * @param pageDomain
+	 * @return the sorted hashes of the boilerplate-links of the given domain, or null, if the domain is still being learned (or the suppression is disabled).
+	 */
+	public static long[] getBoilerplateLinkHashes(String pageDomain)
+	{
+		if ( !useBoilerplateSuppression || (pageDomain == null) )
+			return null;
+		DomainLinks domainLinks = domainsWithLinks.getIfPresent(pageDomain);
+		return ((domainLinks != null) ? domainLinks.boilerplateLinkHashes : null);
+	}
+
+
+	/**
+	 * This method checks the raw "href" of a link against the boilerplate-links of its domain.
+	 * @param href the trimmed "href"-attribute of the link.
+	 * @param boilerplateLinkHashes as returned by the "getBoilerplateLinkHashes()" (it may be null)
+	 * @return true, if the link is a boilerplate-link and it should be dropped.
+	 */
+	public static boolean isBoilerplateLink(String href, long[] boilerplateLinkHashes)
+	{
+		if ( (boilerplateLinkHashes == null) || (boilerplateLinkHashes.length == 0) || !isPageIndependent(href) )
+			return false;
+		if ( Arrays.binarySearch(boilerplateLinkHashes, PageStructureMLA.getHash(href)) < 0 )
+			return false;
+		numOfSuppressedLinks.incrementAndGet();
+		return true;
+	}
+
+
+	/**
+	 * This method counts the links of a page of the given domain, if the domain is still being learned.
+	 * When the last page to learn from is counted, the boilerplate-links of the domain are found.
+	 * @param pageDomain
+	 * @param linkElements all the link-elements of the page.
+	 */
+	public static void learnPageLinks(String pageDomain, List<LinkElement> linkElements)
+	{
+		if ( !useBoilerplateSuppression || (pageDomain == null) )
+			return;
+		DomainLinks domainLinks = domainsWithLinks.asMap().computeIfAbsent(pageDomain, k -> new DomainLinks());
+		if ( domainLinks.boilerplateLinkHashes != null )
+			return;
+
+		Set<Long> pageLinkHashes = new HashSet<>(linkElements.size());	// Each link is counted once per page.
+		for ( LinkElement el : linkElements ) {
+			String href = el.attr("href").trim();
+			if ( isPageIndependent(href) )
+				pageLinkHashes.add(PageStructureMLA.getHash(href));
+		}
+		for ( Long linkHash : pageLinkHashes ) {
+			AtomicInteger count = domainLinks.linksWithCounts.get(linkHash);
+			if ( count == null ) {
+				if ( domainLinks.linksWithCounts.size() >= maxCountedLinksPerDomain )
+					continue;
+				count = domainLinks.linksWithCounts.computeIfAbsent(linkHash, k -> new AtomicInteger(0));
+			}
+			count.incrementAndGet();
+		}
+
+		if ( domainLinks.numOfLearnedPages.incrementAndGet() == pagesToLearnFrom )	// Only one thread gets here, for each domain.
+			findBoilerplateLinks(pageDomain, domainLinks);
+	}
+
+
+	private static void findBoilerplateLinks(String pageDomain, DomainLinks domainLinks)
+	{
+		int leastAppearances = (int) Math.ceil(pagesToLearnFrom * leastAppearanceRatio);
+		long[] boilerplateLinkHashes = domainLinks.linksWithCounts.entrySet().stream()
+				.filter(entry -> entry.getValue().get() >= leastAppearances)
+				.mapToLong(entry -> entry.getKey()).sorted().toArray();
+		domainLinks.boilerplateLinkHashes = boilerplateLinkHashes;
+		domainLinks.linksWithCounts.clear();	// The counts are not needed anymore.
+		if ( boilerplateLinkHashes.length > 0 ) {
+			numOfDomainsWithBoilerplateLinks.incrementAndGet();
+			logger.debug("Found " + boilerplateLinkHashes.length + " boilerplate-links in domain: \"" + pageDomain + "\", which will be dropped from its next pages.");
+		}
+	}
+
+
+	/**
+	 * @return true, if the given "href" leads to the same url, from every page of the domain (i.e. it is an absolute or a root-relative link).
+	 */
+	private static boolean isPageIndependent(String href)
+	{
+		if ( href.isEmpty() )
+			return false;
+		char firstChar = href.charAt(0);
+		return ((firstChar == '/') || ((firstChar == 'h' || firstChar == 'H') && href.regionMatches(true, 0, "http", 0, 4)));
+	}
+
+}
@@ -0,0 +1,684 @@
+package eu.openaire.publications_retriever.crawler;
+
+import org.apache.commons.lang3.Strings;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.*;
+
+
+/**
+ * This class extracts the link-elements of a page: "a", "link[href][type*=pdf]" and "form[action]", along with the structure of their ancestors.
+ * Instead of building the whole DOM of the page with Jsoup and then running a css-selector on it, it streams once through the html, keeping only the stack of the currently open elements.
+ * Only the link-elements and their ancestors are kept in memory. The attributes of the other elements (apart from their "class" and "id") and any text which is not needed, are never materialized.
+ * The most common tree-building rules of the html-parsers (implied end-tags, implied "tbody", the "html"/"head"/"body" elements, etc.) are followed, so that the structure of each link is the same as the one given by Jsoup, for the vast majority of the pages.
+ * During the same pass, the meta-tags, the doc-paths appearing as plain text and the pdf-links inside the javaScript-code are gathered in the "HtmlPageSummary", so no other scan of the html is needed.
+ * The Jsoup-based extraction is kept as the fallback, for the pages that the streaming extractor cannot handle.
+ * @author Lampros Smyrnaios
+ */
+public class HtmlLinkExtractor
+{
+	public static final String LINK_ELEMENTS_CSS_QUERY = "a, link[href][type*=pdf], form[action]";	// TODO - Add more "types" once other docTypes are accepted.
+
+	private static final String ROOT_TAG = "#root";	// The same as the Jsoup-document's tag-name.
+
+	private static final Set<String> VOID_ELEMENTS = Set.of("area", "base", "basefont", "bgsound", "br", "col", "command", "embed", "frame", "hr", "img", "input", "keygen", "link", "meta", "param", "source", "track", "wbr");
+
+	// The content of these elements is not html. Its text is not part of the text of any element.
+	private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("script", "style", "textarea", "title", "xmp", "iframe", "noembed", "noframes", "plaintext");
+
+	private static final Set<String> HEAD_ELEMENTS = Set.of("base", "basefont", "bgsound", "link", "meta", "noscript", "script", "style", "template", "title");
+
+	// These elements close an open "p"-element, when they start.
+	private static final Set<String> CLOSING_P_ELEMENTS = Set.of("address", "article", "aside", "blockquote", "center", "details", "dialog", "dir", "div", "dl", "dd", "dt", "fieldset", "figcaption", "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6",
+																	"header", "hgroup", "hr", "li", "listing", "main", "menu", "nav", "ol", "p", "pre", "section", "summary", "table", "ul");
+
+	// These elements add a space between the text of their surrounding elements.
+	private static final Set<String> BLOCK_ELEMENTS = Set.of("address", "article", "aside", "blockquote", "br", "caption", "center", "dd", "details", "dialog", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6",
+																	"header", "hgroup", "hr", "li", "main", "nav", "ol", "p", "pre", "section", "summary", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul");
+
+	// An end-tag of a non-special element cannot close any of the special elements, which are above its own element in the stack.
+	private static final Set<String> SPECIAL_ELEMENTS = Set.of("address", "applet", "article", "aside", "blockquote", "body", "button", "caption", "center", "dd", "details", "dir", "div", "dl", "dt", "fieldset", "figcaption", "figure", "footer", "form",
+																	"h1", "h2", "h3", "h4", "h5", "h6", "head", "header", "hgroup", "html", "li", "listing", "main", "marquee", "menu", "nav", "object", "ol", "p", "pre", "section", "select", "summary", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul");
+
+	private static final Set<String> TABLE_SECTION_ELEMENTS = Set.of("tbody", "thead", "tfoot");
+
+	private static final String JAVASCRIPT_PDF_URL_KEY = "\"pdfUrl\":\"";	// The same as the "PageCrawler.JAVASCRIPT_CODE_PDF_LINK"-regex.
+
+	// The tag-names which are most common, are re-used, in order to avoid creating a new string for each tag.
+	private static final String[][] KNOWN_TAGS_BY_LENGTH = new String[11][];
+	static {
+		List<String> knownTags = List.of("a", "b", "i", "p", "q", "s", "u", "br", "dd", "dl", "dt", "em", "h1", "h2", "h3", "h4", "h5", "h6", "hr", "li", "ol", "td", "th", "tr", "ul",
+				"bdi", "bdo", "col", "del", "dfn", "div", "img", "ins", "kbd", "nav", "pre", "sub", "sup", "svg", "var", "wbr", "abbr", "area", "base", "body", "cite", "code", "form", "head", "html", "link", "main", "mark", "menu", "meta", "path", "samp", "small", "span", "time",
+				"aside", "embed", "input", "label", "meter", "param", "small", "style", "table", "tbody", "tfoot", "thead", "title", "track", "video", "audio", "button", "canvas", "center", "dialog", "figure", "footer", "header", "iframe", "legend", "object", "option", "output", "script", "select", "source", "strong",
+				"address", "article", "caption", "details", "section", "summary", "colgroup", "datalist", "fieldset", "noscript", "optgroup", "progress", "template", "textarea", "blockquote", "figcaption");
+		Map<Integer, List<String>> tagsByLength = new HashMap<>();
+		for ( String tag : knownTags )
+			tagsByLength.computeIfAbsent(tag.length(), k -> new ArrayList<>()).add(tag);
+		for ( int i = 0; i < KNOWN_TAGS_BY_LENGTH.length; i++ ) {
+			List<String> tags = tagsByLength.get(i);
+			KNOWN_TAGS_BY_LENGTH[i] = ((tags != null) ? tags.stream().distinct().toArray(String[]::new) : new String[0]);
+		}
+	}
+
+
+	/**
+	 * This method extracts the link-elements of the given html, using "Jsoup". It is the old extraction-path, which builds the whole DOM of the page.
+	 * @param html
+	 * @return the link-elements, in the order they appear in the html.
+	 */
+	public static List<LinkElement> extractLinkElementsWithJsoup(String html)
+	{
+		Elements elementLinksOnPage = Jsoup.parse(html).select(LINK_ELEMENTS_CSS_QUERY);
+		List<LinkElement> linkElements = new ArrayList<>(elementLinksOnPage.size());
+		Map<Element, LinkElement> convertedElements = new IdentityHashMap<>();
+		for ( Element el : elementLinksOnPage )
+			linkElements.add(LinkElement.fromJsoupElement(el, convertedElements, true));
+		return linkElements;
+	}
+
+
+	/**
+	 * This method extracts the link-elements of the given html, in a single streaming pass.
+	 * @param html
+	 * @return the link-elements, in the order they appear in the html.
+	 */
+	public static List<LinkElement> extractLinkElements(String html)
+	{
+		return analyzeHtml(html).getLinkElements();
+	}
+
+
+	/**
+	 * This method produces the summary of the given html, in a single streaming pass.
+	 * @param html
+	 * @return the summary of the page, including its link-elements.
+	 */
+	public static HtmlPageSummary analyzeHtml(String html)
+	{
+		HtmlPageSummary pageSummary = new HtmlPageSummary();
+		pageSummary.setLinkElements(new StreamingParser(html, pageSummary).parse());
+		return pageSummary;
+	}
+
+
+	/**
+	 * A single-use parser, holding the state of the streaming pass.
+	 */
+	private static final class StreamingParser
+	{
+		private final String html;
+		private final int length;
+		private int pos = 0;
+
+		private final HtmlPageSummary pageSummary;
+		private int nextJavascriptPdfUrlIndex = 0;	// The index of the next "pdfUrl"-key in the html, or -1, if there is none. It is searched only once for each occurrence, to keep the pass linear.
+
+		private final List<LinkElement> linkElements = new ArrayList<>();
+		private final ArrayList<LinkElement> stack = new ArrayList<>(64);	// The currently open elements.
+		private final ArrayList<LinkElement> openTextCollectors = new ArrayList<>(4);	// The currently open link-elements, which collect the text of their descendants.
+
+		private LinkElement htmlElement;
+		private LinkElement headElement = null;
+		private LinkElement bodyElement = null;
+		private LinkElement openFormElement = null;
+
+
+		StreamingParser(String html, HtmlPageSummary pageSummary)
+		{
+			this.html = html;
+			this.length = html.length();
+			this.pageSummary = pageSummary;
+			LinkElement root = new LinkElement(ROOT_TAG, null);
+			this.htmlElement = new LinkElement("html", root);
+			stack.add(root);
+			stack.add(htmlElement);
+		}
+
+
+		List<LinkElement> parse()
+		{
+			int textStart = 0;
+			while ( pos < length )
+			{
+				int ltIndex = html.indexOf('<', pos);
+				if ( ltIndex == -1 )
+					break;
+				if ( ltIndex > textStart )
+					handleText(textStart, ltIndex);
+
+				pos = ltIndex;
+				if ( !handleMarkup() ) {	// It was just a "<" character inside the text.
+					handleText(ltIndex, ltIndex +1);
+					pos = ltIndex +1;
+				}
+				textStart = pos;
+			}
+			if ( textStart < length )
+				handleText(textStart, length);
+			return linkElements;
+		}
+
+
+		/**
+		 * This method handles the markup starting at the current position, which holds a "<" character.
+		 * @return false, if this is not a markup, but a plain "<" character.
+		 */
+		private boolean handleMarkup()
+		{
+			if ( (pos +1) >= length )
+				return false;
+			char c = html.charAt(pos +1);
+			if ( c == '!' ) {
+				if ( html.startsWith("<!--", pos) )
+					pos = skipPast("-->", pos +4);
+				else if ( html.startsWith("<![CDATA[", pos) )
+					pos = skipPast("]]>", pos +9);
+				else
+					pos = skipPast(">", pos +2);	// The "doctype" or any other declaration.
+				return true;
+			} else if ( c == '?' ) {
+				pos = skipPast(">", pos +2);
+				return true;
+			} else if ( c == '/' ) {
+				if ( ((pos +2) < length) && isAsciiLetter(html.charAt(pos +2)) ) {
+					handleEndTag();
+					return true;
+				} else if ( ((pos +2) < length) && (html.charAt(pos +2) == '>') ) {
+					pos += 3;	// An empty end-tag is ignored.
+					return true;
+				}
+				pos = skipPast(">", pos +2);	// A bogus comment.
+				return true;
+			} else if ( isAsciiLetter(c) ) {
+				handleStartTag();
+				return true;
+			}
+			return false;
+		}
+
+
+		private void handleStartTag()
+		{
+			int nameStart = pos +1;
+			int nameEnd = scanTagName(nameStart);
+			String tagName = getTagName(nameStart, nameEnd);
+			pos = nameEnd;
+
+			switch ( tagName ) {
+				case "html":
+					parseAttributes(htmlElement, false, true);	// Any missing "class" or "id" is added to the existing element, as Jsoup does.
+					return;
+				case "body":
+					ensureBody();
+					parseAttributes(bodyElement, false, true);
+					return;
+				case "head":
+					parseAttributes(null, false, false);
+					if ( (headElement == null) && (bodyElement == null) )
+						openHead();
+					return;
+				case "form":
+					if ( openFormElement != null ) {
+						parseAttributes(null, false, false);	// A nested form is ignored.
+						return;
+					}
+					break;
+				default:
+					break;
+			}
+
+			if ( RAW_TEXT_ELEMENTS.contains(tagName) ) {
+				if ( !parseAttributes(null, false, false) ) {
+					int contentStart = pos;
+					pos = skipRawText(tagName);
+					if ( tagName.equals("script") )
+						gatherJavascriptPdfLinks(contentStart, pos);
+				}
+				return;	// Its content is never part of any text.
+			}
+
+			boolean isLinkTag = tagName.equals("a") || tagName.equals("form") || tagName.equals("link");
+			boolean isMetaTag = tagName.equals("meta");
+			LinkElement element = new LinkElement(tagName, getParentForNewElement(tagName));
+			boolean isSelfClosing = parseAttributes(element, (isLinkTag || isMetaTag), false);
+			if ( isMetaTag )
+				pageSummary.addMetaTag(element.attr("name"), element.attr("content"));
+
+			if ( isLinkTag ) {
+				if ( tagName.equals("a") )
+					linkElements.add(element);
+				else if ( tagName.equals("form") ) {
+					if ( element.hasAttr("action") )
+						linkElements.add(element);
+				} else if ( element.hasAttr("href") && element.attr("type").toLowerCase().contains("pdf") )	// The "link[href][type*=pdf]".
+					linkElements.add(element);
+			}
+
+			if ( BLOCK_ELEMENTS.contains(tagName) )
+				appendSpaceToOpenTexts(tagName.equals("br"));
+
+			if ( VOID_ELEMENTS.contains(tagName) || (isSelfClosing && !isLinkTag) )
+				return;	// It is not pushed in the stack, as it has no content.
+
+			if ( tagName.equals("form") )
+				openFormElement = element;
+			if ( isLinkTag ) {
+				element.startCollectingText();
+				openTextCollectors.add(element);
+			}
+			push(element);
+		}
+
+
+		/**
+		 * This method applies the implied end-tags and the implied elements, for the new element, and returns its parent.
+		 */
+		private LinkElement getParentForNewElement(String tagName)
+		{
+			if ( bodyElement == null ) {
+				if ( HEAD_ELEMENTS.contains(tagName) ) {
+					if ( headElement == null )
+						openHead();
+					return headElement;	// The head-elements before the body go inside the "head", even after the "</head>".
+				}
+				ensureBody();
+			}
+
+			if ( CLOSING_P_ELEMENTS.contains(tagName) )
+				closeInScope("p", "table", "td", "th", "button");
+
+			switch ( tagName ) {
+				case "a":
+					closeInScope("a", "table", "td", "th");	// A link cannot contain another link.
+					break;
+				case "li":
+					closeInScope("li", "ul", "ol");
+					break;
+				case "dd":
+				case "dt":
+					if ( !closeInScope("dd", "dl") )
+						closeInScope("dt", "dl");
+					break;
+				case "h1": case "h2": case "h3": case "h4": case "h5": case "h6":
+					if ( currentTag().length() == 2 && currentTag().charAt(0) == 'h' && Character.isDigit(currentTag().charAt(1)) )
+						pop();	// A heading cannot contain another heading.
+					break;
+				case "option":
+					if ( currentTag().equals("option") )
+						pop();
+					break;
+				case "tbody": case "thead": case "tfoot":
+					closeTableSectionInTable();
+					break;
+				case "tr":
+					if ( !closeInScope("tr", "table") )
+						if ( currentTag().equals("table") )
+							push(new LinkElement("tbody", current()));	// The implied "tbody".
+					break;
+				case "td": case "th":
+					if ( !closeInScope("td", "tr", "table") )
+						closeInScope("th", "tr", "table");
+					if ( currentTag().equals("table") )
+						push(new LinkElement("tbody", current()));
+					if ( TABLE_SECTION_ELEMENTS.contains(currentTag()) )
+						push(new LinkElement("tr", current()));	// The implied "tr".
+					break;
+				default:
+					break;
+			}
+			return current();
+		}
+
+
+		private void handleEndTag()
+		{
+			int nameStart = pos +2;
+			int nameEnd = scanTagName(nameStart);
+			String tagName = getTagName(nameStart, nameEnd);
+			pos = skipPast(">", nameEnd);
+
+			switch ( tagName ) {
+				case "html": case "body":
+					return;	// The rest of the content still goes inside the "body".
+				case "head":
+					if ( (headElement != null) && (current() == headElement) )
+						pop();
+					return;
+				case "br":
+					appendSpaceToOpenTexts(true);	// The "</br>" is treated as "<br>".
+					return;
+				default:
+					break;
+			}
+
+			boolean isSpecialTag = SPECIAL_ELEMENTS.contains(tagName);
+			for ( int i = (stack.size() -1); i >= 2; i-- ) {	// Never close the "#root" and the "html".
+				LinkElement element = stack.get(i);
+				if ( element == bodyElement )
+					return;
+				if ( element.tagName().equals(tagName) ) {
+					popUntil(i);
+					if ( BLOCK_ELEMENTS.contains(tagName) )
+						appendSpaceToOpenTexts(false);
+					return;
+				}
+				if ( !isSpecialTag && SPECIAL_ELEMENTS.contains(element.tagName()) && !tagName.equals("a") )
+					return;	// A stray end-tag is ignored.
+			}
+		}
+
+
+		private void handleText(int start, int end)
+		{
+			if ( (bodyElement == null) && !isWhitespace(start, end) )
+				ensureBody();	// Any text outside the "head" belongs to the "body".
+			LinkElement current = current();
+			if ( current.hasOwnText() || !isWhitespace(start, end) )
+				current.appendOwnText(html, start, end);
+			for ( LinkElement collector : openTextCollectors )
+				collector.appendText(html, start, end);
+			if ( current.tagName().equals("div") )
+				checkForCandidateDocLink(start, end);
+		}
+
+
+		/**
+		 * This method checks whether the text of a "div" is just a doc-path (e.g. "<div> /content/files/paper.pdf </div>"), as the "SpecialUrlsHandler.Turkjgastroenterol_docUrl_pattern" does.
+		 */
+		private void checkForCandidateDocLink(int start, int end)
+		{
+			while ( (start < end) && isWhitespace(html.charAt(start)) )
+				start++;
+			while ( (end > start) && isWhitespace(html.charAt(end -1)) )
+				end--;
+			if ( ((end - start) > 5) && (html.charAt(start) == '/') && html.startsWith("pdf", (end -3)) && (html.indexOf('>', start) >= end) )
+				pageSummary.addCandidateDocLink(html.substring(start, end));
+		}
+
+
+		/**
+		 * This method gathers the values of the "pdfUrl"-keys inside the given javaScript-code.
+		 */
+		private void gatherJavascriptPdfLinks(int start, int end)
+		{
+			while ( true ) {
+				if ( (nextJavascriptPdfUrlIndex != -1) && (nextJavascriptPdfUrlIndex < start) )
+					nextJavascriptPdfUrlIndex = html.indexOf(JAVASCRIPT_PDF_URL_KEY, start);
+				if ( (nextJavascriptPdfUrlIndex == -1) || (nextJavascriptPdfUrlIndex >= end) )
+					return;
+				int valueStart = (nextJavascriptPdfUrlIndex + JAVASCRIPT_PDF_URL_KEY.length());
+				int valueEnd = html.indexOf('"', valueStart);
+				if ( (valueEnd == -1) || (valueEnd > end) )
+					return;
+				if ( valueEnd > valueStart )
+					pageSummary.addJavascriptPdfLink(Strings.CS.replace(html.substring(valueStart, valueEnd), "\\/", "/"));	// The slashes may be escaped in json.
+				start = (valueEnd +1);
+			}
+		}
+
+
+		/**
+		 * This method parses the attributes of the current tag, until its end.
+		 * For the link-elements, all the attributes are kept, for the rest only the "class" and the "id". If the given element is null, the attributes are just skipped.
+		 * @return true, if the tag is self-closing.
+		 */
+		private boolean parseAttributes(LinkElement element, boolean keepAllAttributes, boolean onlyIfMissing)
+		{
+			while ( pos < length ) {
+				char c = html.charAt(pos);
+				if ( c == '>' ) {
+					pos++;
+					return false;
+				} else if ( (c == '/') && ((pos +1) < length) && (html.charAt(pos +1) == '>') ) {
+					pos += 2;
+					return true;
+				} else if ( isWhitespace(c) || (c == '/') ) {
+					pos++;
+					continue;
+				}
+
+				int attrNameStart = pos;
+				pos++;	// The first character may be any character, even the "=".
+				while ( (pos < length) && !isWhitespace(c = html.charAt(pos)) && (c != '=') && (c != '>') && (c != '/') )
+					pos++;
+				int attrNameEnd = pos;
+
+				while ( (pos < length) && isWhitespace(html.charAt(pos)) )
+					pos++;
+
+				int valueStart = -1, valueEnd = -1;
+				if ( (pos < length) && (html.charAt(pos) == '=') ) {
+					pos++;
+					while ( (pos < length) && isWhitespace(html.charAt(pos)) )
+						pos++;
+					if ( pos < length ) {
+						char quote = html.charAt(pos);
+						if ( (quote == '"') || (quote == '\'') ) {
+							valueStart = pos +1;
+							int quoteEnd = html.indexOf(quote, valueStart);
+							valueEnd = ((quoteEnd != -1) ? quoteEnd : length);
+							pos = ((quoteEnd != -1) ? (quoteEnd +1) : length);
+						} else {
+							valueStart = pos;
+							while ( (pos < length) && !isWhitespace(c = html.charAt(pos)) && (c != '>') )
+								pos++;
+							valueEnd = pos;
+						}
+					}
+				}
+
+				if ( element == null )
+					continue;
+				int attrNameLength = (attrNameEnd - attrNameStart);
+				if ( keepAllAttributes ) {
+					String attrName = html.substring(attrNameStart, attrNameEnd).toLowerCase(Locale.ROOT);
+					String value = getAttributeValue(valueStart, valueEnd);
+					element.putAttribute(attrName, value);
+					if ( attrName.equals("class") )
+						setClassNameIfMissing(element, value, onlyIfMissing);
+					else if ( attrName.equals("id") )
+						setIdIfMissing(element, value, onlyIfMissing);
+				} else if ( (attrNameLength == 5) && html.regionMatches(true, attrNameStart, "class", 0, 5) )
+					setClassNameIfMissing(element, getAttributeValue(valueStart, valueEnd), onlyIfMissing);
+				else if ( (attrNameLength == 2) && html.regionMatches(true, attrNameStart, "id", 0, 2) )
+					setIdIfMissing(element, getAttributeValue(valueStart, valueEnd), onlyIfMissing);
+			}
+			return false;
+		}
+
+
+		private void setClassNameIfMissing(LinkElement element, String className, boolean onlyIfMissing)
+		{
+			if ( !onlyIfMissing || element.className().isEmpty() )
+				element.setClassName(className);
+		}
+
+
+		private void setIdIfMissing(LinkElement element, String id, boolean onlyIfMissing)
+		{
+			if ( !onlyIfMissing || element.id().isEmpty() )
+				element.setId(id);
+		}
+
+
+		private String getAttributeValue(int valueStart, int valueEnd)
+		{
+			if ( valueStart == -1 )
+				return "";
+			return LinkElement.decodeEntities(html.substring(valueStart, valueEnd), true);
+		}
+
+
+		private void openHead()
+		{
+			headElement = new LinkElement("head", htmlElement);
+			push(headElement);
+		}
+
+
+		private void ensureBody()
+		{
+			if ( bodyElement != null )
+				return;
+			if ( headElement == null )
+				headElement = new LinkElement("head", htmlElement);	// Jsoup always creates the "head"-element, even if it does not exist in the html.
+			else {
+				int headIndex = stack.indexOf(headElement);
+				if ( headIndex != -1 )
+					popUntil(headIndex);	// Close the "head" and any elements left open inside it.
+			}
+			bodyElement = new LinkElement("body", htmlElement);
+			push(bodyElement);
+		}
+
+
+		/**
+		 * This method closes the nearest open element with the given tag, unless a boundary-element is found first.
+		 * @return true, if the element was found and closed.
+		 */
+		private boolean closeInScope(String tagName, String... boundaryTags)
+		{
+			for ( int i = (stack.size() -1); i >= 2; i-- ) {
+				String tag = stack.get(i).tagName();
+				if ( tag.equals(tagName) ) {
+					popUntil(i);
+					return true;
+				}
+				if ( (stack.get(i) == bodyElement) )
+					return false;
+				for ( String boundaryTag : boundaryTags )
+					if ( tag.equals(boundaryTag) )
+						return false;
+			}
+			return false;
+		}
+
+
+		private void closeTableSectionInTable()
+		{
+			for ( int i = (stack.size() -1); i >= 2; i-- ) {
+				String tag = stack.get(i).tagName();
+				if ( TABLE_SECTION_ELEMENTS.contains(tag) ) {
+					popUntil(i);
+					return;
+				}
+				if ( tag.equals("table") || (stack.get(i) == bodyElement) )
+					return;
+			}
+		}
+
+
+		private void push(LinkElement element)
+		{
+			stack.add(element);
+		}
+
+
+		private void pop()
+		{
+			LinkElement element = stack.remove(stack.size() -1);
+			if ( element.isCollectingText() )
+				openTextCollectors.remove(element);
+			if ( element == openFormElement )
+				openFormElement = null;
+		}
+
+
+		/**
+		 * This method pops all the elements from the top of the stack, until (and including) the element in the given index.
+		 */
+		private void popUntil(int index)
+		{
+			while ( stack.size() > index )
+				pop();
+		}
+
+
+		private LinkElement current() {
+			return stack.get(stack.size() -1);
+		}
+
+
+		private String currentTag() {
+			return current().tagName();
+		}
+
+
+		private void appendSpaceToOpenTexts(boolean isBr)
+		{
+			for ( LinkElement collector : openTextCollectors )
+				collector.appendSpaceToText();
+			if ( isBr && current().hasOwnText() )
+				current().appendSpaceToOwnText();
+		}
+
+
+		private int scanTagName(int start)
+		{
+			int i = start;
+			char c;
+			while ( (i < length) && !isWhitespace(c = html.charAt(i)) && (c != '>') && (c != '/') )
+				i++;
+			return i;
+		}
+
+
+		private String getTagName(int start, int end)
+		{
+			int nameLength = (end - start);
+			if ( nameLength < KNOWN_TAGS_BY_LENGTH.length )
+				for ( String knownTag : KNOWN_TAGS_BY_LENGTH[nameLength] )
+					if ( html.regionMatches(true, start, knownTag, 0, nameLength) )
+						return knownTag;
+			return html.substring(start, end).toLowerCase(Locale.ROOT);
+		}
+
+
+		/**
+		 * This method returns the position after the end-tag of the given raw-text element, or the end of the html.
+		 */
+		private int skipRawText(String tagName)
+		{
+			int i = pos;
+			int tagLength = tagName.length();
+			while ( (i = html.indexOf("</", i)) != -1 ) {
+				if ( html.regionMatches(true, (i +2), tagName, 0, tagLength) ) {
+					int afterName = (i +2 + tagLength);
+					if ( (afterName >= length) || isWhitespace(html.charAt(afterName)) || (html.charAt(afterName) == '>') || (html.charAt(afterName) == '/') )
+						return skipPast(">", afterName);
+				}
+				i += 2;
+			}
+			return length;
+		}
+
+
+		private int skipPast(String str, int from)
+		{
+			int index = html.indexOf(str, from);
+			return ((index != -1) ? (index + str.length()) : length);
+		}
+
+
+		private boolean isWhitespace(int start, int end)
+		{
+			for ( int i = start; i < end; i++ )
+				if ( !isWhitespace(html.charAt(i)) )
+					return false;
+			return true;
+		}
+
+
+		private static boolean isWhitespace(char c) {
+			return ((c == ' ') || (c == '\t') || (c == '\n') || (c == '\f') || (c == '\r'));
+		}
+
+
+		private static boolean isAsciiLetter(char c) {
+			return (((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')));
+		}
+	}
+
+}
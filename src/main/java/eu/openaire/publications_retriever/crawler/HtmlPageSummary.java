@@ -0,0 +1,163 @@
+package eu.openaire.publications_retriever.crawler;
+
+import org.apache.commons.lang3.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+
+
+/**
+ * This class holds the summary of a page's html, which is produced by a single pass over it and then read by every consumer (the "MetadataHandler", the "SpecialUrlsHandler" and the "PageCrawler").
+ * It holds the link-elements, the "access-rights", the "docUrl" and the "generator" found in the meta-tags, the candidate docLinks found as plain text inside "div"-elements and the pdf-links found inside the javaScript-code.
+ * If the streaming analysis fails, then the meta-data and the candidate docLinks are retrieved by the old regex-scans and the link-elements will be extracted by Jsoup, when needed.
+ * @author Lampros Smyrnaios
+ */
+public class HtmlPageSummary
+{
+	private static final Logger logger = LoggerFactory.getLogger(HtmlPageSummary.class);
+
+	public static final long JAVASCRIPT_PDF_LINK_STRUCTURE = 0;	// These links do not come from a link-element, so they get a structure-fingerprint which (practically) never matches the one of a link-element.
+
+	private List<LinkElement> linkElements = null;	// It is null, if the streaming analysis failed.
+
+	private StringBuilder metaAccessRights = null;
+	private String metaDocUrl = null;
+	private String metaGenerator = null;
+	private List<String> candidateDocLinks = null;
+	private List<String> javascriptPdfLinks = null;
+
+
+	HtmlPageSummary() {}
+
+
+	/**
+	 * This method analyzes the given html in a single pass, with the streaming "HtmlLinkExtractor".
+	 * If that is disabled or fails, then the meta-data and the candidate docLinks are retrieved with the regex-scans.
+	 * @param pageHtml
+	 * @param pageUrl
+	 * @return the summary of the page. It is never null.
+	 */
+	public static HtmlPageSummary analyze(String pageHtml, String pageUrl)
+	{
+		if ( PageCrawler.useStreamingLinkExtraction ) {
+			try {
+				return HtmlLinkExtractor.analyzeHtml(pageHtml);
+			} catch (Exception e) {
+				logger.warn("The streaming analysis of the html failed for pageUrl: \"" + pageUrl + "\". Going to use the regex-scans and Jsoup.", e);
+			}
+		}
+
+		HtmlPageSummary pageSummary = new HtmlPageSummary();
+		String metaAccessRights = MetadataHandler.getMetaAccessRightsFromHTML(pageHtml);
+		if ( metaAccessRights != null )
+			pageSummary.metaAccessRights = new StringBuilder(metaAccessRights);
+		String metaDocUrl = MetadataHandler.getMetaDocUrlFromHTML(pageHtml);
+		if ( (metaDocUrl != null) && !metaDocUrl.isEmpty() )
+			pageSummary.metaDocUrl = metaDocUrl;
+		Matcher generatorMatcher = MetadataHandler.META_GENERATOR.matcher(pageHtml);
+		if ( generatorMatcher.find() )
+			pageSummary.metaGenerator = ((generatorMatcher.group(1) != null) ? generatorMatcher.group(1) : generatorMatcher.group(2));
+		Matcher matcher = SpecialUrlsHandler.Turkjgastroenterol_docUrl_pattern.matcher(pageHtml);
+		while ( matcher.find() )
+			pageSummary.addCandidateDocLink(matcher.group(1));
+		return pageSummary;
+	}
+
+
+	/**
+	 * @return the link-elements, in the order they appear in the html, or null, if the streaming analysis failed.
+	 */
+	public List<LinkElement> getLinkElements() {
+		return linkElements;
+	}
+
+	/**
+	 * @return the concatenated values of all the "access-rights" meta-tags, or null, if none was found.
+	 */
+	public String getMetaAccessRights() {
+		return ((metaAccessRights != null) ? metaAccessRights.toString() : null);
+	}
+
+	/**
+	 * @return the first "docUrl" found in the meta-tags, or null, if none was found.
+	 */
+	public String getMetaDocUrl() {
+		return metaDocUrl;
+	}
+
+	/**
+	 * @return the "generator" meta-tag (e.g. "DSpace 6.3"), which reveals the platform of the repository, or null, if none was found.
+	 */
+	public String getMetaGenerator() {
+		return metaGenerator;
+	}
+
+	/**
+	 * @return the doc-paths which appear as plain text inside "div"-elements (e.g. in "turkjgastroenterol.org").
+	 */
+	public List<String> getCandidateDocLinks() {
+		return ((candidateDocLinks != null) ? candidateDocLinks : Collections.emptyList());
+	}
+
+	/**
+	 * @return the pdf-links found inside the javaScript-code of the page (e.g. "pdfUrl":"...").
+	 */
+	public List<String> getJavascriptPdfLinks() {
+		return ((javascriptPdfLinks != null) ? javascriptPdfLinks : Collections.emptyList());
+	}
+
+
+	/**
+	 * This method drops the link-elements, after the internal-links are extracted from them, as they reference the html (through the ranges of their own text).
+	 */
+	void clearLinkElements() {
+		this.linkElements = null;
+	}
+
+
+	void setLinkElements(List<LinkElement> linkElements) {
+		this.linkElements = linkElements;
+	}
+
+
+	/**
+	 * This method checks the "name" and the "content" of a meta-tag, in the same way the "META_RESTRICTED_ACCESS_RIGHTS" and "META_DOC_URL" regexes do.
+	 */
+	void addMetaTag(String name, String content)
+	{
+		if ( name.isEmpty() || content.isEmpty() )
+			return;
+
+		if ( MetadataHandler.META_ACCESS_RIGHTS_NAME.matcher(name).matches() ) {
+			if ( !content.startsWith("http") && (content.length() <= 200) ) {
+				if ( metaAccessRights == null )
+					metaAccessRights = new StringBuilder(100);
+				metaAccessRights.append(content).append(" -- ");
+			}
+		} else if ( (metaDocUrl == null) && Strings.CI.startsWith(content, "http") && MetadataHandler.META_DOC_URL_NAME.matcher(name).matches() )
+			metaDocUrl = content;	// Only the first one is kept.
+		else if ( (metaGenerator == null) && name.equalsIgnoreCase("generator") )
+			metaGenerator = content;
+	}
+
+
+	void addCandidateDocLink(String docLink)
+	{
+		if ( candidateDocLinks == null )
+			candidateDocLinks = new ArrayList<>(2);
+		candidateDocLinks.add(docLink);
+	}
+
+
+	void addJavascriptPdfLink(String pdfLink)
+	{
+		if ( javascriptPdfLinks == null )
+			javascriptPdfLinks = new ArrayList<>(2);
+		javascriptPdfLinks.add(pdfLink);
+	}
+
+}
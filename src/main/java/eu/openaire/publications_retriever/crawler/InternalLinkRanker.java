@@ -0,0 +1,169 @@
+package eu.openaire.publications_retriever.crawler;
+
+import eu.openaire.publications_retriever.util.args.ArgsUtils;
+import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class ranks the internal-links of a page, so that the most promising ones are connected first, and it decides how many of the "remaining" internal-links of each domain are worth connecting.
+ * The score of a link is based on the text and title of its element, on the keywords of the link itself and on the classes and ids of its ancestors.
+ * The budget of the remaining-links of each domain adapts to how often they have actually given a docUrl, in the previous pages of that domain.
+ * @author Lampros Smyrnaios
+ */
+public class InternalLinkRanker
+{
+	private static final Logger logger = LoggerFactory.getLogger(InternalLinkRanker.class);
+
+	public static boolean useLinkRanking = true;	// Keep it "public" and "non-final", in order to be set by external services. If it is "false", then the links are connected in the order they are found in the page.
+
+	public static final int javascriptPdfLinkScore = 5;	// These links were found as "pdfUrl"s inside the javaScript-code of the page.
+
+	private static final Pattern URL_DOC_HINTS = Pattern.compile("/(?:bitstream|handle|article|fulltext|files?|pub(?:lication)?s?|record|items?|view|index\\.php)/");
+	private static final Pattern URL_NAVIGATION_HINTS = Pattern.compile("/(?:search|browse|tags?|categor(?:y|ies)|authors?|users?|login|register|about|contact|help|news|events?|faq|sitemap)(?:[/?.]|$)|[?&](?:page|sort|order|lang|locale|query|q)=");
+	private static final Pattern STRUCTURE_DOC_HINTS = Pattern.compile(".*(?:download|file|pdf|full" + PageCrawler.spaceOrDashes + "text|attachment|galley|citation" + PageCrawler.spaceOrDashes + "pdf).*");
+	private static final Pattern STRUCTURE_NAVIGATION_HINTS = Pattern.compile(".*(?:nav|menu|sidebar|share|social|pagination|pager|tags|keywords).*");
+
+	private static final int NUM_ANCESTORS_TO_SCORE = 5;	// The classes of the farther ancestors are shared by most links of the page.
+
+
+	/**
+	 * This method returns the score of the given internal-link. The higher the score, the sooner the link is connected.
+	 * @param internalLink
+	 * @param el the element of the link (it may be null)
+	 * @return the score
+	 */
+	public static int getScore(String internalLink, LinkElement el)
+	{
+		int score = 0;
+		String lowerCaseLink = internalLink.toLowerCase();
+		if ( (ArgsUtils.retrieveDocuments && LoaderAndChecker.DOC_URL_FILTER.matcher(lowerCaseLink).matches())
+				|| (ArgsUtils.retrieveDatasets && LoaderAndChecker.DATASET_URL_FILTER.matcher(lowerCaseLink).matches()) )
+			score += 4;
+		else if ( URL_DOC_HINTS.matcher(lowerCaseLink).find() )
+			score += 1;
+		if ( URL_NAVIGATION_HINTS.matcher(lowerCaseLink).find() )
+			score -= 3;
+
+		if ( el == null )
+			return score;
+
+		String text = el.text();
+		if ( !text.isEmpty() && PageCrawler.DOCUMENT_TEXT.matcher(text.toLowerCase()).find() )
+			score += 3;
+		String title = el.attr("title");
+		if ( !title.isEmpty() && PageCrawler.DOCUMENT_TEXT.matcher(title.toLowerCase()).find() )
+			score += 2;
+
+		// Check the element itself and its closest ancestors. Each hint is counted once.
+		boolean hasDocHint = false, hasNavigationHint = false;
+		LinkElement element = el;
+		for ( int i = 0; (i <= NUM_ANCESTORS_TO_SCORE) && (element != null) && !(hasDocHint && hasNavigationHint); i++, element = element.parent() ) {
+			String tagName = element.tagName();
+			if ( !hasNavigationHint && (tagName.equals("nav") || tagName.equals("aside")) )
+				hasNavigationHint = true;
+			String className = element.className().toLowerCase();
+			String id = element.id().toLowerCase();
+			if ( !hasDocHint && (STRUCTURE_DOC_HINTS.matcher(className).matches() || STRUCTURE_DOC_HINTS.matcher(id).matches()) )
+				hasDocHint = true;
+			if ( !hasNavigationHint && (STRUCTURE_NAVIGATION_HINTS.matcher(className).matches() || STRUCTURE_NAVIGATION_HINTS.matcher(id).matches()) )
+				hasNavigationHint = true;
+		}
+		if ( hasDocHint )
+			score += 2;
+		if ( hasNavigationHint )
+			score -= 2;
+		return score;
+	}
+
+
+	/**
+	 * This method returns the links of the page, with the highest-scored first. The links with equal scores keep their order.
+	 * @param linksWithScores
+	 * @return the ranked links
+	 */
+	public static List<Map.Entry<String, ScoredLink>> getRankedLinks(Map<String, ScoredLink> linksWithScores)
+	{
+		List<Map.Entry<String, ScoredLink>> rankedLinks = new ArrayList<>(linksWithScores.entrySet());
+		if ( useLinkRanking )
+			rankedLinks.sort((entry1, entry2) -> Integer.compare(entry2.getValue().score(), entry1.getValue().score()));
+		return rankedLinks;
+	}
+
+
+	public static final int maxRemainingLinksToConnect = 10;	// The < 10 > is the optimal value, figured out after experimentation.
+	public static final int timesToCheckRemainingLinksBeforeEvaluate = 20;	// The budget of a domain is learned after its remaining-links are checked in 20 pages.
+	private static final double leastPercentageOfHitsFromRemainingLinks = 5.0;	// If less than 1 in 20 pages of a domain get a docUrl from their remaining-links, then it is not worth connecting to them.
+	private static final int timesToSkipRemainingLinksBeforeRecheck = 50;	// The domains which do not give docUrls from their remaining-links, are re-checked once in every 50 pages, in case this changed.
+	private static final int extraProbesAfterDeepestHit = 2;
+
+	public static final ConcurrentHashMap<String, RemainingLinksStats> domainsWithRemainingLinksStats = new ConcurrentHashMap<>();
+
+	public static AtomicInteger numOfPagesWithCheckedInternalLinks = new AtomicInteger(0);
+	public static AtomicInteger numOfWastedConnections = new AtomicInteger(0);	// The connections to internal-links which did not give a docUrl.
+	public static AtomicInteger numOfPagesWithSkippedRemainingLinks = new AtomicInteger(0);
+
+
+	public static final class RemainingLinksStats
+	{
+		private final AtomicInteger timesChecked = new AtomicInteger(0);
+		private final AtomicInteger timesFound = new AtomicInteger(0);
+		private final AtomicInteger maxProbesToFind = new AtomicInteger(0);	// The most connections which were needed in a page of this domain, in order to find its docUrl.
+		private final AtomicInteger timesSkipped = new AtomicInteger(0);
+	}
+
+
+	/**
+	 * This method returns the number of the remaining-links of the given domain, which are worth connecting.
+	 * Until the domain is evaluated, the maximum budget is given. After that, the domains which rarely gave a docUrl get no budget (except for some re-checks),
+	 * while the rest get just enough budget to reach the deepest docUrl they have given so far.
+	 * @param pageDomain
+	 * @return the budget, or 0, if the remaining-links of this page should not be connected.
+	 */
+	public static int getRemainingLinksBudget(String pageDomain)
+	{
+		RemainingLinksStats stats = domainsWithRemainingLinksStats.get(pageDomain);
+		if ( stats == null )
+			return maxRemainingLinksToConnect;
+
+		int timesChecked = stats.timesChecked.get();
+		if ( timesChecked < timesToCheckRemainingLinksBeforeEvaluate )
+			return maxRemainingLinksToConnect;
+
+		double percentage = (stats.timesFound.get() * 100.0 / timesChecked);
+		if ( percentage < leastPercentageOfHitsFromRemainingLinks ) {
+			if ( (stats.timesSkipped.incrementAndGet() % timesToSkipRemainingLinksBeforeRecheck) == 0 )
+				return maxRemainingLinksToConnect;	// Re-check this domain.
+			numOfPagesWithSkippedRemainingLinks.incrementAndGet();
+			return 0;
+		}
+		return Math.min(maxRemainingLinksToConnect, (stats.maxProbesToFind.get() + extraProbesAfterDeepestHit));
+	}
+
+
+	/**
+	 * This method records the outcome of checking the remaining-links of a page, in order to adapt the budget of its domain.
+	 * @param pageDomain
+	 * @param found true, if a docUrl was found
+	 * @param numOfProbes the number of the remaining-links which were connected
+	 */
+	public static void recordRemainingLinksOutcome(String pageDomain, boolean found, int numOfProbes)
+	{
+		RemainingLinksStats stats = domainsWithRemainingLinksStats.computeIfAbsent(pageDomain, k -> new RemainingLinksStats());
+		stats.timesChecked.incrementAndGet();
+		if ( found ) {
+			stats.timesFound.incrementAndGet();
+			stats.maxProbesToFind.accumulateAndGet(numOfProbes, Math::max);
+		} else if ( logger.isTraceEnabled() )
+			logger.trace("No docUrl was found after connecting to " + numOfProbes + " remaining-links of a page of domain: " + pageDomain);
+	}
+
+}
@@ -0,0 +1,305 @@
+package eu.openaire.publications_retriever.crawler;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Entities;
+import org.jsoup.parser.Parser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * This class holds the data of an html-element, which are needed in order to evaluate the internal-links of a page.
+ * The link-elements ("a", "link" and "form") hold all their attributes and their whole text (including the text of their descendants).
+ * Their ancestors hold only their tag, "class", "id" and own text, which are used by the structure-checks and the "PageStructureMLA".
+ * The elements are created by the "HtmlLinkExtractor", either while streaming through the html, or from the elements of a Jsoup-document (fallback).
+ * The names of the methods are the same as the ones of the Jsoup-elements, in order to have the same meaning.
+ * @author Lampros Smyrnaios
+ */
+public class LinkElement
+{
+	private final String tagName;
+	private final LinkElement parent;
+
+	private String className = "";
+	private String id = "";
+	private Map<String, String> attributes = null;	// It is used only for the link-elements.
+
+	// The raw text is kept, as it appears inside the html. It is decoded and normalized only when (and if) it is requested.
+	private StringBuilder rawText = null;	// The text of this element and all its descendants. It is collected only for the link-elements.
+
+	// The own text of each element is kept as ranges of the html, instead of copying it, as it is requested only for the parents of the links.
+	private String ownTextSource = null;
+	private int[] ownTextRanges = null;	// Pairs of start-end indexes. A pair with a negative start means a single space (from a "br").
+	private int ownTextRangesSize = 0;
+	private String text = null;
+	private String ownText = null;
+
+
+	LinkElement(String tagName, LinkElement parent)
+	{
+		this.tagName = tagName;
+		this.parent = parent;
+	}
+
+
+	public String tagName() {
+		return tagName;
+	}
+
+	public LinkElement parent() {
+		return parent;
+	}
+
+	public String className() {
+		return className;
+	}
+
+	public String id() {
+		return id;
+	}
+
+
+	/**
+	 * @param key the lowercase name of the attribute
+	 * @return the value of the attribute, or an empty string, if it does not exist.
+	 */
+	public String attr(String key)
+	{
+		if ( attributes == null )
+			return "";
+		String value = attributes.get(key);
+		return ((value != null) ? value : "");
+	}
+
+
+	public boolean hasAttr(String key) {
+		return ((attributes != null) && attributes.containsKey(key));
+	}
+
+
+	/**
+	 * @return the attributes of this element, in the order they appear in the html.
+	 */
+	public Map<String, String> attributes() {
+		return ((attributes != null) ? attributes : Collections.emptyMap());
+	}
+
+
+	/**
+	 * @return the normalized text of this element and all its descendants.
+	 */
+	public String text()
+	{
+		if ( text == null )
+			text = ((rawText != null) ? normalizeText(rawText) : "");
+		return text;
+	}
+
+
+	/**
+	 * @return the normalized text which belongs directly to this element, not to its descendants.
+	 */
+	public String ownText()
+	{
+		if ( ownText == null )
+			ownText = ((ownTextRanges != null) ? normalizeText(getRawOwnText()) : "");
+		return ownText;
+	}
+
+
+	void setClassName(String className) {
+		this.className = className.trim();
+	}
+
+	void setId(String id) {
+		this.id = id;
+	}
+
+	boolean hasAttributes() {
+		return (attributes != null);
+	}
+
+	void putAttribute(String key, String value)
+	{
+		if ( attributes == null )
+			attributes = new LinkedHashMap<>(8);
+		attributes.putIfAbsent(key, value);	// The first appearance of an attribute wins, as in Jsoup.
+	}
+
+	boolean isCollectingText() {
+		return (rawText != null);
+	}
+
+	void startCollectingText() {
+		rawText = new StringBuilder();
+	}
+
+	void appendText(CharSequence html, int start, int end) {
+		rawText.append(html, start, end);
+	}
+
+	void appendSpaceToText()
+	{
+		int length = rawText.length();
+		if ( (length > 0) && (rawText.charAt(length -1) != ' ') )
+			rawText.append(' ');
+	}
+
+	boolean hasOwnText() {
+		return (ownTextRanges != null);
+	}
+
+	void appendOwnText(String html, int start, int end)
+	{
+		if ( ownTextRanges == null ) {
+			ownTextSource = html;
+			ownTextRanges = new int[4];
+		} else if ( (start >= 0) && (ownTextRanges[ownTextRangesSize -1] == start) && (ownTextRanges[ownTextRangesSize -2] >= 0) ) {
+			ownTextRanges[ownTextRangesSize -1] = end;	// Extend the previous range.
+			return;
+		} else if ( ownTextRangesSize == ownTextRanges.length )
+			ownTextRanges = Arrays.copyOf(ownTextRanges, (ownTextRangesSize * 2));
+		ownTextRanges[ownTextRangesSize++] = start;
+		ownTextRanges[ownTextRangesSize++] = end;
+	}
+
+	void appendSpaceToOwnText() {
+		appendOwnText(ownTextSource, -1, -1);
+	}
+
+	private CharSequence getRawOwnText()
+	{
+		StringBuilder sb = new StringBuilder();
+		for ( int i = 0; i < ownTextRangesSize; i += 2 ) {
+			if ( ownTextRanges[i] < 0 )
+				sb.append(' ');
+			else
+				sb.append(ownTextSource, ownTextRanges[i], ownTextRanges[i +1]);
+		}
+		return sb;
+	}
+
+
+	/**
+	 * This method creates the "LinkElement" of the given Jsoup-element, along with its ancestors.
+	 * The already converted ancestors are re-used, through the given map.
+	 */
+	static LinkElement fromJsoupElement(Element element, Map<Element, LinkElement> convertedElements, boolean isLinkElement)
+	{
+		LinkElement linkElement = convertedElements.get(element);
+		if ( linkElement != null ) {
+			if ( isLinkElement && (linkElement.text == null) )	// A link-element which is the ancestor of another link-element (e.g. a "form" containing an "a").
+				fillLinkDataFromJsoupElement(linkElement, element);
+			return linkElement;
+		}
+
+		Element parentElement = element.parent();
+		LinkElement parent = ((parentElement != null) ? fromJsoupElement(parentElement, convertedElements, false) : null);
+		linkElement = new LinkElement(element.tagName(), parent);
+		linkElement.className = element.className().trim();
+		linkElement.id = element.id();
+		linkElement.ownText = element.ownText();
+		if ( isLinkElement )
+			fillLinkDataFromJsoupElement(linkElement, element);
+		convertedElements.put(element, linkElement);
+		return linkElement;
+	}
+
+
+	private static void fillLinkDataFromJsoupElement(LinkElement linkElement, Element element)
+	{
+		linkElement.text = element.text();
+		for ( Attribute attribute : element.attributes() )
+			linkElement.putAttribute(attribute.getKey(), attribute.getValue());
+	}
+
+
+	/**
+	 * This method decodes the html-entities and normalizes the whitespace of the given text, in the same way Jsoup does.
+	 */
+	static String normalizeText(CharSequence rawText)
+	{
+		String decodedText = decodeEntities(rawText.toString(), false);
+
+		int length = decodedText.length();
+		StringBuilder sb = new StringBuilder(length);
+		boolean lastWasWhitespace = true;	// Skip the leading whitespace.
+		for ( int i = 0; i < length; i++ ) {
+			char c = decodedText.charAt(i);
+			if ( (c == ' ') || (c == '\t') || (c == '\n') || (c == '\f') || (c == '\r') || (c == 160) ) {
+				if ( !lastWasWhitespace ) {
+					sb.append(' ');
+					lastWasWhitespace = true;
+				}
+			} else if ( (c != 8203) && (c != 173) ) {	// Skip the invisible characters (zero-width-space and soft-hyphen).
+				sb.append(c);
+				lastWasWhitespace = false;
+			}
+		}
+		return sb.toString().trim();	// Remove the trailing whitespace and any control-characters at the edges, as Jsoup does.
+	}
+
+
+	/**
+	 * This method decodes the common html-entities (the numeric ones and the named ones which end with a semicolon), without the overhead of the Jsoup-tokeniser, which allocates big buffers for each call.
+	 * For any other case (e.g. a named entity without a semicolon), the decoding is done by Jsoup, in order to have the same result.
+	 */
+	static String decodeEntities(String text, boolean inAttribute)
+	{
+		int ampIndex = text.indexOf('&');
+		if ( ampIndex == -1 )
+			return text;
+
+		int length = text.length();
+		StringBuilder sb = new StringBuilder(length);
+		int from = 0;
+		do {
+			sb.append(text, from, ampIndex);
+			int i = (ampIndex +1);
+			if ( (i < length) && (text.charAt(i) == '#') ) {
+				i++;
+				boolean isHex = ((i < length) && ((text.charAt(i) == 'x') || (text.charAt(i) == 'X')));
+				if ( isHex )
+					i++;
+				int digitsStart = i, codePoint = 0;
+				while ( (i < length) && ((i - digitsStart) < 7) && (Character.digit(text.charAt(i), (isHex ? 16 : 10)) != -1) )
+					codePoint = (codePoint * (isHex ? 16 : 10)) + Character.digit(text.charAt(i++), (isHex ? 16 : 10));
+				if ( (i == digitsStart) || (i >= length) || (text.charAt(i) != ';')
+						|| (codePoint < 32) || ((codePoint > 126) && (codePoint < 160)) || ((codePoint >= 0xD800) && (codePoint <= 0xDFFF)) || (codePoint > 0x10FFFF) )
+					return Parser.unescapeEntities(text, inAttribute);	// An unusual case, which Jsoup handles in a special way.
+				sb.appendCodePoint(codePoint);
+			} else {
+				while ( (i < length) && Character.isLetterOrDigit(text.charAt(i)) )
+					i++;
+				if ( i == (ampIndex +1) ) {	// A plain "&" character.
+					sb.append('&');
+					from = i;
+					continue;
+				}
+				String name;
+				if ( (i >= length) || (text.charAt(i) != ';') || !Entities.isNamedEntity(name = text.substring((ampIndex +1), i)) )
+					return Parser.unescapeEntities(text, inAttribute);
+				sb.append(Entities.getByName(name));
+			}
+			from = (i +1);	// After the semicolon.
+		} while ( (ampIndex = text.indexOf('&', from)) != -1 );
+		sb.append(text, from, length);
+		return sb.toString();
+	}
+
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder(100);
+		sb.append('<').append(tagName);
+		for ( Map.Entry<String, String> attribute : attributes().entrySet() )
+			sb.append(' ').append(attribute.getKey()).append("=\"").append(attribute.getValue()).append('"');
+		return sb.append('>').append(text()).append("</").append(tagName).append('>').toString();
+	}
+
+}
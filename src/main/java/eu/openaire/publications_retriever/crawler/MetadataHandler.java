@@ -1,11 +1,13 @@
 package eu.openaire.publications_retriever.crawler;
 
 import eu.openaire.publications_retriever.exceptions.DomainBlockedException;
+import eu.openaire.publications_retriever.exceptions.DomainCircuitOpenException;
 import eu.openaire.publications_retriever.models.IdUrlMimeTypeTriple;
 import eu.openaire.publications_retriever.util.args.ArgsUtils;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.UrlNormalizationCache;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.slf4j.Logger;
@@ -39,6 +41,13 @@ public class MetadataHandler {
     private static final String metaContent = "content=\"(http[^\"]+)\"";
     public static final Pattern META_DOC_URL = Pattern.compile("<meta(?:[^<]*" + metaName + "[^<]*" + metaContent + "|[^<]*" + metaContent + "[^<]*" + metaName + ")[^>]*[/]?>", Pattern.CASE_INSENSITIVE);
 
+    // Order-independent META_GENERATOR-regex. It reveals the platform of the repository (see "RepositoryPlatforms").
+    public static final Pattern META_GENERATOR = Pattern.compile("<meta(?:[^<]*name=\"generator\"[^<]*content=\"([^\"]+)\"|[^<]*content=\"([^\"]+)\"[^<]*name=\"generator\")[^>]*[/]?>", Pattern.CASE_INSENSITIVE);
+
+    // These are used on the "name" of each meta-tag found by the single-pass analysis of the html (see "HtmlPageSummary"). The above regexes are used only when that analysis fails.
+    public static final Pattern META_ACCESS_RIGHTS_NAME = Pattern.compile("dc.(?:access)?rights", Pattern.CASE_INSENSITIVE);
+    public static final Pattern META_DOC_URL_NAME = Pattern.compile(".*(?:(?:(?:citation|wkhealth)(?:_fulltext)?_)?pdf|eprints.document)_url", Pattern.CASE_INSENSITIVE);
+
     public static Pattern COMMON_UNSUPPORTED_META_DOC_OR_DATASET_URL_EXTENSIONS;    // Its pattern gets compiled at runtime, only one time, depending on the Datatype.
     static {
         // Depending on the datatype, the regex is formed differently.
@@ -71,20 +80,21 @@ public class MetadataHandler {
      * @param sourceUrl
      * @param pageUrl
      * @param pageDomain
-     * @param pageHtml
+     * @param pageSummary
      * @return
      */
-    public static boolean checkAndHandleMetadata(String urlId, String sourceUrl, String pageUrl, String pageDomain, String pageHtml)
+    public static boolean checkAndHandleMetadata(String urlId, String sourceUrl, String pageUrl, String pageDomain, HtmlPageSummary pageSummary)
     {
         // Before checking for the MetaDocUrl, check whether this publication is restricted or not. It may have a metaDocUrl, but it will redirect to the landing page.
         // e.g.: https://le.uwpress.org/content/78/2/260
 
         // Some websites use upper of mixed-case meta tags, names or contents or even the values.
         // We cannot make the HTML lower-case, or we will make the metaDocUrls invalid.
-        // So the REGEXes have to be case-insensitive..!
+        // So the checks on the meta-tags have to be case-insensitive..!
+        // The meta-tags were already gathered by the single-pass analysis of the html, so no other scan of the html is needed here.
 
         String metaAccessRights;
-        if ( (metaAccessRights = getMetaAccessRightsFromHTML(pageHtml)) == null ) { // This is mostly the case when the page does not include any info about "access rights". It may or may not provide access to the docUrl.
+        if ( (metaAccessRights = pageSummary.getMetaAccessRights()) == null ) { // This is mostly the case when the page does not include any info about "access rights". It may or may not provide access to the docUrl.
             if ( logger.isTraceEnabled() )
                 logger.trace("Could not retrieve the metaAccessRights for url \"" + pageUrl + "\", continue by checking the metaDocUrl..");
         } else if ( logger.isTraceEnabled() )
@@ -109,7 +119,7 @@ public class MetadataHandler {
 
         // Check if the docLink is provided in a metaTag and connect to it directly.
         String metaDocUrl = null;
-        if ( (metaDocUrl = getMetaDocUrlFromHTML(pageHtml)) == null ) { // This is mostly the case when the page does not have a docUrl, although not always, so we continue crawling it.
+        if ( (metaDocUrl = pageSummary.getMetaDocUrl()) == null ) { // This is mostly the case when the page does not have a docUrl, although not always, so we continue crawling it.
             if ( logger.isTraceEnabled() )
                 logger.trace("Could not retrieve the metaDocUrl, continue by crawling the page..");
             return false;   // We don't log the sourceUrl, since it will be handled later.
@@ -161,7 +171,7 @@ public class MetadataHandler {
         // Canonnicalize the metaDocUrl before connecting with it, to avoid encoding problems. We assume the metaDocUrl to be a full-url (including the protocol, domain etc.)
         String tempMetaDocUrl = metaDocUrl;
         if ( ((metaDocUrl = ConnSupportUtils.getFullyFormedUrl(pageUrl, metaDocUrl, null)) == null)	// Make it a full-URL.
-                || ((metaDocUrl = LoaderAndChecker.basicURLNormalizer.filter(metaDocUrl)) == null) ) {	// Normalize it.
+                || ((metaDocUrl = UrlNormalizationCache.normalize(metaDocUrl)) == null) ) {	// Normalize it.
             logger.warn("Could not normalize metaDocUrl: " + tempMetaDocUrl + " , continue by crawling the page..");
             //UrlUtils.duplicateUrls.add(metaDocUrl);   //  TODO - Would this make sense?
             return false;   // Continue crawling the page..
@@ -190,7 +200,10 @@ public class MetadataHandler {
         } catch (DomainBlockedException dbe) {
             String metaDocUrlDomain = UrlUtils.getDomainStr(metaDocUrl, null);
             if ( (metaDocUrlDomain != null) && metaDocUrlDomain.equals(pageDomain) ) {
-                UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'MetaDocUrlsHandler.checkIfAndHandleMetaDocUrl()' method, as its domain was blocked.", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
+                if ( dbe instanceof DomainCircuitOpenException )
+                    PageCrawler.handleBlockedDomainOfPage(urlId, sourceUrl, pageUrl, dbe, "MetaDocUrlsHandler.checkIfAndHandleMetaDocUrl()");    // The domain is blocked only temporarily.
+                else
+                    UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'MetaDocUrlsHandler.checkIfAndHandleMetaDocUrl()' method, as its domain was blocked.", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
                 return true;    // Stop crawling the page.
             }
             return false;   // Continue crawling the page.
@@ -212,9 +225,10 @@ public class MetadataHandler {
 
 
     /**
-     * Scan the HTML-code for the metaDocUrl.
+     * Scan the HTML-code for the metaAccessRights.
      * It may be located either in the start or at the end of the HTML.
      * An HTML-Code may be only a few VERY-LONG lines of code, instead of hundreds of "normal-sized" lines.
+     * It is used only when the single-pass analysis of the html fails.
      * */
     public static String getMetaAccessRightsFromHTML(String pageHtml)
     {
@@ -252,6 +266,7 @@ public class MetadataHandler {
      * Scan the HTML-code for the metaDocUrl.
      * It may be located either in the start or at the end of the HTML.
      * An HTML-Code may be only a few VERY-LONG lines of code, instead of hundreds of "normal-sized" lines.
+     * It is used only when the single-pass analysis of the html fails.
      * */
     public static String getMetaDocUrlFromHTML(String pageHtml)
     {
@@ -6,17 +6,16 @@ import eu.openaire.publications_retriever.machine_learning.PageStructureMLA;
 import eu.openaire.publications_retriever.models.IdUrlMimeTypeTriple;
 import eu.openaire.publications_retriever.util.args.ArgsUtils;
 import eu.openaire.publications_retriever.util.file.FileData;
+import eu.openaire.publications_retriever.util.file.MemoryAdmission;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.RetryQueue;
+import eu.openaire.publications_retriever.util.url.UrlNormalizationCache;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
+import eu.openaire.publications_retriever.util.url.UrlView;
 import org.apache.commons.lang3.Strings;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Attribute;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +24,7 @@ import java.io.InputStream;
 import java.net.http.HttpResponse;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -44,7 +44,7 @@ public class PageCrawler
 
 	public static final Pattern JAVASCRIPT_DOC_LINK = Pattern.compile("javascript:pdflink.*'(http.+)'[\\s]*,.*", Pattern.CASE_INSENSITIVE);
 
-	public static final Pattern JAVASCRIPT_CODE_PDF_LINK = Pattern.compile(".*\"pdfUrl\":\"([^\"]+)\".*");	// TODO - Check if this case is common, in order to handle it.
+	public static final Pattern JAVASCRIPT_CODE_PDF_LINK = Pattern.compile(".*\"pdfUrl\":\"([^\"]+)\".*");	// These links are gathered by the single-pass analysis of the html (see "HtmlPageSummary") and checked along with the other internal-links.
 
 	public static final ConcurrentHashMap<String, Integer> timesDomainNotGivingInternalLinks = new ConcurrentHashMap<>();
 	public static final ConcurrentHashMap<String, Integer> timesDomainNotGivingDocUrls = new ConcurrentHashMap<>();
@@ -54,11 +54,14 @@ public class PageCrawler
 
 	public static AtomicInteger contentProblematicUrls = new AtomicInteger(0);
 
+	public static boolean useStreamingLinkExtraction = true;	// Keep it "public" and "non-final", in order to be set by external services. If it is "false", then the full Jsoup-parsing (and the regex-scans for the meta-tags) are used for every page.
+	public static AtomicInteger numOfPagesWithJsoupLinkExtraction = new AtomicInteger(0);
+	public static AtomicInteger numOfJavascriptPdfLinksFound = new AtomicInteger(0);
+
 	private static final int MAX_INTERNAL_LINKS_TO_ACCEPT_PAGE = 500;	// If a page has more than 500 internal links, then discard it. Example: "https://dblp.uni-trier.de/db/journals/corr/corr1805.html"
 	private static final int MAX_POSSIBLE_DOC_OR_DATASET_LINKS_TO_CONNECT = 5;	// The < 5 > is the optimal value, figured out after experimentation. Example: "https://doaj.org/article/acf5f095dc0f49a59d98a6c3abca7ab6".
 
-	public static boolean should_check_remaining_links = true;	// The remaining links very rarely give docUrls.. so, for time-performance, we can disable them.
-	private static final int MAX_REMAINING_INTERNAL_LINKS_TO_CONNECT = 10;	// The < 10 > is the optimal value, figured out after experimentation.
+	public static boolean should_check_remaining_links = true;	// The remaining links very rarely give docUrls.. so, for time-performance, we can disable them. The budget of each domain is decided by the "InternalLinkRanker".
 
 	public static final String spaceOrDashes = "(?:\\s|%20|-|_)*";	// This includes the encoded space inside the url-string.
 
@@ -87,16 +90,16 @@ public class PageCrawler
 	{
 		logger.debug("Visiting pageUrl: \"" + pageUrl + "\", from id: \"" + urlId + "\".");
 
-		Matcher urlMatcher = UrlUtils.getUrlMatcher(pageUrl);
-		if ( urlMatcher == null ) {
+		UrlView urlView = UrlUtils.getUrlView(pageUrl);
+		if ( urlView == null ) {
 			logger.warn("Problematic URL in \"PageCrawler.visit()\": \"" + pageUrl + "\"");
-			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in PageCrawler.visit() method, after the occurrence of a urlMatcher error.", "null", null, true, "true", "false", "false", "false", "false", null, "null", "null");
+			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in PageCrawler.visit() method, after the occurrence of a url-splitting error.", "null", null, true, "true", "false", "false", "false", "false", null, "null", "null");
 			LoaderAndChecker.connProblematicUrls.incrementAndGet();
 			ConnSupportUtils.closeBufferedReader(bufferedReader);	// This page's content-type was auto-detected, and the process fails before re-requesting the conn-inputStream, then make sure we close the last one.
 			return;
 		}
 
-		String pageDomain = UrlUtils.getDomainStr(pageUrl, urlMatcher);
+		String pageDomain = UrlUtils.getDomainStr(pageUrl, urlView);
 		if ( pageDomain == null ) {    // If the domain is not found, it means that a serious problem exists with this docPage, and we shouldn't crawl it.
 			logger.warn("Problematic URL in \"PageCrawler.visit()\": \"" + pageUrl + "\"");
 			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in PageCrawler.visit() method, after the occurrence of a domain-retrieval error.", "null", null, true, "true", "false", "false", "false", "false", null, "null", "null");
@@ -109,7 +112,7 @@ public class PageCrawler
         if ( ArgsUtils.shouldJustDownloadHtmlFiles ) {
             ConnSupportUtils.closeBufferedReader(bufferedReader);	// If this page's content-type was auto-detected, and the process fails before re-requesting the conn-inputStream, then make sure we close the last one.
             FileData htmlFileData;
-            if ( (htmlFileData = ConnSupportUtils.downloadHtmlFile(response, urlId, pageUrl, urlMatcher, firstHTMLlineFromDetectedContentType)) == null ) {
+            if ( (htmlFileData = ConnSupportUtils.downloadHtmlFile(response, urlId, pageUrl, urlView, firstHTMLlineFromDetectedContentType)) == null ) {
                 logger.warn("Could not retrieve the HTML-code for pageUrl: " + pageUrl);
                 UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.visit()' method, as there was a problem retrieving its HTML-code. Its contentType is: '" + pageContentType + "'.", "null", null, true, "true", "true", "false", "false", "true", null, "null", "null");
                 LoaderAndChecker.connProblematicUrls.incrementAndGet();
@@ -118,34 +121,67 @@ public class PageCrawler
             return;
         }
 
-        String pageHtml;
-		if ( (pageHtml = ConnSupportUtils.getHtmlString(response, pageUrl, bufferedReader, false, firstHTMLlineFromDetectedContentType)) == null ) {
-			logger.warn("Could not retrieve the HTML-code for pageUrl: " + pageUrl);
-			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.visit()' method, as there was a problem retrieving its HTML-code. Its contentType is: '" + pageContentType + "'.", "null", null, true, "true", "true", "false", "false", "true", null, "null", "null");
-			LoaderAndChecker.connProblematicUrls.incrementAndGet();
-			// The "bufferedReader" is closed inside the above method.
-			return;
-		}
-		//logger.debug(pageHtml);	// DEBUG!
-
-		if ( ArgsUtils.retrieveDocuments && pageDomain.contains("turkjgastroenterol.org") ) {
-			SpecialUrlsHandler.extractAndCheckTurkjgastroenterolDocUrl(pageHtml, urlId, sourceUrl, pageUrl, pageDomain);
+		// The html and the structures of its parsing are kept in memory until the internal-links are extracted. Their total size, for all the in-flight pages, is kept under a budget.
+		// The html is not referenced after the extraction, so the budget is released before any connection (e.g. to the metaDocUrl), with only the summary and the extracted links left.
+		long admittedBytes;
+		try {
+			admittedBytes = MemoryAdmission.admit(response);
+		} catch (InterruptedException ie) {
+			handleInterruptedAdmission(urlId, sourceUrl, pageUrl, pageContentType);
+			ConnSupportUtils.closeBufferedReader(bufferedReader);
 			return;
 		}
 
 		boolean shouldContinueSearchingForDatasets = (ArgsUtils.retrieveDatasets && ArgsUtils.shouldDetectAllDatasetLinks);
 		boolean atLeastOneDocOrDatasetLinkFound = false;
+		boolean isTurkjgastroenterolPage = (ArgsUtils.retrieveDocuments && pageDomain.contains("turkjgastroenterol.org"));	// Its docUrl is found from the summary, without the internal-links.
+		HashMap<String, ScoredLink> pageLinksWithStructure;
+		HtmlPageSummary pageSummary;
+		HashMap<String, ScoredLink> extractedLinks = null;
+		Exception linksExtractionException = null;
+		try {
+			String pageHtml = ConnSupportUtils.getHtmlString(response, pageUrl, bufferedReader, false, firstHTMLlineFromDetectedContentType);
+			admittedBytes = MemoryAdmission.resize(admittedBytes, pageHtml);	// Correct the estimation of the "Content-Length", to the actual size of the html.
+			if ( pageHtml == null ) {
+				logger.warn("Could not retrieve the HTML-code for pageUrl: " + pageUrl);
+				UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.visit()' method, as there was a problem retrieving its HTML-code. Its contentType is: '" + pageContentType + "'.", "null", null, true, "true", "true", "false", "false", "true", null, "null", "null");
+				LoaderAndChecker.connProblematicUrls.incrementAndGet();
+				// The "bufferedReader" is closed inside the above method.
+				return;
+			}
+			//logger.debug(pageHtml);	// DEBUG!
+
+			// Analyze the html in a single pass. All the following checks read the produced summary, instead of scanning the html again.
+			pageSummary = ParsingPool.analyze(pageHtml, pageUrl);	// The CPU-bound parsing runs in its own pool, while this virtual-thread waits without holding a carrier-thread.
+
+			if ( !isTurkjgastroenterolPage ) {
+				try {	// The extraction is CPU-only, so it runs under this admission. Its exception is handled after the metadata are checked, as it may lead to a connection (e.g. to a docLink).
+					extractedLinks = ParsingPool.extractInternalLinksFromHtml(pageHtml, pageSummary, pageUrl, pageDomain);
+				} catch (Exception e) {
+					linksExtractionException = e;
+				}
+			}
+			pageSummary.clearLinkElements();	// They reference the html.
+		} finally {
+			MemoryAdmission.release(admittedBytes);	// The following checks may connect to a docUrl and even download it, so the budget is not held during them, as other pages would wait for this network-I/O.
+		}
+
+		RepositoryPlatforms.fingerprint(pageDomain, pageUrl, pageSummary.getMetaGenerator());	// The later pageUrls of this domain may have their docUrl derived, without being visited.
+
+		if ( isTurkjgastroenterolPage ) {
+			SpecialUrlsHandler.extractAndCheckTurkjgastroenterolDocUrl(pageSummary, urlId, sourceUrl, pageUrl, pageDomain);
+			return;
+		}
 
 		// Check if this publication is (likely) open-access and then check the docLink is provided in a metaTag and connect to it directly.
-		if ( MetadataHandler.checkAndHandleMetadata(urlId, sourceUrl, pageUrl, pageDomain, pageHtml) ) {
+		if ( MetadataHandler.checkAndHandleMetadata(urlId, sourceUrl, pageUrl, pageDomain, pageSummary) ) {
 			if ( ! shouldContinueSearchingForDatasets )	// Otherwise, we should continue searching for more datasets.
 				return;	// The sourceUrl is already logged inside the called method.
 			else
 				atLeastOneDocOrDatasetLinkFound = true;
 		}
 
-		HashMap<String, String> pageLinksWithStructure;
-		if ( (pageLinksWithStructure = retrieveInternalLinks(urlId, sourceUrl, pageUrl, pageDomain, pageHtml, pageContentType)) == null )
+		if ( (pageLinksWithStructure = checkExtractedInternalLinks(urlId, sourceUrl, pageUrl, pageDomain, extractedLinks, linksExtractionException, pageContentType)) == null )
 			return;	// The necessary logging is handled inside.
 
 		String urlToCheck;
@@ -153,17 +189,16 @@ public class PageCrawler
 
 		// Check if we want to use AND if so, if we should run, the MLA.
 		if ( MachineLearning.useMLA ) {
-			MachineLearning.totalPagesReachedMLAStage.incrementAndGet();	// Used for M.L.A.'s execution-manipulation.
-			shouldRunPrediction = MachineLearning.shouldRunPrediction();
+			shouldRunPrediction = MachineLearning.shouldRunPrediction(pageUrl, pageDomain, urlView);	// It also counts the page, for the "sleep-mode" of its domain.
 			if ( shouldRunPrediction ) {
-				HashMap<String, String> newPageLinksWithStructure = new HashMap<>(pageLinksWithStructure.size());
-				for ( Map.Entry<String, String> currentEntry : pageLinksWithStructure.entrySet() )
+				HashMap<String, ScoredLink> newPageLinksWithStructure = new HashMap<>(pageLinksWithStructure.size());
+				for ( Map.Entry<String, ScoredLink> currentEntry : pageLinksWithStructure.entrySet() )
 				{
 					String currentLink = currentEntry.getKey();
 
 					// Produce fully functional internal links, NOT internal paths or non-normalized (if possible). The M.L.A. will evaluate whether the predictedDocUrls exist in the Set of internal-links.
 					if ( ((urlToCheck = ConnSupportUtils.getFullyFormedUrl(pageUrl, currentLink, null)) == null)	// Make it a full-URL.
-						|| ((urlToCheck = LoaderAndChecker.basicURLNormalizer.filter(urlToCheck)) == null) ) {    // Normalize it.
+						|| ((urlToCheck = UrlNormalizationCache.normalize(urlToCheck)) == null) ) {    // Normalize it.
 						logger.warn("Could not normalize internal url: " + currentLink);
 						continue;
 					}
@@ -171,24 +206,25 @@ public class PageCrawler
 				}
 				pageLinksWithStructure = newPageLinksWithStructure;
 
-				if ( MachineLearning.predictInternalDocUrl(urlId, sourceUrl, pageUrl, pageDomain, pageLinksWithStructure) )    // Check if we can find the docUrl based on previous runs. (Still in experimental stage)
+				if ( MachineLearning.predictInternalDocUrl(urlId, sourceUrl, pageUrl, pageDomain, urlView, pageLinksWithStructure) )    // Check if we can find the docUrl based on previous runs. (Still in experimental stage)
 					return;	// If we were able to find the right path.. and hit a docUrl successfully.. return. The Quadruple is already logged.
 			}
 		}
 
-		HashMap<String, String> remainingLinks = new HashMap<>(pageLinksWithStructure.size());	// Used later. Initialize with the total num of links (which passed the canonicalization-phase) (less will actually get stored there, but their num is unknown).
+		LinkedHashMap<String, ScoredLink> remainingLinks = new LinkedHashMap<>(pageLinksWithStructure.size());	// Used later. Initialize with the total num of links (which passed the canonicalization-phase) (less will actually get stored there, but their num is unknown). It keeps the links in the order of their score.
 		String lowerCaseLink;
 		int possibleDocOrDatasetUrlsCounter = 0;
 
 		// Do a fast-loop, try connecting only to a handful of promising links first.
 		// Check if urls inside this page, match to a docUrl or to a datasetUrl regex, if they do, try connecting with them and see if they truly are docUrls. If they are, return.
-		for ( Map.Entry<String, String> currentEntry : pageLinksWithStructure.entrySet() )
+		InternalLinkRanker.numOfPagesWithCheckedInternalLinks.incrementAndGet();
+		for ( Map.Entry<String, ScoredLink> currentEntry : InternalLinkRanker.getRankedLinks(pageLinksWithStructure) )	// The most promising links are connected first.
 		{
 			String currentLink = currentEntry.getKey();
 			if ( !shouldRunPrediction) {	// If we used the MLA for this pageUrl, then this process is already handled for all urls. Otherwise, here we normalize only few links at best.
 				// Produce fully functional internal links, NOT internal paths or non-normalized (if possible). The M.L.A. will evaluate whether the predictedDocUrls exist in the Set of internal-links.
 				if ( ((urlToCheck = ConnSupportUtils.getFullyFormedUrl(pageUrl, currentLink, null)) == null)	// Make it a full-URL.
-						|| ((urlToCheck = LoaderAndChecker.basicURLNormalizer.filter(urlToCheck)) == null) ) {    // Normalize it.
+						|| ((urlToCheck = UrlNormalizationCache.normalize(urlToCheck)) == null) ) {    // Normalize it.
 					logger.warn("Could not normalize internal url: " + currentLink);
 					continue;
 				}
@@ -206,7 +242,7 @@ public class PageCrawler
 
 				ConnSupportUtils.handleReCrossedTargetUrl(urlId, sourceUrl, pageUrl, urlToCheck, originalIdUrlMimeTypeTriple, false);
 				// The fact that this is an already-found docUrl, does not mean that it was found in a duplicate page. It may be from another domain altogether.
-				PageStructureMLA.addStructureOfDocUrlInMap(pageUrl, currentEntry.getValue());
+				PageStructureMLA.addStructureOfDocUrlInMap(pageUrl, currentEntry.getValue().structure());
 
 				if ( ! shouldContinueSearchingForDatasets )
 					return;
@@ -241,7 +277,7 @@ public class PageCrawler
 				try {
 					if ( HttpConnUtils.connectAndCheckMimeType(urlId, sourceUrl, pageUrl, urlToCheck, null, false, true) )	// We log the docUrl inside this method.
 					{
-						PageStructureMLA.addStructureOfDocUrlInMap(pageUrl, currentEntry.getValue());
+						PageStructureMLA.addStructureOfDocUrlInMap(pageUrl, currentEntry.getValue().structure());
 						if ( ! shouldContinueSearchingForDatasets )
 							return;
 						else {
@@ -250,23 +286,24 @@ public class PageCrawler
 						}
 					}
 					else {	// It's not a DocUrl.
+						InternalLinkRanker.numOfWastedConnections.incrementAndGet();
 						UrlUtils.duplicateUrls.add(urlToCheck);
 						continue;
 					}
 				} catch (RuntimeException re) {
+					InternalLinkRanker.numOfWastedConnections.incrementAndGet();
 					UrlUtils.duplicateUrls.add(urlToCheck);    // Don't check it ever again..
 					continue;
 				} catch (DomainBlockedException dbe) {
 					String blockedDomain = dbe.getMessage();
 					if ( (blockedDomain != null) && blockedDomain.contains(pageDomain) ) {
 						logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.visit()\" after its domain was blocked.");
-						String couldRetry = (LoaderAndChecker.COULD_RETRY_URLS.matcher(pageUrl).matches() ? "true" : "false");
-						UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Logged in 'PageCrawler.visit()' method, as its domain was blocked during crawling.", "null", null, true, "true", "true", "false", "false", couldRetry, null, "null", "null");
-						LoaderAndChecker.connProblematicUrls.incrementAndGet();
+						handleBlockedDomainOfPage(urlId, sourceUrl, pageUrl, dbe, "PageCrawler.visit()");
 						return;
 					}
 					continue;
 				} catch (ConnTimeoutException cte) {
+					InternalLinkRanker.numOfWastedConnections.incrementAndGet();
 					if ( urlToCheck.contains(pageDomain) ) {	// In this case, it's unworthy to stay and check other internalLinks here.
 						logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.visit()\" after a potentialDocUrl caused a ConnTimeoutException.");
 						UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Logged in 'PageCrawler.visit()' method, as an internalLink of this page caused 'ConnTimeoutException'.", "null", null, true, "true", "true", "false", "false", "true", null, "null", "null");
@@ -316,47 +353,55 @@ public class PageCrawler
 	}
 
 
-	public static HashMap<String, String> retrieveInternalLinks(String urlId, String sourceUrl, String pageUrl, String pageDomain, String pageHtml, String pageContentType)
+	/**
+	 * This method checks the internal-links which were extracted from the html, or handles the exception of their extraction (e.g. by verifying the found docLink).
+	 * The extraction happens earlier, under the admission of the html, while this method may connect, so it runs after the html is released.
+	 * @param extractedLinks the extracted internal-links, or null
+	 * @param extractionException the exception thrown by the extraction, or null
+	 * @return the internal-links, or null, if the page is handled (and logged) here.
+	 */
+	public static HashMap<String, ScoredLink> checkExtractedInternalLinks(String urlId, String sourceUrl, String pageUrl, String pageDomain, HashMap<String, ScoredLink> extractedLinks, Exception extractionException, String pageContentType)
 	{
-		HashMap<String, String> pageLinksWithStructure;
+		HashMap<String, ScoredLink> pageLinksWithStructure = extractedLinks;
 		try {
-			pageLinksWithStructure = extractInternalLinksFromHtml(pageHtml, pageUrl);
+			if ( extractionException != null )
+				throw extractionException;
 		} catch (RuntimeException re) {
 			String exceptionMessage = re.getMessage();
 			exceptionMessage = ((exceptionMessage == null) ? "No reason was given!" : exceptionMessage);
 			logger.warn(exceptionMessage + " This page was discarded.");
-			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.retrieveInternalLinks()' method, with reason: " + exceptionMessage, "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
+			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.checkExtractedInternalLinks()' method, with reason: " + exceptionMessage, "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
 			contentProblematicUrls.incrementAndGet();
 			return null;
 		} catch (DynamicInternalLinksFoundException dilfe) {
 			HttpConnUtils.blacklistedDomains.add(pageDomain);
 			logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.visit()\" after found to have dynamic links. Its domain \"" + pageDomain + "\"  was blocked.");	// Refer "PageCrawler.visit()" here for consistency with other similar messages.
-			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Logged in 'PageCrawler.retrieveInternalLinks()', as it belongs to a domain with dynamic-links.", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
+			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Logged in 'PageCrawler.checkExtractedInternalLinks()', as it belongs to a domain with dynamic-links.", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
 			PageCrawler.contentProblematicUrls.incrementAndGet();
 			return null;
 		} catch ( DocLinkFoundException dlfe) {
 			if ( !verifyDocLink(urlId, sourceUrl, pageUrl, pageContentType, dlfe) )	// url-logging is handled inside.
 				handlePageWithNoDocOrDatasetUrls(urlId, sourceUrl, pageUrl, pageDomain, false, true);
 			return null;	// This DocLink is the only docLink we will ever go to get from this page. The sourceUrl is logged inside the called method.
-			// If this "DocLink" is a DocUrl, then returning "null" here, will trigger the 'PageCrawler.retrieveInternalLinks()' method to exit immediately (and normally).
+			// If this "DocLink" is a DocUrl, then returning "null" here, will trigger the 'PageCrawler.checkExtractedInternalLinks()' method to exit immediately (and normally).
 		} catch ( DocLinkInvalidException dlie ) {
 			//logger.warn("An invalid docLink < " + dlie.getMessage() + " > was found for pageUrl: \"" + pageUrl + "\". Search was stopped.");	// DEBUG!
-			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.retrieveInternalLinks()' method, as there was an invalid docLink. Its contentType is: '" + pageContentType + "'", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
+			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.checkExtractedInternalLinks()' method, as there was an invalid docLink. Its contentType is: '" + pageContentType + "'", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
 			handlePageWithNoDocOrDatasetUrls(urlId, sourceUrl, pageUrl, pageDomain, false, true);
 			return null;
 		} catch (DocLinkUnavailableException dlue) {
 			logger.warn("The docLink was not available inside pageUrl: " + pageUrl);
-			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.retrieveInternalLinks()' method, as the doc-link was not available. Its contentType is: '" + pageContentType + "'", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
+			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.checkExtractedInternalLinks()' method, as the doc-link was not available. Its contentType is: '" + pageContentType + "'", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
 			PageCrawler.contentProblematicUrls.incrementAndGet();
 			return null;
 		} catch (Exception e) {
 			logger.warn("Could not retrieve the internalLinks for pageUrl: " + pageUrl);
-			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.retrieveInternalLinks()' method, as there was a problem retrieving its internalLinks. Its contentType is: '" + pageContentType + "'", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
+			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.checkExtractedInternalLinks()' method, as there was a problem retrieving its internalLinks. Its contentType is: '" + pageContentType + "'", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
 			PageCrawler.contentProblematicUrls.incrementAndGet();
 			return null;
 		}
 
-		boolean isNull = (pageLinksWithStructure == null);	// This is the case, only when Jsoup could not extract any link-elements from the html.
+		boolean isNull = (pageLinksWithStructure == null);	// This is the case, only when no link-elements could be extracted from the html.
 		boolean isEmpty = false;
 
 		if ( !isNull )
@@ -365,7 +410,7 @@ public class PageCrawler
 		if ( isNull || isEmpty ) {	// If no links were retrieved (e.g. the pageUrl was some kind of non-page binary content)
 			logger.warn("No " + (isEmpty ? "valid" : "available") + " links were able to be retrieved from pageUrl: \"" + pageUrl + "\". Its contentType is: " + pageContentType);
 			PageCrawler.contentProblematicUrls.incrementAndGet();
-			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in PageCrawler.retrieveInternalLinks() method, as no " + (isEmpty ? "valid " : "") + "links were able to be retrieved from it. Its contentType is: '" + pageContentType + "'", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
+			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in PageCrawler.checkExtractedInternalLinks() method, as no " + (isEmpty ? "valid " : "") + "links were able to be retrieved from it. Its contentType is: '" + pageContentType + "'", "null", null, true, "true", "true", "false", "false", "false", null, "null", "null");
 			if ( ConnSupportUtils.countAndBlockDomainAfterTimes(HttpConnUtils.blacklistedDomains, PageCrawler.timesDomainNotGivingInternalLinks, pageDomain, PageCrawler.timesToGiveNoInternalLinksBeforeBlocked, true) )
 				logger.warn("Domain: \"" + pageDomain + "\" was blocked after not providing internalLinks more than " + PageCrawler.timesToGiveNoInternalLinksBeforeBlocked + " times.");
 			return null;
@@ -381,7 +426,7 @@ public class PageCrawler
 
 
 	/**
-     * Get the internalLinks using "Jsoup".
+     * Get the internalLinks, using the streaming "HtmlLinkExtractor" (or "Jsoup", as a fallback).
      *
      * @param pageHtml
      * @param pageUrl
@@ -391,17 +436,37 @@ public class PageCrawler
      * @throws DocLinkInvalidException
      * @throws RuntimeException
      */
-	public static HashMap<String, String> extractInternalLinksFromHtml(String pageHtml, String pageUrl) throws DocLinkFoundException, DynamicInternalLinksFoundException, DocLinkInvalidException, DocLinkUnavailableException, RuntimeException
+	public static HashMap<String, ScoredLink> extractInternalLinksFromHtml(String pageHtml, String pageUrl) throws DocLinkFoundException, DynamicInternalLinksFoundException, DocLinkInvalidException, DocLinkUnavailableException, RuntimeException
 	{
-		Document document = Jsoup.parse(pageHtml);
-		Elements elementLinksOnPage = document.select("a, link[href][type*=pdf], form[action]");	// TODO - Add more "types" once other docTypes are accepted.
+		return extractInternalLinksFromHtml(pageHtml, HtmlPageSummary.analyze(pageHtml, pageUrl), pageUrl, null);
+	}
+
+
+	/**
+	 * Get the internalLinks, from the already produced summary of the page (or with "Jsoup", as a fallback).
+	 * The pdf-links found inside the javaScript-code of the page, are added to the internalLinks.
+	 * The boilerplate-links of the domain (see "BoilerplateLinks") are dropped before any other check.
+	 *
+	 * @param pageHtml
+	 * @param pageSummary
+	 * @param pageUrl
+	 * @param pageDomain it may be null, in which case the boilerplate-links are neither learned nor dropped.
+	 * @return The internalLinks
+	 * @throws DocLinkFoundException
+	 * @throws DynamicInternalLinksFoundException
+	 * @throws DocLinkInvalidException
+	 * @throws RuntimeException
+	 */
+	public static HashMap<String, ScoredLink> extractInternalLinksFromHtml(String pageHtml, HtmlPageSummary pageSummary, String pageUrl, String pageDomain) throws DocLinkFoundException, DynamicInternalLinksFoundException, DocLinkInvalidException, DocLinkUnavailableException, RuntimeException
+	{
+		List<LinkElement> elementLinksOnPage = getLinkElements(pageHtml, pageSummary);
 		// A docUrl may be inside an <a> tag, without the "href" attribute. It may be inside a "data" attribute.
-		if ( elementLinksOnPage.isEmpty() ) {	// It will surely NOT be null, by Jsoup-documentation.
-			//logger.warn("Jsoup did not extract any links from pageUrl: \"" + pageUrl + "\"");	// DEBUG!
+		if ( elementLinksOnPage.isEmpty() ) {
+			//logger.warn("No links were extracted from pageUrl: \"" + pageUrl + "\"");	// DEBUG!
 			return null;
 		}
 
-		HashMap<String, String> linksWithStructure = new HashMap<>(elementLinksOnPage.size()/2, 10);	// Only some links will be added in the final set.
+		HashMap<String, ScoredLink> linksWithStructure = new HashMap<>(elementLinksOnPage.size()/2, 10);	// Only some links will be added in the final set.
 		String linkAttr, internalLink;
 		int curNumOfInternalLinks = 0;
 
@@ -416,8 +481,15 @@ public class PageCrawler
 		// Predict the docLink, by comparing the elements' structure.
 		PageStructureMLA.predictDocOrDatasetLink(pageUrl, elementLinksOnPage);	// It will throw a "DocLinkFoundException", if the docUrl was found.
 
-		for ( Element el : elementLinksOnPage )
+		long[] boilerplateLinkHashes = BoilerplateLinks.getBoilerplateLinkHashes(pageDomain);
+		if ( boilerplateLinkHashes == null )
+			BoilerplateLinks.learnPageLinks(pageDomain, elementLinksOnPage);	// The domain is still being learned.
+
+		for ( LinkElement el : elementLinksOnPage )
 		{
+			if ( BoilerplateLinks.isBoilerplateLink(el.attr("href").trim(), boilerplateLinkHashes) )	// Drop the navigation-links of the domain, before any normalization or regex-check.
+				continue;
+
 			if ( hasUnacceptableStructure(el, pageUrl) )
 				continue;
 
@@ -453,7 +525,7 @@ public class PageCrawler
 					} else {
 						//logger.debug("Found the docLink < " + internalLink + " > from link-type: \"" + linkAttr + "\"");	// DEBUG
 						internalLink = Strings.CS.replace(internalLink, "/view/", "/download/", 1);	// It may be the case, where the provided PDF-link is the view and not the download-url.
-						throw new DocLinkFoundException(internalLink, PageStructureMLA.getPageTagAndClassStructureForElement(el), false);
+						throw new DocLinkFoundException(internalLink, PageStructureMLA.getStructureFingerprint(el), false);
 					}
 				}
 			}
@@ -467,14 +539,47 @@ public class PageCrawler
 					throw new RuntimeException("Avoid checking more than " + MAX_INTERNAL_LINKS_TO_ACCEPT_PAGE + " internal links which were found in pageUrl \"" + pageUrl + "\".");
 
 				// Get the tag-structure for each accepted link, so that later, if one of them is proved-to-be docUrl, then its structure will be saved for future docUrl identification.
-				linksWithStructure.put(internalLink, PageStructureMLA.getPageTagAndClassStructureForElement(el));
+				linksWithStructure.put(internalLink, new ScoredLink(PageStructureMLA.getStructureFingerprint(el), InternalLinkRanker.getScore(internalLink, el)));
+			}
+		}
+
+		if ( ArgsUtils.retrieveDocuments ) {
+			for ( String javascriptPdfLink : pageSummary.getJavascriptPdfLinks() ) {
+				if ( Strings.CI.startsWith(javascriptPdfLink, "javascript:") )
+					continue;	// It cannot be handled without a link-element.
+				if ( (internalLink = checkAndGatherInternalLink(javascriptPdfLink, null)) != null ) {
+					if ( linksWithStructure.putIfAbsent(internalLink, new ScoredLink(HtmlPageSummary.JAVASCRIPT_PDF_LINK_STRUCTURE, InternalLinkRanker.javascriptPdfLinkScore)) == null )
+						numOfJavascriptPdfLinksFound.incrementAndGet();
+				}
 			}
 		}
 		return linksWithStructure;
 	}
 
 
-	public static String getInternalLink(String pageUrl, Element el) throws DocLinkFoundException, DocLinkInvalidException
+	/**
+	 * This method returns the link-elements of the page, which were extracted by the streaming "HtmlLinkExtractor", while producing the summary of the page.
+	 * If that failed, or it did not find any link-elements while the html seems to have some, then the full Jsoup-parsing is used.
+	 * @param pageHtml
+	 * @param pageSummary
+	 * @return the link-elements of the page. It may be empty, but never null.
+	 */
+	private static List<LinkElement> getLinkElements(String pageHtml, HtmlPageSummary pageSummary)
+	{
+		List<LinkElement> linkElements = pageSummary.getLinkElements();
+		if ( linkElements != null ) {
+			if ( !linkElements.isEmpty()
+					|| !(Strings.CI.contains(pageHtml, "<a") || Strings.CI.contains(pageHtml, "<form") || Strings.CI.contains(pageHtml, "<link")) )
+				return linkElements;
+			// Else, make sure this is not a problem of the streaming extractor with a malformed html.
+		}
+		if ( useStreamingLinkExtraction )
+			numOfPagesWithJsoupLinkExtraction.incrementAndGet();
+		return HtmlLinkExtractor.extractLinkElementsWithJsoup(pageHtml);
+	}
+
+
+	public static String getInternalLink(String pageUrl, LinkElement el) throws DocLinkFoundException, DocLinkInvalidException
 	{
 		String internalLink = el.attr("href").trim();
 		if ( internalLink.isEmpty() || internalLink.equals("#") ) {
@@ -495,7 +600,7 @@ public class PageCrawler
 					throw new DocLinkInvalidException(internalLink);
 				} else {
 					//logger.debug("Found the " + ArgsUtils.targetUrlType + " < " + internalLink + " > from link-type: \"" + linkAttr + "\"");	// DEBUG
-					throw new DocLinkFoundException(internalLink, PageStructureMLA.getPageTagAndClassStructureForElement(el), false);
+					throw new DocLinkFoundException(internalLink, PageStructureMLA.getStructureFingerprint(el), false);
 				}
 			}
 		}
@@ -503,7 +608,7 @@ public class PageCrawler
 	}
 
 
-	private static boolean checkTextOrTitleAlongWithLink(Element el, String linkAttr) throws DocLinkFoundException, DocLinkInvalidException
+	private static boolean checkTextOrTitleAlongWithLink(LinkElement el, String linkAttr) throws DocLinkFoundException, DocLinkInvalidException
 	{
 		String lowerCaseLinkAttr = linkAttr.toLowerCase();
 		if ( NON_VALID_DOCUMENT.matcher(lowerCaseLinkAttr).matches() ) {	// If it's not a valid full-text, by checking the TEXT or the TITLE in the html..
@@ -523,7 +628,7 @@ public class PageCrawler
 			if ( !UrlTypeChecker.shouldNotAcceptInternalLink(internalLink, null) ) {
 				//logger.debug("Found the docLink < " + internalLink + " > from link-text: \"" + linkAttr + "\"");	// DEBUG
 				internalLink = Strings.CS.replace(internalLink, "/view/", "/download/", 1);	// It may be the case, where the provided PDF-link is the view and not the download-url.
-				throw new DocLinkFoundException(internalLink, PageStructureMLA.getPageTagAndClassStructureForElement(el), false);	// This will be connected and tested by the caller-method.
+				throw new DocLinkFoundException(internalLink, PageStructureMLA.getStructureFingerprint(el), false);	// This will be connected and tested by the caller-method.
 			}
 			throw new DocLinkInvalidException(internalLink);
 		}
@@ -532,11 +637,10 @@ public class PageCrawler
 	}
 
 
-	private static String getInternalDataLink(Element element)
+	private static String getInternalDataLink(LinkElement element)
 	{
 		String internalLink = null;
-		List<Attribute> attributes = element.attributes().asList();
-		for ( Attribute attribute : attributes ) {
+		for ( Map.Entry<String, String> attribute : element.attributes().entrySet() ) {
 			String name = attribute.getKey();
 			if ( name.contains("data") && !name.contains("data-follow-set") ) {	// For example: "data", "data-popup", "data-article-url". Example-url: https://www.ingentaconnect.com/content/cscript/cvia/2017/00000002/00000003/art00008
 				internalLink = attribute.getValue().trim();
@@ -557,7 +661,7 @@ public class PageCrawler
 	private static final Pattern PARENT_ID_FILTER_PATTERN = Pattern.compile(".*(?:" + commonPattern + "|other).*");
 
 
-	private static boolean hasUnacceptableStructure(Element element, String pageUrl)
+	private static boolean hasUnacceptableStructure(LinkElement element, String pageUrl)
 	{
 		// Exclude links which have the class "state-published" and have a different domain than the pageUrl.
 		if ( element.className().trim().equals("state-published") ) {	// The  equality will fail if the className does not exist.
@@ -570,7 +674,7 @@ public class PageCrawler
 		}
 
 		// Avoid collecting internal-links which are inside the "footer", "header", "article-references" or other sections (we make it more general with the ending-s).
-		Element parentElement = element.parent();
+		LinkElement parentElement = element.parent();
 		if ( parentElement == null )
 			return false;
 
@@ -602,13 +706,13 @@ public class PageCrawler
 	}
 
 
-	public static String checkAndGatherInternalLink(String internalLink, Element el) throws DynamicInternalLinksFoundException, DocLinkFoundException
+	public static String checkAndGatherInternalLink(String internalLink, LinkElement el) throws DynamicInternalLinksFoundException, DocLinkFoundException
 	{
 		if ( internalLink.equals("/") )
 			return null;
 
 		if ( internalLink.contains("{{") || internalLink.contains("<?") )	// If "{{" or "<?" is found inside any link, then all the links of this domain are dynamic, so throw an exception for the calling method to catch and log the pageUrl and return immediately.
-			throw new DynamicInternalLinksFoundException();
+			throw DynamicInternalLinksFoundException.instance;
 
 		String lowerCaseInternalLink = internalLink.toLowerCase();
 
@@ -644,7 +748,7 @@ public class PageCrawler
 			try {
 				pdfLink = pdfLinkMatcher.group(1);
 			} catch (Exception e) { logger.error("", e); }	// Do not "return null;" here, as we want the page-search to stop, not just for this link to not be connected..
-			throw new DocLinkFoundException(pdfLink, PageStructureMLA.getPageTagAndClassStructureForElement(el), false);    // If it's 'null' or 'empty', we treat it when handling this exception.
+			throw new DocLinkFoundException(pdfLink, PageStructureMLA.getStructureFingerprint(el), false);    // If it's 'null' or 'empty', we treat it when handling this exception.
 		}
 
 		return internalLink;
@@ -663,7 +767,7 @@ public class PageCrawler
 		// Produce fully functional internal links, NOT internal paths or non-normalized.
 		String tempLink = docLink;
 		if ( ((docLink = ConnSupportUtils.getFullyFormedUrl(pageUrl, docLink, null)) == null)	// Make it a full-URL.
-				|| ((docLink = LoaderAndChecker.basicURLNormalizer.filter(docLink)) == null) ) {	// Normalize it.
+				|| ((docLink = UrlNormalizationCache.normalize(docLink)) == null) ) {	// Normalize it.
 			logger.warn("Could not normalize internal url: " + tempLink);
 			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.visit()' method, as there were normalization problems with the 'possibleDocUrl' found inside: " + tempLink, "null", null, true, "true", "false", "false", "false", "false", null, "null", "null");
 			return false;
@@ -681,7 +785,7 @@ public class PageCrawler
 			}
 
 			ConnSupportUtils.handleReCrossedTargetUrl(urlId, sourceUrl, pageUrl, docLink, originalIdUrlMimeTypeTriple, false);
-			PageStructureMLA.addStructureOfDocUrlInMap(pageUrl, dlfe.getPageTagAndClassStructureForElement());
+			PageStructureMLA.addStructureOfDocUrlInMap(pageUrl, dlfe.getPageStructureFingerprint());
 			if ( dlfe.isPredictedByStructureMLA() )
 				PageStructureMLA.structureValidatedDocLinks.incrementAndGet();
 			return true;
@@ -695,7 +799,7 @@ public class PageCrawler
 				return false;
 			}
 
-			PageStructureMLA.addStructureOfDocUrlInMap(pageUrl, dlfe.getPageTagAndClassStructureForElement());
+			PageStructureMLA.addStructureOfDocUrlInMap(pageUrl, dlfe.getPageStructureFingerprint());
 			if ( dlfe.isPredictedByStructureMLA() )
 				PageStructureMLA.structureValidatedDocLinks.incrementAndGet();
 			return true;
@@ -707,29 +811,26 @@ public class PageCrawler
 	}
 
 
-	public static final int timesToCheckInternalLinksBeforeEvaluate = 20;
 	public static final AtomicInteger timesCheckedRemainingLinks = new AtomicInteger(0);
 	public static final AtomicInteger timesFoundDocOrDatasetUrlFromRemainingLinks = new AtomicInteger(0);
-	private static final double leastPercentageOfHitsFromRemainingLinks = 0.20;
 
-	public static boolean checkRemainingInternalLinks(String urlId, String sourceUrl, String pageUrl, String pageDomain, HashMap<String, String> remainingLinks, boolean atLeastOneDocOrDatasetLinkFound)
+	/**
+	 * This method connects to the remaining internal-links of the page, in the order of their score, up to the budget of the page's domain (see "InternalLinkRanker").
+	 * The outcome is recorded, in order to adapt the budget of the domain for its next pages.
+	 */
+	public static boolean checkRemainingInternalLinks(String urlId, String sourceUrl, String pageUrl, String pageDomain, LinkedHashMap<String, ScoredLink> remainingLinks, boolean atLeastOneDocOrDatasetLinkFound)
 	{
-		int temp_timesCheckedRemainingLinks = timesCheckedRemainingLinks.incrementAndGet();
-		if ( temp_timesCheckedRemainingLinks >= timesToCheckInternalLinksBeforeEvaluate ) {
-			// After this threshold, evaluate the percentage of found docUrls, if it's too low, then stop handling the remaining-links for any pageUrl.
-			double percentage = (timesFoundDocOrDatasetUrlFromRemainingLinks.get() * 100.0 / temp_timesCheckedRemainingLinks);
-			if ( percentage < leastPercentageOfHitsFromRemainingLinks ) {
-				logger.warn("The percentage of found docUrls from the remaining links is too low ( " + percentage + "% ). Stop checking the remaining-internalLinks for any pageUrl..");
-				should_check_remaining_links = false;
-				if ( ! atLeastOneDocOrDatasetLinkFound )
-					handlePageWithNoDocOrDatasetUrls(urlId, sourceUrl, pageUrl, pageDomain, false, false);
-				return false;
-			}
+		int remainingLinksBudget = InternalLinkRanker.getRemainingLinksBudget(pageDomain);
+		if ( remainingLinksBudget == 0 ) {	// The remaining-links of this domain rarely give docUrls.
+			if ( ! atLeastOneDocOrDatasetLinkFound )
+				handlePageWithNoDocOrDatasetUrls(urlId, sourceUrl, pageUrl, pageDomain, false, false);
+			return false;
 		}
+		timesCheckedRemainingLinks.incrementAndGet();
 
 		int remainingUrlsCounter = 0;
 
-		for ( Map.Entry<String, String> currentEntry : remainingLinks.entrySet() )    // Here we don't re-check already-checked links, as this is a new list. All the links here are full-normalized-urls.
+		for ( Map.Entry<String, ScoredLink> currentEntry : remainingLinks.entrySet() )    // Here we don't re-check already-checked links, as this is a new list. All the links here are full-normalized-urls.
 		{
 			String currentLink = currentEntry.getKey();
 			// Make sure we avoid connecting to different domains to save time. We allow to check different domains only after matching to possible-urls in the previous fast-loop.
@@ -744,8 +845,9 @@ public class PageCrawler
 				continue;
 			}
 
-			if ( (++remainingUrlsCounter) > MAX_REMAINING_INTERNAL_LINKS_TO_CONNECT ) {    // The counter is incremented only on "aboutToConnect" links, so no need to pre-clean the "remainingLinks"-set.
-				logger.warn("The maximum limit (" + MAX_REMAINING_INTERNAL_LINKS_TO_CONNECT + ") of remaining links to be connected was reached for pageUrl: \"" + pageUrl + "\". The page was discarded.");
+			if ( (++remainingUrlsCounter) > remainingLinksBudget ) {    // The counter is incremented only on "aboutToConnect" links, so no need to pre-clean the "remainingLinks"-set.
+				logger.warn("The maximum limit (" + remainingLinksBudget + ") of remaining links to be connected was reached for pageUrl: \"" + pageUrl + "\". The page was discarded.");
+				InternalLinkRanker.recordRemainingLinksOutcome(pageDomain, false, (remainingUrlsCounter -1));
 				if ( ! atLeastOneDocOrDatasetLinkFound )
 					handlePageWithNoDocOrDatasetUrls(urlId, sourceUrl, pageUrl, pageDomain, true, false);
 				return false;
@@ -759,17 +861,18 @@ public class PageCrawler
 				{    // Log this in order to find ways to make these docUrls get found sooner..!
 					//logger.debug("Page \"" + pageUrl + "\", gave the \"remaining\" docOrDatasetUrl \"" + currentLink + "\"");    // DEBUG!!
 					timesFoundDocOrDatasetUrlFromRemainingLinks.incrementAndGet();
-					PageStructureMLA.addStructureOfDocUrlInMap(pageUrl, currentEntry.getValue());
+					InternalLinkRanker.recordRemainingLinksOutcome(pageDomain, true, remainingUrlsCounter);
+					PageStructureMLA.addStructureOfDocUrlInMap(pageUrl, currentEntry.getValue().structure());
 					return true;
-				} else
+				} else {
+					InternalLinkRanker.numOfWastedConnections.incrementAndGet();
 					UrlUtils.duplicateUrls.add(currentLink);
+				}
 			} catch (DomainBlockedException dbe) {
 				String blockedDomain = dbe.getMessage();
 				if ( (blockedDomain != null) && blockedDomain.contains(pageDomain) ) {
 					logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.checkRemainingInternalLinks()\" after its domain was blocked.");
-					String couldRetry = (LoaderAndChecker.COULD_RETRY_URLS.matcher(pageUrl).matches() ? "true" : "false");
-					UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Logged in 'PageCrawler.checkRemainingInternalLinks()' method, as its domain was blocked during crawling.", "null", null, true, "true", "true", "false", "false", couldRetry, null, "null", "null");
-					LoaderAndChecker.connProblematicUrls.incrementAndGet();
+					handleBlockedDomainOfPage(urlId, sourceUrl, pageUrl, dbe, "PageCrawler.checkRemainingInternalLinks()");
 					return false;
 				}
 			} catch (DomainWithUnsupportedHEADmethodException dwuhe) {
@@ -781,6 +884,7 @@ public class PageCrawler
 					// This domain is not blocked, because we do not want to lose all the urls of this domain; maybe next time, we get the docUrl itself and not the pageUrl, in that case, the "GET" method will be used.
 				}
 			} catch (ConnTimeoutException cte) {    // In this case, it's unworthy to stay and check other internalLinks here.
+				InternalLinkRanker.numOfWastedConnections.incrementAndGet();
 				if ( currentLink.contains(pageDomain) ) {
 					logger.warn("Page: \"" + pageUrl + "\" left \"PageCrawler.checkRemainingInternalLinks()\" after an internalLink caused a ConnTimeoutException.");
 					UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Logged in 'PageCrawler.checkRemainingInternalLinks()' method, as an internalLink of this page caused 'ConnTimeoutException'.", "null", null, true, "true", "true", "false", "false", "true", null, "null", "null");
@@ -789,16 +893,47 @@ public class PageCrawler
 					// This domain is not blocked, because the "timeout-exception" is usually temporal.
 				}
 			} catch (RuntimeException e) {
+				InternalLinkRanker.numOfWastedConnections.incrementAndGet();
 				// No special handling here.. nor logging..
 			}
 		}// end for-loop
 
+		if ( remainingUrlsCounter > 0 )
+			InternalLinkRanker.recordRemainingLinksOutcome(pageDomain, false, remainingUrlsCounter);
 		if ( ! atLeastOneDocOrDatasetLinkFound )
 			handlePageWithNoDocOrDatasetUrls(urlId, sourceUrl, pageUrl, pageDomain, false, false);
 		return false;
 	}
 
-	
+
+	private static void handleInterruptedAdmission(String urlId, String sourceUrl, String pageUrl, String pageContentType)
+	{
+		Thread.currentThread().interrupt();
+		logger.warn("The thread was interrupted while waiting for memory to process the pageUrl: " + pageUrl);
+		UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.visit()' method, as there was a problem retrieving its HTML-code. Its contentType is: '" + pageContentType + "'.", "null", null, true, "true", "true", "false", "false", "true", null, "null", "null");
+		LoaderAndChecker.connProblematicUrls.incrementAndGet();
+	}
+
+
+	/**
+	 * This method handles a page whose domain was blocked while it was crawled.
+	 * If the domain was blocked only temporarily, by its circuit-breaker, then the input-url is deferred to be retried later in this run, or it is written as retriable.
+	 * @param methodName the method which stopped crawling the page, for the output-comment.
+	 */
+	static void handleBlockedDomainOfPage(String urlId, String sourceUrl, String pageUrl, DomainBlockedException dbe, String methodName)
+	{
+		String couldRetry;
+		if ( dbe instanceof DomainCircuitOpenException ) {
+			if ( RetryQueue.deferIfTransientFailure(urlId, sourceUrl, dbe) )
+				return;	// Its outcome will be written after it is retried.
+			couldRetry = "true";
+		} else
+			couldRetry = (LoaderAndChecker.COULD_RETRY_URLS.matcher(pageUrl).matches() ? "true" : "false");
+		UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Logged in '" + methodName + "' method, as its domain was blocked during crawling.", "null", null, true, "true", "true", "false", "false", couldRetry, null, "null", "null");
+		LoaderAndChecker.connProblematicUrls.incrementAndGet();
+	}
+
+
 	public static void printInternalLinksForDebugging(HashSet<String> currentPageLinks)
 	{
 		for ( String url : currentPageLinks ) {
@@ -0,0 +1,143 @@
+package eu.openaire.publications_retriever.crawler;
+
+import eu.openaire.publications_retriever.exceptions.DocLinkFoundException;
+import eu.openaire.publications_retriever.exceptions.DocLinkInvalidException;
+import eu.openaire.publications_retriever.exceptions.DocLinkUnavailableException;
+import eu.openaire.publications_retriever.exceptions.DynamicInternalLinksFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class runs the CPU-bound stage of the crawling (the analysis of the html and the extraction of its internal-links) in a bounded "ForkJoinPool", sized to the cores of the machine.
+ * The virtual-threads of the tasks keep doing the blocking I/O (the connections and the reading of the pages) and they wait here, without holding any carrier-thread, until their page is parsed.
+ * So a burst of large pages cannot occupy all the carrier-threads and delay the I/O of the other tasks, or the timers, while the parallelism of the parsing is tuned separately from the number of the tasks.
+ * @author Lampros Smyrnaios
+ */
+public class ParsingPool
+{
+	private static final Logger logger = LoggerFactory.getLogger(ParsingPool.class);
+
+	public static boolean useParsingPool = true;	// Keep it "public" and "non-final", in order to be set by external services. If it is "false", then the pages are parsed by the virtual-threads of their tasks.
+
+	public static int parallelism = Runtime.getRuntime().availableProcessors();	// Keep it "public" and "non-final", in order to be set by external services, before the first page is parsed.
+
+	private static volatile ForkJoinPool pool = null;
+
+	public static final AtomicLong numOfParsedPages = new AtomicLong(0);
+	public static final AtomicLong totalQueueWaitNanos = new AtomicLong(0);	// The time which the pages waited for a free parsing-thread.
+
+
+	private static ForkJoinPool getPool()
+	{
+		ForkJoinPool currentPool = pool;
+		if ( currentPool == null ) {
+			synchronized ( ParsingPool.class ) {	// It is entered only once, without any blocking inside.
+				if ( (currentPool = pool) == null ) {
+					int poolSize = Math.max(1, parallelism);
+					// The pool does not grow beyond its parallelism (the parsing-tasks never block) and its queue is bounded by the number of the running tasks, each of which waits for its page.
+					pool = currentPool = new ForkJoinPool(poolSize, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false, poolSize, poolSize, 1, p -> true, 60, TimeUnit.SECONDS);
+					logger.debug("The parsing-pool was created with parallelism: " + poolSize);
+				}
+			}
+		}
+		return currentPool;
+	}
+
+
+	/**
+	 * @return the summary of the given html, which is produced in the parsing-pool.
+	 */
+	public static HtmlPageSummary analyze(String pageHtml, String pageUrl)
+	{
+		if ( !useParsingPool )
+			return HtmlPageSummary.analyze(pageHtml, pageUrl);
+		try {
+			return runInPool(() -> HtmlPageSummary.analyze(pageHtml, pageUrl));
+		} catch (Exception e) {
+			throw asUncheckedException(e);
+		}
+	}
+
+
+	/**
+	 * This method runs the "PageCrawler.extractInternalLinksFromHtml()" in the parsing-pool. Its exceptions are thrown here, as if it was called directly.
+	 */
+	public static HashMap<String, ScoredLink> extractInternalLinksFromHtml(String pageHtml, HtmlPageSummary pageSummary, String pageUrl, String pageDomain) throws DocLinkFoundException, DynamicInternalLinksFoundException, DocLinkInvalidException, DocLinkUnavailableException, RuntimeException
+	{
+		if ( !useParsingPool )
+			return PageCrawler.extractInternalLinksFromHtml(pageHtml, pageSummary, pageUrl, pageDomain);
+		try {
+			return runInPool(() -> PageCrawler.extractInternalLinksFromHtml(pageHtml, pageSummary, pageUrl, pageDomain));
+		} catch (DocLinkFoundException | DynamicInternalLinksFoundException | DocLinkInvalidException | DocLinkUnavailableException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw asUncheckedException(e);
+		}
+	}
+
+
+	private record Outcome<T>(T result, Exception exception) {}
+
+
+	/**
+	 * The exception of the parsing-task is returned inside its outcome, as the "ForkJoinPool" would wrap it (or re-create it) when thrown to another thread,
+	 * while the callers expect the exact exception-objects (which carry the found docLinks).
+	 * @return the result of the given task, or it throws the exception of the task.
+	 */
+	private static <T> T runInPool(Callable<T> parsingTask) throws Exception
+	{
+		ForkJoinPool currentPool = getPool();
+		if ( ForkJoinTask.getPool() == currentPool )	// Already inside the pool, so avoid waiting for another of its threads.
+			return parsingTask.call();
+
+		long submitTime = System.nanoTime();
+		Future<Outcome<T>> future = currentPool.submit(() -> {
+			totalQueueWaitNanos.addAndGet(System.nanoTime() - submitTime);
+			numOfParsedPages.incrementAndGet();
+			try {
+				return new Outcome<>(parsingTask.call(), null);
+			} catch (Exception e) {
+				return new Outcome<>(null, e);
+			}
+		});
+		Outcome<T> outcome;
+		try {
+			outcome = future.get();	// The virtual-thread is unmounted while it waits.
+		} catch (InterruptedException ie) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("The thread was interrupted while waiting for its page to be parsed.");
+		} catch (ExecutionException ee) {	// Only an "Error" can get here.
+			throw asUncheckedException(ee.getCause());
+		}
+		if ( outcome.exception() != null )
+			throw outcome.exception();
+		return outcome.result();
+	}
+
+
+	private static RuntimeException asUncheckedException(Throwable cause)
+	{
+		if ( cause instanceof RuntimeException re )
+			return re;
+		else if ( cause instanceof Error error )
+			throw error;
+		return new RuntimeException(cause);
+	}
+
+
+	public static void shutdown()
+	{
+		ForkJoinPool currentPool = pool;
+		if ( currentPool != null ) {
+			pool = null;	// A later use creates a new pool.
+			currentPool.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+package eu.openaire.publications_retriever.crawler;
+
+import eu.openaire.publications_retriever.machine_learning.MinedDocUrlRules;
+import eu.openaire.publications_retriever.models.IdUrlMimeTypeTriple;
+import eu.openaire.publications_retriever.util.args.ArgsUtils;
+import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.http.HttpConnUtils;
+import eu.openaire.publications_retriever.util.url.UrlUtils;
+import org.apache.commons.lang3.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class fingerprints the repository-platform of each domain (e.g. "OJS", "DSpace"), from the first pages visited in it, by using the "generator" meta-tag and the known path-shapes of the platforms.
+ * On some platforms the docUrl follows a fixed pattern, relative to the pageUrl. So, after the platform of a domain is known, its later pageUrls are rewritten straight to their likely docUrl, which is verified with a single request, thus avoiding the fetch and the crawling of the page.
+ * If the derived docUrls of a domain keep failing, then the derivation is disabled for that domain and its pages are crawled as usual.
+ * This extends the idea of the "MachineLearning" (which learns the docUrl-paths of the pageUrl-paths), to whole platforms. The rules mined from the outputs of previous runs (see "MinedDocUrlRules") are tried here as well.
+ * @author Lampros Smyrnaios
+ */
+public class RepositoryPlatforms
+{
+	private static final Logger logger = LoggerFactory.getLogger(RepositoryPlatforms.class);
+
+	public static boolean usePlatformDerivation = true;	// Keep it "public" and "non-final", in order to be set by external services.
+
+	public enum Platform
+	{
+		// https://journals.example.org/index.php/journal/article/view/123/456 --> https://journals.example.org/index.php/journal/article/download/123/456 (the "view"-url of a galley is a viewer-page around the file)
+		ojs("open journal systems", "(?i)https?://[^/]+(?:/.+)?/index\\.php/[^/]+/article/view/\\d+(?:/.*)?", "(?i)(https?://.+/article/)view(?:File)?/(\\d+/\\d+)/?", "$1download/$2"),
+
+		// https://repository.example.org/handle/123456789/1234 --> https://repository.example.org/bitstream/handle/123456789/1234/?sequence=1 (the first bitstream, which is the main file)
+		dspace("dspace", "(?i)https?://[^/]+(?:/.+)?/handle/\\d+(?:\\.\\d+)?/\\d+/?", "(?i)(https?://[^?#]*?/)((?:xmlui/)?)(?<!jspui/)handle/(\\d+(?:\\.\\d+)?/\\d+)/?", "$1$2bitstream/handle/$3/?sequence=1"),
+
+		// The docUrls of the following platforms include the file-name, so they cannot be derived from the pageUrl. Their pages usually provide the docUrl in their meta-tags, anyway.
+		eprints("eprints", "(?i)https?://[^/]+(?:/.+)?/id/eprint/\\d+/?", null, null),
+		invenio("invenio", "(?i)https?://[^/]+/records?/[\\w-]+/?", null, null),
+
+		// https://digital.example.org/islandora/object/repo:1234 --> https://digital.example.org/islandora/object/repo:1234/datastream/OBJ/download
+		islandora("islandora", "(?i)https?://[^/]+(?:/.+)?/islandora/object/[^/?#]+/?", "(?i)(https?://.+/islandora/object/[^/?#]+?)/?", "$1/datastream/OBJ/download");
+
+		private final String generatorPrefix;	// In lowercase.
+		private final Pattern pagePathShape;
+		private final Pattern derivablePageUrl;
+		private final String docUrlTemplate;
+
+		Platform(String generatorPrefix, String pagePathShape, String derivablePageUrl, String docUrlTemplate)
+		{
+			this.generatorPrefix = generatorPrefix;
+			this.pagePathShape = Pattern.compile(pagePathShape);
+			this.derivablePageUrl = ((derivablePageUrl != null) ? Pattern.compile(derivablePageUrl) : null);
+			this.docUrlTemplate = docUrlTemplate;
+		}
+	}
+
+
+	public static final class DomainPlatform
+	{
+		volatile Platform platform = null;
+		volatile boolean isDerivationDisabled = false;
+		final AtomicInteger numOfCheckedPages = new AtomicInteger(0);
+		final AtomicInteger[] numOfPathShapeMatches = new AtomicInteger[Platform.values().length];
+		final AtomicInteger numOfDerivedDocUrls = new AtomicInteger(0);
+		final AtomicInteger numOfFailedDerivations = new AtomicInteger(0);
+
+		DomainPlatform() {
+			for ( int i = 0; i < numOfPathShapeMatches.length; i++ )
+				numOfPathShapeMatches[i] = new AtomicInteger(0);
+		}
+	}
+
+	public static final ConcurrentHashMap<String, DomainPlatform> domainsPlatforms = new ConcurrentHashMap<>();
+
+	private static final int maxPagesToCheckBeforeGivingUp = 10;	// If the platform of a domain is not found in its first 10 pages, then it is probably not one of the known platforms.
+	private static final int leastPathShapeMatchesToDetect = 2;	// The path-shapes are weaker evidence than the "generator" meta-tag.
+	private static final int timesToFailBeforeDisabled = 5;
+
+	public static final AtomicInteger numOfDomainsFingerprinted = new AtomicInteger(0);
+	public static final AtomicInteger numOfDocUrlsFoundByDerivation = new AtomicInteger(0);
+	public static final AtomicInteger numOfFailedDerivations = new AtomicInteger(0);
+
+
+	/**
+	 * This method tries to find the platform of the domain of a visited page, if it is not known already.
+	 * @param pageDomain
+	 * @param pageUrl
+	 * @param metaGenerator the "content" of the "generator" meta-tag of the page (it may be null)
+	 */
+	public static void fingerprint(String pageDomain, String pageUrl, String metaGenerator)
+	{
+		if ( !usePlatformDerivation )
+			return;
+
+		DomainPlatform domainPlatform = domainsPlatforms.computeIfAbsent(pageDomain, k -> new DomainPlatform());
+		if ( (domainPlatform.platform != null) || (domainPlatform.numOfCheckedPages.incrementAndGet() > maxPagesToCheckBeforeGivingUp) )
+			return;
+
+		Platform platform = getPlatformOfGenerator(metaGenerator);
+		if ( platform == null ) {
+			for ( Platform currentPlatform : Platform.values() ) {
+				if ( currentPlatform.pagePathShape.matcher(pageUrl).matches()
+						&& (domainPlatform.numOfPathShapeMatches[currentPlatform.ordinal()].incrementAndGet() >= leastPathShapeMatchesToDetect) ) {
+					platform = currentPlatform;
+					break;
+				}
+			}
+			if ( platform == null )
+				return;
+		}
+
+		domainPlatform.platform = platform;
+		numOfDomainsFingerprinted.incrementAndGet();
+		logger.debug("The platform of domain \"" + pageDomain + "\" was found to be: " + platform);
+	}
+
+
+	/**
+	 * @param metaGenerator e.g. "Open Journal Systems 3.3.0.10", or "DSpace 6.3"
+	 * @return the platform, or null, if the generator is not one of the known platforms.
+	 */
+	public static Platform getPlatformOfGenerator(String metaGenerator)
+	{
+		if ( (metaGenerator == null) || metaGenerator.isEmpty() )
+			return null;
+		for ( Platform platform : Platform.values() )
+			if ( Strings.CI.startsWith(metaGenerator, platform.generatorPrefix) )
+				return platform;
+		return null;
+	}
+
+
+	/**
+	 * @param pageUrl
+	 * @param pageDomain
+	 * @return the likely docUrl of the given pageUrl, if a mined rule of its domain matches it, or if the platform of its domain is known and allows it, otherwise null.
+	 */
+	public static String getDerivedDocUrl(String pageUrl, String pageDomain)
+	{
+		DomainPlatform domainPlatform = domainsPlatforms.get(pageDomain);
+		if ( (domainPlatform != null) && domainPlatform.isDerivationDisabled )
+			return null;
+
+		String minedDocUrl = MinedDocUrlRules.getDocUrl(pageUrl, pageDomain);	// The rules mined from the previous runs are more specific than the ones of the platform.
+		if ( (minedDocUrl != null) || (domainPlatform == null) )
+			return minedDocUrl;
+
+		Platform platform = domainPlatform.platform;
+		if ( (platform == null) || (platform.derivablePageUrl == null) )
+			return null;
+
+		Matcher matcher = platform.derivablePageUrl.matcher(pageUrl);
+		if ( !matcher.matches() )
+			return null;
+		StringBuilder docUrl = new StringBuilder(pageUrl.length() + 40);
+		matcher.appendReplacement(docUrl, platform.docUrlTemplate);
+		return docUrl.toString();	// The tail is not appended, as the regex matched the whole pageUrl.
+	}
+
+
+	/**
+	 * This method checks if the docUrl of the given pageUrl can be derived from the mined rules or the platform of its domain and, if so, it connects to it.
+	 * It is called before connecting to the pageUrl, so in case of success, the page is neither fetched nor crawled.
+	 * @param urlId
+	 * @param sourceUrl
+	 * @param pageUrl
+	 * @param pageDomain
+	 * @return true, if the derived docUrl was verified (it is already logged), otherwise false, in which case the pageUrl should be handled as usual.
+	 */
+	public static boolean checkDerivedDocUrl(String urlId, String sourceUrl, String pageUrl, String pageDomain)
+	{
+		if ( !usePlatformDerivation || !ArgsUtils.retrieveDocuments || ArgsUtils.shouldJustDownloadHtmlFiles )
+			return false;
+
+		String derivedDocUrl = getDerivedDocUrl(pageUrl, pageDomain);
+		if ( derivedDocUrl == null )
+			return false;
+
+		IdUrlMimeTypeTriple originalIdUrlMimeTypeTriple = UrlUtils.resultUrlsWithIDs.get(derivedDocUrl);
+		if ( originalIdUrlMimeTypeTriple != null ) {	// This docUrl was already found from another record.
+			ConnSupportUtils.handleReCrossedTargetUrl(urlId, sourceUrl, pageUrl, derivedDocUrl, originalIdUrlMimeTypeTriple, false);
+			numOfDocUrlsFoundByDerivation.incrementAndGet();
+			return true;
+		}
+
+		DomainPlatform domainPlatform = domainsPlatforms.computeIfAbsent(pageDomain, k -> new DomainPlatform());	// The domain may have only mined rules.
+		try {
+			if ( HttpConnUtils.connectAndCheckMimeType(urlId, sourceUrl, pageUrl, derivedDocUrl, pageDomain, false, true) ) {	// On success, we log the docUrl inside this method.
+				domainPlatform.numOfDerivedDocUrls.incrementAndGet();
+				numOfDocUrlsFoundByDerivation.incrementAndGet();
+				return true;
+			}
+		} catch (Exception e) {
+			// No special handling here, as it's expected that some derived docUrls will fail. If it has a connection issue, it will be logged anyway.
+		}
+
+		numOfFailedDerivations.incrementAndGet();
+		int numOfFailures = domainPlatform.numOfFailedDerivations.incrementAndGet();
+		if ( (numOfFailures >= timesToFailBeforeDisabled) && (domainPlatform.numOfDerivedDocUrls.get() < numOfFailures) && !domainPlatform.isDerivationDisabled ) {
+			domainPlatform.isDerivationDisabled = true;
+			logger.warn("The docUrl-derivation was disabled for domain: \"" + pageDomain + "\" (platform: " + domainPlatform.platform + "), after failing " + numOfFailures + " times.");
+		}
+		return false;
+	}
+
+}
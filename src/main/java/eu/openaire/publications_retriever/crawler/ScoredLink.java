@@ -0,0 +1,8 @@
+package eu.openaire.publications_retriever.crawler;
+
+
+/**
+ * This record holds the data of an internal-link of a page, which are used after its extraction: the fingerprint of its structure (see "PageStructureMLA") and its score (see "InternalLinkRanker").
+ * @author Lampros Smyrnaios
+ */
+public record ScoredLink(long structure, int score) {}
@@ -0,0 +1,226 @@
+package eu.openaire.publications_retriever.crawler;
+
+import eu.openaire.publications_retriever.util.args.ArgsUtils;
+import eu.openaire.publications_retriever.util.file.FileUtils;
+import eu.openaire.publications_retriever.util.url.DomainRules;
+import eu.openaire.publications_retriever.util.url.UrlUtils;
+import org.apache.commons.lang3.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class holds the rules which transform the urls of specific publishers (e.g. a pageUrl into its docUrl), before connecting to them.
+ * The rules are loaded from the "special-url-rules.txt"-file of the resources, so new publishers can be added without changing any code.
+ * The rules are indexed by their host, so the urls of the hosts without rules (the vast majority) need only one hash-lookup for each label of their host.
+ * The complex cases are handled by Java "hooks", which are registered by the "SpecialUrlsHandler".
+ * @author Lampros Smyrnaios
+ */
+public class SpecialUrlRules
+{
+	private static final Logger logger = LoggerFactory.getLogger(SpecialUrlRules.class);
+
+	public enum Action { keep, reject, rewrite, replace, hook }
+
+
+	private record Rule(Action action, Pattern pattern, String argument, String replacement, boolean isForCrawlingOnly)
+	{
+		boolean isActive() {
+			return (!isForCrawlingOnly || !ArgsUtils.shouldJustDownloadHtmlFiles);	// Do not perform docUrl transformations in case we want to download the html-files. Only perform general url-transformations to bypass connectivity problems.
+		}
+	}
+
+
+	private static final ConcurrentHashMap<String, List<Rule>> hostSuffixRules = new ConcurrentHashMap<>();	// The rules which match a host and all of its sub-domains.
+	private static final ConcurrentHashMap<String, List<Rule>> exactHostRules = new ConcurrentHashMap<>();
+
+	private static final Map<String, UnaryOperator<String>> hooks = new ConcurrentHashMap<>();
+
+	private static final Pattern DOC_ID_PLACEHOLDER = Pattern.compile("{docId}", Pattern.LITERAL);
+
+	public static final String resourcePath = "special-url-rules.txt";
+
+	static {
+		loadRules();
+	}
+
+
+	private static void loadRules()
+	{
+		try ( InputStream inputStream = SpecialUrlRules.class.getClassLoader().getResourceAsStream(resourcePath) )
+		{
+			if ( inputStream == null ) {
+				String errorMsg = "File not found in resources: " + resourcePath;
+				logger.error(errorMsg);
+				System.err.println(errorMsg);
+				System.exit(81);
+			}
+
+			int numOfRules = 0;
+			try ( BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), FileUtils.mb) ) {
+				String line;
+				while ( (line = reader.readLine()) != null ) {
+					line = line.trim();
+					if ( line.isEmpty() || line.startsWith("#") )	// The regexes and templates may contain the "#"-char, so only whole-line comments are supported.
+						continue;
+					String[] parts = line.split("\\s+");
+					try {
+						boolean isForCrawlingOnly = ((parts.length > 2) && parts[parts.length -1].equals("crawling"));
+						int numOfArguments = (parts.length - 2 - (isForCrawlingOnly ? 1 : 0));
+						Action action = Action.valueOf(parts[1]);
+						int expectedNumOfArguments = (((action == Action.rewrite) || (action == Action.replace)) ? 2 : 1);
+						if ( numOfArguments != expectedNumOfArguments )
+							throw new IllegalArgumentException("Invalid number of arguments.");
+						addRule(parts[0], action, parts[2], ((expectedNumOfArguments == 2) ? parts[3] : null), isForCrawlingOnly);
+						numOfRules ++;
+					} catch (IllegalArgumentException iae) {	// This includes the "PatternSyntaxException".
+						logger.error("Invalid special-url rule: \"" + line + "\" (" + iae.getMessage() + ")");
+					}
+				}
+			}
+			logger.debug("Loaded " + numOfRules + " special-url rules from the file: " + resourcePath);
+		} catch (IOException ioe) {
+			String errorMsg = "Could not read file:" + resourcePath;
+			logger.error(errorMsg, ioe);
+			System.err.println(errorMsg);
+			System.exit(82);
+		}
+	}
+
+
+	/**
+	 * This method adds a rule, after the existing rules of its host. It can be used by external services as well, in order to add their own rules.
+	 * @param host either a host (e.g. "scielo.br"), which matches itself and its sub-domains, or a host starting with "=" (e.g. "=osf.io"), which matches only itself.
+	 * @param action
+	 * @param argument the regex of the rule, or the text to be replaced, or the name of the hook.
+	 * @param replacement the template of a "rewrite"-rule, or the replacement of a "replace"-rule, otherwise null.
+	 * @param isForCrawlingOnly if true, then the rule is not used when the html-pages are just downloaded.
+	 */
+	public static void addRule(String host, Action action, String argument, String replacement, boolean isForCrawlingOnly)
+	{
+		boolean isExactHost = host.startsWith("=");
+		if ( isExactHost )
+			host = host.substring(1);
+		host = host.toLowerCase();
+		if ( host.isEmpty() || host.startsWith(".") || host.endsWith(".") || host.contains("..") )
+			throw new IllegalArgumentException("Invalid host.");
+
+		Pattern pattern = (((action == Action.replace) || (action == Action.hook)) ? null : Pattern.compile(argument));
+		if ( (action == Action.replace) && argument.isEmpty() )
+			throw new IllegalArgumentException("Empty text to be replaced.");
+		(isExactHost ? exactHostRules : hostSuffixRules).computeIfAbsent(host, k -> new CopyOnWriteArrayList<>()).add(new Rule(action, pattern, argument, replacement, isForCrawlingOnly));
+	}
+
+
+	/**
+	 * This method registers a Java "hook", which handles the complex cases of a publisher.
+	 * The hook returns the transformed url, or null, if the url cannot be handled by it, in which case the next rule is tried.
+	 * @param name
+	 * @param hook
+	 */
+	public static void registerHook(String name, UnaryOperator<String> hook) {
+		hooks.put(name, hook);
+	}
+
+
+	/**
+	 * This method applies the first matching rule of the host of the given url.
+	 * @param url
+	 * @return the transformed url, or the same url, if no rule matched.
+	 * @throws RuntimeException if the url matches a "reject"-rule.
+	 */
+	public static String apply(String url) throws RuntimeException
+	{
+		String host = DomainRules.getHostOfUrl(url);
+		if ( host == null )
+			return url;
+		host = host.toLowerCase();	// The url may not be in lowercase, so only its host is lowercased here.
+
+		List<Rule> rules = exactHostRules.get(host);
+		if ( rules != null ) {
+			String result = applyRules(rules, url);
+			if ( result != null )
+				return result;
+		}
+
+		// Check the host itself and all of its parent-domains (e.g. "www.scielo.br" -> "scielo.br" -> "br").
+		for ( int labelStart = 0; labelStart != -1; ) {
+			if ( (rules = hostSuffixRules.get(host.substring(labelStart))) != null ) {
+				String result = applyRules(rules, url);
+				if ( result != null )
+					return result;
+			}
+			labelStart = host.indexOf('.', labelStart);
+			if ( labelStart != -1 )
+				labelStart++;
+		}
+		return url;
+	}
+
+
+	/**
+	 * @return the result of the first matching rule, or null, if no rule matched.
+	 */
+	private static String applyRules(List<Rule> rules, String url) throws RuntimeException
+	{
+		for ( Rule rule : rules )
+		{
+			if ( !rule.isActive() )
+				continue;
+			switch ( rule.action ) {
+				case keep -> {
+					if ( rule.pattern.matcher(url).matches() )
+						return url;
+				}
+				case reject -> {
+					if ( rule.pattern.matcher(url).matches() )
+						throw new RuntimeException("This url is known to not lead to a docUrl: " + url);	// Avoid the connection.
+				}
+				case rewrite -> {
+					Matcher matcher = rule.pattern.matcher(url);
+					if ( matcher.matches() ) {
+						String template = rule.replacement;
+						if ( template.contains("{docId}") ) {
+							String docId = UrlUtils.getDocIdStr(url, null);
+							if ( (docId == null) || docId.isEmpty() )
+								return url;	// This url cannot be transformed.
+							template = DOC_ID_PLACEHOLDER.matcher(template).replaceAll(Matcher.quoteReplacement(Matcher.quoteReplacement(docId)));	// The docId is kept literal, in the final replacement as well.
+						}
+						StringBuilder result = new StringBuilder(url.length() + template.length());
+						matcher.appendReplacement(result, template);	// Use the current (whole-url) match. The "replaceFirst()" would search again and a reluctant regex could match only a prefix of the url.
+						return matcher.appendTail(result).toString();
+					}
+				}
+				case replace -> {
+					if ( url.contains(rule.argument) )
+						return Strings.CS.replace(url, rule.argument, rule.replacement);
+				}
+				case hook -> {
+					UnaryOperator<String> hook = hooks.get(rule.argument);
+					if ( hook == null ) {
+						logger.error("No hook was registered with the name: " + rule.argument);
+						continue;
+					}
+					String result = hook.apply(url);
+					if ( result != null )
+						return result;
+				}
+			}
+		}
+		return null;
+	}
+
+}
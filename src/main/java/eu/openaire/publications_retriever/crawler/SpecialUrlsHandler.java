@@ -5,14 +5,12 @@ import eu.openaire.publications_retriever.exceptions.DocLinkFoundException;
 import eu.openaire.publications_retriever.exceptions.DocLinkUnavailableException;
 import eu.openaire.publications_retriever.machine_learning.PageStructureMLA;
 import eu.openaire.publications_retriever.models.IdUrlMimeTypeTriple;
-import eu.openaire.publications_retriever.util.args.ArgsUtils;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.UrlNormalizationCache;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.apache.commons.lang3.Strings;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,199 +26,48 @@ public class SpecialUrlsHandler
 {
 	private static final Logger logger = LoggerFactory.getLogger(SpecialUrlsHandler.class);
 
-	private static final String europepmcPageUrlBasePath = "https://europepmc.org/backend/ptpmcrender.fcgi?accid=";
-
-	private static final String nasaBaseDomainPath = "https://ntrs.nasa.gov/";
-
-	private static final String ieeexploreBasePath = "https://ieeexplore.ieee.org/stampPDF/getPDF.jsp?tp=&arnumber=";
-
-
-	public static String checkAndHandleSpecialUrls(String resourceUrl) throws RuntimeException
-	{
-		String updatedUrl;
-        // Do not perform docUrl transformations in case we want to download the html-files. Only perform general url-transformations to bypass connectivity problems.
-
-		if ( !ArgsUtils.shouldJustDownloadHtmlFiles && (updatedUrl = checkAndGetEuropepmcDocUrl(resourceUrl)) != null ) {
-			//logger.debug("Europepmc-PageURL: " + resourceUrl + " to possible-docUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-		} else if ( (updatedUrl = checkAndDowngradeManuscriptElsevierUrl(resourceUrl)) != null ) {
-			//logger.debug("ManuscriptElsevier-URL: " + resourceUrl + " to acceptable-Url: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-		} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && (updatedUrl = checkAndGetNasaDocUrl(resourceUrl)) != null ) {
-			//logger.debug("Nasa-PageURL: " + resourceUrl + " to possible-docUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-		} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && (updatedUrl = checkAndGetFrontiersinDocUrl(resourceUrl)) != null ) {
-			//logger.debug("Frontiersin-PageURL: " + resourceUrl + " to possible-docUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-		} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && (updatedUrl = checkAndHandlePsyarxivDocUrl(resourceUrl)) != null ) {
-			//logger.debug("Psyarxiv-PageURL: " + resourceUrl + " to possible-docUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-		} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && (updatedUrl = checkAndHandleIjcseonlineDocUrl(resourceUrl)) != null ) {
-			//logger.debug("Ijcseonline-PageURL: " + resourceUrl + " to possible-docUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-		} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && (updatedUrl = checkAndHandleIeeeExplorerDocUrl(resourceUrl)) != null ) {
-			//logger.debug("IeeeExplorer-PageURL: " + resourceUrl + " to possible-docUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-		} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && (updatedUrl = checkAndHandleOSFdocUrl(resourceUrl)) != null ) {
-			//logger.debug("OSF-PageURL: " + resourceUrl + " to possible-docUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-		} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && (updatedUrl = checkAndHandleWileyDocUrl(resourceUrl)) != null ) {
-			//logger.debug("Wiley-PageURL: " + resourceUrl + " to possible-docUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-			// The following in nte ready yet..
-		/*} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && (updatedUrl = checkAndHandleEmbopressDocUrl(resourceUrl)) != null ) {
-			//logger.debug("Embopress-PageURL: " + resourceUrl + " to possible-docUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;*/
-		} else if ( (updatedUrl = checkAndHandleScieloUrl(resourceUrl)) != null ) {
-			//logger.debug("Scielo-PageURL: " + resourceUrl + " to possible-docUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-		} else if ( (updatedUrl = checkAndHandleDoiUrlsWithInnerLinks(resourceUrl)) != null ) {
-			//logger.debug("WeirdDoiUrl-PageURL: " + resourceUrl + " to innerUrl: " + updatedUrl);	// DEBUG!
-			resourceUrl = updatedUrl;
-		} else
-			resourceUrl = checkAndHandleDergipark(resourceUrl);	// It returns the same url if nothing was handled.
-
-		return resourceUrl;
-	}
-
-
-    private static final Pattern EUROPEMC_FILTER = Pattern.compile("https?://europepmc.org/a(?:rticle|bstract)s?/pmc.*");   // It accepts a lowercase-url
-
-	/////////// europepmc.org ////////////////////
-	public static String checkAndGetEuropepmcDocUrl(String europepmcUrl)
-	{
-        if ( EUROPEMC_FILTER.matcher(europepmcUrl.toLowerCase()).matches() )
-		{
-            // Some of these urls end with "?pdf=render" and auto-redirect to the final docUrl. But we can redirect-them offline and avoid these online redirections as well.
-			String idStr = UrlUtils.getDocIdStr(europepmcUrl, null);
-			if ( idStr != null )
-				return (europepmcPageUrlBasePath + (!idStr.startsWith("PMC", 0) ? "PMC"+idStr : idStr) + "&blobtype=pdf");
-			else
-				return europepmcUrl;
-		}
-		return null;	// It's from another domain, keep looking..
-	}
-
-
-	/////////// manuscript.elsevier ////////////////////
-	// These urls, try to connect with HTTPS, but their certificate is due from 2018. So, we downgrade them to plain HTTP.
-	public static String checkAndDowngradeManuscriptElsevierUrl(String manuscriptElsevierUrl)
-	{
-		if ( manuscriptElsevierUrl.contains("manuscript.elsevier.com") ) {
-			manuscriptElsevierUrl = Strings.CS.replace(manuscriptElsevierUrl, "https", "http", 1);
-			return manuscriptElsevierUrl;
-		} else
-			return null;
-	}
-
-
-	/////////// ntrs.nasa.gov ////////////////////
-	public static String checkAndGetNasaDocUrl(String nasaPageUrl)
-	{
-		if ( nasaPageUrl.contains("ntrs.nasa.gov/citations") && ! nasaPageUrl.contains("api/") )
-		{
-			// Offline-redirect to the docUrl.
-			String idStr = UrlUtils.getDocIdStr(nasaPageUrl, null);
-			if ( idStr == null )
-				return nasaPageUrl;
-
-			String citationPath = Strings.CS.replace(nasaPageUrl, nasaBaseDomainPath, "", 1);
-			citationPath = (citationPath.endsWith("/") ? citationPath : citationPath+"/");	// Make sure the "citationPath" has an ending slash.
-
-			return (nasaBaseDomainPath + "api/" + citationPath + "downloads/" + idStr + ".pdf");
-		}
-		return null;	// It's from another domain, keep looking..
-	}
-
-
-	/////////// www.frontiersin.org ////////////////////
-	public static String checkAndGetFrontiersinDocUrl(String frontiersinPageUrl)
-	{
-		//https://www.frontiersin.org/article/10.3389/feart.2017.00079
-		//https://www.frontiersin.org/articles/10.3389/fphys.2018.00414/full
-
-		if ( frontiersinPageUrl.contains("www.frontiersin.org") )
-		{
-			if ( frontiersinPageUrl.endsWith("/pdf") )
-				return frontiersinPageUrl;	// It's already a docUrl, go connect.
-			else if ( !frontiersinPageUrl.contains("/article") )
-				throw new RuntimeException("This \"frontiersin\"-url is known to not lead to a docUrl: " + frontiersinPageUrl);	// Avoid the connection.
-
-			// Offline-redirect to the docUrl.
-			String idStr = UrlUtils.getDocIdStr(frontiersinPageUrl, null);
-			if ( idStr == null )
-				return frontiersinPageUrl;
-
-			if ( frontiersinPageUrl.endsWith("/full") )
-				return Strings.CS.replace(frontiersinPageUrl, "/full", "/pdf");
-			else
-				return frontiersinPageUrl + "/pdf";
-		}
-		return null;	// It's url from another domain.
-	}
-
-
-	///////// psyarxiv.com ///////////////////
-	// https://psyarxiv.com/e9uk7
-	/**
-	 * Thia is a dynamic javascript domain.
-	 * @return
-	 */
-	public static String checkAndHandlePsyarxivDocUrl(String pageUrl) {
-		if ( pageUrl.contains("psyarxiv.com") ) {
-			if ( !pageUrl.contains("/download") )
-				return (pageUrl + (pageUrl.endsWith("/") ? "download" : "/download"));	// Add a "/download" in the end. That will indicate we are asking for the docUrl.
-			else
-				return pageUrl;
-		}
-		return null;	// It's from another domain, keep looking..
+	static {
+		// The complex cases, which cannot be described by the declarative rules of the "special-url-rules.txt"-file.
+		SpecialUrlRules.registerHook("wiley", SpecialUrlsHandler::checkAndHandleWileyDocUrl);
+		SpecialUrlRules.registerHook("doiInnerLink", SpecialUrlsHandler::checkAndHandleDoiUrlsWithInnerLinks);
 	}
 
 
-	///////// dergipark.gov.tr ///////////////////////
-	// http://dergipark.gov.tr/beuscitech/issue/40162/477737
 	/**
-	 * This domain has been transferred to dergipark.org.tr. In 2021 the old domain will be inaccessible at some point.
-	 * @param pageUrl
-	 * @return
+	 * This method transforms the urls of specific publishers (e.g. a pageUrl into its docUrl), according to the rules of their host (see "SpecialUrlRules").
+	 * @param resourceUrl
+	 * @return the transformed url, or the same url, if it was not handled.
+	 * @throws RuntimeException if the url is known to not lead to a docUrl.
 	 */
-	public static String checkAndHandleDergipark(String pageUrl)
+	public static String checkAndHandleSpecialUrls(String resourceUrl) throws RuntimeException
 	{
-		return Strings.CS.replace(pageUrl, "dergipark.gov.tr", "dergipark.org.tr");
+		return SpecialUrlRules.apply(resourceUrl);
 	}
 
+
 	public static Pattern Turkjgastroenterol_docUrl_pattern = Pattern.compile("<div[\\s]*>[\\s]*(/content/files/[^<>]+.pdf)[\\s]*</div>");
 
 
 	/////// www.turkjgastroenterol.org //////
 	// This is used when the url has already arrived in the "PageCrawler.visit()" method.
-	public static boolean extractAndCheckTurkjgastroenterolDocUrl(String pageHtml, String urlId, String sourceUrl, String pageUrl, String pageDomain)
+	// The pdf-path is given as plain text inside a "div", so it was already gathered by the single-pass analysis of the html, as a candidate docLink.
+	public static boolean extractAndCheckTurkjgastroenterolDocUrl(HtmlPageSummary pageSummary, String urlId, String sourceUrl, String pageUrl, String pageDomain)
 	{
-		Matcher matcher = Turkjgastroenterol_docUrl_pattern.matcher(pageHtml);
-		if ( !matcher.find() ) {
-			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.visit()' method, as there was a problem retrieving the \"turkjgastroenterol\"-pdf-url from its html.", "null", pageDomain, true, "true", "true", "false", "false", "false", null, "null", "null");
-			return false;
-		}
-
 		String pdfUrl = null;
-		try {
-			pdfUrl = matcher.group(1);
-		} catch (Exception e) {
-			logger.warn("No pdf-url was found inside the html of page: " + pageUrl, e);
-			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.visit()' method, as there was a problem retrieving the \"turkjgastroenterol\"-pdf-url from its html.", "null", pageDomain, true, "true", "true", "false", "false", "false", null, "null", "null");
-			PageCrawler.contentProblematicUrls.incrementAndGet();
-			return false;
+		for ( String candidateDocLink : pageSummary.getCandidateDocLinks() ) {
+			if ( candidateDocLink.startsWith("/content/files/") ) {
+				pdfUrl = candidateDocLink;
+				break;
+			}
 		}
-		if ( (pdfUrl == null) || pdfUrl.isEmpty() ) {
-			logger.warn("No pdf-url was found inside the html of page: " + pageUrl);
+		if ( pdfUrl == null ) {
 			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.visit()' method, as there was a problem retrieving the \"turkjgastroenterol\"-pdf-url from its html.", "null", pageDomain, true, "true", "true", "false", "false", "false", null, "null", "null");
-			PageCrawler.contentProblematicUrls.incrementAndGet();
 			return false;
 		}
 
 		String urlToCheck = pdfUrl;
 		if ( ((urlToCheck = ConnSupportUtils.getFullyFormedUrl(pageUrl, pdfUrl, null)) == null)	// Make it a full-URL.
-				|| ((urlToCheck = LoaderAndChecker.basicURLNormalizer.filter(urlToCheck)) == null) ) {	// Normalize it.
+				|| ((urlToCheck = UrlNormalizationCache.normalize(urlToCheck)) == null) ) {	// Normalize it.
 			logger.warn("Could not normalize url: " + pdfUrl);
 			UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'PageCrawler.visit()' method, as the retrievied \"turkjgastroenterol\"-pdf-url had normalization's problems.", "null", pageDomain, true, "true", "true", "false", "false", "false", null, "null", "null");
 			LoaderAndChecker.connProblematicUrls.incrementAndGet();
@@ -255,16 +102,16 @@ public class SpecialUrlsHandler
 
 
 	/////////// aup-online.com ////////////////////
-	public static void handleAupOnlineDocUrl(String pageUrl, Elements elementLinksOnPage) throws DocLinkFoundException, DocLinkUnavailableException
+	public static void handleAupOnlineDocUrl(String pageUrl, List<LinkElement> elementLinksOnPage) throws DocLinkFoundException, DocLinkUnavailableException
 	{
 		// This domain gives the fulltext-urls inside the "action" attribute of a "form"-element.
 		// We handle these elements for every domain, but, this one gives a false-positive ".../download" url, which causes this method to exit early and not reach the desired form-element.
-		for ( Element el : elementLinksOnPage ) {
+		for ( LinkElement el : elementLinksOnPage ) {
 			if ( el.attr("data-title").contains("ownload") ) {    // This includes both "Download" and "download". If no such attribute exists, then the check will return "false".
 				String possibleDocUrl = el.attr("action").trim();
 				if ( !possibleDocUrl.isEmpty() ) {
 					//logger.debug(possibleDocUrl);    // DEBUG!
-					throw new DocLinkFoundException(possibleDocUrl, PageStructureMLA.getPageTagAndClassStructureForElement(el), false);
+					throw new DocLinkFoundException(possibleDocUrl, PageStructureMLA.getStructureFingerprint(el), false);
 				}
 			}
 		}
@@ -273,81 +120,6 @@ public class SpecialUrlsHandler
 	}
 
 
-	private static final String ijcseonlineBaseUrl = "https://www.ijcseonline.org/pub_paper/";
-	private static final Pattern IJCSEONLINE_PDF_FILENAME = Pattern.compile(".+/[^/]+&(.+)$");
-
-	//////////////////// www.ijcseonline.org /////////////////////
-	/**
-	 * Transform the internal-link pageUrl into a pdfUrl.
-	 *
-	 * An initial pageUrl like this is examined: https://www.ijcseonline.org/full_paper_view.php?paper_id=4547
-	 * Then, an internal pageUrl is extracted: https://www.ijcseonline.org/pdf_paper_view.php?paper_id=4547&48-IJCSE-07375.pdf
-	 * Then, in this method, the final pdfUrl is created: https://www.ijcseonline.org/pub_paper/48-IJCSE-07375.pdf
-	 *
-	 * In case the given url is not a pdf-page-url or if we have an error, this method returns the pageUrl it received.
-	 * */
-	public static String checkAndHandleIjcseonlineDocUrl(String pageUrl)
-	{
-		if ( ! pageUrl.contains("www.ijcseonline.org") )
-			return null;    // It's from another domain, keep looking..
-
-		if ( ! pageUrl.contains("pdf_paper_view.php") )
-			return pageUrl;
-
-		String pdfFileName;
-		try {
-			Matcher matcher = IJCSEONLINE_PDF_FILENAME.matcher(pageUrl);
-			if ( !matcher.matches() )
-				return pageUrl;
-
-			pdfFileName = matcher.group(1);
-			if ( (pdfFileName == null) || pdfFileName.isEmpty() ) {
-				logger.error("No pdf-file-name was extracted from pageUrl: " + pageUrl);
-				return pageUrl;
-			}
-		} catch (Exception e) {
-			logger.error("", e);
-			return pageUrl;
-		}
-
-		return ijcseonlineBaseUrl + pdfFileName;
-	}
-
-
-	//////////  ieeexplore.ieee.org   /////////////////
-	// https://ieeexplore.ieee.org/document/8924293 --> https://ieeexplore.ieee.org/stampPDF/getPDF.jsp?tp=&arnumber=8924293
-	public static String checkAndHandleIeeeExplorerDocUrl(String pageUrl) {
-		if ( pageUrl.contains("ieeexplore.ieee.org") ) {
-			if ( pageUrl.contains("/stampPDF/") ) {	// It's probably already a docUrl
-				return pageUrl;
-			}
-			String idStr = UrlUtils.getDocIdStr(pageUrl, null);
-			if ( idStr == null )
-				return pageUrl;
-
-			return (ieeexploreBasePath + idStr);
-		}
-		return null;    // It's from another domain, keep looking..
-	}
-
-
-	//////////  osf.io   /////////////////
-	// https://osf.io/2xpq7 --> https://osf.io/2xpq7/download
-	public static String checkAndHandleOSFdocUrl(String pageUrl)
-	{
-		if ( !pageUrl.contains("://osf.io") )	// We want to transform only urls belonging to the top-level-domain.
-			return null;    // It's from another domain, keep looking..
-
-		if ( pageUrl.contains("/download") )	// It's probably already a docUrl
-			return pageUrl;
-		else if ( !pageUrl.endsWith("/") )
-			pageUrl += "/";
-
-		return (pageUrl + "download");
-	}
-
-
-
 	private static final Pattern ONLINELIBRARY_WILEY = Pattern.compile("(?:http[s]?)://[^/]*onlinelibrary.wiley.com/([^/]+/)?doi/.*");
 
 	//////////  onlinelibrary.wiley.com   /////////////////
@@ -397,35 +169,6 @@ public class SpecialUrlsHandler
 	}
 
 
-	//////////  www.embopress.org   /////////////////
-	// https://www.embopress.org/doi/pdfdirect/10.1038/msb.2012.46?download=true --> https://www.embopress.org/doi/pdf/10.1038/msb.2012.46?download=true
-	// DocUrls of Wiley, sometimes redirect to "www.embopress.org", while maintaining similar structure (instead of "/pdfdirect/", they use "/pdf/").
-	public static String checkAndHandleEmbopressDocUrl(String pageUrl)
-	{
-		if ( !pageUrl.contains("://www.embopress.org") )	// We want to transform only urls belonging to the top-level-domain.
-			return null;    // It's from another domain, keep looking..
-
-		if ( pageUrl.contains("/pdf/") )	// It's probably already a docUrl
-			return pageUrl;
-		else if ( pageUrl.contains("/pdfdirect/") )
-			return Strings.CS.replace(pageUrl, "/pdfdirect/", "/pdf/", 1);
-		else
-			return pageUrl;
-	}
-
-	////////////////////////  www.scielo.br  ///////////////////////
-	// https://www.scielo.br/j/bjb/a/64jBbrbZ8hG3fvhy6d6nczj/?amp;format=pdf&lang=en   --> REPLACE THE PROBLEMATIC "amp;" with "&".
-	// https://www.scielo.br/j/bjb/a/64jBbrbZ8hG3fvhy6d6nczj/?&format=pdf&lang=en
-	// We can remove it, instead of replacing it, as the result is a bit odd, yet valid. BUT, better replace it for consistency.
-	public static String checkAndHandleScieloUrl(String pageUrl)
-	{
-		if ( !pageUrl.contains("scielo.br") )	// We want to transform only urls belonging to this subdomain and has this structure.
-			return null;    // It's from another domain, keep looking..
-
-		return Strings.CS.replace(pageUrl, "amp;", "&");
-	}
-
-
 	////////////////////////  doi.org with url inside ///////////////////////
 	//	https://dx.doi.org/https:/doi.org/10.1039/C6OB01382A
 	private static final Pattern DOI_URL_WITH_INNER_LINK = Pattern.compile("http[s]?://(?:dx.)?doi.org/(http.*)");
@@ -6,9 +6,15 @@ package eu.openaire.publications_retriever.exceptions;
  * This exception is thrown when there an already-found DocUrl is seen.
  * Normally this case can by handled without an exception,
  * but in the case which the docUrl is discovered during redirection-packs, we need a fast way out.
+ * Being a fast way out, it has no stack-trace and a single instance of it is thrown.
  * @author Lampros Smyrnaios
  */
 public class AlreadyFoundDocUrlException extends Exception
 {
-	public AlreadyFoundDocUrlException() {}
+	public static final AlreadyFoundDocUrlException instance = new AlreadyFoundDocUrlException();
+
+	public AlreadyFoundDocUrlException()
+	{
+		super(null, null, false, false);	// No suppressed-exceptions and no stack-trace.
+	}
 }
@@ -5,21 +5,23 @@ package eu.openaire.publications_retriever.exceptions;
  * This class implements the new custom exception: "DocLinkFoundException".
  * This exception is thrown when we find a DocLink (javaScriptDocLink or not), upon links-retrieval.
  * It is used in order to avoid checking any other links inside the webPage.
+ * It is thrown for most of the crawled pages, so it is stackless, since filling the stack-trace of the (deep) stack of the thread would only add cost.
  * @author Lampros Smyrnaios
  */
 public class DocLinkFoundException extends Exception
 {
 	private String docLink = null;
 
-	private String pageTagAndClassStructureForElement = null;
+	private long pageStructureFingerprint = 0;
 
 	private boolean predictedByStructureMLA = false;
 
 
-	public DocLinkFoundException(String docLink, String pageTagAndClassStructureForElement, boolean predictedByStructureMLA)
+	public DocLinkFoundException(String docLink, long pageStructureFingerprint, boolean predictedByStructureMLA)
 	{
+		super(null, null, false, false);	// No suppressed-exceptions and no stack-trace.
 		this.docLink = docLink;
-		this.pageTagAndClassStructureForElement = pageTagAndClassStructureForElement;
+		this.pageStructureFingerprint = pageStructureFingerprint;
 		this.predictedByStructureMLA = predictedByStructureMLA;
 	}
 
@@ -29,8 +31,8 @@ public class DocLinkFoundException extends Exception
 		return docLink;
 	}
 
-	public String getPageTagAndClassStructureForElement() {
-		return pageTagAndClassStructureForElement;
+	public long getPageStructureFingerprint() {
+		return pageStructureFingerprint;
 	}
 
 	public boolean isPredictedByStructureMLA() {
@@ -2,6 +2,7 @@ package eu.openaire.publications_retriever.exceptions;
 
 
 /**
+ * Like the "DocLinkFoundException", it is created without a stack-trace.
  * @author Lampros Smyrnaios
  */
 public class DocLinkInvalidException extends Exception
@@ -10,6 +11,7 @@ public class DocLinkInvalidException extends Exception
 
     public DocLinkInvalidException(String invalidDocLink)
     {
+        super(null, null, false, false);	// No suppressed-exceptions and no stack-trace.
         this.invalidDocLink = invalidDocLink;
     }
 
@@ -2,6 +2,7 @@ package eu.openaire.publications_retriever.exceptions;
 
 
 /**
+ * It has no stack-trace, as it is always handled by the caller of the links-extraction.
  * @author Lampros Smyrnaios
  */
 public class DocLinkUnavailableException extends Exception {
@@ -10,6 +11,7 @@ public class DocLinkUnavailableException extends Exception {
 
 	public DocLinkUnavailableException(String errorMsg)
 	{
+		super(null, null, false, false);	// No suppressed-exceptions and no stack-trace.
 		this.errorMsg = errorMsg;
 	}
 
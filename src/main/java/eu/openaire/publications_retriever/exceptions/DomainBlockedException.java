@@ -7,6 +7,7 @@ import java.util.List;
  * This class implements the new custom exception: "DomainBlockedException".
  * This exception is designed to be thrown when a domain is getting blocked while its page is crawled.
  * This way, the crawling of that page can stop immediately.
+ * It has no stack-trace, as it is thrown for every url of a blocked domain and it is handled by the caller.
  * @author Lampros Smyrnaios
  */
 public class DomainBlockedException extends Exception
@@ -17,11 +18,13 @@ public class DomainBlockedException extends Exception
 
 	public DomainBlockedException(String blockedDomain)
 	{
+		super(null, null, false, false);	// No suppressed-exceptions and no stack-trace.
 		this.blockedDomain = blockedDomain;
 	}
 
 	public DomainBlockedException(List<String> blockedDomains)
 	{
+		super(null, null, false, false);
 		this.blockedDomains = blockedDomains;
 	}
 
@@ -0,0 +1,16 @@
+package eu.openaire.publications_retriever.exceptions;
+
+
+/**
+ * This class implements the new custom exception: "DomainCircuitOpenException".
+ * This exception is thrown when the circuit-breaker of a domain is "open", so the domain is blocked only temporarily.
+ * It is handled as a "DomainBlockedException" where the crawling of a page has to stop, but the urls of the domain can be retried later in the same run.
+ * @author Lampros Smyrnaios
+ */
+public class DomainCircuitOpenException extends DomainBlockedException
+{
+	public DomainCircuitOpenException(String domainStr)
+	{
+		super(domainStr);
+	}
+}
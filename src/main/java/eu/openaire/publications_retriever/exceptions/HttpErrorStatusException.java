@@ -0,0 +1,24 @@
+package eu.openaire.publications_retriever.exceptions;
+
+
+/**
+ * This class implements the new custom exception: "HttpErrorStatusException".
+ * This exception is thrown when a url responds with an HTTP error-code. Its message is the one produced by "ConnSupportUtils.onErrorStatusCode()".
+ * It carries the status-code, so the callers (e.g. the "RetryQueue") do not have to parse it out of the message.
+ * It has no stack-trace, as it is thrown for every url with an error-code and it is handled by the caller.
+ * @author Lampros Smyrnaios
+ */
+public class HttpErrorStatusException extends RuntimeException
+{
+	private final int statusCode;
+
+	public HttpErrorStatusException(String errorMessage, int statusCode)
+	{
+		super(errorMessage, null, false, false);	// No suppressed-exceptions and no stack-trace.
+		this.statusCode = statusCode;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+}
@@ -0,0 +1,177 @@
+package eu.openaire.publications_retriever.machine_learning;
+
+import eu.openaire.publications_retriever.util.url.UrlUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * This is an offline tool, which mines the pageUrl-to-docUrl rules of each domain, from the output-files of previous runs.
+ * For each record where a docUrl was found inside a pageUrl, the tokens of the pageUrl which contain a digit become variables (e.g. "/article/view/{1}") and the docUrl is expressed with these variables (e.g. "/article/download/{1}").
+ * The records which give the same shape and template are counted as the "support" of the rule, while the "precision" is the percentage of all the records of the domain with the same pageUrl-shape (including the failed ones), which gave that rule.
+ * Only the best rule of each shape is written, if it has enough support and precision. The rules-file is given to the program with the "-minedRulesFile" argument.
+ * Usage: java -cp publications_retriever-<VERSION>.jar eu.openaire.publications_retriever.machine_learning.DocUrlRuleMiner rulesFile outputFile1 [outputFile2 ...]
+ * @author Lampros Smyrnaios
+ */
+public class DocUrlRuleMiner
+{
+	private static final Logger logger = LoggerFactory.getLogger(DocUrlRuleMiner.class);
+
+	public static int leastSupport = 3;	// Keep it "public" and "non-final", in order to be set by external services.
+	public static double leastPrecision = 60.0;	// Keep it "public" and "non-final", in order to be set by external services.
+
+	private static final String[] targetUrlKeys = {"docUrl", "datasetUrl", "docOrDatasetUrl"};	// The key depends on the "-retrieveDataType" of the run.
+
+
+	private static final class ShapeStats
+	{
+		int numOfRecords = 0;
+		final Map<String, Integer> templatesWithSupport = new HashMap<>(4);
+	}
+
+
+	public static void main(String[] args)
+	{
+		if ( args.length < 2 ) {
+			String errMessage = "Usage: DocUrlRuleMiner rulesFile outputFile1 [outputFile2 ...]";
+			System.err.println(errMessage);
+			logger.error(errMessage);
+			System.exit(-1);
+		}
+
+		List<Path> outputFiles = new ArrayList<>(args.length -1);
+		for ( int i = 1; i < args.length; i++ )
+			outputFiles.add(Paths.get(args[i]));
+		try {
+			List<MinedDocUrlRules.MinedRule> minedRules = mineRules(outputFiles);
+			writeRules(minedRules, Paths.get(args[0]));
+			logger.info("Wrote " + minedRules.size() + " mined rules in the file: " + args[0]);
+		} catch (IOException ioe) {
+			String errMessage = "Could not mine the rules: " + ioe;
+			System.err.println(errMessage);
+			logger.error(errMessage, ioe);
+			System.exit(-2);
+		}
+	}
+
+
+	/**
+	 * @param outputFiles the json-output files of previous runs, with one record in each line.
+	 * @return the mined rules, ordered by their domain and then by their support, descending.
+	 * @throws IOException
+	 */
+	public static List<MinedDocUrlRules.MinedRule> mineRules(List<Path> outputFiles) throws IOException
+	{
+		Map<String, Map<String, ShapeStats>> domainsWithShapes = new HashMap<>();
+		int numOfRecords = 0;
+		for ( Path outputFile : outputFiles ) {
+			try ( BufferedReader reader = Files.newBufferedReader(outputFile, StandardCharsets.UTF_8) ) {
+				String line;
+				while ( (line = reader.readLine()) != null ) {
+					if ( line.isBlank() )
+						continue;
+					try {
+						if ( addRecord(new JSONObject(line), domainsWithShapes) )
+							numOfRecords ++;
+					} catch (JSONException je) {
+						logger.warn("Invalid json-record in file \"" + outputFile + "\": " + line);
+					}
+				}
+			}
+		}
+		logger.debug("Mining the rules from " + numOfRecords + " records of " + domainsWithShapes.size() + " domains.");
+
+		List<MinedDocUrlRules.MinedRule> minedRules = new ArrayList<>();
+		for ( Map.Entry<String, Map<String, ShapeStats>> domainEntry : domainsWithShapes.entrySet() ) {
+			for ( Map.Entry<String, ShapeStats> shapeEntry : domainEntry.getValue().entrySet() ) {
+				ShapeStats shapeStats = shapeEntry.getValue();
+				Map.Entry<String, Integer> bestTemplate = null;
+				for ( Map.Entry<String, Integer> templateEntry : shapeStats.templatesWithSupport.entrySet() )
+					if ( (bestTemplate == null) || (templateEntry.getValue() > bestTemplate.getValue()) )
+						bestTemplate = templateEntry;
+				if ( (bestTemplate == null) || (bestTemplate.getValue() < leastSupport) )
+					continue;
+				double precision = (bestTemplate.getValue() * 100.0 / shapeStats.numOfRecords);
+				if ( precision >= leastPrecision )
+					minedRules.add(new MinedDocUrlRules.MinedRule(domainEntry.getKey(), shapeEntry.getKey(), bestTemplate.getKey(), bestTemplate.getValue(), precision));
+			}
+		}
+		minedRules.sort(Comparator.comparing(MinedDocUrlRules.MinedRule::domain).thenComparing(MinedDocUrlRules.MinedRule::support, Comparator.reverseOrder()).thenComparing(MinedDocUrlRules.MinedRule::pageShape));
+		return minedRules;
+	}
+
+
+	/**
+	 * @return true, if the record was about a pageUrl and it was counted.
+	 */
+	private static boolean addRecord(JSONObject record, Map<String, Map<String, ShapeStats>> domainsWithShapes)
+	{
+		String pageUrl = record.optString("pageUrl", null);
+		String docUrl = null;
+		for ( String key : targetUrlKeys )
+			if ( (docUrl = record.optString(key, null)) != null )
+				break;
+		if ( (pageUrl == null) || (docUrl == null) || !pageUrl.startsWith("http") || docUrl.equals(pageUrl)	// The direct-links are not pages.
+				|| docUrl.equals(UrlUtils.duplicateUrlIndicator) || docUrl.equals("null") )	// The html-files were just downloaded.
+			return false;
+
+		String pageDomain = UrlUtils.getDomainStr(pageUrl, null);
+		int pageRestStart = MinedDocUrlRules.getRestStart(pageUrl);
+		if ( (pageDomain == null) || (pageRestStart == -1) )
+			return false;
+		List<String> variables = new ArrayList<>(4);
+		String pageShape = MinedDocUrlRules.getShape(MinedDocUrlRules.getNormalizedRest(pageUrl, pageRestStart), variables);
+		if ( (pageShape == null) || variables.isEmpty() )	// A page without any variable gives a rule for itself only.
+			return false;
+
+		ShapeStats shapeStats = domainsWithShapes.computeIfAbsent(pageDomain, k -> new HashMap<>()).computeIfAbsent(pageShape, k -> new ShapeStats());
+		shapeStats.numOfRecords ++;	// The failed records count against the precision of the rules of this shape.
+
+		if ( docUrl.equals(UrlUtils.unreachableDocOrDatasetUrlIndicator) )
+			return true;
+		int docRestStart = MinedDocUrlRules.getRestStart(docUrl);
+		if ( docRestStart == -1 )
+			return true;
+		String docTemplate = MinedDocUrlRules.getTemplate(docUrl.substring(docRestStart), variables);
+		if ( docTemplate == null )
+			return true;	// This docUrl cannot be derived from its pageUrl.
+
+		String docOrigin = docUrl.substring(0, docRestStart);
+		if ( !docOrigin.toLowerCase(Locale.ROOT).equals(pageUrl.substring(0, pageRestStart).toLowerCase(Locale.ROOT)) )
+			docTemplate = docOrigin + docTemplate;	// The docUrl is in another host.
+		if ( docTemplate.isEmpty() )
+			return true;
+		shapeStats.templatesWithSupport.merge(docTemplate, 1, Integer::sum);
+		return true;
+	}
+
+
+	public static void writeRules(List<MinedDocUrlRules.MinedRule> minedRules, Path rulesFile) throws IOException
+	{
+		try ( BufferedWriter writer = Files.newBufferedWriter(rulesFile, StandardCharsets.UTF_8) ) {
+			writer.write("# The pageUrl-to-docUrl rules, mined by the \"DocUrlRuleMiner\". Each line has the tab-separated: <domain> <pageShape> <docTemplate> <support> <precision>");
+			writer.newLine();
+			for ( MinedDocUrlRules.MinedRule minedRule : minedRules ) {
+				writer.write(minedRule.domain() + "\t" + minedRule.pageShape() + "\t" + minedRule.docTemplate() + "\t" + minedRule.support() + "\t" + String.format(Locale.ROOT, "%.1f", minedRule.precision()));
+				writer.newLine();
+			}
+		}
+	}
+
+}
@@ -1,17 +1,16 @@
 package eu.openaire.publications_retriever.machine_learning;
 
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.SetMultimap;
-import eu.openaire.publications_retriever.PublicationsRetriever;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import eu.openaire.publications_retriever.crawler.ScoredLink;
 import eu.openaire.publications_retriever.models.IdUrlMimeTypeTriple;
 import eu.openaire.publications_retriever.util.file.FileUtils;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
-import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
+import eu.openaire.publications_retriever.util.url.UrlView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +22,10 @@ import java.util.regex.Matcher;
 
 /**
  * This class aims to provide an online Machine Learning Algorithm (M.L.A.) with methods to gather important data, use tha data to predict a result and control the execution of the algorithm.
+ * Each domain has its own model, which maps its docPage-paths to the docUrl-paths they led to, along with the "support" (the number of times) of each pair.
+ * The models are updated and read without any lock. Their memory is bounded: the least recently used domains are evicted, as are the least supported docPage-paths of each domain.
+ * Each domain decides on its own whether to keep predicting: if its predictions fail, it enters a "sleep-mode" for a number of its pages and, if they keep failing, the MLA is disabled for it.
+ * The disabled domains are kept in a separate set (without their models), so that they are not learned again after their models are evicted.
  * Disclaimer: This is still in experimental stage. Many domains are not supported.
  * @author Lampros Smyrnaios
  */
@@ -30,84 +33,63 @@ public class MachineLearning
 {
 	private static final Logger logger = LoggerFactory.getLogger(MachineLearning.class);
 
-	public static final boolean useMLA = false;	// Should we try the experimental-M.L.A.? This is intended to be like a "global switch", to use or not to use the MLA, throughout the program's execution.
+	public static boolean useMLA = true;	// Keep it "public" and "non-final", in order to be set by external services. Should we try the experimental-M.L.A.? This is intended to be like a "global switch", to use or not to use the MLA, throughout the program's execution.
 
-	private static final float leastSuccessPercentageForMLA = 51;	// The percentage which we want, in order to continue running the MLA.
-	private static int latestMLADocUrlsFound = 0;
+	private static final float leastSuccessPercentageForMLA = 51;	// The percentage which we want, in order to continue running the MLA for a domain.
+	private static final int predictionsBeforeAccuracyTest = 20;	// The number of predictions for a domain, before deciding if we should continue running it.
+	private static final int pagesToWaitUntilRestartMLA = 200;	// The number of pages of a domain which are visited without predictions, while it is in "sleep-mode".
+	private static final int failedRoundsBeforeDisabled = 3;	// The consecutive rounds of a domain with a low success-rate, before the MLA is disabled for it.
+	private static final int leastSupportToPredict = 2;	// A pair which was seen only once, may be a coincidence.
 
-	private static int urlsToGatherBeforeStarting = 5000;	// 5,000 urls.
-	private static int leastNumOfUrlsToCheckBeforeAccuracyTest = 1000;	// Least number of URLs to check before deciding if we should continue running it.
-	private static int urlsToWaitUntilRestartMLA = 30000;	// 30,000 urls
+	private static final int maxDomainModels = 20_000;
+	private static final int maxPagePathsPerDomain = 100;
+	private static final int maxDocUrlPathsPerPagePath = 5;	// Too many docPaths for a pagePath, means that there's probably only one pagePath we get for this domain, so it is not compatible with the MLA.
 
-	private static boolean mlaStarted = false;	// Useful to know when the MLA started to make predictions (left the learning mode).
-
-	private static int endOfSleepNumOfUrls = 0;
-	private static int latestSuccessBreakPoint = 0;
-	private static int latestUrlsMLAChecked = 0;
-	public static final AtomicInteger timesGatheredData = new AtomicInteger(0);	// Used also for statistics.
-	private static final AtomicInteger pageUrlsCheckedWithMLA = new AtomicInteger(0);
-	private static boolean isInSleepMode = false;
-
-	public static AtomicInteger totalPagesReachedMLAStage = new AtomicInteger(0);	// This counts the pages which reached the crawlingStage, i.e: were not discarded in any case and waited to have their internalLinks checked.
 
 	/**
-	 * From the Docs: The multimap does not store duplicate key-value pairs. Adding a new key-value pair equal to an existing key-value pair has no effect.
+	 * A docUrl-path which was found from a docPage-path, along with the number of times this happened and the extension of its docUrls (if any).
 	 */
-	public static final SetMultimap<String, String> successPathsHashMultiMap = Multimaps.synchronizedSetMultimap(HashMultimap.create());	// Holds multiple values for any key, if a docPagePath(key) has many different docUrlPaths(values) for doc links.
+	private static final class DocUrlPath
+	{
+		final String path;
+		final AtomicInteger support = new AtomicInteger(0);
+		volatile String extension = null;
 
-	public static final ConcurrentHashMap<String, String> successDocPathsExtensionHashMap = new ConcurrentHashMap<>();
+		DocUrlPath(String path) {
+			this.path = path;
+		}
+	}
 
-	public static AtomicInteger docUrlsFoundByMLA = new AtomicInteger(0);
-	// If we later want to show statistics, we should take into account only the number of the urls to which the MLA was tested against, not all the urls in the inputFile.
 
-	private static final Set<String> domainsBlockedFromMLA = Collections.newSetFromMap(new ConcurrentHashMap<>());
-	static {	// These domains are not compatible with the MLA.
-		domainsBlockedFromMLA.add("sciencedirect.com");
+	public static final class DomainModel
+	{
+		final ConcurrentHashMap<String, ConcurrentHashMap<String, DocUrlPath>> pagePathsWithDocUrlPaths = new ConcurrentHashMap<>();
+		final AtomicInteger numOfVisitedPages = new AtomicInteger(0);
+		final AtomicInteger numOfRoundPredictions = new AtomicInteger(0);
+		final AtomicInteger numOfRoundHits = new AtomicInteger(0);
+		final AtomicInteger numOfFailedRounds = new AtomicInteger(0);
+		volatile int endOfSleepNumOfPages = 0;	// If the domain has never entered the sleepMode, it will be 0.
 	}
 
-	private static final ConcurrentHashMap<String, Integer> timesDomainsFailedInMLA = new ConcurrentHashMap<>();
-	private static final int timesToFailBeforeBlockedFromMLA = 10;
+	private static final Cache<String, DomainModel> domainModels = CacheBuilder.newBuilder().maximumSize(maxDomainModels).build();
+
+	private static final Set<String> domainsBlockedFromMLA = Set.of("sciencedirect.com");	// These domains are not compatible with the MLA.
+	private static final Set<String> disabledDomains = ConcurrentHashMap.newKeySet();	// The domains which were proven to be incompatible with the MLA, during this run. Only their names are kept, so the set is small.
 
-	private static final List<Double> successRateList = Collections.synchronizedList(new ArrayList<>());
+	public static final AtomicInteger timesGatheredData = new AtomicInteger(0);	// Used also for statistics.
+	private static final AtomicInteger pageUrlsCheckedWithMLA = new AtomicInteger(0);
+	public static final AtomicInteger docUrlsFoundByMLA = new AtomicInteger(0);
+	public static final AtomicInteger numOfDomainsDisabledFromMLA = new AtomicInteger(0);
+	public static final AtomicInteger numOfEvictedPagePaths = new AtomicInteger(0);
 
 
 	/**
 	 * Initialize the Machine Learning Algorithm (MLA).
-	 * It ensures that for small input (i.e. for testing purposes) the MLA can run properly.
+	 * Each domain learns and decides on its own, so nothing depends on the size of the input.
 	 */
 	public MachineLearning()
 	{
-		logger.debug("Initializing the MLA..");
-
-		long approxNumOfTotalUrlsToCheck;
-
-		if ( LoaderAndChecker.useIdUrlPairs )
-			approxNumOfTotalUrlsToCheck = (long)(FileUtils.numOfLines * 0.7);	// Get the 70%, as the rest will be extra urls for the same id, along with failing urls.
-		else
-			approxNumOfTotalUrlsToCheck = (long)(FileUtils.numOfLines * 0.85);	// Get the 85%, as the rest will be failing urls.
-
-		logger.debug("\"approxNumOfTotalUrlsToCheck\" = " + approxNumOfTotalUrlsToCheck);
-
-		// For small input, make sure that we gather data for no more than 20% of the input, before starting the MLA.
-		int tenPercentOfInput = (int)(approxNumOfTotalUrlsToCheck * 0.1);
-		if ( urlsToGatherBeforeStarting > tenPercentOfInput )
-			urlsToGatherBeforeStarting = tenPercentOfInput;
-
-		logger.debug("\"urlsToGatherBeforeStarting\" = " + urlsToGatherBeforeStarting);
-
-		// For small input, make sure the least number of urls to check every time is no more than 10% of the input.
-		int fivePercentOfInput = (int)(approxNumOfTotalUrlsToCheck * 0.05);
-		if ( leastNumOfUrlsToCheckBeforeAccuracyTest < fivePercentOfInput )
-			leastNumOfUrlsToCheckBeforeAccuracyTest = fivePercentOfInput;
-
-		logger.debug("\"leastNumOfUrlsToCheckBeforeAccuracyTest\" = " + leastNumOfUrlsToCheckBeforeAccuracyTest);
-
-		// For small input, make sure the MLA can restart at least one time.
-		int twentyPercentOfInput = (int)(approxNumOfTotalUrlsToCheck * 0.2);
-		if ( urlsToWaitUntilRestartMLA > twentyPercentOfInput )
-			urlsToWaitUntilRestartMLA = twentyPercentOfInput;
-
-		logger.debug("\"urlsToWaitUntilRestartMLA\" = " + urlsToWaitUntilRestartMLA);
+		logger.debug("Initializing the MLA, with models for up to " + maxDomainModels + " domains, of up to " + maxPagePathsPerDomain + " docPage-paths each.");
 	}
 
 
@@ -123,120 +105,146 @@ public class MachineLearning
 		if ( docPage.equals(docUrl) )	// It will be equal if the "docPage" is a docUrl itself.
 			return;	// No need to log anything.
 
-		Matcher docPageMatcher = null;	// It's ok if it remains "null", the "getPathStr()" will create one then.
+		UrlView docPageView = null;	// It's ok if it remains "null", the "getPathStr()" will create one then.
 
 		if ( pageDomain == null ) {
-			if ( (docPageMatcher = UrlUtils.getUrlMatcher(docPage)) == null )
+			if ( (docPageView = UrlUtils.getUrlView(docPage)) == null )
 				return;
-			if ( (pageDomain = UrlUtils.getDomainStr(docPage, docPageMatcher)) == null )
+			if ( (pageDomain = UrlUtils.getDomainStr(docPage, docPageView)) == null )
 				return;
 		}
 
-		if ( domainsBlockedFromMLA.contains(pageDomain) )	// Don't gather data for domains which are proven to not be compatible with the MLA.
+		if ( domainsBlockedFromMLA.contains(pageDomain) || disabledDomains.contains(pageDomain) )	// Don't gather data for domains which are proven to not be compatible with the MLA.
 			return;
 
-		String docPagePath = UrlUtils.getPathStr(docPage, docPageMatcher);	// The "docPageMatcher" might be null, but it's ok.
+		DomainModel domainModel = domainModels.asMap().computeIfAbsent(pageDomain, k -> new DomainModel());
+
+		String docPagePath = UrlUtils.getPathStr(docPage, docPageView);	// The "docPageView" might be null, but it's ok.
 		if ( docPagePath == null )
 			return;
 
 		// DocUrl part-extraction.
-		Matcher docUrlMatcher = UrlUtils.getUrlMatcher(docUrl);
-		if ( docUrlMatcher == null )
+		UrlView docUrlView = UrlUtils.getUrlView(docUrl);
+		if ( docUrlView == null )
 			return;
 
-		String docUrlPath = UrlUtils.getPathStr(docUrl, docUrlMatcher);
+		String docUrlPath = UrlUtils.getPathStr(docUrl, docUrlView);
 		if ( docUrlPath == null )
 			return;
 
-		String docUrlID = UrlUtils.getDocIdStr(docUrl, docUrlMatcher);
+		String docUrlID = UrlUtils.getDocIdStr(docUrl, docUrlView);
 		if ( docUrlID == null )
 			return;
 
-		// Take the Matcher to retrieve the extension and remove it from the docID, also keep it stored elsewhere so that we can use it in prediction later.
+		ConcurrentHashMap<String, DocUrlPath> docUrlPaths = domainModel.pagePathsWithDocUrlPaths.get(docPagePath);
+		if ( docUrlPaths == null ) {
+			docUrlPaths = domainModel.pagePathsWithDocUrlPaths.computeIfAbsent(docPagePath, k -> new ConcurrentHashMap<>(4));
+			while ( domainModel.pagePathsWithDocUrlPaths.size() > maxPagePathsPerDomain )	// The concurrent insertions trim the model back to its limit.
+				if ( !evictLeastSupportedPagePath(domainModel, docPagePath) )
+					break;
+		}
+
+		DocUrlPath docUrlPathData = docUrlPaths.get(docUrlPath);
+		if ( docUrlPathData == null ) {
+			if ( docUrlPaths.size() > maxDocUrlPathsPerPagePath )	// The pagePath is already known to be incompatible, there is no need to keep more docPaths for it.
+				return;
+			docUrlPathData = docUrlPaths.computeIfAbsent(docUrlPath, DocUrlPath::new);
+		}
+
+		// Take the Matcher to retrieve the extension and remove it from the docID, also keep it stored along with the docUrlPath, so that we can use it in prediction later.
 		Matcher extensionMatcher = FileUtils.EXTENSION_PATTERN.matcher(docUrlID);
 		if ( extensionMatcher.find() ) {
 			String extension;
 			if ( (extension = extensionMatcher.group(0)) != null )	// Keep info about the docUrl, if it has a PDF-extension ending or not..
-				MachineLearning.successDocPathsExtensionHashMap.put(docUrlPath, extension);	// If the map previously contained a mapping for the key, the old value is replaced.
+				docUrlPathData.extension = extension;	// The latest extension is kept.
 			//logger.debug("extension: " + extension);	// DEBUG!
-			//docUrlID = extensionMatcher.replaceAll("");	// Remove the extension.	TODO - Keep it here in case an idea comes up about using the docIDs (but they can be non-equal: <docPageId != docUrlID>).
 		}
 
-		// Get the paths of the docPage and the docUrl and put them inside "successDomainPathsMultiMap".
-		MachineLearning.successPathsHashMultiMap.put(docPagePath, docUrlPath);	// Add this pair in "successPathsMultiMap", if the key already exists then it will just add one more value to that key.
+		docUrlPathData.support.incrementAndGet();
 		MachineLearning.timesGatheredData.incrementAndGet();
 	}
 
 
 	/**
-	 * Compute the current success rate as follows: (<this round's found docUrls> * 100.0) / <this round's checked pageUrls>)
+	 * This method drops the docPage-path with the least support from the model of a domain, in order to make room for the new one.
+	 * The concurrent gatherings may drop one path more than needed, which is harmless.
+	 * @return true, if a path was dropped by this call.
 	 */
-	public static double getCurrentSuccessRate()
+	private static boolean evictLeastSupportedPagePath(DomainModel domainModel, String newPagePath)
 	{
-		return ((docUrlsFoundByMLA.get() - latestMLADocUrlsFound) * 100.0 / (pageUrlsCheckedWithMLA.get() - latestUrlsMLAChecked));
+		String leastSupportedPagePath = null;
+		int leastSupport = Integer.MAX_VALUE;
+		for ( Map.Entry<String, ConcurrentHashMap<String, DocUrlPath>> entry : domainModel.pagePathsWithDocUrlPaths.entrySet() ) {
+			if ( entry.getKey().equals(newPagePath) )
+				continue;
+			int support = 0;
+			for ( DocUrlPath docUrlPath : entry.getValue().values() )
+				support += docUrlPath.support.get();
+			if ( support < leastSupport ) {
+				leastSupport = support;
+				leastSupportedPagePath = entry.getKey();
+			}
+		}
+		if ( (leastSupportedPagePath == null) || (domainModel.pagePathsWithDocUrlPaths.remove(leastSupportedPagePath) == null) )
+			return (leastSupportedPagePath != null);	// Another thread dropped it first, so check again.
+		numOfEvictedPagePaths.incrementAndGet();
+		return true;
 	}
 
 
 	/**
-	 * This method checks if we should continue running predictions using the MLA.
-	 * Since the MLA is still experimental, and it doesn't work on all domains, we take measures to stop running it, if it doesn't succeed.
-	 * It returns "true", either when we don't have reached a specific testing number, or when the MLA was successful for most of the previous cases.
-	 * It returns "false", when it still hasn't gathered sufficient data, or when the MLA failed to have a specific success-rate (which leads to "sleep-mode"), or if the MLA is already in "sleep-mode".
-	 * @return true/false
+	 * Compute the success rate of all the predictions, as follows: (<found docUrls> * 100.0) / <checked pageUrls>)
 	 */
-	public static synchronized boolean shouldRunPrediction()
+	public static double getAverageSuccessRate()
 	{
-		// Check if it's initial learning period, in which the MLA should not run until it reaches a good learning point.
-		if ( !mlaStarted ) {
-			if ( timesGatheredData.get() <= urlsToGatherBeforeStarting ) {	// If we are at the starting point.
-				latestSuccessBreakPoint = urlsToGatherBeforeStarting;
-				return false;
-			} else {	// If we are at the point about to start..
-				mlaStarted = true;
-				logger.info("Starting the MLA..");
-			}
-		}
+		int checkedPageUrls = pageUrlsCheckedWithMLA.get();
+		return ((checkedPageUrls > 0) ? (docUrlsFoundByMLA.get() * 100.0 / checkedPageUrls) : 0);
+	}
 
-		// If it's currently in sleepMode, check if it should restart.
-		if ( isInSleepMode ) {
-			if ( totalPagesReachedMLAStage.get() > endOfSleepNumOfUrls ) {
-				logger.debug("MLA's \"sleepMode\" is finished, it will now restart.");
-				isInSleepMode = false;
-				return true;
-			}
-			else	// Continue sleeping.
-				return false;
-		}
-		// Note that if it has never entered the sleepMode, the "endOfSleepNumOfUrls" will be 0.
 
-		// If we reach here, it means that we are not in the "LearningPeriod", nor in "SleepMode".
+	/**
+	 * This method checks if we should run a prediction for the given page, using the model of its domain.
+	 * It returns "false", when the domain has no known docUrl-paths for the path of the page, or when the MLA is in "sleep-mode" or disabled for this domain.
+	 * @param pageUrl
+	 * @param pageDomain
+	 * @param pageUrlView the view of the "pageUrl" (it may be null)
+	 * @return true/false
+	 */
+	public static boolean shouldRunPrediction(String pageUrl, String pageDomain, UrlView pageUrlView)
+	{
+		DomainModel domainModel = domainModels.getIfPresent(pageDomain);
+		if ( (domainModel == null) || disabledDomains.contains(pageDomain) )
+			return false;
 
-		long nextBreakPointForSuccessRate = latestSuccessBreakPoint + leastNumOfUrlsToCheckBeforeAccuracyTest + endOfSleepNumOfUrls;
-		//logger.debug("nextBreakPointForSuccessRate = " + nextBreakPointForSuccessRate);	// DEBUG!
+		// If it's currently in sleepMode, check if it should restart.
+		int numOfVisitedPages = domainModel.numOfVisitedPages.incrementAndGet();
+		if ( numOfVisitedPages <= domainModel.endOfSleepNumOfPages )
+			return false;	// Continue sleeping.
 
-		// Check if we should immediately continue running the MLA, or it's time to decide depending on the success-rate.
-		if ( totalPagesReachedMLAStage.get() < nextBreakPointForSuccessRate )
-			return true;	// Always continue in this case, as we don't have enough success-rate-data to decide otherwise.
+		String pagePath = UrlUtils.getPathStr(pageUrl, pageUrlView);
+		return ((pagePath != null) && (getPredictableDocUrlPaths(domainModel, pagePath) != null));
+	}
 
-		// Else decide depending on successPercentage for all of the urls which reached the "PageCrawler.visit()" in this round.
-		double curSuccessRate = getCurrentSuccessRate();
-		logger.debug("Breakpoint (urlNum=" + nextBreakPointForSuccessRate + ") reached. Current round's success rate of MLA = " + PublicationsRetriever.df.format(curSuccessRate) + "%");
-		successRateList.add(curSuccessRate);	// Add it to the list in order to calculate the average in the end. It accepts duplicate values, which is important for the calculation of the average value: (10+10+20)/3 != (10+20)/2
 
-		if ( curSuccessRate >= leastSuccessPercentageForMLA ) {    // After the safe-period, continue as long as the success-rate is high.
-			endOfSleepNumOfUrls = 0;	// Stop keeping sleep-data.
-			latestSuccessBreakPoint = totalPagesReachedMLAStage.get();	// The latest number for which MLA was tested against.
-			return true;
+	/**
+	 * @return the docUrl-paths which are supported enough to be tried for the given pagePath, ordered by their support, or null, if there are none.
+	 */
+	private static List<DocUrlPath> getPredictableDocUrlPaths(DomainModel domainModel, String pagePath)
+	{
+		ConcurrentHashMap<String, DocUrlPath> docUrlPaths = domainModel.pagePathsWithDocUrlPaths.get(pagePath);
+		if ( docUrlPaths == null )
+			return null;
+		List<DocUrlPath> predictableDocUrlPaths = null;
+		for ( DocUrlPath docUrlPath : docUrlPaths.values() ) {
+			if ( docUrlPath.support.get() >= leastSupportToPredict ) {
+				if ( predictableDocUrlPaths == null )
+					predictableDocUrlPaths = new ArrayList<>(docUrlPaths.size());
+				predictableDocUrlPaths.add(docUrlPath);
+			}
 		}
-
-		// Else enter "sleep-mode" and update the variables.
-		logger.debug("MLA's success-rate is lower than the satisfying one (" + leastSuccessPercentageForMLA + "). Entering \"sleep-mode\", but continuing to gather ML-data...");
-		endOfSleepNumOfUrls = totalPagesReachedMLAStage.get() + urlsToWaitUntilRestartMLA;	// Update num of urls to reach before the "sleep period" ends.
-		latestMLADocUrlsFound = docUrlsFoundByMLA.get();	// Keep latest num of docUrls found by the MLA, in order to calculate the success rate only for up-to-date data.
-		latestUrlsMLAChecked = pageUrlsCheckedWithMLA.get();	// Keep latest num of urls checked by MLA...
-		latestSuccessBreakPoint ++;	// Stop keeping successBreakPoint as we get in "sleepMode".
-		isInSleepMode = true;
-		return false;
+		if ( predictableDocUrlPaths != null )
+			predictableDocUrlPaths.sort(Comparator.comparingInt((DocUrlPath docUrlPath) -> docUrlPath.support.get()).reversed());
+		return predictableDocUrlPaths;
 	}
 
 
@@ -248,36 +256,36 @@ public class MachineLearning
 	 * @param sourceUrl
 	 * @param pageUrl
 	 * @param pageDomain
+	 * @param pageUrlView the view of the "pageUrl", which was created when the page was visited (it may be null)
 	 * @return true / false
 	 */
-	public static boolean predictInternalDocUrl(String urlId, String sourceUrl, String pageUrl, String pageDomain, HashMap<String, String> pageLinksWithStructure)
+	public static boolean predictInternalDocUrl(String urlId, String sourceUrl, String pageUrl, String pageDomain, UrlView pageUrlView, HashMap<String, ScoredLink> pageLinksWithStructure)
 	{
-		if ( domainsBlockedFromMLA.contains(pageDomain) ) {    // Check if this domain is not compatible with the MLA.
+		DomainModel domainModel = domainModels.getIfPresent(pageDomain);
+		if ( (domainModel == null) || disabledDomains.contains(pageDomain) || domainsBlockedFromMLA.contains(pageDomain) ) {    // Check if this domain is not compatible with the MLA.
 			logger.debug("Avoiding the MLA-prediction for incompatible domain: \"" + pageDomain + "\".");
 			return false;
 		}
 
-		Matcher urlMatcher = UrlUtils.getUrlMatcher(pageUrl);
-		if ( urlMatcher == null )
-			return false;
-
-		String pagePath = UrlUtils.getPathStr(pageUrl, urlMatcher);
+		String pagePath = UrlUtils.getPathStr(pageUrl, pageUrlView);
 		if ( pagePath == null )
 			return false;
 
 		// If the path can be handled, then go check for previous successful docUrls' paths.
-		Collection<String> knownDocUrlPaths = successPathsHashMultiMap.get(pagePath);	// Get all available docUrlPaths for this docPagePath, to try them along with current ID. This returns an empty collection, if the pagePath is not there.
-		int pathsSize = knownDocUrlPaths.size();
-		if ( pathsSize == 0 )	// If this path cannot be handled by the MLA (no known data in our model), then return.
+		ConcurrentHashMap<String, DocUrlPath> knownDocUrlPaths = domainModel.pagePathsWithDocUrlPaths.get(pagePath);
+		if ( knownDocUrlPaths == null )	// If this path cannot be handled by the MLA (no known data in our model), then return.
 			return false;
-		else if ( pathsSize > 5 ) {	// Too many docPaths for this pagePath, means that there's probably only one pagePath we get for this domain (paths are not mapped to domains, so we can't actually check).
-			logger.warn("Domain: \"" + pageDomain + "\" was blocked from being accessed again by the MLA, after retrieving a proved-to-be incompatible pagePath (having more than 5 possible docUrl-paths).");
-			domainsBlockedFromMLA.add(pageDomain);
-			successPathsHashMultiMap.removeAll(pagePath);	// This domain was blocked, remove current non-needed paths-data.
+		else if ( knownDocUrlPaths.size() > maxDocUrlPathsPerPagePath ) {
+			logger.warn("Domain: \"" + pageDomain + "\" was blocked from being accessed again by the MLA, after retrieving a proved-to-be incompatible pagePath (having more than " + maxDocUrlPathsPerPagePath + " possible docUrl-paths).");
+			disableDomain(pageDomain);
 			return false;
 		}
 
-		String docIdStr = UrlUtils.getDocIdStr(pageUrl, urlMatcher);
+		List<DocUrlPath> predictableDocUrlPaths = getPredictableDocUrlPaths(domainModel, pagePath);
+		if ( predictableDocUrlPaths == null )
+			return false;
+
+		String docIdStr = UrlUtils.getDocIdStr(pageUrl, pageUrlView);
 		if ( docIdStr == null )
 			return false;
 		else if ( UrlTypeChecker.PLAIN_PAGE_EXTENSION_FILTER.matcher(docIdStr.toLowerCase()).matches() )
@@ -286,18 +294,19 @@ public class MachineLearning
 		}
 
 		MachineLearning.pageUrlsCheckedWithMLA.incrementAndGet();
+		int numOfRoundPredictions = domainModel.numOfRoundPredictions.incrementAndGet();
 
 		String predictedDocUrl;
 		String extension;
 
 		StringBuilder strB = new StringBuilder(300);	// Initialize it here each time for thread-safety.
 
-		for ( String knownDocUrlPath : knownDocUrlPaths )
+		for ( DocUrlPath knownDocUrlPath : predictableDocUrlPaths )	// The most supported docUrl-paths are tried first.
 		{
 			// For every available docPath for this domain construct the expected docLink..
-			strB.append(knownDocUrlPath).append(docIdStr);
+			strB.append(knownDocUrlPath.path).append(docIdStr);
 
-			if ( (extension = successDocPathsExtensionHashMap.get(knownDocUrlPath)) != null )	// Check if a file-extension is registered for this docPath.
+			if ( (extension = knownDocUrlPath.extension) != null )	// Check if a file-extension is registered for this docPath.
 				strB.append(extension);
 
 			predictedDocUrl = strB.toString();
@@ -321,7 +330,7 @@ public class MachineLearning
 			if ( originalIdUrlMimeTypeTriple != null ) {	// If we got into an already-found docUrl, log it and return true.
 				logger.info("MachineLearningAlgorithm got a hit for pageUrl: \""+ pageUrl + "\"! Resulted (already found before) docUrl was: \"" + predictedDocUrl + "\"" );	// DEBUG!
 				ConnSupportUtils.handleReCrossedTargetUrl(urlId, sourceUrl, pageUrl, predictedDocUrl, originalIdUrlMimeTypeTriple, false);
-				MachineLearning.docUrlsFoundByMLA.incrementAndGet();
+				recordHit(domainModel, pageDomain, numOfRoundPredictions);
 				return true;
 			}
 
@@ -329,7 +338,7 @@ public class MachineLearning
 				logger.debug("Going to connect & check predictedDocUrl: \"" + predictedDocUrl +"\", made out from pageUrl: \"" + pageUrl + "\"");	// DEBUG!
 				if ( HttpConnUtils.connectAndCheckMimeType(urlId, sourceUrl, pageUrl, predictedDocUrl, null, false, true) ) {
 					logger.info("MachineLearningAlgorithm got a hit for pageUrl: \""+ pageUrl + "\"! Resulted docUrl was: \"" + predictedDocUrl + "\"" );	// DEBUG!
-					MachineLearning.docUrlsFoundByMLA.incrementAndGet();
+					recordHit(domainModel, pageDomain, numOfRoundPredictions);
 					return true;	// Note that we have already added it in the output links inside "connectAndCheckMimeType()".
 				}
 				logger.debug("The predictedDocUrl was not a valid docUrl: \"" + predictedDocUrl + "\"");
@@ -339,50 +348,92 @@ public class MachineLearning
 		}// end for-loop
 
 		// If we reach here, it means that all of the predictions have failed.
-		if ( ConnSupportUtils.countAndBlockDomainAfterTimes(domainsBlockedFromMLA, timesDomainsFailedInMLA, pageDomain, timesToFailBeforeBlockedFromMLA, false) ) {
-			logger.warn("Domain: \"" + pageDomain + "\" was blocked from being accessed again by the MLA, after proved to be incompatible " + timesToFailBeforeBlockedFromMLA + " times.");
-
-			// This domain was blocked, remove current non-needed paths-data. Note that we can't remove all of this domain's paths, since there is no mapping between a domain and its paths.
-			for ( String docPath : successPathsHashMultiMap.get(pagePath) ) {
-                if ( docPath != null )
-                    successDocPathsExtensionHashMap.remove(docPath);
-            }
-			successPathsHashMultiMap.removeAll(pagePath);
-		}
+		checkDomainAccuracy(domainModel, pageDomain, numOfRoundPredictions);
 		return false;	// We can't find its docUrl.. so we return false and continue by crawling this page.
 	}
 
 
-	public static double getAverageSuccessRate()
+	private static void recordHit(DomainModel domainModel, String pageDomain, int numOfRoundPredictions)
 	{
-		int sizeOfList = successRateList.size();
-		if ( sizeOfList == 0 )
-			return getCurrentSuccessRate();	// This is the "total success rate" now.
+		MachineLearning.docUrlsFoundByMLA.incrementAndGet();
+		domainModel.numOfRoundHits.incrementAndGet();
+		checkDomainAccuracy(domainModel, pageDomain, numOfRoundPredictions);
+	}
 
-		double sumOfSuccessRates = 0.0;
 
-		Collections.sort(successRateList);	//  This is needed as the precision of doubles might work against our "sum" if larger values are added before smaller ones, as noted here: https://stackoverflow.com/a/10516379
-		for ( Double curSuccessRate : successRateList )
-			sumOfSuccessRates += curSuccessRate;
+	/**
+	 * This method decides, at the end of each round of predictions of a domain, whether the MLA should continue running for it, depending on its success-rate in this round.
+	 * Only the thread which made the last prediction of the round gets to decide, so no lock is needed.
+	 * On a low success-rate the domain enters "sleep-mode", while it continues to gather ML-data. After some consecutive low rounds, the MLA is disabled for it.
+	 */
+	private static void checkDomainAccuracy(DomainModel domainModel, String pageDomain, int numOfRoundPredictions)
+	{
+		if ( numOfRoundPredictions != predictionsBeforeAccuracyTest )
+			return;
 
-		return (sumOfSuccessRates / sizeOfList);
+		double roundSuccessRate = (domainModel.numOfRoundHits.getAndSet(0) * 100.0 / numOfRoundPredictions);
+		domainModel.numOfRoundPredictions.set(0);	// Start the next round. The predictions which happened concurrently, are not counted.
+		if ( roundSuccessRate >= leastSuccessPercentageForMLA ) {	// Continue as long as the success-rate is high.
+			domainModel.numOfFailedRounds.set(0);
+			return;
+		}
+
+		if ( domainModel.numOfFailedRounds.incrementAndGet() >= failedRoundsBeforeDisabled ) {
+			logger.warn("Domain: \"" + pageDomain + "\" was blocked from being accessed again by the MLA, after its success-rate was lower than " + leastSuccessPercentageForMLA + "% for " + failedRoundsBeforeDisabled + " rounds.");
+			disableDomain(pageDomain);
+			return;
+		}
+		logger.debug("The MLA's success-rate for domain \"" + pageDomain + "\" was " + roundSuccessRate + "%, which is lower than the satisfying one (" + leastSuccessPercentageForMLA + "). Entering \"sleep-mode\" for this domain, but continuing to gather ML-data...");
+		domainModel.endOfSleepNumOfPages = (domainModel.numOfVisitedPages.get() + pagesToWaitUntilRestartMLA);	// Update num of pages to reach before the "sleep period" ends.
+	}
+
+
+	private static void disableDomain(String pageDomain)
+	{
+		if ( !disabledDomains.add(pageDomain) )
+			return;	// Already disabled.
+		domainModels.invalidate(pageDomain);	// Its model is not needed anymore, as the domain will not gather data again.
+		numOfDomainsDisabledFromMLA.incrementAndGet();
+	}
+
+
+	/**
+	 * @return true, if the given pagePath of the given domain has led to docUrls before.
+	 */
+	public static boolean hasSuccessPath(String domainStr, String pagePath)
+	{
+		DomainModel domainModel = domainModels.getIfPresent(domainStr);
+		return ((domainModel != null) && domainModel.pagePathsWithDocUrlPaths.containsKey(pagePath));
+	}
+
+
+	public static long getNumOfDomainModels()
+	{
+		return domainModels.size();
+	}
+
+
+	public static void clearModels()
+	{
+		domainModels.invalidateAll();
+		disabledDomains.clear();
 	}
 
 
 	/**
-	 * Print the docPage-paths and their docUrl-paths.
+	 * Print the docPage-paths and their docUrl-paths, for each domain.
 	 * */
 	public static void printGatheredData()
 	{
-		logger.debug("Here is the MLA data gathered throughout the program's execution:");
-		Set<String> docPagePaths = successPathsHashMultiMap.keySet();
-		logger.debug("Data was gathered and accepted for " + docPagePaths.size() + " docPagePaths:");
-		for ( String docPagePath : docPagePaths )
+		logger.debug("Here is the MLA data gathered throughout the program's execution, for " + domainModels.size() + " domains (the MLA was disabled for " + disabledDomains.size() + " other domains):");
+		for ( Map.Entry<String, DomainModel> domainWithModel : domainModels.asMap().entrySet() )
 		{
-			logger.debug("\nDocPagePath: " + docPagePath + "\n\tdocUrlPaths:");
-			for ( String docUrlPath : successPathsHashMultiMap.get(docPagePath) )
+			logger.debug("\nDomain: " + domainWithModel.getKey());
+			for ( Map.Entry<String, ConcurrentHashMap<String, DocUrlPath>> docPagePathWithDocUrlPaths : domainWithModel.getValue().pagePathsWithDocUrlPaths.entrySet() )
 			{
-				logger.debug("\tDocUrlPath: " + docUrlPath);
+				logger.debug("\tDocPagePath: " + docPagePathWithDocUrlPaths.getKey() + "\n\t\tdocUrlPaths:");
+				for ( DocUrlPath docUrlPath : docPagePathWithDocUrlPaths.getValue().values() )
+					logger.debug("\t\tDocUrlPath: " + docUrlPath.path + " (support: " + docUrlPath.support.get() + ")");
 			}
 		}
 	}
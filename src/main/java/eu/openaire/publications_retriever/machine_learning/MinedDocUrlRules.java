@@ -0,0 +1,273 @@
+package eu.openaire.publications_retriever.machine_learning;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class holds the pageUrl-to-docUrl rules, which were mined from the outputs of previous runs by the "DocUrlRuleMiner".
+ * Each rule belongs to a domain and it has the "shape" of the pageUrls (e.g. "/article/view/{1}") and the "template" of their docUrls (e.g. "/article/download/{1}").
+ * The rules are loaded at startup (see the "-minedRulesFile" argument) and they are tried before visiting a pageUrl (see "RepositoryPlatforms.checkDerivedDocUrl()"), so the knowledge of the previous runs is available from the first record of a domain.
+ * This is the cross-run version of the per-domain models of the "MachineLearning", which have to gather data in each run, before making any prediction.
+ * @author Lampros Smyrnaios
+ */
+public class MinedDocUrlRules
+{
+	private static final Logger logger = LoggerFactory.getLogger(MinedDocUrlRules.class);
+
+	/**
+	 * @param domain the domain of the pageUrls (as given by "UrlUtils.getDomainStr()").
+	 * @param pageShape the part of the pageUrl after its host, with each token which contains a digit replaced by a numbered placeholder (e.g. "/article/view/{1}").
+	 * @param docTemplate the part of the docUrl after its host, or the whole docUrl, if it is in another host, with the placeholders of the "pageShape" (e.g. "/article/download/{1}").
+	 * @param support the number of records of the domain which gave this rule.
+	 * @param precision the percentage of the records matching the "pageShape", which gave this rule.
+	 */
+	public record MinedRule(String domain, String pageShape, String docTemplate, int support, double precision) {}
+
+	private record CompiledRule(Pattern pageShapePattern, String docTemplate) {}
+
+	private static final ConcurrentHashMap<String, List<CompiledRule>> domainsWithRules = new ConcurrentHashMap<>();
+
+	private static final Pattern PLACEHOLDER = Pattern.compile("\\{(\\d+)}");
+	private static final String VARIABLE_TOKEN_REGEX = "([^/?&=;.#]*\\d[^/?&=;.#]*)";
+
+	public static int numOfLoadedRules = 0;
+
+
+	/**
+	 * This method loads the rules of the given file, which was written by the "DocUrlRuleMiner".
+	 * The rules of each domain are kept in the order of the file, where the ones with the higher support come first.
+	 * @param rulesFile
+	 * @return the number of loaded rules
+	 * @throws IOException
+	 */
+	public static int loadRules(Path rulesFile) throws IOException
+	{
+		int numOfRules = 0;
+		try ( BufferedReader reader = Files.newBufferedReader(rulesFile, StandardCharsets.UTF_8) ) {
+			String line;
+			while ( (line = reader.readLine()) != null ) {
+				if ( line.isBlank() || line.startsWith("#") )
+					continue;
+				String[] parts = line.split("\t");
+				try {
+					if ( parts.length != 5 )
+						throw new IllegalArgumentException("Invalid form.");
+					addRule(new MinedRule(parts[0], parts[1], parts[2], Integer.parseInt(parts[3]), Double.parseDouble(parts[4])));
+					numOfRules ++;
+				} catch (IllegalArgumentException iae) {	// This includes the "NumberFormatException" and the "PatternSyntaxException".
+					logger.error("Invalid mined-rule: \"" + line + "\" (" + iae.getMessage() + ")");
+				}
+			}
+		}
+		numOfLoadedRules += numOfRules;
+		logger.info("Loaded " + numOfRules + " mined pageUrl-to-docUrl rules from the file: " + rulesFile);
+		return numOfRules;
+	}
+
+
+	/**
+	 * This method adds a rule, after the existing rules of its domain. It can be used by external services as well.
+	 * @param minedRule
+	 */
+	public static void addRule(MinedRule minedRule)
+	{
+		if ( minedRule.domain().isEmpty() || minedRule.pageShape().isEmpty() || minedRule.docTemplate().isEmpty() )
+			throw new IllegalArgumentException("Empty part.");
+		domainsWithRules.computeIfAbsent(minedRule.domain(), k -> new CopyOnWriteArrayList<>())
+				.add(new CompiledRule(getShapePattern(minedRule.pageShape()), minedRule.docTemplate()));
+	}
+
+
+	/**
+	 * @return the regex which matches the pageUrls of the given shape, with one capturing-group for each placeholder.
+	 */
+	private static Pattern getShapePattern(String pageShape)
+	{
+		StringBuilder regex = new StringBuilder(pageShape.length() * 2);
+		Matcher matcher = PLACEHOLDER.matcher(pageShape);
+		int literalStart = 0, numOfPlaceholders = 0;
+		while ( matcher.find() ) {
+			if ( Integer.parseInt(matcher.group(1)) != ++numOfPlaceholders )
+				throw new IllegalArgumentException("The placeholders of the pageShape are not in order.");
+			if ( matcher.start() > literalStart )
+				regex.append(Pattern.quote(pageShape.substring(literalStart, matcher.start())));
+			regex.append(VARIABLE_TOKEN_REGEX);
+			literalStart = matcher.end();
+		}
+		if ( literalStart < pageShape.length() )
+			regex.append(Pattern.quote(pageShape.substring(literalStart)));
+		return Pattern.compile(regex.toString());
+	}
+
+
+	/**
+	 * @param pageUrl
+	 * @param pageDomain
+	 * @return the docUrl given by the first rule of the domain which matches the pageUrl, or null, if there is none.
+	 */
+	public static String getDocUrl(String pageUrl, String pageDomain)
+	{
+		if ( domainsWithRules.isEmpty() )
+			return null;
+		List<CompiledRule> rules = domainsWithRules.get(pageDomain);
+		if ( rules == null )
+			return null;
+
+		int restStart = getRestStart(pageUrl);
+		if ( restStart == -1 )
+			return null;
+		String rest = getNormalizedRest(pageUrl, restStart);
+		for ( CompiledRule rule : rules ) {
+			Matcher matcher = rule.pageShapePattern.matcher(rest);
+			if ( !matcher.matches() )
+				continue;
+			StringBuilder docUrl = new StringBuilder(pageUrl.length() + 40);
+			if ( !rule.docTemplate.startsWith("http") )
+				docUrl.append(pageUrl, 0, restStart);	// The docUrl is in the same host.
+			Matcher placeholderMatcher = PLACEHOLDER.matcher(rule.docTemplate);
+			int literalStart = 0;
+			while ( placeholderMatcher.find() ) {
+				int groupNum = Integer.parseInt(placeholderMatcher.group(1));
+				if ( groupNum > matcher.groupCount() )
+					return null;	// An invalid rule.
+				docUrl.append(rule.docTemplate, literalStart, placeholderMatcher.start()).append(matcher.group(groupNum));
+				literalStart = placeholderMatcher.end();
+			}
+			return docUrl.append(rule.docTemplate, literalStart, rule.docTemplate.length()).toString();
+		}
+		return null;
+	}
+
+
+	/**
+	 * @return the index where the part after the "scheme://host[:port]" of the url starts, or -1, if the url has no scheme.
+	 */
+	static int getRestStart(String url)
+	{
+		int schemeEnd = url.indexOf("://");
+		if ( schemeEnd == -1 )
+			return -1;
+		int length = url.length();
+		for ( int i = (schemeEnd +3); i < length; i++ ) {
+			char c = url.charAt(i);
+			if ( (c == '/') || (c == '?') || (c == '#') )
+				return i;
+		}
+		return length;
+	}
+
+
+	/**
+	 * @return the part of the url after its host, without its fragment and without an ending slash.
+	 */
+	static String getNormalizedRest(String url, int restStart)
+	{
+		int restEnd = url.indexOf('#', restStart);
+		if ( restEnd == -1 )
+			restEnd = url.length();
+		if ( (restEnd > restStart) && (url.charAt(restEnd -1) == '/') )
+			restEnd--;
+		return url.substring(restStart, restEnd);
+	}
+
+
+	/**
+	 * This method replaces each token of the given part of a pageUrl, which contains a digit, with a numbered placeholder.
+	 * The tokens are separated by the chars: "/?&=;.".
+	 * @param pageRest
+	 * @param variables the values of the replaced tokens are added here, in order.
+	 * @return the shape, or null, if the part contains braces, which would be confused with the placeholders.
+	 */
+	static String getShape(String pageRest, List<String> variables)
+	{
+		if ( (pageRest.indexOf('{') != -1) || (pageRest.indexOf('}') != -1) )
+			return null;
+		StringBuilder shape = new StringBuilder(pageRest.length());
+		for ( String token : tokenize(pageRest) ) {
+			if ( containsDigit(token) ) {
+				variables.add(token);
+				shape.append('{').append(variables.size()).append('}');
+			} else
+				shape.append(token);
+		}
+		return shape.toString();
+	}
+
+
+	/**
+	 * This method replaces each token of the given part of a docUrl, which is equal to a variable of its pageUrl, with the placeholder of that variable.
+	 * @param docRest
+	 * @param variables
+	 * @return the template, or null, if the docUrl has a token with a digit, which does not come from the pageUrl, so the docUrl cannot be derived from it.
+	 */
+	static String getTemplate(String docRest, List<String> variables)
+	{
+		if ( (docRest.indexOf('{') != -1) || (docRest.indexOf('}') != -1) )
+			return null;
+		StringBuilder template = new StringBuilder(docRest.length());
+		for ( String token : tokenize(docRest) ) {
+			int variableIndex = variables.indexOf(token);
+			if ( variableIndex != -1 )
+				template.append('{').append(variableIndex +1).append('}');
+			else if ( containsDigit(token) )
+				return null;
+			else
+				template.append(token);
+		}
+		return template.toString();
+	}
+
+
+	/**
+	 * @return the tokens and the separators of the given string, in order.
+	 */
+	private static List<String> tokenize(String str)
+	{
+		List<String> tokens = new ArrayList<>();
+		int tokenStart = 0, length = str.length();
+		for ( int i = 0; i < length; i++ ) {
+			char c = str.charAt(i);
+			if ( (c == '/') || (c == '?') || (c == '&') || (c == '=') || (c == ';') || (c == '.') ) {
+				if ( i > tokenStart )
+					tokens.add(str.substring(tokenStart, i));
+				tokens.add(String.valueOf(c));
+				tokenStart = (i +1);
+			}
+		}
+		if ( tokenStart < length )
+			tokens.add(str.substring(tokenStart));
+		return tokens;
+	}
+
+
+	private static boolean containsDigit(String token)
+	{
+		for ( int i = 0; i < token.length(); i++ ) {
+			char c = token.charAt(i);
+			if ( (c >= '0') && (c <= '9') )
+				return true;
+		}
+		return false;
+	}
+
+
+	public static void clearRules()
+	{
+		domainsWithRules.clear();
+		numOfLoadedRules = 0;
+	}
+
+}
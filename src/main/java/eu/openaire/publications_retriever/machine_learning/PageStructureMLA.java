@@ -1,23 +1,24 @@
 package eu.openaire.publications_retriever.machine_learning;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.SetMultimap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import eu.openaire.publications_retriever.crawler.LinkElement;
 import eu.openaire.publications_retriever.crawler.PageCrawler;
 import eu.openaire.publications_retriever.exceptions.DocLinkFoundException;
 import eu.openaire.publications_retriever.exceptions.DocLinkInvalidException;
 import eu.openaire.publications_retriever.util.args.ArgsUtils;
-import eu.openaire.publications_retriever.util.file.FileUtils;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Set;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * This class predicts the docLink of a page, by comparing the structure of its link-elements with the structures of the docLinks previously found in pages of the same path.
+ * The structure of an element (the tag and class of itself and of up to 50 of its ancestors) is kept as a 64-bit fingerprint, which is computed straight from the chars of the tags and classes, without building any string.
+ * The fingerprints are kept in a bounded cache, keyed by the 64-bit hash of the page-path, with the least-recently-used paths being evicted first.
  * @author Lampros Smyrnaios
  */
 public class PageStructureMLA {
@@ -27,42 +28,114 @@ public class PageStructureMLA {
 
 	public static AtomicInteger structurePredictedDocLinks = new AtomicInteger(0);
 	public static AtomicInteger structureValidatedDocLinks = new AtomicInteger(0);
-	public static final SetMultimap<String, String> pagePathWithDocOrDatasetUrlStructure = Multimaps.synchronizedSetMultimap(HashMultimap.create());	// Holds multiple values for any key, if a docPagePath(key) has many different docUrlPaths(values) for doc links.
+
+	private static final int maxNumOfStoredPagePaths = 200_000;	// Each entry takes about 100 bytes, so the cache takes up to ~20 MB.
+
+	private static final int maxNumOfStructuresPerPagePath = 16;	// A page-path usually has only 1 or 2 different structures for its docLinks.
+
+	// Holds multiple fingerprints for any page-path, if a docPagePath has many different structures for its doc links. The reads are lock-free and there is no "synchronized" block, which would pin the virtual-threads.
+	public static final Cache<Long, long[]> pagePathHashesWithDocOrDatasetUrlStructures = CacheBuilder.newBuilder().maximumSize(maxNumOfStoredPagePaths).build();
 
 	private static final int NUM_ELEMENTS_IN_STRUCTURE = 50;
 
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
 
-	public static void addStructureOfDocUrlInMap(String pageUrl, String docLinkStructure)
+
+	public static void addStructureOfDocUrlInMap(String pageUrl, long docLinkStructure)
 	{
 		String pagePath = UrlUtils.getPathStr(pageUrl, null);
-		if ( pagePath != null )
-			pagePathWithDocOrDatasetUrlStructure.put(pagePath, docLinkStructure);
+		if ( pagePath == null )
+			return;
+
+		pagePathHashesWithDocOrDatasetUrlStructures.asMap().merge(getHash(pagePath), new long[] {docLinkStructure}, (storedStructures, newStructure) -> {
+			for ( long structure : storedStructures )
+				if ( structure == docLinkStructure )
+					return storedStructures;	// Already stored.
+			if ( storedStructures.length >= maxNumOfStructuresPerPagePath )
+				return storedStructures;
+			long[] structures = Arrays.copyOf(storedStructures, (storedStructures.length +1));	// The arrays are never modified after they are stored, so the readers need no lock.
+			structures[storedStructures.length] = docLinkStructure;
+			return structures;
+		});
 	}
 
 
 	/**
-	 * This method returns a list of Strings, containing the tag + class of each "step" of the page structure.
+	 * This method returns the fingerprint of the tag + class of each "step" of the page structure, from the given element up to its 50th ancestor.
 	 * We need the class, along the tag, because the pdf-link may be inside a list and having the same "tag"-structure as another non-pdf link.
+	 * Two elements get the same fingerprint when their "tag_class"-lines (one line for each step) are the same.
 	 * */
-	public static String getPageTagAndClassStructureForElement(Element element)
+	public static long getStructureFingerprint(LinkElement element)
 	{
-		final StringBuilder stringBuilder = new StringBuilder(1000);
+		long hash = FNV_OFFSET_BASIS;
 		int elementsCount = 0;
 		do {
 			// Make sure the "tag" and "class" are "trimmed", in order to avoid mismatch by future addition or removal of fault spaces.
-			stringBuilder.append(element.tagName().trim());
-			String className = element.className().trim();
-			if ( !className.isEmpty() )	// The "class" may not exist for some elements.
-				stringBuilder.append("_").append(className);
-			stringBuilder.append(FileUtils.endOfLine);
+			hash = hashTrimmed(hash, element.tagName());
+			String className = element.className();
+			if ( getTrimmedStart(className) < className.length() ) {	// The "class" may not exist for some elements.
+				hash = ((hash ^ '_') * FNV_PRIME);
+				hash = hashTrimmed(hash, className);
+			}
+			hash = ((hash ^ '\n') * FNV_PRIME);	// The end of this step.
 			elementsCount ++;
 		} while ( ((elementsCount <= NUM_ELEMENTS_IN_STRUCTURE) && (element = element.parent()) != null) );	// Climb up to the ancestor up to 50 elements.
 
-		return stringBuilder.toString();
+		return mix(hash);
+	}
+
+
+	/**
+	 * This method adds the chars of the given string to the "FNV-1a"-hash, skipping its leading and trailing whitespace, like the "String.trim()" does.
+	 */
+	private static long hashTrimmed(long hash, String str)
+	{
+		int start = getTrimmedStart(str), end = str.length();
+		while ( (end > start) && (str.charAt(end -1) <= ' ') )
+			end--;
+		return hashChars(hash, str, start, end);
+	}
+
+
+	private static int getTrimmedStart(String str)
+	{
+		int start = 0, length = str.length();
+		while ( (start < length) && (str.charAt(start) <= ' ') )
+			start++;
+		return start;
+	}
+
+
+	private static long hashChars(long hash, String str, int start, int end)
+	{
+		for ( int i = start; i < end; i++ )
+			hash = ((hash ^ str.charAt(i)) * FNV_PRIME);
+		return hash;
+	}
+
+
+	/**
+	 * The final mixing of the "MurmurHash3", which spreads the bits of the "FNV-1a"-hash, as its lower bits are used by the hash-tables.
+	 */
+	private static long mix(long hash)
+	{
+		hash ^= (hash >>> 33);
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= (hash >>> 33);
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= (hash >>> 33);
+		return hash;
 	}
 
 
-	public static void predictDocOrDatasetLink(String pageUrl, Elements elementLinksOnPage) throws DocLinkFoundException, DocLinkInvalidException
+	public static long getHash(String str)
+	{
+		return mix(hashChars(FNV_OFFSET_BASIS, str, 0, str.length()));
+	}
+
+
+	public static void predictDocOrDatasetLink(String pageUrl, List<LinkElement> elementLinksOnPage) throws DocLinkFoundException, DocLinkInvalidException
 	{
 		// Before trying to extract the internal-links and evaluate them, let's check whether we have any docUrl-structure-info for this page-path.
 		// If we do, then let's try to locate the docUrl in this page, based on previous location-data.
@@ -70,14 +143,14 @@ public class PageStructureMLA {
 		if ( pagePath == null )
 			return;
 
-		Set<String> storedStructuresForPagePath = pagePathWithDocOrDatasetUrlStructure.get(pagePath);
-		if ( storedStructuresForPagePath.isEmpty() )	// No structures have been stored for previously found docOrDatasetUrls of this page-path.
+		long[] storedStructuresForPagePath = pagePathHashesWithDocOrDatasetUrlStructures.getIfPresent(getHash(pagePath));
+		if ( storedStructuresForPagePath == null )	// No structures have been stored for previously found docOrDatasetUrls of this page-path.
 			return;
 
 		String docLink;
-		for ( Element el : elementLinksOnPage ) {	// These elements are only link-related, as selected by Jsoup.
-			String structure = getPageTagAndClassStructureForElement(el);
-			if ( storedStructuresForPagePath.contains(structure) )
+		for ( LinkElement el : elementLinksOnPage ) {	// These elements are only link-related.
+			long structure = getStructureFingerprint(el);
+			if ( containsStructure(storedStructuresForPagePath, structure) )
 			{
 				if ( logger.isTraceEnabled() )
 					logger.trace("Got a hit for pagePath \"" + pagePath + "\"!\n" + el);
@@ -99,4 +172,13 @@ public class PageStructureMLA {
 		// Continue checking the links.
 	}
 
+
+	private static boolean containsStructure(long[] structures, long structure)
+	{
+		for ( long storedStructure : structures )
+			if ( storedStructure == structure )
+				return true;
+		return false;
+	}
+
 }
@@ -1,6 +1,8 @@
 package eu.openaire.publications_retriever.util.args;
 
 
+import eu.openaire.publications_retriever.machine_learning.MinedDocUrlRules;
+import eu.openaire.publications_retriever.util.diagnostics.PinningDiagnostics;
 import eu.openaire.publications_retriever.util.file.FileUtils;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
 import org.apache.commons.lang3.Strings;
@@ -8,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.Arrays;
 
 
@@ -42,7 +45,7 @@ public class ArgsUtils {
 
 	public static String targetUrlType = "docOrDatasetUrl";	// docUrl, documentUrl, docOrDatasetUrl ; this is set by the args-parser, and it's used only when outputting data, not inside the program.
 
-	private static final String usageMessage = "\nUsage: java -jar publications_retriever-<VERSION>.jar -retrieveDataType <dataType: document | dataset | all> -inputFileFullPath inputFile [-downloadDocFiles(OPTIONAL) | -downloadJustHtmlFiles(OPTIONAL)] -fileNameType(OPTIONAL) <nameType: originalName | idName | numberName> -firstFileNum(OPTIONAL) 'num' -docFilesStorage(OPTIONAL) 'storageDir' -inputDataUrl(OPTIONAL) 'inputUrl' < 'input' > 'output'";
+	private static final String usageMessage = "\nUsage: java -jar publications_retriever-<VERSION>.jar -retrieveDataType <dataType: document | dataset | all> -inputFileFullPath inputFile [-downloadDocFiles(OPTIONAL) | -downloadJustHtmlFiles(OPTIONAL)] -fileNameType(OPTIONAL) <nameType: originalName | idName | numberName> -firstFileNum(OPTIONAL) 'num' -docFilesStorage(OPTIONAL) 'storageDir' -inputDataUrl(OPTIONAL) 'inputUrl' -minedRulesFile(OPTIONAL) 'rulesFile' -pinningDiagnostics(OPTIONAL) < 'input' > 'output'";
 
 	private static boolean firstNumGiven = false;
 
@@ -59,8 +62,8 @@ public class ArgsUtils {
 
 	public static void parseArgs(String[] mainArgs)
 	{
-		if ( mainArgs.length > 12 ) {
-			String errMessage = "\"PublicationsRetriever\" expected only up to 12 arguments, while you gave: " + mainArgs.length + "!" + usageMessage;
+		if ( mainArgs.length > 15 ) {
+			String errMessage = "\"PublicationsRetriever\" expected only up to 15 arguments, while you gave: " + mainArgs.length + "!" + usageMessage;
 			logger.error(errMessage);
 			System.err.println(errMessage);
 			System.exit(-1);
@@ -106,6 +109,13 @@ public class ArgsUtils {
 						inputFromUrl = true;
 						logger.info("Using the inputFile from the URL: " + inputDataUrl);
 						break;
+					case "-minedRulesFile":
+						i ++;
+						handleMinedRulesFile(mainArgs[i]);
+						break;
+					case "-pinningDiagnostics":
+						PinningDiagnostics.usePinningDiagnostics = true;
+						break;
 					default:	// log & ignore the argument
 						String errMessage = "Argument: \"" + mainArgs[i] + "\" was not expected!" + usageMessage;
 						System.err.println(errMessage);
@@ -132,6 +142,19 @@ public class ArgsUtils {
 	}
 
 
+	private static void handleMinedRulesFile(String rulesFilePath)
+	{
+		try {
+			MinedDocUrlRules.loadRules(Paths.get(rulesFilePath).toAbsolutePath());	// The relative paths are resolved against the "user.dir".
+		} catch (Exception e) {
+			String errMessage = "Could not load the mined rules from the file \"" + rulesFilePath + "\": " + e;
+			logger.error(errMessage);
+			System.err.println(errMessage);
+			System.exit(92);
+		}
+	}
+
+
 	private static void handleDatatypeArg(String dataType)
 	{
 		switch (dataType) {
@@ -0,0 +1,152 @@
+package eu.openaire.publications_retriever.util.diagnostics;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class records the "jdk.VirtualThreadPinned" events of the JFR, while the program runs, and reports the sites where the virtual-threads were pinned to their carrier-threads, at the end of the run.
+ * A pinned virtual-thread which blocks (e.g. while holding a monitor, or inside a native frame) holds its carrier-thread as well, so the other virtual-threads may stall.
+ * The events are aggregated in memory, by the first frame of the program in their stack-trace (along with the top frame, where the thread blocked), so no recording-file is written.
+ * It is enabled with the "-pinningDiagnostics" argument.
+ * @author Lampros Smyrnaios
+ */
+public class PinningDiagnostics
+{
+	private static final Logger logger = LoggerFactory.getLogger(PinningDiagnostics.class);
+
+	public static boolean usePinningDiagnostics = false;	// Keep it "public" and "non-final", in order to be set by external services.
+
+	public static long pinThresholdMillis = 1;	// Keep it "public" and "non-final", in order to be set by external services. The JFR's default is 20 ms.
+
+	private static final String pinnedEventName = "jdk.VirtualThreadPinned";
+	private static final String programPackagePrefix = "eu.openaire.";
+	private static final int maxSitesToReport = 20;
+
+	private static final class PinSite
+	{
+		final AtomicInteger numOfPins = new AtomicInteger(0);
+		final AtomicLong totalPinnedNanos = new AtomicLong(0);
+	}
+
+	private static final ConcurrentHashMap<String, PinSite> pinSites = new ConcurrentHashMap<>();
+
+	public static final AtomicInteger numOfPinnedEvents = new AtomicInteger(0);
+
+	private static RecordingStream recordingStream = null;
+
+
+	/**
+	 * This method starts the recording of the pinned-events, if the diagnostics are enabled.
+	 * If the JFR is not available in the running JVM, the diagnostics are just skipped.
+	 */
+	public static void start()	// It is called once by the main-thread, before the worker-threads start.
+	{
+		if ( !usePinningDiagnostics || (recordingStream != null) )
+			return;
+		try {
+			RecordingStream stream = new RecordingStream();
+			stream.enable(pinnedEventName).withStackTrace().withThreshold(Duration.ofMillis(pinThresholdMillis));
+			stream.onEvent(pinnedEventName, PinningDiagnostics::recordEvent);
+			stream.startAsync();
+			recordingStream = stream;
+			logger.info("The pinning-diagnostics were started, for pins longer than " + pinThresholdMillis + " ms.");
+		} catch (Exception | Error e) {	// The "jdk.jfr" module may be missing, or the JFR may be disabled.
+			logger.warn("Could not start the pinning-diagnostics: " + e);
+		}
+	}
+
+
+	static void recordEvent(RecordedEvent event)
+	{
+		numOfPinnedEvents.incrementAndGet();
+		PinSite pinSite = pinSites.computeIfAbsent(getSite(event.getStackTrace()), k -> new PinSite());
+		pinSite.numOfPins.incrementAndGet();
+		pinSite.totalPinnedNanos.addAndGet(event.getDuration().toNanos());
+	}
+
+
+	/**
+	 * @return the first frame of the program in the given stack-trace, along with the top frame (where the thread blocked while pinned).
+	 */
+	static String getSite(RecordedStackTrace stackTrace)
+	{
+		if ( stackTrace == null )
+			return "<no stack-trace>";
+		List<RecordedFrame> frames = stackTrace.getFrames();
+		if ( frames.isEmpty() )
+			return "<empty stack-trace>";
+		String topFrame = getFrameStr(frames.get(0));
+		for ( RecordedFrame frame : frames ) {
+			if ( frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith(programPackagePrefix) ) {
+				String programFrame = getFrameStr(frame);
+				return (programFrame.equals(topFrame) ? programFrame : (programFrame + " (blocked in: " + topFrame + ")"));
+			}
+		}
+		return topFrame;	// The thread was pinned outside the program's code (e.g. inside a library).
+	}
+
+
+	private static String getFrameStr(RecordedFrame frame)
+	{
+		return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + "(line: " + frame.getLineNumber() + ")";
+	}
+
+
+	/**
+	 * This method stops the recording, after all the recorded events are handled, and logs the pin-sites, ordered by their total pinned-time.
+	 */
+	public static void stopAndReport()	// It is called once by the main-thread, after the worker-threads have finished.
+	{
+		if ( recordingStream == null )
+			return;
+		try {
+			recordingStream.stop();	// It waits until all the recorded events are handled.
+		} catch (Exception e) {
+			logger.warn("Could not stop the pinning-diagnostics properly: " + e);
+		} finally {
+			recordingStream.close();
+			recordingStream = null;
+		}
+
+		if ( pinSites.isEmpty() ) {
+			logger.info("No virtual-thread was pinned for longer than " + pinThresholdMillis + " ms.");
+			return;
+		}
+		List<Map.Entry<String, PinSite>> sortedPinSites = new ArrayList<>(pinSites.entrySet());
+		sortedPinSites.sort(Comparator.comparingLong((Map.Entry<String, PinSite> entry) -> entry.getValue().totalPinnedNanos.get()).reversed());
+		StringBuilder sb = new StringBuilder(2000);
+		sb.append("The virtual-threads were pinned ").append(numOfPinnedEvents.get()).append(" times, in ").append(pinSites.size()).append(" sites. The top sites are:");
+		for ( int i = 0; (i < sortedPinSites.size()) && (i < maxSitesToReport); i++ ) {
+			Map.Entry<String, PinSite> entry = sortedPinSites.get(i);
+			sb.append("\n\t").append(entry.getValue().numOfPins.get()).append(" pins, for ").append(entry.getValue().totalPinnedNanos.get() / 1_000_000).append(" ms in total, at: ").append(entry.getKey());
+		}
+		logger.info(sb.toString());
+	}
+
+
+	public static boolean isRecording() {
+		return (recordingStream != null);
+	}
+
+
+	public static void clearPinSites()
+	{
+		pinSites.clear();
+		numOfPinnedEvents.set(0);
+	}
+
+}
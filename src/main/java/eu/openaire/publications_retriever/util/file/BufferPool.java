@@ -0,0 +1,231 @@
+package eu.openaire.publications_retriever.util.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * This class holds a process-wide pool of byte- and char-buffers, in size-classes, which are used for reading the html-pages and for downloading the files.
+ * Since each task runs in its own virtual-thread, "ThreadLocal" buffers are never reused, so the buffers are returned here when a task is done with them, in order to be reused by other tasks.
+ * All the buffers (in use or idle) are accounted against the "memoryBudget". When a new buffer does not fit in the budget, the idle buffers are dropped first and, if that is not enough, the task waits until other tasks release their buffers.
+ * So, the memory of the buffers scales with the budget, instead of the number of in-flight tasks.
+ * A task which already holds a buffer (e.g. when its html-buffer has to grow) does not wait, as this could lead to a deadlock, where all tasks wait for each other. In that case, the budget may be exceeded temporarily.
+ * @author Lampros Smyrnaios
+ */
+public class BufferPool
+{
+	private static final Logger logger = LoggerFactory.getLogger(BufferPool.class);
+
+	public static long memoryBudget = (256L * FileUtils.mb);	// Keep it "public" and "non-final", in order to be set by external services.
+
+	private static final int[] sizeClasses = {65_536, 262_144, FileUtils.mb, (4 * FileUtils.mb)};	// The number of elements of each class of buffers (bytes or chars).
+
+	private static final ConcurrentLinkedQueue<byte[]>[] idleByteBuffers = createIdleBuffersQueues();
+	private static final ConcurrentLinkedQueue<char[]>[] idleCharBuffers = createIdleBuffersQueues();
+
+	private static final ReentrantLock lock = new ReentrantLock();	// Do not use "synchronized", as the virtual-threads would be pinned to their carrier-threads, while they wait.
+	private static final Condition memoryReleased = lock.newCondition();
+	private static long reservedBytes = 0;	// The bytes of all the buffers created by the pool, either in use or idle. It is guarded by the "lock".
+	private static int numOfWaitingThreads = 0;	// It is guarded by the "lock".
+
+	public static final AtomicInteger numOfNewBuffers = new AtomicInteger(0);
+	public static final AtomicInteger numOfReusedBuffers = new AtomicInteger(0);
+	public static final AtomicInteger numOfWaitsForMemory = new AtomicInteger(0);
+	public static final AtomicInteger numOfTimesBudgetWasExceeded = new AtomicInteger(0);
+
+
+	@SuppressWarnings("unchecked")
+	private static <T> ConcurrentLinkedQueue<T>[] createIdleBuffersQueues()
+	{
+		ConcurrentLinkedQueue<T>[] queues = (ConcurrentLinkedQueue<T>[]) new ConcurrentLinkedQueue<?>[sizeClasses.length];
+		for ( int i = 0; i < sizeClasses.length; i++ )
+			queues[i] = new ConcurrentLinkedQueue<>();
+		return queues;
+	}
+
+
+	/**
+	 * This method returns a byte-buffer of at least the given size. It has to be released (only once) when the caller is done with it.
+	 * @param minSize
+	 * @param mayWait true, if the caller holds no other pooled buffer, so it may wait for memory to become available.
+	 * @return the byte-buffer
+	 * @throws InterruptedException if the thread was interrupted while waiting for memory.
+	 */
+	public static byte[] acquireBytes(int minSize, boolean mayWait) throws InterruptedException
+	{
+		int classIndex = getClassIndex(minSize);
+		if ( classIndex != -1 ) {
+			byte[] buffer = idleByteBuffers[classIndex].poll();
+			if ( buffer != null ) {
+				numOfReusedBuffers.incrementAndGet();
+				return buffer;
+			}
+		}
+		int size = ((classIndex != -1) ? sizeClasses[classIndex] : minSize);	// A buffer larger than all the classes is created in its exact size and it is not kept after its release.
+		reserve(size, mayWait);
+		return new byte[size];
+	}
+
+
+	/**
+	 * This method returns a char-buffer of at least the given size. It has to be released (only once) when the caller is done with it.
+	 * @param minSize
+	 * @param mayWait true, if the caller holds no other pooled buffer, so it may wait for memory to become available.
+	 * @return the char-buffer
+	 * @throws InterruptedException if the thread was interrupted while waiting for memory.
+	 */
+	public static char[] acquireChars(int minSize, boolean mayWait) throws InterruptedException
+	{
+		int classIndex = getClassIndex(minSize);
+		if ( classIndex != -1 ) {
+			char[] buffer = idleCharBuffers[classIndex].poll();
+			if ( buffer != null ) {
+				numOfReusedBuffers.incrementAndGet();
+				return buffer;
+			}
+		}
+		int size = ((classIndex != -1) ? sizeClasses[classIndex] : minSize);
+		reserve((2L * size), mayWait);
+		return new char[size];
+	}
+
+
+	public static void release(byte[] buffer)
+	{
+		if ( buffer == null )
+			return;
+		int classIndex = getClassIndexOfBuffer(buffer.length);
+		keepIdleOrUnreserve(((classIndex != -1) ? idleByteBuffers[classIndex] : null), buffer, buffer.length);
+	}
+
+
+	public static void release(char[] buffer)
+	{
+		if ( buffer == null )
+			return;
+		int classIndex = getClassIndexOfBuffer(buffer.length);
+		keepIdleOrUnreserve(((classIndex != -1) ? idleCharBuffers[classIndex] : null), buffer, (2L * buffer.length));
+	}
+
+
+	/**
+	 * @return the index of the smallest size-class which can hold the given size, or -1, if the size is larger than all the classes.
+	 */
+	private static int getClassIndex(int minSize)
+	{
+		for ( int i = 0; i < sizeClasses.length; i++ )
+			if ( minSize <= sizeClasses[i] )
+				return i;
+		return -1;
+	}
+
+
+	private static int getClassIndexOfBuffer(int length)
+	{
+		int classIndex = getClassIndex(length);
+		return (((classIndex != -1) && (sizeClasses[classIndex] == length)) ? classIndex : -1);
+	}
+
+
+	private static void reserve(long bytes, boolean mayWait) throws InterruptedException
+	{
+		numOfNewBuffers.incrementAndGet();
+		lock.lock();
+		try {
+			while ( (reservedBytes + bytes) > memoryBudget )
+			{
+				if ( dropIdleBuffer() )
+					continue;
+				if ( !mayWait || (reservedBytes == 0) ) {	// The caller holds other buffers, or this buffer is larger than the whole budget.
+					numOfTimesBudgetWasExceeded.incrementAndGet();
+					break;
+				}
+				numOfWaitsForMemory.incrementAndGet();
+				numOfWaitingThreads ++;
+				try {
+					memoryReleased.await();
+				} finally {
+					numOfWaitingThreads --;
+				}
+			}
+			reservedBytes += bytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * A released buffer is kept idle, only if no thread waits for memory and the budget is not exceeded. Otherwise, its memory is given back.
+	 * The decision and the "offer" are made under the "lock", so a thread which is about to wait in "reserve()", either finds the idle buffer to drop, or it gets signaled.
+	 * @param idleBuffers the idle-queue of the size-class of the buffer, or null, if the buffer does not belong to a class.
+	 */
+	private static <T> void keepIdleOrUnreserve(ConcurrentLinkedQueue<T> idleBuffers, T buffer, long bytes)
+	{
+		lock.lock();
+		try {
+			if ( (idleBuffers != null) && (numOfWaitingThreads == 0) && (reservedBytes <= memoryBudget) )
+				idleBuffers.offer(buffer);
+			else {
+				reservedBytes -= bytes;
+				if ( numOfWaitingThreads > 0 )
+					memoryReleased.signalAll();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * This method drops an idle buffer, starting from the largest ones, in order to make room for a new buffer. It has to be called while holding the "lock".
+	 * @return true, if a buffer was dropped.
+	 */
+	private static boolean dropIdleBuffer()
+	{
+		for ( int i = (sizeClasses.length -1); i >= 0; i-- ) {
+			if ( idleByteBuffers[i].poll() != null ) {
+				reservedBytes -= sizeClasses[i];
+				return true;
+			}
+			if ( idleCharBuffers[i].poll() != null ) {
+				reservedBytes -= (2L * sizeClasses[i]);
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	/**
+	 * This method drops all the idle buffers. It is used by external services, between different runs.
+	 */
+	public static void clearIdleBuffers()
+	{
+		lock.lock();
+		try {
+			while ( dropIdleBuffer() )
+				;
+			logger.debug("The idle buffers were dropped. The reserved memory for the buffers in use is: " + reservedBytes + " bytes.");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	public static long getReservedBytes()
+	{
+		lock.lock();
+		try {
+			return reservedBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
@@ -5,9 +5,9 @@ import com.google.common.collect.HashMultimap;
 import eu.openaire.publications_retriever.PublicationsRetriever;
 import eu.openaire.publications_retriever.exceptions.FileNotRetrievedException;
 //import eu.openaire.publications_retriever.exceptions.NoSpaceLeftException;
-import eu.openaire.publications_retriever.machine_learning.MachineLearning;
 import eu.openaire.publications_retriever.util.args.ArgsUtils;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.timer.HashedWheelTimer;
 import eu.openaire.publications_retriever.util.url.DataForOutput;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
@@ -21,8 +21,6 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.*;
@@ -65,6 +63,7 @@ public class FileUtils
 
 	public static final boolean shouldOutputFullPathName = true;	// Should we log, in the jasonOutputFile, the fullPathName or just the ending fileName?
 	public static int numOfDocFile = 0;	// In the case that we don't care for original docFileNames, the fileNames are produced using an incremental system.
+	public static int numOfSkippedDocFileNumbers = 0;	// The numbers of the deleted duplicate docFiles, which could not be reverted, as the next numbers were already taken.
 	public static final String workingDir = System.getProperty("user.dir") + File.separator;
 
 	public static int unretrievableDocNamesNum = 0;	// Num of docFiles for which we were not able to retrieve their docName.
@@ -72,33 +71,21 @@ public class FileUtils
 
 	public static final int MAX_FILENAME_LENGTH = 250;	// TODO - Find a way to get the current-system's MAX-value.
 
-	public static String fullInputFilePath = null;	// Used when the MLA is enabled, and we want to count the number of lines in the inputFile, in order to optimize the M.L.A.'s execution.
-
 	public static int duplicateIdUrlEntries = 0;
 
 	private static final String utf8Charset = StandardCharsets.UTF_8.toString();
 
 	public static final Pattern EXTENSION_PATTERN = Pattern.compile("(\\.[^._-]+)$");
 
-	// A dedicated scheduler to enforce read-timeouts on downloads, preventing "zombie" connections from blocking threads indefinitely.
-	public static final ScheduledExecutorService timeoutExecutor = Executors.newScheduledThreadPool(2, r -> {
-		Thread t = Executors.defaultThreadFactory().newThread(r);
-		t.setDaemon(true);
-		return t;
-	});
+	// A dedicated timer to enforce read-timeouts on downloads, preventing "zombie" connections from blocking threads indefinitely.
+	// A "hashed-wheel"-timer is used, since its O(1) scheduling and cancellation do not become a contention-point for the thousands of Virtual Threads. Its precision is 100 ms.
+	public static final HashedWheelTimer watchdogTimer = new HashedWheelTimer("watchdog-timer", 100, TimeUnit.MILLISECONDS, 512);
 
 
 	public FileUtils(InputStream input, OutputStream output)
 	{
 		FileUtils.inputScanner = new Scanner(input, utf8Charset);
 
-		if ( MachineLearning.useMLA ) {	// In case we are using the MLA, go get the numOfLines to be used.
-			if ( numOfLines == 0 ) {	// If the inputFile was not given as an argument, but as the stdin, instead.
-				numOfLines = getInputNumOfLines();
-				logger.debug("Num of lines in the inputFile: " + numOfLines);
-			}
-		}
-
 		setOutput(output);
 
 		if ( ArgsUtils.shouldUploadFilesToS3 )
@@ -172,56 +159,6 @@ public class FileUtils
 	}
 
 
-	public static long getInputNumOfLines()
-	{
-		long lineCount = 0;
-
-		// Create a new file to write the input-data.
-		// Since the input-stream is not reusable.. we cant count the line AND use the data..
-		// (the data will be consumed and the program will exit with error since no data will be read from the inputFile).
-		String baseFileName = workingDir + "inputFile";
-		String extension;
-		if ( LoaderAndChecker.useIdUrlPairs )
-			extension = ".json";
-		else
-			extension = ".csv";	// This is just a guess, it may be a ".tsv" as well or sth else. There is no way to know what type of file was assigned in the "System.in".
-
-		// Make sure we create a new distinct file which will not replace any other existing file. This new file will get deleted in the end.
-		int fileNum = 1;
-		fullInputFilePath = baseFileName + extension;
-		File file = new File(fullInputFilePath);
-		while ( file.exists() ) {
-			fullInputFilePath = baseFileName + (fileNum++) + extension;
-			file = new File(fullInputFilePath);
-		}
-
-		try {
-			printStream = new PrintStream(Files.newOutputStream(file.toPath()), false, utf8Charset);
-
-			while ( inputScanner.hasNextLine() ) {
-				printStream.print(inputScanner.nextLine());
-				printStream.print(endOfLine);
-				lineCount ++;
-			}
-
-			printStream.close();
-			inputScanner.close();
-
-			// Assign the new input-file from which the data will be read for the rest of the program's execution.
-			inputScanner = new Scanner(Files.newInputStream(Paths.get(fullInputFilePath)));
-		} catch (Exception e) {
-			logger.error("", e);
-			FileUtils.closeIO();
-			System.exit(-10);	// The inputFile (stream) is already partly-consumed, no point to continue.
-		}
-
-		if ( FileUtils.skipFirstRow && (lineCount != 0) )
-			return (lineCount -1);
-		else
-			return lineCount;
-	}
-
-
 	/**
 	 * This method returns the number of (non-heading, non-empty) lines we have read from the inputFile.
 	 * @return loadedUrls
@@ -372,12 +309,10 @@ public class FileUtils
 
 		File docFile = fileData.getFile();
 		FileOutputStream fileOutputStream = fileData.getFileOutputStream();
-		int bufferSize = (((contentSize != -2) && contentSize < fiveMb) ? contentSize : fiveMb);
 
-		try ( BufferedInputStream inStream = new BufferedInputStream(inputStream, bufferSize);
-			  BufferedOutputStream outStream = new BufferedOutputStream(((fileOutputStream != null) ? fileOutputStream : new FileOutputStream(docFile)), bufferSize) )
+		try ( OutputStream outStream = ((fileOutputStream != null) ? fileOutputStream : new FileOutputStream(docFile)) )
 		{
-			long bytesCount = downloadFile(fileData.getLocation(), contentSize, docUrl, md, inStream, outStream);
+			long bytesCount = downloadFile(fileData.getLocation(), contentSize, docUrl, md, inputStream, outStream);
 			String md5Hash = printHexBinary(md.digest());
 			if ( ArgsUtils.shouldUploadFilesToS3 ) {
 				fileData = S3ObjectStore.uploadToS3(docFile.getName(), docFile.getAbsolutePath());
@@ -412,42 +347,65 @@ public class FileUtils
 			// So the empty file may exist, but we will also get the "FileNotFoundException".
             return checkAndThrowDocFileException(docUrl, contentSize, docFile, e);
         } finally {
-            try {   // In case the initialization of the "BufferedInputStream" failed, we need to manually close the "inputStream", as it will NOT be auto-closed..
+            try {   // The "inputStream" is not closed by the "try-with-resources".
                 inputStream.close();
             } catch (IOException ignored) {}
         }
 	}
 
 
-    public static long downloadFile(String fileFullPath, int contentSize, String docUrl, MessageDigest md, BufferedInputStream inStream, BufferedOutputStream outStream)
+    /**
+     * This method copies the given stream into the given file-stream, while it calculates the hash of the data.
+     * A single pooled buffer is used, which is filled before every write, so there is no need for "BufferedInputStream" and "BufferedOutputStream" wrappers.
+     * The streams are not closed here.
+     */
+    public static long downloadFile(String fileFullPath, int contentSize, String docUrl, MessageDigest md, InputStream inStream, OutputStream outStream)
 			throws IOException, FileNotRetrievedException
 	{
 		int maxStoringWaitingTime = getMaxStoringWaitingTime(contentSize);	// It handles the "-2" case.
 		int bytesRead = -1;
-		final byte[] buffer = new byte[65536];	// This is used to reduce the number of iterations of the "while"-loop and every call inside. It does not affect how often the actual-data is read/write to/from streams.
 		long bytesCount = 0;
 
+		final byte[] buffer;	// This is used to reduce the number of iterations of the "while"-loop and every call inside, along with the writes to the file.
+		try {
+			buffer = BufferPool.acquireBytes((((contentSize > 0) && (contentSize < mb)) ? contentSize : mb), true);	// It may wait, if the memory-budget of the buffers is exhausted.
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new FileNotRetrievedException("Thread was interrupted while waiting for a buffer, in order to download the file from docUrl: " + docUrl);
+		}
+
 		// Schedule a task to interrupt this thread if the download takes too long.
 		// This is necessary because "inStream.read()" can block indefinitely if the server stops sending data (zombie connection),
 		// and the standard HttpClient timeout only applies to the connection/headers phase.
 		Thread currentThread = Thread.currentThread();
-		ScheduledFuture<?> timeoutTask = null;
+		HashedWheelTimer.Timeout timeoutTask = null;
 		try {
-			timeoutTask = timeoutExecutor.schedule(currentThread::interrupt, maxStoringWaitingTime, TimeUnit.MILLISECONDS);
+			timeoutTask = watchdogTimer.schedule(currentThread::interrupt, maxStoringWaitingTime, TimeUnit.MILLISECONDS);
 		} catch (RejectedExecutionException ree) {
 			String errMsg = "Watchdog thread was not scheduled for execution. Will avoid to download docFile from docUrl: " + docUrl;
 			logger.error(errMsg);
+			BufferPool.release(buffer);
 			throw new FileNotRetrievedException(errMsg);
 		}
 
 		try {
-			while ( (bytesRead = inStream.read(buffer)) != -1) {
+			int bufferedBytes = 0;
+			while ( (bytesRead = inStream.read(buffer, bufferedBytes, (buffer.length - bufferedBytes))) != -1) {
 				if ( Thread.interrupted() ) {	// Check if the thread has been interrupted by the watchdog.
 					throw new InterruptedException("Download interrupted by watchdog timer.");
 				}
-				outStream.write(buffer, 0, bytesRead);
-				md.update(buffer, 0, bytesRead);
-				bytesCount += bytesRead;
+				bufferedBytes += bytesRead;
+				if ( bufferedBytes == buffer.length ) {	// Write only when the buffer is full.
+					outStream.write(buffer, 0, bufferedBytes);
+					md.update(buffer, 0, bufferedBytes);
+					bytesCount += bufferedBytes;
+					bufferedBytes = 0;
+				}
+			}
+			if ( bufferedBytes > 0 ) {
+				outStream.write(buffer, 0, bufferedBytes);
+				md.update(buffer, 0, bufferedBytes);
+				bytesCount += bufferedBytes;
 			}
 		} catch (InterruptedIOException | InterruptedException ie) {
 			currentThread.interrupt();
@@ -456,7 +414,8 @@ public class FileUtils
 			throw new FileNotRetrievedException(errMsg);
  		} finally {
 			// If the download finishes (successfully or with exception), cancel the timeout task so it doesn't interrupt the thread later.
-			timeoutTask.cancel(false);
+			timeoutTask.cancel();
+			BufferPool.release(buffer);
 			// Note: If the interrupt happened, the thread's interrupted status might still be set or cleared depending on where exactly it was caught.
 			// The caller methods (storeDocFile...) handle InterruptedIOException/InterruptedException correctly.
 		}
@@ -473,16 +432,56 @@ public class FileUtils
 	}
 
 
+	private static final Lock docFileNumberLock = new ReentrantLock(true);	// Not a monitor, as the virtual-threads waiting on a monitor would be pinned to their carrier-threads (before Java 24). The "fairness" is kept, as in the "fileNameLock".
+
 	/**
 	 * This method is responsible for storing the docFiles and store them in permanent storage.
-	 * It is synchronized, in order to avoid files' numbering inconsistency.
+	 * It runs under the "docFileNumberLock", in order to avoid files' numbering inconsistency.
 	 *
 	 * @param response
 	 * @param docUrl
 	 * @param contentSize
 	 * @throws FileNotRetrievedException
 	 */
-	public static synchronized FileData storeDocFileWithNumberName(HttpResponse<InputStream> response, String docUrl, int contentSize) throws FileNotRetrievedException//, NoSpaceLeftException
+	public static FileData storeDocFileWithNumberName(HttpResponse<InputStream> response, String docUrl, int contentSize) throws FileNotRetrievedException//, NoSpaceLeftException
+	{
+		docFileNumberLock.lock();
+		try {
+			return storeDocFileWithNumberNameLocked(response, docUrl, contentSize);
+		} finally {
+			docFileNumberLock.unlock();
+		}
+	}
+
+
+	/**
+	 * This method reverts the number of the given docFile, when that docFile turns out to be a duplicate and it is deleted.
+	 * The duplicate-check happens after the "docFileNumberLock" is released, so another thread may have already taken the next number.
+	 * In that case, the number is not reverted (it is just skipped), otherwise the file of that thread would be overwritten by the next docFile.
+	 * @param deletedDocFile
+	 */
+	public static void revertDocFileNumber(File deletedDocFile)
+	{
+		int fileNumber;
+		try {
+			fileNumber = Integer.parseInt(Strings.CS.removeEnd(deletedDocFile.getName(), ".pdf"));
+		} catch (NumberFormatException nfe) {
+			logger.warn("Could not extract the number of the deleted docFile: " + deletedDocFile.getName());
+			return;
+		}
+		docFileNumberLock.lock();
+		try {
+			if ( numOfDocFile == (fileNumber +1) )	// No other docFile was stored in the meantime.
+				numOfDocFile --;
+			else
+				numOfSkippedDocFileNumbers ++;
+		} finally {
+			docFileNumberLock.unlock();
+		}
+	}
+
+
+	private static FileData storeDocFileWithNumberNameLocked(HttpResponse<InputStream> response, String docUrl, int contentSize) throws FileNotRetrievedException//, NoSpaceLeftException
     {
 		InputStream inputStream = ConnSupportUtils.checkEncodingAndGetInputStream(response, false);
 		if ( inputStream == null )
@@ -500,12 +499,10 @@ public class FileUtils
 		String docFileFullPath = ArgsUtils.storeDocFilesDir + (numOfDocFile++) + ".pdf";	// First use the "numOfDocFile" and then increment it.
 		// TODO - Later, on different fileTypes, take care of the extension properly.
 		File docFile = new File(docFileFullPath);
-		int bufferSize = (((contentSize != -2) && contentSize < fiveMb) ? contentSize : fiveMb);
 
-		try ( BufferedInputStream inStream = new BufferedInputStream(inputStream, bufferSize);
-			BufferedOutputStream outStream = new BufferedOutputStream(new FileOutputStream(docFile), bufferSize))
+		try ( OutputStream outStream = new FileOutputStream(docFile) )
 		{
-			long bytesCount = downloadFile(docFileFullPath, contentSize, docUrl, md, inStream, outStream);
+			long bytesCount = downloadFile(docFileFullPath, contentSize, docUrl, md, inputStream, outStream);
 			String md5Hash = printHexBinary(md.digest());
 			FileData fileData;
 			if ( ArgsUtils.shouldUploadFilesToS3 ) {
@@ -541,7 +538,7 @@ public class FileUtils
 			// So the empty file may exist, but we will also get the "FileNotFoundException".
             return checkAndThrowDocFileException(docUrl, contentSize, docFile, e);
         } finally {
-            try {   // In case the initialization of the "BufferedInputStream" failed, we need to manually close the "inputStream", as it will NOT be auto-closed..
+            try {   // The "inputStream" is not closed by the "try-with-resources".
                 inputStream.close();
             } catch (IOException ignored) {}
         }
@@ -582,7 +579,7 @@ public class FileUtils
 
 	/**
 	 * This method Returns the Document-"File" object which has the original file name as the final fileName.
-	 * It is effectively synchronized, since it's always called from a synchronized method.
+	 * It is effectively synchronized, since the file is created under the "fileNameLock".
 	 *
 	 * @param docUrl
 	 * @param contentDisposition
@@ -766,7 +763,7 @@ public class FileUtils
 
 	
 	/**
-	 * Closes open Streams and deletes the temporary-inputFile which is used when the MLA is enabled.
+	 * Closes open Streams.
 	 */
 	public static void closeIO()
 	{
@@ -776,17 +773,6 @@ public class FileUtils
 		if ( printStream != null )
 			printStream.close();
 
-		// If the MLA was enabled then an extra file was used to store the streamed content and count the number of urls, in order to optimize the M.L.A.'s execution.
-		if ( fullInputFilePath != null ) {
-			try {
-				org.apache.commons.io.FileUtils.forceDelete(new File(fullInputFilePath));
-			} catch (Exception e) {
-				logger.error("", e);
-				closeLogger();
-				PublicationsRetriever.executor.shutdownNow();
-				System.exit(-11);
-			}
-		}
 		closeLogger();
 	}
 	
@@ -0,0 +1,157 @@
+package eu.openaire.publications_retriever.util.file;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * This class is a weighted semaphore, which keeps the memory of the pages that are in-flight (their html-strings and the structures of their parsing) under the "memoryBudget".
+ * The "maxAllowedHtmlContentSize" limits only each page, so without this, hundreds of tasks could hold multi-MB pages at the same time.
+ * Before reading a page, a task is admitted with the weight of its "Content-Length" (or of a default size, if that is unknown), or it waits until other tasks release their weight.
+ * After the page is read, its weight is corrected to the actual size of the html, without waiting, as the memory is already taken.
+ * The weight is released after the page is analyzed and its internal-links are extracted, when the html is no longer referenced. So it is never held during a connection (e.g. to the metaDocUrl).
+ * The waiting tasks are admitted in the order they arrived, while the new tasks wait behind them, so the large pages are not starved by the small ones.
+ * A task holds at most one admission and it does not wait for anything else while holding it, apart from I/O, so the waiting cannot lead to a deadlock.
+ * The buffers of the reading and of the downloads are budgeted separately, by the "BufferPool".
+ * @author Lampros Smyrnaios
+ */
+public class MemoryAdmission
+{
+	public static boolean useMemoryAdmission = true;	// Keep it "public" and "non-final", in order to be set by external services.
+
+	public static long memoryBudget = (Runtime.getRuntime().maxMemory() / 4);	// Keep it "public" and "non-final", in order to be set by external services. The rest of the heap is left for the buffers, the caches and the results.
+
+	public static int memoryPerHtmlChar = 4;	// Keep it "public" and "non-final", in order to be set by external services. The html-string takes up to 2 bytes per char and its parsing (the summary, the link-elements, or a Jsoup-DOM) takes about as much.
+
+	private static final int defaultHtmlSize = 262_144;	// Used when the "Content-Length" is not known. Most pages are smaller than that.
+
+	private static final ReentrantLock lock = new ReentrantLock();
+	private static final Condition memoryReleased = lock.newCondition();
+	private static long admittedBytes = 0;	// It is guarded by the "lock".
+	private static final ArrayDeque<Thread> waitingThreads = new ArrayDeque<>();	// It is guarded by the "lock". Only the first thread of the queue may be admitted.
+
+	public static final AtomicInteger numOfAdmissions = new AtomicInteger(0);
+	public static final AtomicInteger numOfWaitsForMemory = new AtomicInteger(0);
+	public static final AtomicLong totalWaitNanos = new AtomicLong(0);
+	public static final AtomicLong peakAdmittedBytes = new AtomicLong(0);
+
+
+	/**
+	 * This method admits a task to read and parse the page of the given response, after waiting for memory, if the budget is exhausted.
+	 * @param response
+	 * @return the admitted bytes, which have to be given to "resize()" and to "release()".
+	 * @throws InterruptedException if the thread was interrupted while waiting for memory.
+	 */
+	public static long admit(HttpResponse<?> response) throws InterruptedException
+	{
+		if ( !useMemoryAdmission )
+			return 0;
+		return admit(response.headers().firstValueAsLong("Content-Length").orElse(-1));
+	}
+
+
+	/**
+	 * A page which is larger than the whole budget is admitted only when no other page is in-flight. Meanwhile, the tasks which arrive after it, wait behind it.
+	 * @param contentSize the size of the body, or a non-positive number, if it is not known.
+	 * @return the admitted bytes.
+	 * @throws InterruptedException if the thread was interrupted while waiting for memory.
+	 */
+	public static long admit(long contentSize) throws InterruptedException
+	{
+		if ( !useMemoryAdmission )
+			return 0;
+		long bytes = ((contentSize > 0) ? contentSize : defaultHtmlSize) * memoryPerHtmlChar;	// The chars are not more than the bytes, unless the body is compressed.
+
+		numOfAdmissions.incrementAndGet();
+		lock.lock();
+		try {
+			if ( !waitingThreads.isEmpty() || !fits(bytes) ) {
+				long startTime = System.nanoTime();
+				numOfWaitsForMemory.incrementAndGet();
+				Thread currentThread = Thread.currentThread();
+				waitingThreads.addLast(currentThread);
+				try {
+					while ( (waitingThreads.peekFirst() != currentThread) || !fits(bytes) )
+						memoryReleased.await();
+				} finally {
+					waitingThreads.remove(currentThread);	// It is the first one, unless it was interrupted.
+					if ( !waitingThreads.isEmpty() )
+						memoryReleased.signalAll();	// The next thread may fit as well, or it became the first one, after an interruption.
+					totalWaitNanos.addAndGet(System.nanoTime() - startTime);
+				}
+			}
+			add(bytes);
+		} finally {
+			lock.unlock();
+		}
+		return bytes;
+	}
+
+
+	/**
+	 * This method corrects the admitted bytes of a task, to the actual size of its html. It never waits, as the html is already in memory.
+	 * @param bytes the currently admitted bytes of the task.
+	 * @param html the html which was read (it may be null).
+	 * @return the new admitted bytes of the task.
+	 */
+	public static long resize(long bytes, String html)
+	{
+		if ( !useMemoryAdmission )
+			return 0;
+		long actualBytes = ((html != null) ? ((long) html.length() * memoryPerHtmlChar) : 0);
+		lock.lock();
+		try {
+			add(actualBytes - bytes);
+			if ( (actualBytes < bytes) && !waitingThreads.isEmpty() )
+				memoryReleased.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		return actualBytes;
+	}
+
+
+	public static void release(long bytes)
+	{
+		if ( bytes == 0 )
+			return;
+		lock.lock();
+		try {
+			admittedBytes -= bytes;
+			if ( !waitingThreads.isEmpty() )
+				memoryReleased.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	private static boolean fits(long bytes)	// It has to be called while holding the "lock".
+	{
+		return (((admittedBytes + bytes) <= memoryBudget) || (admittedBytes == 0));
+	}
+
+
+	private static void add(long bytes)	// It has to be called while holding the "lock".
+	{
+		admittedBytes += bytes;
+		if ( admittedBytes > peakAdmittedBytes.get() )
+			peakAdmittedBytes.set(admittedBytes);
+	}
+
+
+	public static long getAdmittedBytes()
+	{
+		lock.lock();
+		try {
+			return admittedBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
@@ -1,13 +1,12 @@
 package eu.openaire.publications_retriever.util.http;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.SetMultimap;
 import eu.openaire.publications_retriever.PublicationsRetriever;
 import eu.openaire.publications_retriever.crawler.PageCrawler;
+import eu.openaire.publications_retriever.crawler.ScoredLink;
 import eu.openaire.publications_retriever.exceptions.DocLinkFoundException;
 import eu.openaire.publications_retriever.exceptions.DomainBlockedException;
 import eu.openaire.publications_retriever.exceptions.FileNotRetrievedException;
+import eu.openaire.publications_retriever.exceptions.HttpErrorStatusException;
 //import eu.openaire.publications_retriever.exceptions.NoSpaceLeftException;
 import eu.openaire.publications_retriever.machine_learning.MachineLearning;
 import eu.openaire.publications_retriever.models.IdUrlMimeTypeTriple;
@@ -16,8 +15,12 @@ import eu.openaire.publications_retriever.util.args.ArgsUtils;
 import eu.openaire.publications_retriever.util.file.FileData;
 import eu.openaire.publications_retriever.util.file.FileUtils;
 import eu.openaire.publications_retriever.util.file.HtmlFileUtils;
+import eu.openaire.publications_retriever.util.timer.HashedWheelTimer;
+import eu.openaire.publications_retriever.util.url.DomainRules;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.UrlNormalizationCache;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
+import eu.openaire.publications_retriever.util.url.UrlView;
 import org.apache.commons.compress.compressors.brotli.BrotliCompressorInputStream;
 import org.apache.commons.compress.compressors.deflate.DeflateCompressorInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
@@ -38,6 +41,9 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -65,7 +71,6 @@ public class ConnSupportUtils
 	public static final Pattern HTML_STRING_INDICATOR = Pattern.compile("^[\\s]*<(?:!doctype\\s)?html");
 	public static final Pattern RESPONSE_BODY_UNWANTED_MATCH = Pattern.compile("^(?:[\\s]+|[\\s]*<(?:\\?xml|!--).*)");	// TODO - Avoid matching to "  <?xml>sddfs<html[...]" (as some times the whole page-code is a single line)
 
-	public static final Pattern SPACE_ONLY_LINE = Pattern.compile("^[\\s]+$");	// For full-HTML-extraction.
 
 	private static final Pattern NON_PROTOCOL_URL = Pattern.compile("^(?:[^:/]+://)(.*)");
 
@@ -75,19 +80,16 @@ public class ConnSupportUtils
 	public static final int minPolitenessDelay = 3000;	// 3 sec
 	public static final int maxPolitenessDelay = 7000;	// 7 sec
 
-	public static final ConcurrentHashMap<String, Integer> timesDomainsReturned5XX = new ConcurrentHashMap<>();	// Domains that have returned HTTP 5XX Error Code, and the amount of times they did.
-	public static final ConcurrentHashMap<String, Integer> timesDomainsHadTimeoutEx = new ConcurrentHashMap<>();
 	public static final ConcurrentHashMap<String, Integer> timesPathsReturned403 = new ConcurrentHashMap<>();
+	public static final ConcurrentHashMap<String, Instant> domainsWithRetryAfterTime = new ConcurrentHashMap<>();	// Domains which returned a "Retry-After" header, along with the time after which they accept requests again.
 	
-	public static final SetMultimap<String, String> domainsMultimapWithPaths403BlackListed = Multimaps.synchronizedSetMultimap(HashMultimap.create());	// Holds multiple values for any key, if a domain(key) has many different paths (values) for which there was a 403 errorCode.
+	public static final ConcurrentHashMap<String, Set<String>> domainsWithPaths403BlackListed = new ConcurrentHashMap<>();	// Holds multiple paths for any domain, if a domain(key) has many different paths (values) for which there was a 403 errorCode. The sets are concurrent, so the lookups take no lock.
 	
 	private static final int timesToHave403errorCodeBeforePathBlocked = 10;	// If a path leads to 403 with different urls, more than 5 times, then this path gets blocked.
 	private static final int numberOf403BlockedPathsBeforeDomainBlocked = 50;	// If a domain has more than 5 different 403-blocked paths, then the whole domain gets blocked.
 
-	public static boolean shouldBlockMost5XXDomains = true;	// In General, if we decide to block, then the 503 will be excluded. If we decide to NOT block, then only the 511 will be blocked.
+	public static boolean shouldBlockMost5XXDomains = true;	// If we decide to NOT block, then only the 511 will count as a failure of the domain. The domains are blocked temporarily, by their "DomainCircuitBreaker".
 	// Keep the above as "public" and "non-final", in order to be set by external services.
-	private static final int timesToHave5XXerrorCodeBeforeDomainBlocked = 10;
-	private static final int timesToHaveTimeoutExBeforeDomainBlocked = 25;
 
 	private static final int timesToReturnNoTypeBeforeDomainBlocked = 10;
 	public static AtomicInteger reCrossedDocUrls = new AtomicInteger(0);
@@ -107,6 +109,10 @@ public class ConnSupportUtils
 	public static String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:133.0) Gecko/20100101 Firefox/133.0";	// This should not be "final", another program, using this software as a library, should be able to set its own "UserAgent".
 	public static String acceptLanguage = "en-US,en;q=0.5";
 
+	public static final int numOfBytesToSniff = 4096;	// The first 4 KB of the body are enough to identify the PDF "magic bytes" or the starting tags of an HTML page.
+	public static final Set<String> domainsWithUnsupportedRangeRequests = Collections.newSetFromMap(new ConcurrentHashMap<>());	// Domains which ignored or rejected the "Range"-header.
+	public static ThreadLocal<Boolean> shouldRequestOnlyFirstBytes = ThreadLocal.withInitial(() -> false);	// Set only during the content-type-sniffing, in order for the "GET" request to ask for the first bytes only.
+
 
 	public static void setHttpHeaders(HttpRequest.Builder conn, String domainStr)
 	{
@@ -118,7 +124,11 @@ public class ConnSupportUtils
 
 		conn.header("User-Agent", userAgent);
 		conn.header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8");
-		conn.header("Accept-Encoding", "gzip, deflate, br, zstd");	// TODO - In case we use other user-agents than "Firefox" (in a rotating way), then make sure they support "zstd" encoding as well, if not, then it should not be used for them.
+		if ( shouldRequestOnlyFirstBytes.get() && !domainsWithUnsupportedRangeRequests.contains(domainStr) ) {
+			conn.header("Range", "bytes=0-" + (numOfBytesToSniff -1));
+			conn.header("Accept-Encoding", "identity");	// The range should apply on the plain bytes of the file, not on a compressed representation of them.
+		} else
+			conn.header("Accept-Encoding", "gzip, deflate, br, zstd");	// TODO - In case we use other user-agents than "Firefox" (in a rotating way), then make sure they support "zstd" encoding as well, if not, then it should not be used for them.
 		//conn.header("TE", "trailers");	// TODO - Investigate the "transfer-encoding" header.
 
 		if ( !HttpConnUtils.domainsWithUnsupportedAcceptLanguageParameter.contains(domainStr) )
@@ -436,7 +446,7 @@ public class ConnSupportUtils
             // This file was duplicate and was deleted. Decrement the related counters.
 			if ( ArgsUtils.shouldDownloadDocFiles ) {	// Instead of HTML-files.
 				if ( ArgsUtils.fileNameType.equals(ArgsUtils.fileNameTypeEnum.numberName) )
-						FileUtils.numOfDocFile--;
+					FileUtils.revertDocFileNumber(file);
 				else
 					FileUtils.numOfDocFiles.decrementAndGet();
 			}
@@ -455,6 +465,57 @@ public class ConnSupportUtils
 	}
 
 
+	public static final ConcurrentHashMap<String, Integer> timesDomainsCheckedUncategorizedLinks = new ConcurrentHashMap<>();	// Uncategorized internal-links which were checked for each domain, while downloading the docFiles.
+	public static final ConcurrentHashMap<String, Integer> timesDomainsGaveDocFromUncategorizedLinks = new ConcurrentHashMap<>();	// Uncategorized internal-links of each domain, which turned out to be docUrls.
+
+	private static final int timesToCheckUncategorizedLinksBeforeEvaluate = 10;
+	private static final float leastPercentageOfDocHitsToConnectWithGET = 0.25f;	// If at least 25% of the uncategorized internal-links of a domain lead to docFiles, then it's cheaper to connect with "GET" right away.
+
+	public static AtomicInteger timesAvoidedReconnectionForDownload = new AtomicInteger(0);
+
+
+	/**
+	 * This method decides whether an uncategorized internal-link of the given domain should be connected with "GET" right away, instead of "HEAD".
+	 * When downloading the docFiles, a docUrl which was connected with "HEAD" has to be re-connected with "GET", costing a second round-trip and a politeness-delay.
+	 * On the other hand, if the link turns out not to be a docUrl, the "GET"-response-body is just closed, right after its headers are examined, so only a few bytes are wasted.
+	 * So, the decision is learned for each domain, from the percentage of its uncategorized internal-links which were found to be docUrls.
+	 * @param domainStr
+	 * @return true, if the "GET"-method should be used
+	 */
+	public static boolean shouldConnectUncategorizedLinkWithGET(String domainStr)
+	{
+		if ( !ArgsUtils.shouldDownloadDocFiles )
+			return false;	// Without downloading, a docUrl does not need to be re-connected.
+
+		Integer timesChecked = timesDomainsCheckedUncategorizedLinks.get(domainStr);
+		if ( (timesChecked == null) || (timesChecked < timesToCheckUncategorizedLinksBeforeEvaluate) )
+			return false;	// Not enough data yet.
+
+		int timesGaveDoc = timesDomainsGaveDocFromUncategorizedLinks.getOrDefault(domainStr, 0);
+		return ((float) timesGaveDoc / timesChecked) >= leastPercentageOfDocHitsToConnectWithGET;
+	}
+
+
+	/**
+	 * This method keeps track of the outcome of checking an uncategorized internal-link, in order to be used by "shouldConnectUncategorizedLinkWithGET()".
+	 * @param domainStr
+	 * @param wasDocUrl
+	 * @param response
+	 */
+	public static void trackUncategorizedLinkOutcome(String domainStr, boolean wasDocUrl, HttpResponse<InputStream> response)
+	{
+		if ( !ArgsUtils.shouldDownloadDocFiles || (domainStr == null) )
+			return;
+
+		countInsertAndGetTimes(timesDomainsCheckedUncategorizedLinks, domainStr);
+		if ( wasDocUrl ) {
+			countInsertAndGetTimes(timesDomainsGaveDocFromUncategorizedLinks, domainStr);
+			if ( response.request().method().equals("GET") )
+				timesAvoidedReconnectionForDownload.incrementAndGet();
+		}
+	}
+
+
     public static HttpResponse<InputStream> checkForHEADConnectionAndReconnectIfNeededWithGET(HttpResponse<InputStream> response, String url, String domainStr, boolean calledForPageUrl, boolean calledForPossibleDocUrl)
             throws Exception
     {
@@ -465,7 +526,7 @@ public class ConnSupportUtils
             // Only a final-url will reach here, so no redirect should occur (thus, we don't check for it).
             if ( responseCode != 200 ) { // If we have unwanted/error codes.
                 String errorMessage = onErrorStatusCode(response.uri().toString(), domainStr, responseCode, calledForPageUrl, response);
-                throw new RuntimeException(errorMessage);
+                throw new HttpErrorStatusException(errorMessage, responseCode);
             }
         }
         return response;
@@ -552,7 +613,7 @@ public class ConnSupportUtils
 
 	/**
 	 * This method receives the domain and manages the sleep-time, if needed.
-	 * It first extracts the last 3 parts of the domain. Then it checks if the domain is faced for the first time.
+	 * It first extracts the registrable part of the domain (see "UrlUtils.getRegistrableDomain()"). Then it checks if the domain is faced for the first time.
 	 * If it is the first time, then the domain is added in the ConcurrentHashMap along with a new DomainConnectionData.
 	 * Else the thread will lock that domain and check if it was connected before at most "minPolitenessDelay" secs, if so, then the thread will sleep for a random number of milliseconds.
 	 * Different threads lock on different domains, so each thread is not dependent on another thread which works on a different domain.
@@ -560,8 +621,8 @@ public class ConnSupportUtils
 	 */
 	public static void applyPolitenessDelay(String domainStr)
 	{
-		// Consider only the last three parts of a domain, not all, otherwise, a sub-sub-domain might connect simultaneously with another sub-sub-domain.
-        DomainConnectionData domainConnectionData = domainsWithConnectionData.putIfAbsent(UrlUtils.getTopThreeLevelDomain(domainStr), new DomainConnectionData());
+		// Consider only the registrable part of a domain, not all of it, otherwise, a sub-domain might connect simultaneously with another sub-domain of the same site.
+        DomainConnectionData domainConnectionData = domainsWithConnectionData.putIfAbsent(UrlUtils.getRegistrableDomain(domainStr), new DomainConnectionData());
         if ( domainConnectionData == null )
             return; // First occurrence, no need to apply a delay.
 
@@ -613,7 +674,7 @@ public class ConnSupportUtils
 				logger.warn("Could not retrieve the HTML-code for HTTP300PageUrl: " + url);
 				return null;
 			}
-			HashMap<String, String> extractedLinksWithStructure = PageCrawler.extractInternalLinksFromHtml(html, url);
+			HashMap<String, ScoredLink> extractedLinksWithStructure = PageCrawler.extractInternalLinksFromHtml(html, url);
 			if ( extractedLinksWithStructure == null || extractedLinksWithStructure.isEmpty())
 				return null;	// Logging is handled inside..
 
@@ -668,18 +729,8 @@ public class ConnSupportUtils
 			}
 			if ( errorStatusCode == 403 )
 				on403ErrorCode(urlStr, domainStr, calledForPageUrl);	// The "DomainBlockedException" will go up-method by its own, if thrown inside this one.
-			else if ( errorStatusCode == 429 ) {
-				String retryAfterTime = response.headers().firstValue("Retry-After").orElse(null);	// Get the "Retry-After" header, if it exists.
-				if ( retryAfterTime != null ) {
-					errorLogMessage += " | Retry-After:" + retryAfterTime;
-					// TODO - Add this domain in a special hashMap, having the retry-after time as a value.
-					// TODO - Upon deciding the delay between requests of the same domain, lookup each domain and take into account this "retry-after" time.
-					// TODO - One possible problem with this: we may get our threads starved, waiting even a day, for a couple of domains.
-					//  Ideally, we should put those urls aside somehow and retry them in the end, if the waiting time is above some threshold.
-					//  (Just put them in a list and go to the next url. In the end, take care all the urls in that list. If the retry-time is huge (e.g. > 1 day, set a could-retry status, with a nice error-msg, and finish the current-batch.))
-					// TODO - Check the syntax of this header here: https://www.geeksforgeeks.org/http-headers-retry-after/
-				}
-			}
+			else if ( errorStatusCode == 429 )
+				errorLogMessage += handleRetryAfterHeader(domainStr, response);	// The url will be retried later, at the time which the domain requests (see the "RetryQueue").
 		}
 		else {	// Other errorCodes. Retrieve the domain and make the required actions.
 			if ( (domainStr == null) || !urlStr.contains(domainStr) )	// The domain might have changed after redirections.
@@ -687,6 +738,8 @@ public class ConnSupportUtils
 
 			if ( (errorStatusCode >= 500) && (errorStatusCode <= 599) ) {	// Server Error.
 				errorLogMessage = "Url: \"" + urlStr + "\" seems to be unreachable. Received: HTTP " + errorStatusCode + " Server Error.";
+				if ( errorStatusCode == 503 )
+					errorLogMessage += handleRetryAfterHeader(domainStr, response);
 				on5XXerrorCode(errorStatusCode, domainStr);
 			} else {	// Unknown Error (including non-handled: 1XX and the weird one: 999 (used for example on Twitter), responseCodes).
 				errorLogMessage = "Url: \"" + urlStr + "\" seems to be unreachable. Received unexpected responseCode: " + errorStatusCode;
@@ -707,6 +760,53 @@ public class ConnSupportUtils
 	}
 
 
+	/**
+	 * This method records the time after which the given domain accepts requests again, as it is given by the "Retry-After" header of a "429" or "503" response.
+	 * If the domain has already given a later time, then that one is kept.
+	 * @param domainStr
+	 * @param response
+	 * @return the part to be appended to the error-message, or an empty string, if no valid "Retry-After" header exists.
+	 */
+	public static String handleRetryAfterHeader(String domainStr, HttpResponse<InputStream> response)
+	{
+		String retryAfterValue = response.headers().firstValue("Retry-After").orElse(null);
+		if ( retryAfterValue == null )
+			return "";
+
+		Instant retryAfterTime = getRetryAfterTime(retryAfterValue);
+		if ( retryAfterTime == null )
+			return "";
+
+		if ( domainStr != null )
+			domainsWithRetryAfterTime.merge(domainStr, retryAfterTime, (oldTime, newTime) -> (newTime.isAfter(oldTime) ? newTime : oldTime));
+		return " | Retry-After: " + retryAfterValue;
+	}
+
+
+	/**
+	 * The "Retry-After" header holds either the number of seconds to wait (e.g. "120"), or an HTTP-date (e.g. "Wed, 21 Oct 2015 07:28:00 GMT").
+	 * @param retryAfterValue
+	 * @return the time after which we can retry, or null, if the value is invalid.
+	 */
+	public static Instant getRetryAfterTime(String retryAfterValue)
+	{
+		retryAfterValue = retryAfterValue.trim();
+		try {
+			long delaySeconds = Long.parseLong(retryAfterValue);
+			if ( delaySeconds < 0 )
+				return null;
+			return Instant.now().plusSeconds(delaySeconds);
+		} catch (NumberFormatException nfe) {
+			try {
+				return ZonedDateTime.parse(retryAfterValue, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+			} catch (DateTimeParseException dtpe) {
+				logger.warn("Invalid \"Retry-After\" header: " + retryAfterValue);
+				return null;
+			}
+		}
+	}
+
+
     public static InputStream checkEncodingAndGetInputStream(HttpResponse<InputStream> response, boolean isForError)
 	{
 		InputStream inputStream = null;
@@ -799,29 +899,29 @@ public class ConnSupportUtils
 	 */
 	public static void on403ErrorCode(String urlStr, String domainStr, boolean calledForPageUrl) throws DomainBlockedException
 	{
-		Matcher matcher = null;
+		UrlView urlView = UrlUtils.getUrlView(urlStr);
+		if ( urlView == null )
+			return;
 		if ( (domainStr == null) || !urlStr.contains(domainStr) ) {    // The domain might have changed after redirections.
-			if ( (matcher = UrlUtils.getUrlMatcher(urlStr)) == null )
-				return;
-			if ( (domainStr = UrlUtils.getDomainStr(urlStr, matcher)) == null )
+			if ( (domainStr = UrlUtils.getDomainStr(urlStr, urlView)) == null )
 				return;
 		}
 
-		String pathStr = UrlUtils.getPathStr(urlStr, matcher);
+		String pathStr = UrlUtils.getPathStr(urlStr, urlView);
 		if ( pathStr == null )
 			return;
 		
-		if ( countAndBlockPathAfterTimes(domainsMultimapWithPaths403BlackListed, timesPathsReturned403, pathStr, domainStr, timesToHave403errorCodeBeforePathBlocked, calledForPageUrl) )
+		if ( countAndBlockPathAfterTimes(domainsWithPaths403BlackListed, timesPathsReturned403, pathStr, domainStr, timesToHave403errorCodeBeforePathBlocked, calledForPageUrl) )
 		{
 			logger.warn("Path: \"" + pathStr + "\" of domain: \"" + domainStr + "\" was blocked after returning 403 Error Code more than " + timesToHave403errorCodeBeforePathBlocked + " times.");
 			// Block the whole domain if it has more than a certain number of blocked paths.
-			if ( domainsMultimapWithPaths403BlackListed.get(domainStr).size() > numberOf403BlockedPathsBeforeDomainBlocked )	// It will not throw an NPE, as the domain is inserted by the previous method.
+			Set<String> blockedPaths = domainsWithPaths403BlackListed.get(domainStr);	// It is null only if another thread has just blocked the whole domain.
+			if ( (blockedPaths != null) && (blockedPaths.size() > numberOf403BlockedPathsBeforeDomainBlocked) )
 			{
-				// Note that the result of "domainsMultimapWithPaths403BlackListed.get(domainStr)" cannot be null! It may only be empty.
-				if ( ! ConnSupportUtils.domainsNotBlockableAfterTimes.contains(domainStr) ) {
+				if ( ! DomainRules.isNotBlockable(domainStr) ) {
 					HttpConnUtils.blacklistedDomains.add(domainStr);	// Block the whole domain itself.
 					logger.warn("Domain: \"" + domainStr + "\" was blocked, after having more than " + numberOf403BlockedPathsBeforeDomainBlocked + " of its paths 403blackListed.");
-					domainsMultimapWithPaths403BlackListed.removeAll(domainStr);	// No need to keep this anymore.
+					domainsWithPaths403BlackListed.remove(domainStr);	// No need to keep this anymore.
 					throw new DomainBlockedException(domainStr);
 				}
 			}
@@ -829,16 +929,16 @@ public class ConnSupportUtils
 	}
 	
 	
-	public static boolean countAndBlockPathAfterTimes(SetMultimap<String, String> domainsWithPaths, ConcurrentHashMap<String, Integer> pathsWithTimes, String pathStr, String domainStr, int timesBeforeBlocked, boolean calledForPageUrl)
+	public static boolean countAndBlockPathAfterTimes(ConcurrentHashMap<String, Set<String>> domainsWithPaths, ConcurrentHashMap<String, Integer> pathsWithTimes, String pathStr, String domainStr, int timesBeforeBlocked, boolean calledForPageUrl)
 	{
 		if ( countInsertAndGetTimes(pathsWithTimes, pathStr) > timesBeforeBlocked )
 		{
 			// If we use MLA, we are storing the docPage-successful-paths, so check if this is one of them, if it is then don't block it.
 			// If it's an internal-link, then.. we can't iterate over every docUrl-successful-path of every docPage-successful-path.. it's too expensive O(5*n), not O(1)..
-			if ( MachineLearning.useMLA && calledForPageUrl && MachineLearning.successPathsHashMultiMap.containsKey(pathStr) )
+			if ( MachineLearning.useMLA && calledForPageUrl && MachineLearning.hasSuccessPath(domainStr, pathStr) )
 				return false;
 
-			domainsWithPaths.put(domainStr, pathStr);	// Add this path in the list of blocked paths of this domain.
+			domainsWithPaths.computeIfAbsent(domainStr, k -> ConcurrentHashMap.newKeySet()).add(pathStr);	// Add this path in the list of blocked paths of this domain.
 			pathsWithTimes.remove(pathStr);	// No need to keep the count for a blocked path.
 			return true;
 		}
@@ -857,20 +957,22 @@ public class ConnSupportUtils
 	 */
 	public static boolean checkIfPathIs403BlackListed(String urlStr, String domainStr)
 	{
-		if ( domainsMultimapWithPaths403BlackListed.containsKey(domainStr) )	// If this domain has returned 403 before, then go and check if the current path is blacklisted.
+		Set<String> blockedPaths = domainsWithPaths403BlackListed.get(domainStr);
+		if ( blockedPaths != null )	// If this domain has returned 403 before, then go and check if the current path is blacklisted.
 		{
 			String pathStr = UrlUtils.getPathStr(urlStr, null);
 			if ( pathStr == null )	// If there is a problem retrieving this athStr, return false;
 				return false;
 			
-			return domainsMultimapWithPaths403BlackListed.get(domainStr).contains(pathStr);
+			return blockedPaths.contains(pathStr);
 		}
 		return false;
 	}
 
 
 	/**
-	 * This method is called for an HTTP-5XX case. Depending on the value of "shouldBlockMost5XXDomains", it blocks the domain if it has given a 5XX more than Y times.
+	 * This method is called for an HTTP-5XX case. Depending on the value of "shouldBlockMost5XXDomains", it counts it as a failure of the domain, which may open the domain's circuit-breaker.
+	 * The "503" is excluded, as it is usually a temporary overload or maintenance, which is handled by the "Retry-After"-header and the "RetryQueue".
 	 * @param domainStr
 	 * @throws DomainBlockedException
 	 */
@@ -880,33 +982,20 @@ public class ConnSupportUtils
 			if ( http5xxErrorCode != 511 )
 				return;
 
-		if ( (http5xxErrorCode == 503) || (domainStr == null) )
+		if ( http5xxErrorCode == 503 )
 			return;
 
-		if ( countAndBlockDomainAfterTimes(HttpConnUtils.blacklistedDomains, timesDomainsReturned5XX, domainStr, timesToHave5XXerrorCodeBeforeDomainBlocked, true) ) {
-			logger.warn("Domain: \"" + domainStr + "\" was blocked after returning 5XX Error Code " + timesToHave5XXerrorCodeBeforeDomainBlocked + " times.");
-			throw new DomainBlockedException(domainStr);
-		}
+		DomainCircuitBreaker.onFailure(domainStr, "an HTTP " + http5xxErrorCode + " Server Error");	// May throw a "DomainBlockedException".
 	}
 	
 	
 	public static void onTimeoutException(String domainStr) throws DomainBlockedException
 	{
-		if ( countAndBlockDomainAfterTimes(HttpConnUtils.blacklistedDomains, timesDomainsHadTimeoutEx, domainStr, timesToHaveTimeoutExBeforeDomainBlocked, true) ) {
-			logger.warn("Domain: \"" + domainStr + "\" was blocked after causing TimeoutException " + timesToHaveTimeoutExBeforeDomainBlocked + " times.");
-			throw new DomainBlockedException(domainStr);
-		}
+		DomainCircuitBreaker.onFailure(domainStr, "a TimeoutException");	// May throw a "DomainBlockedException".
 	}
 
 
-	public static final Set<String> domainsNotBlockableAfterTimes = Collections.newSetFromMap(new ConcurrentHashMap<>());
-	// These domains have some non-giving pageUrls, some dataset-giving pages and some document-giving ones. So we avoid blocking them, in case 500 consecutive pages do not give full--texts.
-	static {
-		// All of these domains are manually checked for their quality and consistency.
-		domainsNotBlockableAfterTimes.add("zenodo.org");
-		domainsNotBlockableAfterTimes.add("doi.org");	// This domain is the starting point for many publications. It redirects to other domains.
-		domainsNotBlockableAfterTimes.add("dx.doi.org");	// Same as above. We have to add full-domains in this set.
-	}
+	// The domains which should never be blocked after a number of failures (e.g. "doi.org" and its sub-domains), are held in the "DomainRules", with the "notBlockable"-category.
 
 	
 	/**
@@ -923,7 +1012,7 @@ public class ConnSupportUtils
 	 */
 	public static boolean countAndBlockDomainAfterTimes(Set<String> blackList, ConcurrentHashMap<String, Integer> domainsWithTimes, String domainStr, int timesBeforeBlock, boolean checkAgainstDocUrlsHits)
 	{
-		if ( domainsNotBlockableAfterTimes.contains(domainStr) )
+		if ( DomainRules.isNotBlockable(domainStr) )
 			return false;
 
 		int badTimes = countInsertAndGetTimes(domainsWithTimes, domainStr);
@@ -988,10 +1077,7 @@ public class ConnSupportUtils
 	}
 
 
-	public static ThreadLocal<StringBuilder> htmlStrBuilder = new ThreadLocal<>();	// Every Thread has its own variable.
-
-
-    public static FileData downloadHtmlFile(HttpResponse<InputStream> response, String urlId, String pageUrl, Matcher urlMatcher, String firstHTMLlineFromDetectedContentType)
+    public static FileData downloadHtmlFile(HttpResponse<InputStream> response, String urlId, String pageUrl, UrlView urlView, String firstHTMLlineFromDetectedContentType)
     {
         int contentSize;
         if ( (contentSize = getContentSize(response, false, false)) == -1 ) {   // "Unacceptable size"-code..
@@ -1000,16 +1086,14 @@ public class ConnSupportUtils
         }
         // It may be "-2" in case the "contentSize" was not available.
 
-        int bufferSize;
         InputStream inputStream = checkEncodingAndGetInputStream(response, false);
         if ( inputStream == null )	// The error is already logged inside.
             return null;
-        bufferSize = (((contentSize != -2) && (contentSize < FileUtils.mb)) ? contentSize : FileUtils.mb);
 
         FileData htmlFileData;
         String fullPathFileName;
         try {
-            htmlFileData = HtmlFileUtils.getFinalHtmlFilePath(urlId, pageUrl, urlMatcher, contentSize);	// This will not be null.
+            htmlFileData = HtmlFileUtils.getFinalHtmlFilePath(urlId, pageUrl, urlView, contentSize);	// This will not be null.
             // In case we use "numberName" for the filename, the above method increments the counter.
             fullPathFileName = htmlFileData.getLocation();
         } catch (Exception e) {
@@ -1029,17 +1113,15 @@ public class ConnSupportUtils
             throw new RuntimeException("MD5 HASH ALGO MISSING");
         }
 
-        try ( BufferedInputStream bis = new BufferedInputStream(inputStream, bufferSize);
-              BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(fullPathFileName),  bufferSize) )
+        try ( FileOutputStream fos = new FileOutputStream(fullPathFileName) )
         {
             // We may have extracted the first response-line in order to determine the content-type, in case no other method succeeded.
             if ( firstHTMLlineFromDetectedContentType != null ) {
                 // Convert the string-line, along with a new-line-char to a byte-string and write it.
-                bos.write((firstHTMLlineFromDetectedContentType + FileUtils.endOfLine).getBytes(StandardCharsets.UTF_8));
-                bos.flush();
+                fos.write((firstHTMLlineFromDetectedContentType + FileUtils.endOfLine).getBytes(StandardCharsets.UTF_8));
             }
 
-            long bytesCount = FileUtils.downloadFile(fullPathFileName, contentSize, pageUrl, md, bis, bos); // If it is ZERO, an exception will be thrown from this method.
+            long bytesCount = FileUtils.downloadFile(fullPathFileName, contentSize, pageUrl, md, inputStream, fos); // If it is ZERO, an exception will be thrown from this method.
             String md5Hash = FileUtils.printHexBinary(md.digest());
             File docFile = htmlFileData.getFile();
             htmlFileData = new FileData(docFile, md5Hash, bytesCount, ((FileUtils.shouldOutputFullPathName) ? docFile.getAbsolutePath() : docFile.getName()));
@@ -1072,7 +1154,7 @@ public class ConnSupportUtils
                 HtmlFileUtils.htmlFilesNum.decrementAndGet();
             return null;
         } finally {
-            try {   // In case the initialization of the "BufferedInputStream" failed, we need to manually close the "inputStream", as it will NOT be auto-closed..
+            try {   // The "inputStream" is not closed by the "try-with-resources".
                 inputStream.close();
             } catch (IOException ignored) {}
         }
@@ -1090,51 +1172,30 @@ public class ConnSupportUtils
 		}
 		// It may be "-2" in case the "contentSize" was not available.
 
-		StringBuilder htmlStrB = htmlStrBuilder.get();
-		if ( htmlStrB == null ) {
-            // Initialize and pre-allocate the StringBuilder. When retrieving HTML-files, this is only used for error-pages which are significantly smaller than regular ones.
-			htmlStrB = new StringBuilder((ArgsUtils.shouldJustDownloadHtmlFiles ? 10_000 : 100_000));
-			htmlStrBuilder.set(htmlStrB);	// Save it for future use by this thread, for example when performing redirects with 300-code (location in-page-url) or retrieving an error-body.
-		}
-
-		int bufferSize = 0;
 		InputStream inputStream = null;
 		if ( bufferedReader == null ) {
 			inputStream = checkEncodingAndGetInputStream(response, isForError);
 			if ( inputStream == null )	// The error is already logged inside.
 				return null;
-			bufferSize = (((contentSize != -2) && (contentSize < FileUtils.mb)) ? contentSize : FileUtils.mb);
 		}
 
 		Thread currentThread = Thread.currentThread();
-		ScheduledFuture<?> timeoutTask = null;
+		HashedWheelTimer.Timeout timeoutTask = null;
 		try {
-			timeoutTask = FileUtils.timeoutExecutor.schedule(currentThread::interrupt, 30, TimeUnit.SECONDS);
+			timeoutTask = FileUtils.watchdogTimer.schedule(currentThread::interrupt, 30, TimeUnit.SECONDS);
 		} catch (RejectedExecutionException ree) {
 			logger.error("Watchdog thread was not scheduled for execution. Will avoid to download html-file from pageUrl: " + pageUrl);
 			return null;
 		}
 
-		try (BufferedReader br = ((bufferedReader != null) ? bufferedReader : new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), bufferSize)))
+		try
 		{
-			String inputLine;
-			final String htmlSpaceChar = " "; // This is used to separate individual lines when loading the html in memory, as each line returned by the FileReader, does not include an "ending character".
-
-			// We may have extracted the first response-line in order to determine the content-type, in case no other method succeeded.
-			if ( firstHTMLlineFromDetectedContentType != null )
-                htmlStrB.append(firstHTMLlineFromDetectedContentType).append(htmlSpaceChar);
-
-			while ( (inputLine = br.readLine()) != null )
-			{
-				if ( Thread.interrupted() )
-					throw new InterruptedException();
-
-				if ( !inputLine.isEmpty() && (inputLine.length() != 1) && !SPACE_ONLY_LINE.matcher(inputLine).matches() ) {	// We check for (inputLine.length() != 1), as some lines contain just an unrecognized byte.
-					htmlStrB.append(inputLine).append(htmlSpaceChar);	// Add the "spaceChar" to avoid joining words from different lines.
-				}
-			}
-
-            return !htmlStrB.isEmpty() ? htmlStrB.toString() : null;
+			// The body is decoded straight into a pooled buffer, while skipping the line-breaks and the whitespace-only lines.
+			// We may have extracted the first response-line in order to determine the content-type, in case no other method succeeded. That line is kept in the start.
+			if ( bufferedReader != null )
+				return HtmlBodyReader.readHtml(bufferedReader, firstHTMLlineFromDetectedContentType);
+			else
+				return HtmlBodyReader.readHtml(inputStream, HtmlBodyReader.getCharset(response), firstHTMLlineFromDetectedContentType, contentSize);	// It returns null, if the html is empty.
 		} catch ( Exception e ) {
 			if ( e instanceof InterruptedIOException || e instanceof InterruptedException) {	// The "InterruptedException" is thrown when the watchdog-thread interrupts this thread.
 				currentThread.interrupt();
@@ -1145,12 +1206,14 @@ public class ConnSupportUtils
                 logger.error("Could not retrieve the html-code for pageUrl \"" + pageUrl + "\"!", e);
 			return null;
 		} finally {
-			timeoutTask.cancel(false);
-            htmlStrB.setLength(0);	// Reset "StringBuilder" WITHOUT re-allocating.
-			try {   // In case the "inputStream" was initialized before the "try"-block, and the initialization of the "BufferedReader" failed, we need to manually close the "inputStream".
-				if ( inputStream != null )
+			timeoutTask.cancel();
+			if ( bufferedReader != null )
+				closeBufferedReader(bufferedReader);
+			else {
+				try {
 					inputStream.close();
-			} catch (IOException ignored) {}
+				} catch (IOException ignored) {}
+			}
 		}
 	}
 
@@ -1178,10 +1241,19 @@ public class ConnSupportUtils
 		BufferedReader bufferedReader = null;
 		boolean calledForPossibleDocUrl = false;
 
-        response = checkForHEADConnectionAndReconnectIfNeededWithGET(response, finalUrlStr, domainStr, true, true); // Set params to "true" to force connecting with "GET".
-
 		// Try to detect the content type.
-        DetectedContentType detectedContentType = ConnSupportUtils.extractContentTypeFromResponseBody(response);
+		DetectedContentType detectedContentType;
+		if ( response.request().method().equals("HEAD") ) {	// The "HEAD"-response has no body. Instead of downloading the whole body with a "GET"-request, we ask only for its first bytes.
+			HttpResponse<InputStream> getResponse = reconnectWithRangedGETForContentSniffing(response, finalUrlStr, domainStr);
+			if ( getResponse.statusCode() == 206 )
+				detectedContentType = sniffContentTypeFromFirstBytes(getResponse);	// The partial body is consumed, so an html-page will be re-requested in full, later.
+			else {	// The whole body is returned, so its reader is kept for the html, as with any "GET"-response, instead of reconnecting to get it again.
+				response = getResponse;
+				detectedContentType = ConnSupportUtils.extractContentTypeFromResponseBody(response);
+			}
+		} else
+			detectedContentType = ConnSupportUtils.extractContentTypeFromResponseBody(response);
+
         if ( detectedContentType != null ) {
             switch ( detectedContentType.detectedContentType ) {
                 case "html" -> {
@@ -1219,16 +1291,159 @@ public class ConnSupportUtils
 				throw new RuntimeException(warnMsg);	// We can't retrieve any clue. This is not desired. The "warnMsg" will be printed by the caller method.
 		}
 
-		ArrayList<Object> detectionList = new ArrayList<>(5);
+		ArrayList<Object> detectionList = new ArrayList<>(6);
 		detectionList.add(0, mimeType);
 		detectionList.add(1, foundDetectedContentType);
 		detectionList.add(2, firstHtmlLine);
 		detectionList.add(3, bufferedReader);
 		detectionList.add(4, calledForPossibleDocUrl);
+		detectionList.add(5, response);	// It is a new "GET"-response, in case the given one was a "HEAD"-response and the whole body was returned for the detection.
 		return detectionList;
 	}
 
 
+	public static final AtomicLong numContentTypesSniffedWithRangeRequests = new AtomicLong(0);
+
+
+	/**
+	 * This method closes the given "HEAD"-response and reconnects with a "GET"-request, which asks only for the first "numOfBytesToSniff" bytes of the body.
+	 * If the server responds with "206 Partial Content", then only those bytes are transferred.
+	 * If the server ignores the "Range"-header and responds with "200 OK", then the domain is remembered and the caller uses the whole body (e.g. the html of a page), as with a plain "GET"-request.
+	 * If the server rejects the "Range"-header with "416 Range Not Satisfiable", then the domain is remembered and we reconnect without it.
+	 * For the remembered domains, the "Range"-header is not sent at all, so their plain "GET"-response is returned directly.
+	 * @param response
+	 * @param url
+	 * @param domainStr
+	 * @return the "GET"-response
+	 * @throws Exception
+	 */
+	public static HttpResponse<InputStream> reconnectWithRangedGETForContentSniffing(HttpResponse<InputStream> response, String url, String domainStr)
+			throws Exception
+	{
+		response.body().close();
+		shouldRequestOnlyFirstBytes.set(true);
+		try {
+			response = HttpConnUtils.openHttpConnection(url, domainStr, true, false);	// The provided params guarantee a "GET"-request.
+		} finally {
+			shouldRequestOnlyFirstBytes.set(false);
+		}
+
+		int responseCode = response.statusCode();
+		if ( responseCode == 206 ) {
+			numContentTypesSniffedWithRangeRequests.incrementAndGet();
+			return response;
+		} else if ( responseCode == 200 ) {
+			if ( domainsWithUnsupportedRangeRequests.add(domainStr) )
+				logger.debug("The domain \"" + domainStr + "\" does not honour the \"Range\"-header. Its content-type will be detected from the whole body, which is reused for its pages.");
+			return response;
+		} else if ( responseCode == 416 ) {
+			domainsWithUnsupportedRangeRequests.add(domainStr);
+			response.body().close();
+			response = HttpConnUtils.openHttpConnection(url, domainStr, true, false);	// Now the "Range"-header will not be added.
+			responseCode = response.statusCode();
+			if ( responseCode == 200 )
+				return response;
+		}
+
+		// Only a final-url will reach here, so no redirect should occur (thus, we don't check for it).
+		String errorMessage = onErrorStatusCode(response.uri().toString(), domainStr, responseCode, true, response);
+		throw new HttpErrorStatusException(errorMessage, responseCode);
+	}
+
+
+	/**
+	 * This method reads up to "numOfBytesToSniff" bytes from the body of the given response and identifies its content-type from the "magic bytes".
+	 * It is used for the partial ("206") responses. The stream is always closed afterwards.
+	 * Since the stream is consumed, the returned "DetectedContentType" never holds a "BufferedReader" or a "firstHtmlLine"; the caller has to reconnect in order to get the full body.
+	 * @param response
+	 * @return "html", "pdf", "undefined", null
+	 */
+	public static DetectedContentType sniffContentTypeFromFirstBytes(HttpResponse<InputStream> response)
+	{
+		InputStream inputStream = checkEncodingAndGetInputStream(response, false);	// Normally, the body is not encoded, as we ask for the "identity"-encoding, but the server may ignore it.
+		if ( inputStream == null )
+			return null;
+
+		Thread currentThread = Thread.currentThread();
+		HashedWheelTimer.Timeout timeoutTask = null;
+		try {
+			timeoutTask = FileUtils.watchdogTimer.schedule(currentThread::interrupt, 10, TimeUnit.SECONDS);
+		} catch (RejectedExecutionException ree) {
+			logger.error("Watchdog thread was not scheduled for execution. Will avoid to sniff the content-type from url: " + response.uri().toString());
+			try {
+				inputStream.close();
+			} catch (IOException ignored) {}
+			return null;
+		}
+
+		byte[] firstBytes = new byte[numOfBytesToSniff];
+		int numOfReadBytes = 0;
+		try ( inputStream ) {
+			int readBytes;
+			while ( (numOfReadBytes < numOfBytesToSniff) && ((readBytes = inputStream.read(firstBytes, numOfReadBytes, (numOfBytesToSniff - numOfReadBytes))) != -1) )
+				numOfReadBytes += readBytes;
+		} catch (EOFException eofe) {
+			// A compressed stream may end abruptly, as we only got a part of it. Continue with the bytes we have.
+		} catch (Exception e) {
+			if ( e instanceof InterruptedIOException ) {	// The watchdog-thread interrupted this thread.
+				currentThread.interrupt();
+				logger.warn("Thread was interrupted when reading the first bytes to sniff the contentType of url: " + response.uri().toString());
+			} else if ( e instanceof IOException )
+				logger.error("IOException when reading the first bytes of the response-body: " + e.getMessage());
+			else
+				logger.error("", e);
+			return null;
+		} finally {
+			timeoutTask.cancel();
+		}
+
+		return getContentTypeFromMagicBytes(firstBytes, numOfReadBytes);
+	}
+
+
+	private static final byte[] PDF_MAGIC_BYTES = "%pdf-".getBytes(StandardCharsets.US_ASCII);	// After the "-", the pdf-specification version follows (e.g. "%pdf-1.6").
+
+	/**
+	 * This method identifies the content-type from the first bytes of a response-body.
+	 * The leading UTF-8 BOM and whitespace are skipped. For the "html"-check, the same rules as in "extractContentTypeFromResponseBody()" are applied on the first acceptable line.
+	 * @param firstBytes
+	 * @param numOfBytes
+	 * @return "html", "pdf", "undefined", null
+	 */
+	public static DetectedContentType getContentTypeFromMagicBytes(byte[] firstBytes, int numOfBytes)
+	{
+		int offset = 0;
+		if ( (numOfBytes >= 3) && (firstBytes[0] == (byte) 0xEF) && (firstBytes[1] == (byte) 0xBB) && (firstBytes[2] == (byte) 0xBF) )	// UTF-8 BOM
+			offset = 3;
+		while ( (offset < numOfBytes) && Character.isWhitespace(firstBytes[offset]) )
+			offset ++;
+
+		if ( offset == numOfBytes )
+			return null;	// There is no content to examine.
+
+		if ( (numOfBytes - offset) >= PDF_MAGIC_BYTES.length ) {
+			boolean isPdf = true;
+			for ( int i = 0; i < PDF_MAGIC_BYTES.length; i++ ) {
+				if ( Character.toLowerCase(firstBytes[offset + i]) != PDF_MAGIC_BYTES[i] ) {
+					isPdf = false;
+					break;
+				}
+			}
+			if ( isPdf )
+				return new DetectedContentType("pdf", null, null);
+		}
+
+		String firstChars = new String(firstBytes, offset, (numOfBytes - offset), StandardCharsets.UTF_8);
+		String acceptedLine = firstChars.lines()
+				.filter(line -> !(line.isEmpty() || (line.length() == 1) || RESPONSE_BODY_UNWANTED_MATCH.matcher(line).matches()))
+				.findFirst().orElse(null);
+		if ( (acceptedLine != null) && HTML_STRING_INDICATOR.matcher(acceptedLine.toLowerCase()).find() )
+			return new DetectedContentType("html", null, null);
+		else
+			return new DetectedContentType("undefined", acceptedLine, null);
+	}
+
+
 	/**
 	 * This method examines the first line of the Response-body and returns the content-type.
 	 * TODO - The only "problem" is that after the "inputStream" closes, it cannot be opened again. So, we cannot parse the HTML afterwards nor download the pdf.
@@ -1254,9 +1469,9 @@ public class ConnSupportUtils
 		BufferedReader br = null;
 
 		Thread currentThread = Thread.currentThread();
-		ScheduledFuture<?> timeoutTask = null;
+		HashedWheelTimer.Timeout timeoutTask = null;
 		try {
-			timeoutTask = FileUtils.timeoutExecutor.schedule(currentThread::interrupt, 10, TimeUnit.SECONDS);
+			timeoutTask = FileUtils.watchdogTimer.schedule(currentThread::interrupt, 10, TimeUnit.SECONDS);
 		} catch (RejectedExecutionException ree) {
 			logger.error("Watchdog thread was not scheduled for execution. Will avoid to extract content-type from url: " + response.uri().toString());
 			return null;
@@ -1306,7 +1521,7 @@ public class ConnSupportUtils
 			}
 			return null;
 		} finally {
-			timeoutTask.cancel(false);
+			timeoutTask.cancel();
 		}
 	}
 
@@ -1367,6 +1582,17 @@ public class ConnSupportUtils
 	 * @return
 	 */
 	public static String getFullyFormedUrl(String pageUrl, String currentLink, URL urlBase)
+	{
+		if ( (urlBase == null) && (pageUrl != null) )
+			return UrlNormalizationCache.getFullyFormedUrl(pageUrl, currentLink);	// The result is the same for the same pageUrl (or its host) and link.
+		return produceFullyFormedUrl(pageUrl, currentLink, urlBase);
+	}
+
+
+	/**
+	 * This method produces the fully-formed url of the given link, without using the "UrlNormalizationCache".
+	 */
+	public static String produceFullyFormedUrl(String pageUrl, String currentLink, URL urlBase)
 	{
 		try {
 			if ( urlBase == null ) {
@@ -0,0 +1,261 @@
+package eu.openaire.publications_retriever.util.http;
+
+import eu.openaire.publications_retriever.exceptions.DomainBlockedException;
+import eu.openaire.publications_retriever.exceptions.DomainCircuitOpenException;
+import eu.openaire.publications_retriever.util.url.DomainRules;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This class holds a "circuit-breaker" for each domain which had connection-failures (timeouts, refused connections or HTTP-5XX error-codes, apart from the "503", which is handled by the "RetryQueue").
+ * Instead of blocking such a domain for the rest of the program's run, after some failures, its breaker "opens" and any request to it fails instantly, for some time.
+ * When that time passes, the breaker becomes "half-open" and a single "probe"-request is allowed. If it succeeds, the breaker "closes" and the requests continue normally.
+ * If it fails, the breaker "opens" again, for double the time. Only a domain which fails many consecutive probes gets blocked permanently.
+ * The breaker opens only when both the number and the rate of the failures, inside a sliding time-window, are high. So, a domain which returns a few errors among many successful responses, is not affected.
+ * @author Lampros Smyrnaios
+ */
+public class DomainCircuitBreaker
+{
+	private static final Logger logger = LoggerFactory.getLogger(DomainCircuitBreaker.class);
+
+	public static boolean useCircuitBreakers = true;	// Keep it "public" and "non-final", in order to be set by external services.
+
+	private static final long slidingWindowMillis = 60_000;	// 1 minute.
+	private static final int numOfWindowBuckets = 6;	// Each bucket covers 10 seconds.
+	private static final long bucketMillis = (slidingWindowMillis / numOfWindowBuckets);
+
+	private static final int minFailuresInWindowBeforeOpen = 10;
+	private static final float leastFailureRateBeforeOpen = 0.5f;
+
+	public static long initialOpenMillis = 60_000;	// 1 minute. It is doubled after each failed probe. Keep it "public" and "non-final", in order to be set by external services.
+	private static final long maxOpenMillis = 960_000;	// 16 minutes.
+	private static final long maxProbeMillis = 120_000;	// If the probe-request has not finished in 2 minutes (e.g. its outcome was not recorded), then another probe is allowed.
+	private static final int timesToFailProbeBeforeDomainBlocked = 5;
+
+	public static final ConcurrentHashMap<String, CircuitBreaker> domainsWithCircuitBreakers = new ConcurrentHashMap<>();
+
+	public static AtomicInteger numOfOpenedCircuits = new AtomicInteger(0);
+	public static AtomicInteger numOfRecoveredCircuits = new AtomicInteger(0);
+	public static AtomicInteger numOfRequestsRejectedByOpenCircuits = new AtomicInteger(0);
+	public static AtomicInteger numOfDomainsBlockedAfterFailedProbes = new AtomicInteger(0);
+
+
+	private enum State { CLOSED, OPEN, HALF_OPEN }
+
+	private enum FailureOutcome { NONE, OPENED, BLOCKED }
+
+
+	/**
+	 * This method is called before connecting to the given domain.
+	 * @param domainStr
+	 * @throws DomainCircuitOpenException if the breaker of this domain is "open", or "half-open" with a probe-request in progress.
+	 */
+	public static void checkIfAllowed(String domainStr) throws DomainCircuitOpenException
+	{
+		if ( !useCircuitBreakers || (domainStr == null) )
+			return;
+
+		CircuitBreaker circuitBreaker = domainsWithCircuitBreakers.get(domainStr);
+		if ( (circuitBreaker != null) && !circuitBreaker.allowRequest(System.currentTimeMillis()) ) {
+			numOfRequestsRejectedByOpenCircuits.incrementAndGet();
+			throw new DomainCircuitOpenException(domainStr);	// It does not get in the "blacklistedDomains", so the urls of this domain can be retried.
+		}
+	}
+
+
+	/**
+	 * This method is called when the given domain responded, either with a success-code or with a non-5XX error-code, which still proves that the domain is reachable.
+	 * @param domainStr
+	 */
+	public static void onSuccess(String domainStr)
+	{
+		if ( !useCircuitBreakers || (domainStr == null) )
+			return;
+
+		CircuitBreaker circuitBreaker = domainsWithCircuitBreakers.get(domainStr);	// No breaker is created for the domains which never failed.
+		if ( (circuitBreaker != null) && circuitBreaker.recordSuccess(System.currentTimeMillis()) ) {
+			numOfRecoveredCircuits.incrementAndGet();
+			logger.debug("The circuit-breaker of domain: \"" + domainStr + "\" was closed, after a successful probe-request.");
+		}
+	}
+
+
+	/**
+	 * This method is called when the given domain timed-out or returned an HTTP-5XX error-code.
+	 * @param domainStr
+	 * @param failureDescription
+	 * @throws DomainBlockedException if the domain got blocked permanently, or a "DomainCircuitOpenException", if the breaker of this domain was opened by this failure.
+	 */
+	public static void onFailure(String domainStr, String failureDescription) throws DomainBlockedException
+	{
+		if ( !useCircuitBreakers || (domainStr == null) || DomainRules.isNotBlockable(domainStr) )
+			return;
+
+		CircuitBreaker circuitBreaker = domainsWithCircuitBreakers.computeIfAbsent(domainStr, k -> new CircuitBreaker());
+		switch ( circuitBreaker.recordFailure(System.currentTimeMillis()) ) {
+			case OPENED -> {
+				numOfOpenedCircuits.incrementAndGet();
+				logger.warn("The circuit-breaker of domain: \"" + domainStr + "\" was opened after " + failureDescription + ". Its urls will not be connected until: " + Instant.ofEpochMilli(circuitBreaker.getOpenUntilMillis()));
+				throw new DomainCircuitOpenException(domainStr);
+			}
+			case BLOCKED -> {
+				HttpConnUtils.blacklistedDomains.add(domainStr);
+				domainsWithCircuitBreakers.remove(domainStr);	// Free-up memory.
+				numOfDomainsBlockedAfterFailedProbes.incrementAndGet();
+				logger.warn("Domain: \"" + domainStr + "\" was blocked after failing " + timesToFailProbeBeforeDomainBlocked + " consecutive probe-requests, the last one with " + failureDescription + ".");
+				throw new DomainBlockedException(domainStr);
+			}
+			default -> {}	// Nothing to do.
+		}
+	}
+
+
+	/**
+	 * @param domainStr
+	 * @return the time when the breaker of the given domain will allow a probe-request, or null, if its breaker is not "open".
+	 */
+	public static Instant getReopeningTime(String domainStr)
+	{
+		CircuitBreaker circuitBreaker = domainsWithCircuitBreakers.get(domainStr);
+		if ( circuitBreaker == null )
+			return null;
+		long openUntilMillis = circuitBreaker.getOpenUntilMillis();
+		return ((openUntilMillis > 0) ? Instant.ofEpochMilli(openUntilMillis) : null);
+	}
+
+
+	/**
+	 * The state of the breaker of a single domain. All of its methods are synchronized, as they only do a few calculations, without any blocking.
+	 */
+	public static final class CircuitBreaker
+	{
+		private State state = State.CLOSED;
+
+		// The sliding-window, as a ring of time-buckets.
+		private final long[] bucketStartMillis = new long[numOfWindowBuckets];
+		private final int[] bucketFailures = new int[numOfWindowBuckets];
+		private final int[] bucketRequests = new int[numOfWindowBuckets];
+
+		private long openUntilMillis = 0;
+		private long probeStartMillis = 0;
+		private boolean isProbeInProgress = false;
+		private int consecutiveFailedProbes = 0;
+
+
+		synchronized boolean allowRequest(long nowMillis)
+		{
+			switch ( state ) {
+				case CLOSED:
+					return true;
+				case OPEN:
+					if ( nowMillis < openUntilMillis )
+						return false;
+					state = State.HALF_OPEN;
+					break;
+				case HALF_OPEN:
+					if ( isProbeInProgress && ((nowMillis - probeStartMillis) < maxProbeMillis) )
+						return false;	// Only one probe at a time.
+					break;
+			}
+			isProbeInProgress = true;	// This request is the probe.
+			probeStartMillis = nowMillis;
+			return true;
+		}
+
+
+		/**
+		 * @return true, if the breaker was closed by this success.
+		 */
+		synchronized boolean recordSuccess(long nowMillis)
+		{
+			if ( state == State.HALF_OPEN ) {
+				state = State.CLOSED;
+				isProbeInProgress = false;
+				consecutiveFailedProbes = 0;
+				openUntilMillis = 0;
+				clearWindow();
+				return true;
+			} else if ( state == State.CLOSED )
+				countRequestInCurrentBucket(nowMillis);
+			return false;
+		}
+
+
+		synchronized FailureOutcome recordFailure(long nowMillis)
+		{
+			if ( state == State.OPEN )
+				return FailureOutcome.NONE;	// A request which started before the breaker opened.
+
+			if ( state == State.HALF_OPEN ) {
+				isProbeInProgress = false;
+				if ( (++consecutiveFailedProbes) >= timesToFailProbeBeforeDomainBlocked )
+					return FailureOutcome.BLOCKED;
+				open(nowMillis, Math.min((initialOpenMillis << consecutiveFailedProbes), maxOpenMillis));
+				return FailureOutcome.OPENED;
+			}
+
+			bucketFailures[countRequestInCurrentBucket(nowMillis)] ++;
+
+			int failures = 0, requests = 0;
+			for ( int i = 0; i < numOfWindowBuckets; i++ ) {
+				if ( (nowMillis - bucketStartMillis[i]) < slidingWindowMillis ) {	// Exclude the expired buckets.
+					failures += bucketFailures[i];
+					requests += bucketRequests[i];
+				}
+			}
+			if ( (failures >= minFailuresInWindowBeforeOpen) && (failures >= (requests * leastFailureRateBeforeOpen)) ) {
+				open(nowMillis, initialOpenMillis);
+				return FailureOutcome.OPENED;
+			}
+			return FailureOutcome.NONE;
+		}
+
+
+		synchronized long getOpenUntilMillis() {
+			return ((state == State.CLOSED) ? 0 : openUntilMillis);
+		}
+
+
+		private void open(long nowMillis, long openMillis)
+		{
+			state = State.OPEN;
+			openUntilMillis = (nowMillis + openMillis);
+			clearWindow();
+		}
+
+
+		/**
+		 * This method counts the request in the bucket covering the current time, after resetting it, if it was holding counts of an older time-slot.
+		 * @return the index of that bucket.
+		 */
+		private int countRequestInCurrentBucket(long nowMillis)
+		{
+			long slot = (nowMillis / bucketMillis);
+			int index = (int) (slot % numOfWindowBuckets);
+			long slotStartMillis = (slot * bucketMillis);
+			if ( bucketStartMillis[index] != slotStartMillis ) {
+				bucketStartMillis[index] = slotStartMillis;
+				bucketFailures[index] = 0;
+				bucketRequests[index] = 0;
+			}
+			bucketRequests[index] ++;
+			return index;
+		}
+
+
+		private void clearWindow()
+		{
+			for ( int i = 0; i < numOfWindowBuckets; i++ ) {
+				bucketStartMillis[i] = 0;
+				bucketFailures[i] = 0;
+				bucketRequests[i] = 0;
+			}
+		}
+	}
+
+}
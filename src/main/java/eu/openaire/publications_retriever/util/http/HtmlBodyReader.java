@@ -0,0 +1,259 @@
+package eu.openaire.publications_retriever.util.http;
+
+import eu.openaire.publications_retriever.util.file.BufferPool;
+import org.apache.commons.lang3.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * This class reads the body of an html-page into a "String", by decoding its bytes straight into a char-buffer, without creating a "String" for each line.
+ * All the buffers (including the one which holds the html, until the final "String" is created) are taken from the "BufferPool" and returned to it after the page is read, so reading a page does not allocate any buffers.
+ * The lines are handled like the "BufferedReader.readLine()" did: each non-empty line is appended with a space-char in its end, while the empty lines, the lines which contain only whitespace and the lines of just one char (usually an unrecognized byte), are skipped.
+ * The charset of the page is taken from the "Content-Type" header. If it is not declared or not supported, then "UTF-8" is used.
+ * @author Lampros Smyrnaios
+ */
+public class HtmlBodyReader
+{
+	private static final Logger logger = LoggerFactory.getLogger(HtmlBodyReader.class);
+
+	private static final int readBufferSize = 65_536;
+
+	private char[] html;	// The html which is read so far. It is replaced by a larger pooled buffer, when it is full.
+	private int htmlLength = 0;
+	private int lineStart = 0;	// The index in the "html" where the current line starts.
+	private boolean lineHasNonSpaceChar = false;
+	private boolean lastCharWasCarriageReturn = false;
+
+
+	private HtmlBodyReader(int expectedSize) throws InterruptedException
+	{
+		this.html = BufferPool.acquireChars(expectedSize, true);	// This is the first buffer of the task, so it may wait for memory.
+	}
+
+
+	/**
+	 * This method reads the given stream until its end and returns its lines as a single "String".
+	 * The stream is not closed here.
+	 * @param inputStream
+	 * @param charset
+	 * @param firstLine a line which was already read from the stream (it may be null)
+	 * @param contentSize the size of the body, or "-2", if it is not known.
+	 * @return the html, or null, if it is empty.
+	 * @throws IOException
+	 * @throws InterruptedException if the current thread was interrupted (e.g. by the watchdog-timer).
+	 */
+	public static String readHtml(InputStream inputStream, Charset charset, String firstLine, int contentSize) throws IOException, InterruptedException
+	{
+		CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);	// The same as the "InputStreamReader".
+		HtmlBodyReader bodyReader = new HtmlBodyReader((contentSize > 0) ? contentSize : readBufferSize);	// The chars are not more than the bytes, unless the body is compressed.
+		byte[] bytes = null;
+		char[] chars = null;
+		try {
+			bytes = BufferPool.acquireBytes(readBufferSize, false);
+			chars = BufferPool.acquireChars(readBufferSize, false);
+			bodyReader.appendFirstLine(firstLine);
+			ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+			CharBuffer charBuffer = CharBuffer.wrap(chars);
+			boolean endOfInput = false;
+			while ( !endOfInput )
+			{
+				if ( Thread.interrupted() )
+					throw new InterruptedException();
+
+				int bytesRead = inputStream.read(bytes, byteBuffer.position(), byteBuffer.remaining());
+				if ( bytesRead == -1 )
+					endOfInput = true;
+				else
+					byteBuffer.position(byteBuffer.position() + bytesRead);
+
+				byteBuffer.flip();
+				CoderResult coderResult;
+				do {
+					coderResult = decoder.decode(byteBuffer, charBuffer, endOfInput);
+					bodyReader.appendLines(chars, charBuffer.position());
+					charBuffer.clear();
+				} while ( coderResult.isOverflow() );
+				byteBuffer.compact();	// Keep the bytes of an incomplete multibyte-char, for the next read.
+			}
+			while ( decoder.flush(charBuffer).isOverflow() ) {
+				bodyReader.appendLines(chars, charBuffer.position());
+				charBuffer.clear();
+			}
+			bodyReader.appendLines(chars, charBuffer.position());
+			return bodyReader.finish();
+		} finally {
+			BufferPool.release(bytes);
+			BufferPool.release(chars);
+			bodyReader.releaseHtml();
+		}
+	}
+
+
+	/**
+	 * This method reads the given reader until its end and returns its lines as a single "String".
+	 * It is used when the start of the body was already read by a "BufferedReader", during the detection of the content-type.
+	 * The reader is not closed here.
+	 * @param reader
+	 * @param firstLine a line which was already read from the reader (it may be null)
+	 * @return the html, or null, if it is empty.
+	 * @throws IOException
+	 * @throws InterruptedException if the current thread was interrupted (e.g. by the watchdog-timer).
+	 */
+	public static String readHtml(Reader reader, String firstLine) throws IOException, InterruptedException
+	{
+		HtmlBodyReader bodyReader = new HtmlBodyReader(readBufferSize);
+		char[] chars = null;
+		try {
+			chars = BufferPool.acquireChars(readBufferSize, false);
+			bodyReader.appendFirstLine(firstLine);
+			int charsRead;
+			while ( (charsRead = reader.read(chars, 0, chars.length)) != -1 ) {
+				if ( Thread.interrupted() )
+					throw new InterruptedException();
+				bodyReader.appendLines(chars, charsRead);
+			}
+			return bodyReader.finish();
+		} finally {
+			BufferPool.release(chars);
+			bodyReader.releaseHtml();
+		}
+	}
+
+
+	/**
+	 * The first line, which was extracted in order to determine the content-type, is always kept.
+	 */
+	private void appendFirstLine(String firstLine) throws InterruptedException
+	{
+		if ( firstLine == null )
+			return;
+		ensureCapacity(firstLine.length() +1);
+		firstLine.getChars(0, firstLine.length(), html, htmlLength);
+		htmlLength += firstLine.length();
+		html[htmlLength++] = ' ';	// This is used to separate individual lines when loading the html in memory.
+		lineStart = htmlLength;
+	}
+
+
+	/**
+	 * This method appends the given chars to the "html", while it skips the line-breaks and the unwanted lines.
+	 * The lines are appended in whole ranges and, in case a line is unwanted, it is removed when its end is found.
+	 */
+	private void appendLines(char[] chars, int length) throws InterruptedException
+	{
+		int rangeStart = 0;
+		for ( int i = 0; i < length; i++ )
+		{
+			char c = chars[i];
+			if ( (c == '\n') || (c == '\r') ) {
+				append(chars, rangeStart, i);
+				rangeStart = (i +1);
+				if ( (c == '\n') && lastCharWasCarriageReturn ) {	// The "\r\n" is a single line-break.
+					lastCharWasCarriageReturn = false;
+					continue;
+				}
+				lastCharWasCarriageReturn = (c == '\r');
+				endLine();
+			} else {
+				lastCharWasCarriageReturn = false;
+				if ( !lineHasNonSpaceChar && (c != ' ') && (c != '\t') && (c != '\u000B') && (c != '\f') )	// The chars of the "\s", except for the line-breaks.
+					lineHasNonSpaceChar = true;
+			}
+		}
+		append(chars, rangeStart, length);
+	}
+
+
+	private void append(char[] chars, int start, int end) throws InterruptedException
+	{
+		int length = (end - start);
+		if ( length == 0 )
+			return;
+		ensureCapacity(length +1);	// Keep room for the space-char of the end of the line.
+		System.arraycopy(chars, start, html, htmlLength, length);
+		htmlLength += length;
+	}
+
+
+	private void ensureCapacity(int extraLength) throws InterruptedException
+	{
+		int minLength = (htmlLength + extraLength);
+		if ( minLength <= html.length )
+			return;
+		char[] largerHtml = BufferPool.acquireChars(Math.max(minLength, (2 * html.length)), false);	// The task holds other buffers, so it must not wait.
+		System.arraycopy(html, 0, largerHtml, 0, htmlLength);
+		BufferPool.release(html);
+		html = largerHtml;
+	}
+
+
+	private void endLine()
+	{
+		if ( lineHasNonSpaceChar && ((htmlLength - lineStart) > 1) )	// We check for (length > 1), as some lines contain just an unrecognized byte.
+			html[htmlLength++] = ' ';	// Add the "spaceChar" to avoid joining words from different lines. There is always room for it.
+		else
+			htmlLength = lineStart;	// Remove the unwanted line.
+		lineStart = htmlLength;
+		lineHasNonSpaceChar = false;
+	}
+
+
+	private String finish()
+	{
+		if ( htmlLength > lineStart )	// The last line may not have a line-break.
+			endLine();
+		return ((htmlLength > 0) ? new String(html, 0, htmlLength) : null);
+	}
+
+
+	private void releaseHtml()
+	{
+		BufferPool.release(html);
+		html = null;
+	}
+
+
+	/**
+	 * This method returns the charset declared in the "Content-Type" header of the response (e.g. "text/html; charset=ISO-8859-1").
+	 * @param response
+	 * @return the declared charset, or "UTF-8", if no supported charset is declared.
+	 */
+	public static Charset getCharset(HttpResponse<?> response)
+	{
+		String contentType = response.headers().firstValue("Content-Type").orElse(null);
+		if ( contentType == null )
+			return StandardCharsets.UTF_8;
+
+		int charsetIndex = contentType.toLowerCase().indexOf("charset=");
+		if ( charsetIndex == -1 )
+			return StandardCharsets.UTF_8;
+
+		int charsetStart = (charsetIndex + "charset=".length());
+		int charsetEnd = contentType.indexOf(';', charsetStart);
+		String charsetName = contentType.substring(charsetStart, ((charsetEnd != -1) ? charsetEnd : contentType.length())).trim();
+		charsetName = Strings.CS.removeEnd(Strings.CS.removeStart(charsetName, "\""), "\"");	// Remove the potential quotes.
+		if ( charsetName.isEmpty() )
+			return StandardCharsets.UTF_8;
+
+		try {
+			return Charset.forName(charsetName);
+		} catch (IllegalArgumentException iae) {	// The "IllegalCharsetNameException" and the "UnsupportedCharsetException".
+			logger.warn("Unsupported charset \"" + charsetName + "\" was declared by url: \"" + response.uri() + "\". The \"UTF-8\" will be used instead.");
+			return StandardCharsets.UTF_8;
+		}
+	}
+
+}
@@ -1,6 +1,7 @@
 package eu.openaire.publications_retriever.util.http;
 
 import eu.openaire.publications_retriever.crawler.PageCrawler;
+import eu.openaire.publications_retriever.crawler.RepositoryPlatforms;
 import eu.openaire.publications_retriever.crawler.SpecialUrlsHandler;
 import eu.openaire.publications_retriever.exceptions.*;
 import eu.openaire.publications_retriever.models.IdUrlMimeTypeTriple;
@@ -9,6 +10,8 @@ import eu.openaire.publications_retriever.util.args.ArgsUtils;
 import eu.openaire.publications_retriever.util.file.FileData;
 import eu.openaire.publications_retriever.util.file.FileUtils;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
+import eu.openaire.publications_retriever.util.url.RetryQueue;
+import eu.openaire.publications_retriever.util.url.UrlNormalizationCache;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.apache.commons.lang3.Strings;
@@ -120,6 +123,12 @@ public class HttpConnUtils
 				if ( (domainStr = UrlUtils.getDomainStr(resourceURL, null)) == null )
 					throw new RuntimeException("Unable to obtain the domain!");	// The cause it's already logged inside "getDomainStr()".
 
+			if ( calledForPageUrl && !calledForPossibleDocOrDatasetUrl && RepositoryPlatforms.checkDerivedDocUrl(urlId, sourceUrl, pageUrl, domainStr) )
+				return true;	// The docUrl was derived from the platform of the domain, so there is no need to visit the page. It is already logged.
+
+			String initialDomainStr = domainStr;
+			boolean isUncategorizedLink = (!calledForPageUrl && !calledForPossibleDocOrDatasetUrl);	// The "calledForPossibleDocOrDatasetUrl" may change after the content-type-detection.
+
 			response = handleConnection(urlId, sourceUrl, pageUrl, resourceURL, domainStr, calledForPageUrl, calledForPossibleDocOrDatasetUrl);
 
 			String finalUrlStr = response.uri().toString();
@@ -144,6 +153,9 @@ public class HttpConnUtils
 					firstHtmlLine = (String) detectionList.get(2);
 					bufferedReader = (BufferedReader) detectionList.get(3);	// This can be reused when getting the html of the page.
 					calledForPossibleDocOrDatasetUrl = (boolean) detectionList.get(4);
+					@SuppressWarnings("unchecked")
+					HttpResponse<InputStream> detectionResponse = (HttpResponse<InputStream>) detectionList.get(5);
+					response = detectionResponse;	// The "bufferedReader" belongs to this response, if it is a new one.
 					//logger.debug(mimeType); logger.debug(String.valueOf(foundDetectedContentType)); logger.debug(firstHtmlLine); logger.debug(String.valueOf(bufferedReader)); logger.debug(String.valueOf(calledForPossibleDocUrl));	// DEBUG!
 				} else
 					contentDisposition = contentDisposition.toLowerCase();
@@ -157,6 +169,8 @@ public class HttpConnUtils
 			//logger.debug("Url: " + finalUrlStr);	// DEBUG!
 			//logger.debug("MimeType: " + mimeType);	// DEBUG!
 			MimeTypeResult mimeTypeResult = ConnSupportUtils.hasDocOrDatasetMimeType(finalUrlStr, lowerCaseMimeType, contentDisposition, response, calledForPageUrl, calledForPossibleDocOrDatasetUrl);
+			if ( isUncategorizedLink )
+				ConnSupportUtils.trackUncategorizedLinkOutcome(initialDomainStr, ((mimeTypeResult != null) && mimeTypeResult.getCategory().equals("document")), response);
 			if ( (mimeTypeResult != null) )
 			{
 				String finalMimeType = mimeTypeResult.getMimeType();
@@ -287,7 +301,7 @@ public class HttpConnUtils
 		}
 		else if ( (responseCode < 200) || (responseCode >= 400) ) {	// If we have error codes.
 			String errorMessage = ConnSupportUtils.onErrorStatusCode(response.uri().toString(), domainStr, responseCode, calledForPageUrl, response);
-			throw new RuntimeException(errorMessage);	// This is not thrown, if a "DomainBlockedException" is thrown from the previous method-call.
+			throw new HttpErrorStatusException(errorMessage, responseCode);	// This is not thrown, if a "DomainBlockedException" is thrown from the previous method-call.
 		}
 		// Else it's an HTTP 2XX SUCCESS CODE or an HTTP 304 NOT MODIFIED
 		return response;
@@ -315,6 +329,8 @@ public class HttpConnUtils
 			if ( blacklistedDomains.contains(domainStr) )
 				throw new RuntimeException("Avoid connecting to blacklisted domain: \"" + domainStr + "\" with url: " + resourceURL);
 
+			DomainCircuitBreaker.checkIfAllowed(domainStr);	// Fail instantly, if the circuit-breaker of this domain is open.
+
 			// Check whether we don't accept "GET" method for uncategorizedInternalLinks and if this url is such a case.
 			if ( !calledForPageUrl && shouldNOTacceptGETmethodForUncategorizedInternalLinks
 					&& !calledForPossibleDocUrl && domainsWithUnsupportedHeadMethod.contains(domainStr) )	// Exclude the possibleDocUrls and the ones which cannot connect with "HEAD".
@@ -362,7 +378,8 @@ public class HttpConnUtils
 				|| (calledForPossibleDocUrl && ArgsUtils.shouldDownloadDocFiles)	// For docUrls, only if we should download them.
                 || weirdMetaDocUrlWhichNeedsGET	// If we have a weirdMetaDocUrl-case then we need "GET".
                 || domainsWithUnsupportedHeadMethod.contains(domainStr)	// If the domain doesn't support "HEAD", then we only do "GET".
-                || domainStr.contains("meetingorganizer.copernicus.org");   // This domain has pdf-urls which are discovered (via their ContentType) only when using "GET".;
+                || domainStr.contains("meetingorganizer.copernicus.org")   // This domain has pdf-urls which are discovered (via their ContentType) only when using "GET".
+                || (!calledForPageUrl && !calledForPossibleDocUrl && ConnSupportUtils.shouldConnectUncategorizedLinkWithGET(domainStr));	// For domains whose uncategorized internal-links often lead to docFiles, avoid the "HEAD"-then-"GET" double-connection when downloading. The body of a non-docUrl is not read.
 
             // NOTE: In case we have "calledForPageUrl=true", "calledForPossibleDocUrl=True" and "ArgsUtils.shouldDownloadDocFiles=false",
             //          the "HEAD"-method will be used, as expected, for optimization purposes i.e.: just wanting to log the url as a "docUrl"-one, without downloading the fulltext-file.
@@ -467,6 +484,11 @@ public class HttpConnUtils
 					response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
 				}
 			}
+
+			if ( response.statusCode() < 500 )	// Even a "4XX" proves that the domain is reachable.
+				DomainCircuitBreaker.onSuccess(domainStr);
+			if ( response.statusCode() < 400 )
+				RetryQueue.onSuccessfulConnection(domainStr);	// The domain has recovered, so the backoff of its next deferred urls starts over.
 		} catch (RuntimeException | DomainWithUnsupportedHEADmethodException redwuhme) {
 			throw redwuhme;	// We want to throw the same exception to keep the messages and the stacktrace in place.
 		} catch (Exception e) {
@@ -487,6 +509,7 @@ public class HttpConnUtils
                         ConnSupportUtils.onTimeoutException(domainStr);    // Can throw a "DomainBlockedException", which will be thrown before the "ConnTimeoutException".
                         throw new ConnTimeoutException();
                     }
+                    DomainCircuitBreaker.onFailure(domainStr, "a ConnectException");	// The domain may be temporarily down (e.g. "Connection refused"). It used to not be counted at all, but its breaker only opens on a high failure-rate and it is closed again by a successful probe.
                     throw new RuntimeException(eMsg);
                 }
                 case SSLException _ -> {
@@ -595,7 +618,7 @@ public class HttpConnUtils
 				}
 
 				String tempTargetUrl = targetUrl;
-				if ( (targetUrl = LoaderAndChecker.basicURLNormalizer.filter(targetUrl)) == null )
+				if ( (targetUrl = UrlNormalizationCache.normalize(targetUrl)) == null )
 					throw new RuntimeException("Could not normalize target url: " + tempTargetUrl);	// Don't let it continue.
 
 				//ConnSupportUtils.printRedirectDebugInfo(currentUrl, location, targetUrl, responseCode, curRedirectsNum);
@@ -603,7 +626,7 @@ public class HttpConnUtils
 				IdUrlMimeTypeTriple originalIdUrlMimeTypeTriple = UrlUtils.resultUrlsWithIDs.get(targetUrl);
 				if ( originalIdUrlMimeTypeTriple != null ) {	// If we got into an already-found docUrl, log it and return.
 					ConnSupportUtils.handleReCrossedTargetUrl(urlId, sourceUrl, pageUrl, targetUrl, originalIdUrlMimeTypeTriple, calledForPageUrl);
-					throw new AlreadyFoundDocUrlException();
+					throw AlreadyFoundDocUrlException.instance;
 				}
 
 				// Get the domain of the target url. It may be a subdomain or a completely different one.
@@ -636,7 +659,7 @@ public class HttpConnUtils
 			
 			// It should have returned if there was an HTTP 2XX code. Now we have to handle the error-code.
 			String errorMessage = ConnSupportUtils.onErrorStatusCode(currentUrl, targetDomainStr, responseCode, calledForPageUrl, response);
-			throw new RuntimeException(errorMessage);	// This is not thrown if a "DomainBlockedException" was thrown first.
+			throw new HttpErrorStatusException(errorMessage, responseCode);	// This is not thrown if a "DomainBlockedException" was thrown first.
 			
 		} catch (AlreadyFoundDocUrlException | RuntimeException | ConnTimeoutException | DomainBlockedException | DomainWithUnsupportedHEADmethodException e) {	// We already logged the right messages.
 			if ( response != null ) {
@@ -0,0 +1,292 @@
+package eu.openaire.publications_retriever.util.timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * This class implements a "hashed-wheel"-timer, which is used for the watchdogs that interrupt the threads which hang while reading from a stream.
+ * Nearly all of these watchdogs are cancelled long before they expire, so both the scheduling and the cancellation have to be cheap, even with tens of thousands of Virtual Threads.
+ * The scheduling just adds the timeout in a lock-free queue and the cancellation just changes its state, so both are O(1).
+ * A single worker-thread moves the new timeouts in the buckets of the wheel, removes the cancelled ones from their buckets and expires the ones whose deadline has passed, once every "tick".
+ * The precision of the timer is one "tick", which is more than enough for watchdogs of multiple seconds.
+ * The class is "final", as its constructor starts the worker-thread, which must not see a partially-constructed subclass.
+ * @author Lampros Smyrnaios
+ */
+public final class HashedWheelTimer
+{
+	private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+	private static final int maxTimeoutsToTransferPerTick = 100_000;	// Avoid starving the expiration of the timeouts, if a huge amount of them is scheduled at once.
+
+	private final long tickDurationNanos;
+	private final Bucket[] wheel;
+	private final int wheelMask;
+
+	private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+	private final AtomicLong numOfPendingTimeouts = new AtomicLong(0);
+
+	private final long startTime;
+	private long tick = 0;	// It is accessed only by the worker-thread.
+
+	private final Thread workerThread;
+	private volatile boolean isStopped = false;
+
+
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel)
+	{
+		if ( tickDuration <= 0 )
+			throw new IllegalArgumentException("The \"tickDuration\" must be greater than zero: " + tickDuration);
+		if ( (ticksPerWheel <= 0) || (ticksPerWheel > (1 << 30)) )
+			throw new IllegalArgumentException("The \"ticksPerWheel\" must be between 1 and 2^30: " + ticksPerWheel);
+
+		int wheelSize = Integer.highestOneBit(ticksPerWheel);	// Use a power of two, so that the bucket-index is calculated with a bitwise "AND".
+		if ( wheelSize < ticksPerWheel )
+			wheelSize <<= 1;
+		this.wheel = new Bucket[wheelSize];
+		for ( int i = 0; i < wheelSize; i++ )
+			this.wheel[i] = new Bucket();
+		this.wheelMask = (wheelSize -1);
+		this.tickDurationNanos = unit.toNanos(tickDuration);
+
+		this.startTime = System.nanoTime();
+		this.workerThread = Thread.ofPlatform().name(name).daemon(true).unstarted(this::runWorker);
+		this.workerThread.start();
+	}
+
+
+	/**
+	 * This method schedules the given task to be executed after the given delay, by the worker-thread. So, the task should be very short (e.g. interrupting a thread).
+	 * @param task
+	 * @param delay
+	 * @param unit
+	 * @return the timeout, which can be cancelled.
+	 * @throws RejectedExecutionException if the timer has been stopped.
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) throws RejectedExecutionException
+	{
+		if ( isStopped )
+			throw new RejectedExecutionException("The timer \"" + workerThread.getName() + "\" has been stopped!");
+
+		Timeout timeout = new Timeout(this, task, (System.nanoTime() - startTime + unit.toNanos(delay)));
+		numOfPendingTimeouts.incrementAndGet();
+		newTimeouts.add(timeout);
+		return timeout;
+	}
+
+
+	public long getNumOfPendingTimeouts() {
+		return numOfPendingTimeouts.get();
+	}
+
+
+	/**
+	 * This method stops the worker-thread. Any pending timeouts will never expire.
+	 */
+	public void stop()
+	{
+		isStopped = true;
+		workerThread.interrupt();
+	}
+
+
+	private void runWorker()
+	{
+		while ( !isStopped ) {
+			long deadline = waitForNextTick();
+			if ( deadline == -1 )
+				break;	// The timer was stopped.
+
+			removeCancelledTimeouts();
+			transferNewTimeoutsToBuckets();
+			wheel[(int) (tick & wheelMask)].expireTimeouts(deadline);
+			tick ++;
+		}
+	}
+
+
+	/**
+	 * This method sleeps until the end of the current tick and returns its deadline (relative to the "startTime").
+	 * It returns -1, if the timer was stopped while waiting.
+	 */
+	private long waitForNextTick()
+	{
+		long deadline = tickDurationNanos * (tick +1);
+		long sleepTimeNanos;
+		while ( (sleepTimeNanos = (deadline - (System.nanoTime() - startTime))) > 0 ) {
+			LockSupport.parkNanos(this, sleepTimeNanos);
+			if ( isStopped )
+				return -1;
+		}
+		return deadline;
+	}
+
+
+	private void removeCancelledTimeouts()
+	{
+		Timeout timeout;
+		while ( (timeout = cancelledTimeouts.poll()) != null ) {
+			if ( timeout.bucket != null )	// Otherwise, it is still in the "newTimeouts"-queue and it will be skipped when transferred.
+				timeout.bucket.remove(timeout);
+		}
+	}
+
+
+	private void transferNewTimeoutsToBuckets()
+	{
+		Timeout timeout;
+		for ( int i = 0; i < maxTimeoutsToTransferPerTick; i++ ) {
+			if ( (timeout = newTimeouts.poll()) == null )
+				break;
+			if ( timeout.state == Timeout.STATE_CANCELLED )
+				continue;	// It was cancelled before even reaching the wheel.
+
+			long calculatedTick = (timeout.deadline / tickDurationNanos);
+			timeout.remainingRounds = ((calculatedTick - tick) / wheel.length);
+			long ticksToUse = Math.max(calculatedTick, tick);	// Make sure we do not schedule in the past. The expired timeouts will be handled in the current tick.
+			wheel[(int) (ticksToUse & wheelMask)].add(timeout);
+		}
+	}
+
+
+	/**
+	 * A timeout which was scheduled in the timer. It can be cancelled by any thread.
+	 */
+	public static final class Timeout
+	{
+		private static final int STATE_INIT = 0;
+		private static final int STATE_CANCELLED = 1;
+		private static final int STATE_EXPIRED = 2;
+
+		private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+		private final HashedWheelTimer timer;
+		private final Runnable task;
+		private final long deadline;
+		private volatile int state = STATE_INIT;
+
+		// The following are accessed only by the worker-thread.
+		private long remainingRounds;
+		private Bucket bucket;
+		private Timeout next;
+		private Timeout prev;
+
+
+		private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+			this.timer = timer;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+
+		/**
+		 * This method cancels the timeout, in case it has not expired yet.
+		 * @return true, if it was cancelled by this call.
+		 */
+		public boolean cancel()
+		{
+			if ( !STATE_UPDATER.compareAndSet(this, STATE_INIT, STATE_CANCELLED) )
+				return false;
+			timer.numOfPendingTimeouts.decrementAndGet();
+			timer.cancelledTimeouts.add(this);	// It will be removed from its bucket by the worker-thread, in the next tick.
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return (state == STATE_CANCELLED);
+		}
+
+		public boolean isExpired() {
+			return (state == STATE_EXPIRED);
+		}
+
+		private void expire()
+		{
+			if ( !STATE_UPDATER.compareAndSet(this, STATE_INIT, STATE_EXPIRED) )
+				return;	// It was cancelled in the meantime.
+			timer.numOfPendingTimeouts.decrementAndGet();
+			try {
+				task.run();
+			} catch (Throwable t) {
+				logger.warn("An exception was thrown by the task of a timeout!", t);
+			}
+		}
+	}
+
+
+	/**
+	 * A doubly-linked list of timeouts. It is accessed only by the worker-thread, so no synchronization is needed.
+	 */
+	private static final class Bucket
+	{
+		private Timeout head;
+		private Timeout tail;
+
+
+		void add(Timeout timeout)
+		{
+			timeout.bucket = this;
+			if ( head == null )
+				head = tail = timeout;
+			else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+
+		void expireTimeouts(long deadline)
+		{
+			Timeout timeout = head;
+			while ( timeout != null ) {
+				Timeout next = timeout.next;
+				if ( timeout.remainingRounds <= 0 ) {
+					remove(timeout);
+					if ( timeout.deadline <= deadline )
+						timeout.expire();
+					else	// This should never happen, as the timeout was placed in the right bucket.
+						logger.error("The timeout's deadline (" + timeout.deadline + ") is after the current deadline (" + deadline + ")!");
+				} else if ( timeout.isCancelled() )
+					remove(timeout);
+				else
+					timeout.remainingRounds --;
+				timeout = next;
+			}
+		}
+
+
+		void remove(Timeout timeout)
+		{
+			if ( timeout.bucket != this )
+				return;	// Already removed.
+			Timeout next = timeout.next;
+			if ( timeout.prev != null )
+				timeout.prev.next = next;
+			if ( next != null )
+				next.prev = timeout.prev;
+
+			if ( timeout == head ) {
+				if ( timeout == tail )
+					head = tail = null;
+				else
+					head = next;
+			} else if ( timeout == tail )
+				tail = timeout.prev;
+
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+
+}
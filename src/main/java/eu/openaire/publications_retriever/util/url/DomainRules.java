@@ -0,0 +1,244 @@
+package eu.openaire.publications_retriever.util.url;
+
+import eu.openaire.publications_retriever.util.args.ArgsUtils;
+import eu.openaire.publications_retriever.util.file.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * This class holds the rules for specific domains (e.g. the ones to be blocked, or the ones which should never be blocked), in a "trie" of the reversed labels of their hosts.
+ * The rules are loaded from the "domain-rules.txt"-file of the resources, so they can be changed without touching any regex.
+ * The lookup of a host needs one hash-lookup for each of its labels (e.g. "com" -> "google" -> "www"), with no regex involved.
+ * @author Lampros Smyrnaios
+ */
+public class DomainRules
+{
+	private static final Logger logger = LoggerFactory.getLogger(DomainRules.class);
+
+	public enum Category {
+		allowed,	// An exception to the blocking-rules of a parent domain (e.g. "drive.google.com").
+		notBlockable,	// The domains which should never be blocked after a number of failures (e.g. "doi.org").
+		problematic, javascript, htmlDocUrls, noDocUrls, requiresLogin, largerDepth, connectivityProblems;	// The domains to be blocked, along with the reason.
+
+		public boolean isBlocking() {
+			return ((this != allowed) && (this != notBlockable));
+		}
+	}
+
+
+	private record Rule(Category category, boolean isForCrawlingOnly)
+	{
+		boolean isActive() {
+			return (!isForCrawlingOnly || !ArgsUtils.shouldJustDownloadHtmlFiles);	// In case we just download the html-pages, no internal links are accessed, so there is minimal overload.
+		}
+	}
+
+
+	private static final class Node
+	{
+		final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>(4);
+		volatile Rule rule = null;
+	}
+
+	private static final String ANY_LABEL = "*";
+
+	private static final Node root = new Node();
+	private static final ConcurrentHashMap<String, Rule> labelRules = new ConcurrentHashMap<>();	// The rules which match any host containing a specific label.
+
+	public static final String resourcePath = "domain-rules.txt";
+
+	static {
+		loadRules();
+	}
+
+
+	private static void loadRules()
+	{
+		try ( InputStream inputStream = DomainRules.class.getClassLoader().getResourceAsStream(resourcePath) )
+		{
+			if ( inputStream == null ) {
+				String errorMsg = "File not found in resources: " + resourcePath;
+				logger.error(errorMsg);
+				System.err.println(errorMsg);
+				System.exit(79);
+			}
+
+			int numOfRules = 0;
+			try ( BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), FileUtils.mb) ) {
+				String line;
+				while ( (line = reader.readLine()) != null ) {
+					int commentIndex = line.indexOf('#');
+					if ( commentIndex != -1 )
+						line = line.substring(0, commentIndex);
+					line = line.trim();
+					if ( line.isEmpty() )
+						continue;
+					String[] parts = line.split("\\s+");
+					try {
+						if ( (parts.length < 2) || (parts.length > 3) || ((parts.length == 3) && !parts[2].equals("crawling")) )
+							throw new IllegalArgumentException("Invalid form.");
+						addRule(parts[0], Category.valueOf(parts[1]), (parts.length == 3));
+						numOfRules ++;
+					} catch (IllegalArgumentException iae) {
+						logger.error("Invalid domain-rule: \"" + line + "\" (" + iae.getMessage() + ")");
+					}
+				}
+			}
+			logger.debug("Loaded " + numOfRules + " domain-rules from the file: " + resourcePath);
+		} catch (IOException ioe) {
+			String errorMsg = "Could not read file:" + resourcePath;
+			logger.error(errorMsg, ioe);
+			System.err.println(errorMsg);
+			System.exit(80);
+		}
+	}
+
+
+	/**
+	 * This method adds a rule. It can be used by external services as well, in order to add their own rules.
+	 * @param rule either a host-suffix (e.g. "google.*", "elsevier.com"), or a label-rule (e.g. "label:mail").
+	 * @param category
+	 * @param isForCrawlingOnly if true, then the rule is not used when the html-pages are just downloaded.
+	 */
+	public static void addRule(String rule, Category category, boolean isForCrawlingOnly)
+	{
+		rule = rule.toLowerCase();
+		if ( rule.startsWith("label:") ) {
+			String label = rule.substring("label:".length());
+			if ( label.isEmpty() || label.contains(".") )
+				throw new IllegalArgumentException("Invalid label.");
+			labelRules.put(label, new Rule(category, isForCrawlingOnly));
+			return;
+		}
+
+		if ( rule.isEmpty() || rule.startsWith(".") || rule.endsWith(".") || rule.contains("..") )
+			throw new IllegalArgumentException("Invalid host.");
+		Node node = root;
+		int labelEnd = rule.length();
+		while ( labelEnd > 0 ) {
+			int labelStart = (rule.lastIndexOf('.', (labelEnd -1)) +1);
+			node = node.children.computeIfAbsent(rule.substring(labelStart, labelEnd), k -> new Node());
+			labelEnd = (labelStart -1);
+		}
+		node.rule = new Rule(category, isForCrawlingOnly);
+	}
+
+
+	/**
+	 * This method finds the category of the given host. The most specific host-suffix rule is used. If there is none, then the label-rules are checked.
+	 * @param host in lowercase, without a port (e.g. "www.google.com").
+	 * @return the category, or null, if no rule matches.
+	 */
+	public static Category getCategory(String host)
+	{
+		if ( (host == null) || host.isEmpty() )
+			return null;
+
+		RuleMatch ruleMatch = findMostSpecificRule(root, host, host.length(), 0, null);
+		if ( ruleMatch != null )
+			return ruleMatch.rule.category;
+
+		if ( !labelRules.isEmpty() ) {
+			int labelEnd = host.lastIndexOf('.');	// The top-level-domain is not checked.
+			while ( labelEnd > 0 ) {
+				int labelStart = (host.lastIndexOf('.', (labelEnd -1)) +1);
+				Rule rule = labelRules.get(host.substring(labelStart, labelEnd));
+				if ( (rule != null) && rule.isActive() )
+					return rule.category;
+				labelEnd = (labelStart -1);
+			}
+		}
+		return null;
+	}
+
+
+	private record RuleMatch(Rule rule, int depth) {}
+
+
+	/**
+	 * This method walks the "trie" from the last label of the host to the first one, following both the exact label and the "*"-label.
+	 * @return the active rule with the most labels, or null, if there is none.
+	 */
+	private static RuleMatch findMostSpecificRule(Node node, String host, int labelEnd, int depth, RuleMatch bestMatch)
+	{
+		if ( (labelEnd <= 0) || node.children.isEmpty() )
+			return bestMatch;
+
+		int labelStart = (host.lastIndexOf('.', (labelEnd -1)) +1);
+		Node child = node.children.get(host.substring(labelStart, labelEnd));
+		if ( child != null )
+			bestMatch = visitNode(child, host, labelStart, (depth +1), bestMatch);
+		Node anyLabelChild = node.children.get(ANY_LABEL);
+		if ( anyLabelChild != null )
+			bestMatch = visitNode(anyLabelChild, host, labelStart, (depth +1), bestMatch);
+		return bestMatch;
+	}
+
+
+	private static RuleMatch visitNode(Node node, String host, int labelStart, int depth, RuleMatch bestMatch)
+	{
+		Rule rule = node.rule;
+		if ( (rule != null) && rule.isActive() && ((bestMatch == null) || (depth > bestMatch.depth)) )
+			bestMatch = new RuleMatch(rule, depth);
+		return findMostSpecificRule(node, host, (labelStart -1), depth, bestMatch);
+	}
+
+
+	/**
+	 * @param host in lowercase
+	 * @return the category of the given host, if it is a blocking one, otherwise null.
+	 */
+	public static Category getBlockingCategory(String host)
+	{
+		Category category = getCategory(host);
+		return (((category != null) && category.isBlocking()) ? category : null);
+	}
+
+
+	/**
+	 * @param domainStr in lowercase
+	 * @return true, if the given domain should never be blocked after a number of failures.
+	 */
+	public static boolean isNotBlockable(String domainStr) {
+		return (getCategory(domainStr) == Category.notBlockable);
+	}
+
+
+	/**
+	 * This method returns the host of the given "http(s)"-url, without any user-info or port.
+	 * @param lowerCaseUrl
+	 * @return the host, or null, if this is not an "http(s)"-url.
+	 */
+	public static String getHostOfUrl(String lowerCaseUrl)
+	{
+		int hostStart;
+		if ( lowerCaseUrl.startsWith("https://") )
+			hostStart = 8;
+		else if ( lowerCaseUrl.startsWith("http://") )
+			hostStart = 7;
+		else
+			return null;
+
+		int length = lowerCaseUrl.length();
+		int hostEnd = hostStart;
+		for ( char c; hostEnd < length; hostEnd++ ) {
+			if ( ((c = lowerCaseUrl.charAt(hostEnd)) == '/') || (c == '?') || (c == '#') )
+				break;
+			else if ( c == '@' )
+				hostStart = (hostEnd +1);	// Skip the user-info.
+		}
+		int portIndex = lowerCaseUrl.lastIndexOf(':', (hostEnd -1));
+		if ( (portIndex >= hostStart) && (lowerCaseUrl.charAt(hostStart) != '[') )	// Not an IPv6 address.
+			hostEnd = portIndex;
+		return ((hostEnd > hostStart) ? lowerCaseUrl.substring(hostStart, hostEnd) : null);
+	}
+
+}
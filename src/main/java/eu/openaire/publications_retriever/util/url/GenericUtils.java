@@ -1,9 +1,15 @@
 package eu.openaire.publications_retriever.util.url;
 
+import eu.openaire.publications_retriever.crawler.BoilerplateLinks;
+import eu.openaire.publications_retriever.crawler.InternalLinkRanker;
 import eu.openaire.publications_retriever.crawler.PageCrawler;
+import eu.openaire.publications_retriever.crawler.RepositoryPlatforms;
+import eu.openaire.publications_retriever.machine_learning.MachineLearning;
 import eu.openaire.publications_retriever.machine_learning.PageStructureMLA;
+import eu.openaire.publications_retriever.util.file.BufferPool;
 import eu.openaire.publications_retriever.util.file.FileUtils;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.http.DomainCircuitBreaker;
 import eu.openaire.publications_retriever.util.http.HttpConnUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,20 +44,26 @@ public class GenericUtils {
         HttpConnUtils.blacklistedDomains.clear();
         HttpConnUtils.timesDomainsHadInputNotBeingDocNorPage.clear();
         HttpConnUtils.timesDomainsReturnedNoType.clear();
-        ConnSupportUtils.timesDomainsReturned5XX.clear();
-        ConnSupportUtils.timesDomainsHadTimeoutEx.clear();
+        DomainCircuitBreaker.domainsWithCircuitBreakers.clear();
         PageCrawler.timesDomainNotGivingInternalLinks.clear();
         PageCrawler.timesDomainNotGivingDocUrls.clear();
         UrlUtils.domainsAndNumHits.clear();    // This hashMap is used to determine if a domain is successful enough to keep it non-blocked.
 
         // Paths' data, which also contribute to domain-blocking.
         ConnSupportUtils.timesPathsReturned403.clear();
-        ConnSupportUtils.domainsMultimapWithPaths403BlackListed.clear();
+        ConnSupportUtils.domainsWithPaths403BlackListed.clear();
 
-        // Clear tracking data for the "check_remaining_links"-procedure, which BLOCKS the search of the remaining-internal-links FOR EACH page.
+        // Clear tracking data for the "check_remaining_links"-procedure, which decides the budget of the remaining-internal-links of each domain.
         PageCrawler.should_check_remaining_links = true;
         PageCrawler.timesCheckedRemainingLinks.set(0);
         PageCrawler.timesFoundDocOrDatasetUrlFromRemainingLinks.set(0);
+        InternalLinkRanker.domainsWithRemainingLinksStats.clear();
+
+        // The platforms of the domains, along with the disabled docUrl-derivations.
+        RepositoryPlatforms.domainsPlatforms.clear();
+
+        // The learned boilerplate-links of the domains.
+        BoilerplateLinks.domainsWithLinks.invalidateAll();
     }
 
 
@@ -69,7 +81,7 @@ public class GenericUtils {
         // Clear tracking data of successful detections and downloads.
         UrlUtils.resultUrlsWithIDs.clear();
         ConnSupportUtils.fileHashesWithLocations.clear();
-        PageStructureMLA.pagePathWithDocOrDatasetUrlStructure.clear();
+        PageStructureMLA.pagePathHashesWithDocOrDatasetUrlStructures.invalidateAll();
 
         // Domain additional data, which does not contribute in blocking the domains, but they do contribute in performance.
         HttpConnUtils.domainsSupportingHTTPS.clear();
@@ -77,11 +89,20 @@ public class GenericUtils {
         HttpConnUtils.domainsWithUnsupportedHeadMethod.clear();
         HttpConnUtils.domainsWithUnsupportedAcceptLanguageParameter.clear();
         HttpConnUtils.domainsWithUnsupportedNewerHTTPVersion.clear();
+        ConnSupportUtils.domainsWithUnsupportedRangeRequests.clear();
+        ConnSupportUtils.timesDomainsCheckedUncategorizedLinks.clear();
+        ConnSupportUtils.timesDomainsGaveDocFromUncategorizedLinks.clear();
+        ConnSupportUtils.domainsWithRetryAfterTime.clear();
+        RetryQueue.timesUrlsWereDeferred.clear();
+        RetryQueue.timesDomainsHadUrlsDeferred.clear();
+        RetryQueue.deferredIdsWithResult.clear();
 
         // Other data.
         ConnSupportUtils.domainsWithConnectionData.clear();
+        BufferPool.clearIdleBuffers();
+        UrlNormalizationCache.clearCaches();
 
-        // The data-structures from the "MachineLearning" class are not added here, since it is in experimental phase and not running in production, thus these data-structures will most likely be empty.
+        MachineLearning.clearModels();
     }
 
 
@@ -70,6 +70,8 @@ public class LoaderAndChecker
 			throw new RuntimeException(e);
 		}
 		finally {
+			RetryQueue.retryRemainingDeferredUrls();	// Wait for any urls which had transient failures and retry them, before writing the last results.
+
 			// Write any remaining quadruples from memory to disk (we normally write every "FileUtils.jasonGroupSize" quadruples, so a few last quadruples might have not be written yet).
 			if ( !FileUtils.dataForOutput.isEmpty() ) {
 				logger.debug("Writing last data points to the outputFile.");
@@ -115,7 +117,7 @@ public class LoaderAndChecker
 						return false;
 
 					String urlToCheck = retrievedUrlToCheck;
-					if ( (urlToCheck = basicURLNormalizer.filter(retrievedUrlToCheck)) == null ) {
+					if ( (urlToCheck = UrlNormalizationCache.normalize(retrievedUrlToCheck)) == null ) {
 						logger.warn("Could not normalize url: " + retrievedUrlToCheck);
 						UrlUtils.addOutputData("null", retrievedUrlToCheck, "null", UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded at loading time, due to normalization's problems.", "null", null, true, "true", "false", "false", "false", "false", null, "null", "null");
 						LoaderAndChecker.connProblematicUrls.incrementAndGet();
@@ -137,7 +139,7 @@ public class LoaderAndChecker
 					try {	// We sent the < null > into quotes to avoid causing NPEs in the thread-safe datastructures that do not support null input.
 						HttpConnUtils.connectAndCheckMimeType("null", retrievedUrlToCheck, urlToCheck, urlToCheck, null, true, isPossibleDocOrDatasetUrl);
 					} catch (Exception e) {
-						handleException("null", urlToCheck, e);
+						handleException("null", retrievedUrl, urlToCheck, e);
 						return false;	// The error has already been logged in better detail.
 					}
 					return true;
@@ -257,7 +259,7 @@ public class LoaderAndChecker
 					}
 
 					String sourceUrl = urlToCheck;	// Hold it here for the logging-messages.
-					if ( (urlToCheck = basicURLNormalizer.filter(sourceUrl)) == null ) {
+					if ( (urlToCheck = UrlNormalizationCache.normalize(sourceUrl)) == null ) {
 						logger.warn("Could not normalize url: " + sourceUrl);
 						UrlUtils.addOutputData(retrievedId, sourceUrl, "null", UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded at loading time, due to normalization's problems.", "null", null, true, "true", "false", "false", "false", "false", null, "null", "null");
 						LoaderAndChecker.connProblematicUrls.incrementAndGet();
@@ -278,7 +280,7 @@ public class LoaderAndChecker
 							loggedUrlsOfCurrentId.add(urlToCheck);
 						// Here the runnable was successful in any case.
 					} catch (Exception e) {
-						if ( handleException(retrievedId, urlToCheck, e) )
+						if ( handleException(retrievedId, sourceUrl, urlToCheck, e) )
 							return false;	// The error has already been logged in better detail.
 
 						// This url had connectivity problems.. but the rest might not, go check them out.
@@ -341,7 +343,7 @@ public class LoaderAndChecker
 
 					String urlToCheck = retrievedUrl;
 					String sourceUrl = urlToCheck;    // Hold it here for the logging-messages.
-					if ( (urlToCheck = basicURLNormalizer.filter(sourceUrl)) == null ) {
+					if ( (urlToCheck = UrlNormalizationCache.normalize(sourceUrl)) == null ) {
 						logger.warn("Could not normalize url: " + sourceUrl);
 						UrlUtils.addOutputData(retrievedId, sourceUrl, "null", UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded at loading time, due to normalization's problems.", "null", null, true, "true", "false", "false", "false", "false", null, "null", "null");
 						LoaderAndChecker.connProblematicUrls.incrementAndGet();
@@ -366,7 +368,7 @@ public class LoaderAndChecker
 					try {    // Check if it's a docUrl, if not, it gets crawled.
 						HttpConnUtils.connectAndCheckMimeType(retrievedId, sourceUrl, urlToCheck, urlToCheck, null, true, isPossibleDocOrDatasetUrl);
 					} catch (Exception e) {
-						handleException(retrievedId, urlToCheck, e);
+						handleException(retrievedId, sourceUrl, urlToCheck, e);
 						return false;
 					}
 					return true;
@@ -418,7 +420,7 @@ public class LoaderAndChecker
 
 						String urlToCheck = retrievedUrl;
 						String sourceUrl = urlToCheck;    // Hold it here for the logging-messages.
-						if ( (urlToCheck = basicURLNormalizer.filter(sourceUrl)) == null ) {
+						if ( (urlToCheck = UrlNormalizationCache.normalize(sourceUrl)) == null ) {
 							logger.warn("Could not normalize url: " + sourceUrl);
 							UrlUtils.addOutputData(retrievedId, sourceUrl, "null", UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded at loading time, due to normalization's problems.", "null", null, true, "true", "false", "false", "false", "false", null, "null", "null");
 							LoaderAndChecker.connProblematicUrls.incrementAndGet();
@@ -443,7 +445,7 @@ public class LoaderAndChecker
 						try {    // Check if it's a docUrl, if not, it gets crawled.
 							HttpConnUtils.connectAndCheckMimeType(retrievedId, sourceUrl, urlToCheck, urlToCheck, null, true, isPossibleDocOrDatasetUrl);
 						} catch (Exception e) {
-							handleException(retrievedId, urlToCheck, e);
+							handleException(retrievedId, sourceUrl, urlToCheck, e);
 							return false;
 						}
 					}
@@ -457,6 +459,7 @@ public class LoaderAndChecker
 
 	public static void executeTasksAndHandleResults(List<Callable<Boolean>> callableTasks, int batchCount)
 	{
+		RetryQueue.addDueRetryTasks(callableTasks);	// Retry the urls which had transient failures and their waiting time has passed.
 		int numFailedTasks = invokeAllTasksAndWait(callableTasks);
 		if ( numFailedTasks == -1 ) {
 			FileUtils.writeResultsToFile();	// Writes to the output file
@@ -533,12 +536,13 @@ public class LoaderAndChecker
 	 */
 	private static boolean checkRemainingUrls(String retrievedId, Set<String> retrievedUrlsOfThisId, HashSet<String> loggedUrlsOfThisId, boolean isSingleIdUrlPair)
 	{
-		for ( String urlToCheck : retrievedUrlsOfThisId )
+		for ( String retrievedUrl : retrievedUrlsOfThisId )
 		{
 			if ( Thread.currentThread().isInterrupted() ) return false;
+			String urlToCheck = retrievedUrl;	// The "retrievedUrl" is kept, in order to be retried as it was given, in case of a transient failure.
 			// Check this url -before and after normalization- against the logged urls of this ID.
 			if ( loggedUrlsOfThisId.contains(urlToCheck)
-				|| ( ((urlToCheck = basicURLNormalizer.filter(urlToCheck)) != null) && loggedUrlsOfThisId.contains(urlToCheck) ) )
+				|| ( ((urlToCheck = UrlNormalizationCache.normalize(urlToCheck)) != null) && loggedUrlsOfThisId.contains(urlToCheck) ) )
 					continue;
 
 			loadingRetries.incrementAndGet();
@@ -549,7 +553,7 @@ public class LoaderAndChecker
 					loggedUrlsOfThisId.add(urlToCheck);
 				return true;	// A url was checked and didn't have any problems, return and log the remaining urls.
 			} catch (Exception e) {
-				if ( handleException(retrievedId, urlToCheck, e) )
+				if ( handleException(retrievedId, retrievedUrl, urlToCheck, e) )
 					return false;	// The error has already been logged in better detail.
 
 				if ( !isSingleIdUrlPair )
@@ -561,7 +565,16 @@ public class LoaderAndChecker
 	}
 
 
-	public static boolean handleException(String retrievedId, String urlToCheck, Exception e)
+	/**
+	 * This method handles the exception which was thrown while connecting with the given url.
+	 * If the failure is transient, the url is deferred, otherwise its outcome is written.
+	 * @param retrievedId
+	 * @param sourceUrl the url as it was given in the input, which is used in case the url gets retried
+	 * @param urlToCheck the normalized url
+	 * @param e
+	 * @return true, if the caller-method should return immediately
+	 */
+	public static boolean handleException(String retrievedId, String sourceUrl, String urlToCheck, Exception e)
 	{
 		if ( Thread.currentThread().isInterrupted() || (e instanceof InterruptedException) || (e.getCause() instanceof InterruptedException) || ((e.getMessage() != null) && e.getMessage().contains("interrupted")) )
 			return true;
@@ -571,6 +584,10 @@ public class LoaderAndChecker
 			if ( (msg != null) && msg.contains(alreadyLoggedMessage) )
 				return true;	// Instruct the caller-method to return immediately.
 		}
+
+		if ( RetryQueue.deferIfTransientFailure(retrievedId, sourceUrl, e) )
+			return false;	// Its outcome will be written after it is retried, later in this run.
+
 		List<String> list = getWasValidAndCouldRetry(e, urlToCheck);
 		String wasUrlValid = list.get(0);
 		String couldRetry = list.get(1);
@@ -589,7 +606,8 @@ public class LoaderAndChecker
 	 */
 	public static String handleUrlChecks(String urlId, String retrievedUrl)
 	{
-		String urlDomain = UrlUtils.getDomainStr(retrievedUrl, null);
+		UrlView urlView = UrlUtils.getUrlView(retrievedUrl);	// Split the url once, its parts are reused by the following checks.
+		String urlDomain = ((urlView != null) ? UrlUtils.getDomainStr(retrievedUrl, urlView) : null);
 		if ( urlDomain == null ) {    // If the domain is not found, it means that a serious problem exists with this docPage, and we shouldn't crawl it.
 			// The reason is already logged.
 			UrlUtils.addOutputData(urlId, retrievedUrl, "null", UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded in 'LoaderAndChecker.handleUrlChecks()' method, after the occurrence of a domain-retrieval error.", "null", null, true, "true", "false", "false", "false", "false", null, "null", "null");
@@ -614,7 +632,7 @@ public class LoaderAndChecker
 			return null;
 		}
 		
-		String lowerCaseUrl = retrievedUrl.toLowerCase();
+		String lowerCaseUrl = urlView.getLowerCaseUrl();
 		
 		if ( UrlTypeChecker.shouldNotAcceptPageUrl(urlId, retrievedUrl, retrievedUrl, lowerCaseUrl, true) )
 			return null;	// The url-logging is happening inside this method (per urlType).
@@ -689,7 +707,7 @@ public class LoaderAndChecker
 			// Some "retrieved-urls" maybe were excluded before the normalization point (e.g. because their domains were blocked or were duplicates).
 			// We have to make sure the "contains()" succeed on the same-started-urls.
 			String tempUrl = retrievedUrl;
-			if ( (retrievedUrl = basicURLNormalizer.filter(retrievedUrl)) == null )
+			if ( (retrievedUrl = UrlNormalizationCache.normalize(retrievedUrl)) == null )
 					retrievedUrl = tempUrl;	// Make sure we check the non-normalized version.
 
 			if ( !loggedUrlsOfThisId.contains(retrievedUrl) )
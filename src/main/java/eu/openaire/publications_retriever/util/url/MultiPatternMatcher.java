@@ -0,0 +1,587 @@
+package eu.openaire.publications_retriever.util.url;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class holds a group of regexes which are matched against the same input, along with an "Aho-Corasick"-automaton of the literals which are required by each of them.
+ * For each regex, a set of literals is extracted from its source, so that any string matching the regex, contains at least one of them.
+ * A single linear scan of the input, with the automaton, gives the regexes which may match (the "candidates"). Only these are run afterward, the rest cannot match.
+ * So, the results are identical to running all the regexes, while the huge alternation-regexes (with their lookarounds) are skipped for most of the inputs.
+ * The regexes for which no required literals can be extracted (or they contain a literal which is always present in the input), are always run.
+ * @author Lampros Smyrnaios
+ */
+public class MultiPatternMatcher
+{
+	private static final Logger logger = LoggerFactory.getLogger(MultiPatternMatcher.class);
+
+	public static final int MAX_PATTERNS = 64;	// One bit for each pattern.
+
+	private final Pattern[] patterns;
+	private final long alwaysCandidateMask;	// The patterns without required literals.
+	private final long allPatternsMask;
+
+	// The automaton, as a full "DFA": the next state for each state and each "class" of characters. Each char which appears in the literals has its own class, the rest of the chars have the class "0".
+	private final int[] charClasses = new int[128];
+	private final HashMap<Character, Integer> nonAsciiCharClasses = new HashMap<>();
+	private int numOfAssignedCharClasses = 0;
+	private final int numOfCharClasses;
+	private final int[] transitions;
+	private final long[] outputs;	// The patterns whose literals end in each state.
+
+
+	/**
+	 * @param patterns the regexes, which will be matched with "Matcher.matches()" against the input.
+	 * @param ubiquitousStrings the strings which are (almost) always found in the input, e.g. "https://" for urls. The literals found inside them do not filter anything, so the extractor tries to find others.
+	 * @param isLowerCaseInput if true, then the uppercase ASCII-chars of the regexes' classes are ignored, which allows more classes (e.g. "\w") to give literals.
+	 */
+	public MultiPatternMatcher(List<Pattern> patterns, Set<String> ubiquitousStrings, boolean isLowerCaseInput)
+	{
+		if ( patterns.size() > MAX_PATTERNS )
+			throw new IllegalArgumentException("Cannot have more than " + MAX_PATTERNS + " patterns!");
+		this.patterns = patterns.toArray(new Pattern[0]);
+		this.allPatternsMask = ((patterns.size() == MAX_PATTERNS) ? -1L : ((1L << patterns.size()) -1));
+
+		List<Set<String>> literalsOfPatterns = new ArrayList<>(patterns.size());
+		long alwaysCandidates = 0;
+		for ( int i = 0; i < this.patterns.length; i++ ) {
+			Set<String> literals = RequiredLiteralsExtractor.extract(this.patterns[i], ubiquitousStrings, isLowerCaseInput);
+			if ( literals == null )
+				alwaysCandidates |= (1L << i);
+			literalsOfPatterns.add(literals);
+			if ( logger.isTraceEnabled() )
+				logger.trace("Required literals for pattern-" + i + ": " + literals);
+		}
+		this.alwaysCandidateMask = alwaysCandidates;
+
+		// Build the "trie" of the literals.
+		List<Map<Character, Integer>> trie = new ArrayList<>();
+		List<Long> nodeOutputs = new ArrayList<>();
+		trie.add(new HashMap<>());
+		nodeOutputs.add(0L);
+		for ( int i = 0; i < literalsOfPatterns.size(); i++ ) {
+			Set<String> literals = literalsOfPatterns.get(i);
+			if ( literals == null )
+				continue;
+			for ( String literal : literals ) {
+				int node = 0;
+				for ( int j = 0; j < literal.length(); j++ ) {
+					char c = literal.charAt(j);
+					Integer child = trie.get(node).get(c);
+					if ( child == null ) {
+						child = trie.size();
+						trie.get(node).put(c, child);
+						trie.add(new HashMap<>());
+						nodeOutputs.add(0L);
+					}
+					if ( (c >= 128) || (charClasses[c] == 0) )
+						getOrAssignCharClass(c);
+					node = child;
+				}
+				nodeOutputs.set(node, (nodeOutputs.get(node) | (1L << i)));
+			}
+		}
+		this.numOfCharClasses = (numOfAssignedCharClasses +1);
+
+		// Build the "DFA", by following the failure-links in breadth-first order.
+		int numOfStates = trie.size();
+		this.transitions = new int[numOfStates * numOfCharClasses];
+		this.outputs = new long[numOfStates];
+		int[] failureLinks = new int[numOfStates];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for ( Map.Entry<Character, Integer> edge : trie.get(0).entrySet() ) {
+			transitions[getCharClass(edge.getKey())] = edge.getValue();
+			queue.add(edge.getValue());	// Its failure-link is the root (0).
+		}	// The rest of the chars lead back to the root.
+		while ( !queue.isEmpty() ) {
+			int state = queue.poll();
+			outputs[state] = (nodeOutputs.get(state) | outputs[failureLinks[state]]);	// The failure-state is always processed before.
+			System.arraycopy(transitions, (failureLinks[state] * numOfCharClasses), transitions, (state * numOfCharClasses), numOfCharClasses);	// Inherit the transitions of the failure-state.
+			for ( Map.Entry<Character, Integer> edge : trie.get(state).entrySet() ) {
+				int cls = getCharClass(edge.getKey());
+				int child = edge.getValue();
+				failureLinks[child] = transitions[(failureLinks[state] * numOfCharClasses) + cls];
+				transitions[(state * numOfCharClasses) + cls] = child;
+				queue.add(child);
+			}
+		}
+		logger.debug("Built the multi-pattern-matcher for " + patterns.size() + " patterns, with " + numOfStates + " states. The patterns which are always run, are: " + Long.toBinaryString(alwaysCandidateMask));
+	}
+
+
+	/**
+	 * This method scans the input once and returns the patterns which may match it, as a bit-mask.
+	 * @param input
+	 * @return the bit-mask of the candidate patterns. The bit "i" refers to the pattern in index "i".
+	 */
+	public long findCandidates(String input)
+	{
+		long candidates = alwaysCandidateMask;
+		int state = 0;
+		for ( int i = 0, length = input.length(); i < length; i++ ) {
+			char c = input.charAt(i);
+			state = transitions[(state * numOfCharClasses) + ((c < 128) ? charClasses[c] : nonAsciiCharClasses.getOrDefault(c, 0))];
+			if ( (candidates |= outputs[state]) == allPatternsMask )
+				break;	// All the patterns are candidates already.
+		}
+		return candidates;
+	}
+
+
+	private void getOrAssignCharClass(char c)
+	{
+		if ( c < 128 )
+			charClasses[c] = ++numOfAssignedCharClasses;
+		else
+			nonAsciiCharClasses.computeIfAbsent(c, k -> ++numOfAssignedCharClasses);
+	}
+
+
+	private int getCharClass(char c) {
+		return ((c < 128) ? charClasses[c] : nonAsciiCharClasses.getOrDefault(c, 0));
+	}
+
+
+	public static boolean isCandidate(long candidates, int patternIndex) {
+		return ((candidates & (1L << patternIndex)) != 0);
+	}
+
+
+	/**
+	 * @return true, if the pattern in the given index matches the input. The pattern is run only if it is a candidate.
+	 */
+	public boolean matches(long candidates, int patternIndex, String input) {
+		return isCandidate(candidates, patternIndex) && patterns[patternIndex].matcher(input).matches();
+	}
+
+
+	public Pattern getPattern(int patternIndex) {
+		return patterns[patternIndex];
+	}
+
+
+	/**
+	 * This class extracts the literals which are required by a regex, by parsing its source.
+	 * For each part of the regex, it calculates the set of strings which the part matches exactly (if they are a few), the set of literals from which at least one appears in any of its matches
+	 * and the sets of strings with which its matches start and end. The last two are used to join the literals of a part with the ones of its neighbours (e.g. "\.(?:[\w]?ht|php)" requires ".ht", ".aht", ..., ".php").
+	 * It is conservative: any unknown construct is treated as "matching anything", which can only lead to fewer (or no) required literals, never to wrong ones.
+	 */
+	static final class RequiredLiteralsExtractor
+	{
+		private static final int MAX_EXACT_SET_SIZE = 64;
+		private static final int MAX_CHAR_CLASS_SIZE = 40;	// It allows the "\w" in lowercase input (37 chars).
+
+		private static final Set<String> ANY_AFFIX = Set.of("");	// Every string starts and ends with the empty-string.
+
+		private final String regex;
+		private final Set<String> ubiquitousStrings;
+		private final boolean isLowerCaseInput;
+		private int pos = 0;
+
+
+		/**
+		 * The info for a part of the regex. If "exact" is not null, then the part matches only these strings. If "required" is not null, then any match of the part contains one of these literals.
+		 * Any match of the part starts with one of the "prefixes" and ends with one of the "suffixes" (these may contain the empty-string).
+		 */
+		private record Info(Set<String> exact, Set<String> required, Set<String> prefixes, Set<String> suffixes)
+		{
+			static Info ofExact(Set<String> exact) {
+				return new Info(exact, exact, exact, exact);
+			}
+		}
+
+		private static final Info UNKNOWN = new Info(null, null, ANY_AFFIX, ANY_AFFIX);
+		private static final Info EMPTY = Info.ofExact(Set.of(""));
+
+
+		private RequiredLiteralsExtractor(String regex, Set<String> ubiquitousStrings, boolean isLowerCaseInput)
+		{
+			this.regex = regex;
+			this.ubiquitousStrings = ubiquitousStrings;
+			this.isLowerCaseInput = isLowerCaseInput;
+		}
+
+
+		/**
+		 * @return the required literals of the given pattern, or null, if none could be extracted.
+		 */
+		static Set<String> extract(Pattern pattern, Set<String> ubiquitousStrings, boolean isLowerCaseInput)
+		{
+			String regex = pattern.pattern();
+			if ( (pattern.flags() != 0) || regex.contains("(?i") || regex.contains("\\Q") )
+				return null;	// The flags change the meaning of the literals.
+			try {
+				RequiredLiteralsExtractor extractor = new RequiredLiteralsExtractor(regex, ubiquitousStrings, isLowerCaseInput);
+				Info info = extractor.parseAlternation();
+				if ( extractor.pos != regex.length() )
+					return null;	// An unbalanced parenthesis.
+				return extractor.getRequired(info);
+			} catch (Exception e) {
+				logger.warn("Could not extract the required literals from regex: " + regex, e);
+				return null;
+			}
+		}
+
+
+		private Info parseAlternation()
+		{
+			List<Info> branches = new ArrayList<>();
+			branches.add(parseConcatenation());
+			while ( (pos < regex.length()) && (regex.charAt(pos) == '|') ) {
+				pos++;
+				branches.add(parseConcatenation());
+			}
+			if ( branches.size() == 1 )
+				return branches.get(0);
+
+			Set<String> exact = new HashSet<>();
+			Set<String> required = new HashSet<>();
+			Set<String> prefixes = new HashSet<>();
+			Set<String> suffixes = new HashSet<>();
+			for ( Info branch : branches ) {
+				exact = union(exact, branch.exact, MAX_EXACT_SET_SIZE);
+				Set<String> branchRequired = getRequired(branch);
+				required = ((branchRequired != null) ? union(required, branchRequired, Integer.MAX_VALUE) : null);	// If null, then this branch may match without any literal.
+				prefixes = union(prefixes, branch.prefixes, MAX_EXACT_SET_SIZE);
+				suffixes = union(suffixes, branch.suffixes, MAX_EXACT_SET_SIZE);
+			}
+			return new Info(exact, required, ((prefixes != null) ? prefixes : ANY_AFFIX), ((suffixes != null) ? suffixes : ANY_AFFIX));
+		}
+
+
+		private Info parseConcatenation()
+		{
+			List<Info> items = new ArrayList<>();
+			while ( pos < regex.length() ) {
+				char c = regex.charAt(pos);
+				if ( (c == '|') || (c == ')') )
+					break;
+				items.add(parseQuantifier(parseAtom()));
+			}
+
+			// Find the best set of required literals: either one of an item, or the cross-product of consecutive items.
+			// The "run" holds the strings with which the part of the concatenation up to the current item ends.
+			Set<String> best = null;
+			Set<String> run = Set.of("");
+			Set<String> prefixes = Set.of("");
+			boolean isPrefixComplete = false;
+			boolean allExact = true;
+			for ( Info item : items ) {
+				best = chooseBetter(best, getRequired(item));
+				Set<String> extendedRun = crossProduct(run, item.prefixes);	// The item starts right after the run.
+				best = chooseBetter(best, getRequired(new Info(null, extendedRun, null, null)));
+				if ( !isPrefixComplete ) {
+					Set<String> extendedPrefixes = crossProduct(prefixes, item.prefixes);
+					if ( extendedPrefixes != null )
+						prefixes = extendedPrefixes;
+					isPrefixComplete = ((item.exact == null) || (extendedPrefixes == null));
+				}
+				if ( item.exact != null ) {
+					extendedRun = crossProduct(run, item.exact);
+					run = ((extendedRun != null) ? extendedRun : item.exact);	// If it is too big, then start a new run.
+				} else {
+					allExact = false;
+					run = item.suffixes;
+				}
+			}
+			best = chooseBetter(best, getRequired(new Info(null, run, null, null)));
+			Set<String> exact = (allExact ? crossProductOfAll(items) : null);
+			return new Info(exact, best, prefixes, run);
+		}
+
+
+		private Info parseAtom()
+		{
+			char c = regex.charAt(pos++);
+			switch ( c ) {
+				case '(':
+					if ( regex.startsWith("?", pos) ) {
+						if ( regex.startsWith("?:", pos) || regex.startsWith("?>", pos) )
+							pos += 2;
+						else if ( regex.startsWith("?=", pos) || regex.startsWith("?!", pos) || regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos) ) {
+							pos += (regex.charAt(pos +1) == '<') ? 3 : 2;
+							parseAlternation();	// A lookaround is zero-width. Its content is not part of the match.
+							expect(')');
+							return EMPTY;
+						} else if ( regex.startsWith("?<", pos) ) {	// A named group.
+							pos = (regex.indexOf('>', pos) +1);
+							if ( pos == 0 )
+								throw new IllegalStateException("Invalid named group.");
+						} else
+							throw new IllegalStateException("Unsupported group-construct at index " + pos);	// The inline flags.
+					}
+					Info groupInfo = parseAlternation();
+					expect(')');
+					return groupInfo;
+				case '[':
+					return parseCharClass();
+				case '\\':
+					char escaped = regex.charAt(pos++);
+					if ( Character.isLetterOrDigit(escaped) ) {
+						if ( Character.isDigit(escaped) || ("xuckN".indexOf(escaped) != -1) )
+							throw new IllegalStateException("Unsupported escape-sequence at index " + pos);	// Their following chars are not literals. These are not used in our regexes.
+						if ( (escaped == 'p') || (escaped == 'P') ) {	// Skip the "{...}" of the unicode-classes.
+							if ( regex.startsWith("{", pos) )
+								pos = (regex.indexOf('}', pos) +1);
+							else
+								pos++;
+						}
+						Set<String> classChars = new HashSet<>();
+						if ( addClassEscapeChars(escaped, classChars) )
+							return Info.ofExact(classChars);
+						return UNKNOWN;	// Another class (\s, \W, ...), a boundary (\b), a back-reference or a special char. It is treated as unknown, which is always safe.
+					}
+					return literal(escaped);
+				case '^':
+				case '$':
+					return EMPTY;
+				case '.':
+					return UNKNOWN;
+				default:
+					return literal(c);
+			}
+		}
+
+
+		/**
+		 * The classes which list a few chars (e.g. "[aj]", "[\w]", "[a-f]") have an exact set. The negated, nested or big classes are treated as unknown.
+		 * If the input is lowercase, then the uppercase ASCII-chars are not included, as they can never be matched.
+		 */
+		private Info parseCharClass()
+		{
+			Set<String> chars = new HashSet<>();
+			boolean isSimple = (pos < regex.length()) && (regex.charAt(pos) != '^');
+			char previousChar = 0;
+			int depth = 1;
+			while ( depth > 0 ) {
+				char c = regex.charAt(pos++);
+				if ( c == '\\' ) {
+					char escaped = regex.charAt(pos++);
+					if ( Character.isLetterOrDigit(escaped) ) {
+						if ( !addClassEscapeChars(escaped, chars) )
+							isSimple = false;
+						previousChar = 0;
+						continue;
+					}
+					c = escaped;
+				} else if ( c == '[' ) {
+					depth++;
+					isSimple = false;
+					continue;
+				} else if ( c == ']' ) {
+					depth--;
+					continue;
+				} else if ( (c == '&') && regex.startsWith("&", pos) ) {
+					isSimple = false;	// An intersection.
+					continue;
+				} else if ( (c == '-') && (previousChar != 0) && (pos < regex.length()) && (regex.charAt(pos) != ']') ) {	// A range.
+					char rangeEnd = regex.charAt(pos++);
+					if ( (rangeEnd == '\\') || (rangeEnd == '[') || ((rangeEnd - previousChar) > MAX_CHAR_CLASS_SIZE) ) {
+						isSimple = false;
+						break;	// The rest of the class is not needed.
+					}
+					for ( char rangeChar = previousChar; rangeChar <= rangeEnd; rangeChar++ )
+						addClassChar(rangeChar, chars);
+					previousChar = 0;
+					continue;
+				}
+				addClassChar(c, chars);
+				previousChar = c;
+			}
+			if ( !isSimple ) {
+				skipRestOfClass(depth);
+				return UNKNOWN;
+			}
+			return ((!chars.isEmpty() && (chars.size() <= MAX_CHAR_CLASS_SIZE)) ? Info.ofExact(chars) : UNKNOWN);
+		}
+
+
+		private void skipRestOfClass(int depth)
+		{
+			while ( depth > 0 ) {
+				char c = regex.charAt(pos++);
+				if ( c == '\\' )
+					pos++;
+				else if ( c == '[' )
+					depth++;
+				else if ( c == ']' )
+					depth--;
+			}
+		}
+
+
+		/**
+		 * @return true, if the chars of the given class-escape were added, or false, if the class is unknown or too big.
+		 */
+		private boolean addClassEscapeChars(char escaped, Set<String> chars)
+		{
+			if ( escaped == 'd' ) {
+				for ( char c = '0'; c <= '9'; c++ )
+					chars.add(String.valueOf(c));
+				return true;
+			} else if ( (escaped == 'w') && isLowerCaseInput ) {
+				for ( char c = 'a'; c <= 'z'; c++ )
+					chars.add(String.valueOf(c));
+				for ( char c = '0'; c <= '9'; c++ )
+					chars.add(String.valueOf(c));
+				chars.add("_");
+				return true;
+			}
+			return false;
+		}
+
+
+		private void addClassChar(char c, Set<String> chars)
+		{
+			if ( !isLowerCaseInput || (c < 'A') || (c > 'Z') )
+				chars.add(String.valueOf(c));
+		}
+
+
+		private Info parseQuantifier(Info atom)
+		{
+			if ( pos >= regex.length() )
+				return atom;
+			int min, max;
+			char c = regex.charAt(pos);
+			switch ( c ) {
+				case '?': min = 0; max = 1; pos++; break;
+				case '*': min = 0; max = -1; pos++; break;
+				case '+': min = 1; max = -1; pos++; break;
+				case '{':
+					int end = regex.indexOf('}', pos);
+					String[] bounds = regex.substring((pos +1), end).split(",", -1);
+					min = Integer.parseInt(bounds[0].trim());
+					max = ((bounds.length == 1) ? min : (bounds[1].trim().isEmpty() ? -1 : Integer.parseInt(bounds[1].trim())));
+					pos = (end +1);
+					break;
+				default:
+					return atom;
+			}
+			if ( (pos < regex.length()) && ((regex.charAt(pos) == '?') || (regex.charAt(pos) == '+')) )
+				pos++;	// A lazy or possessive quantifier has the same matches.
+
+			if ( (min == 1) && (max == 1) )
+				return atom;
+			if ( min == 0 ) {
+				if ( max == 0 )
+					return EMPTY;
+				if ( (max == 1) && (atom.exact != null) ) {
+					Set<String> exact = new HashSet<>(atom.exact);
+					exact.add("");
+					return Info.ofExact(exact);
+				}
+				return new Info(null, null, withEmptyString(atom.prefixes), withEmptyString(atom.suffixes));	// It may match nothing.
+			}
+			return new Info(null, getRequired(atom), atom.prefixes, atom.suffixes);	// It appears at least once.
+		}
+
+
+		private void expect(char c)
+		{
+			if ( (pos >= regex.length()) || (regex.charAt(pos) != c) )
+				throw new IllegalStateException("Expected '" + c + "' at index " + pos);
+			pos++;
+		}
+
+
+		private static Info literal(char c) {
+			return Info.ofExact(Set.of(String.valueOf(c)));
+		}
+
+
+		/**
+		 * @return the required literals of the given info, or null, if there are none, or they contain the empty-string, or a literal which is always present in the input.
+		 */
+		private Set<String> getRequired(Info info)
+		{
+			Set<String> required = info.required;
+			if ( (info.exact != null) && ((required == null) || (minLength(info.exact) >= minLength(required))) )
+				required = info.exact;
+			if ( required == null )
+				return null;
+			for ( String literal : required ) {
+				if ( literal.isEmpty() )
+					return null;
+				for ( String ubiquitousString : ubiquitousStrings )
+					if ( ubiquitousString.contains(literal) )
+						return null;
+			}
+			return required;
+		}
+
+
+		/**
+		 * The better set is the one with the longest shortest-literal, as it filters more inputs. On equality, the smaller set is preferred.
+		 */
+		private static Set<String> chooseBetter(Set<String> set1, Set<String> set2)
+		{
+			if ( set1 == null )
+				return set2;
+			if ( set2 == null )
+				return set1;
+			int minLength1 = minLength(set1), minLength2 = minLength(set2);
+			if ( minLength1 != minLength2 )
+				return ((minLength1 > minLength2) ? set1 : set2);
+			return ((set1.size() <= set2.size()) ? set1 : set2);
+		}
+
+
+		private static int minLength(Set<String> set)
+		{
+			int minLength = Integer.MAX_VALUE;
+			for ( String str : set )
+				minLength = Math.min(minLength, str.length());
+			return minLength;
+		}
+
+
+		/**
+		 * @return the union of the given sets, or null, if any of them is null, or the union is too big.
+		 */
+		private static Set<String> union(Set<String> set1, Set<String> set2, int maxSize)
+		{
+			if ( (set1 == null) || (set2 == null) || ((set1.size() + set2.size()) > maxSize) )
+				return null;
+			set1.addAll(set2);
+			return set1;
+		}
+
+
+		private static Set<String> withEmptyString(Set<String> set)
+		{
+			if ( set.contains("") )
+				return set;
+			Set<String> newSet = new HashSet<>(set);
+			newSet.add("");
+			return newSet;
+		}
+
+
+		private static Set<String> crossProduct(Set<String> prefixes, Set<String> suffixes)
+		{
+			if ( (prefixes.size() * suffixes.size()) > MAX_EXACT_SET_SIZE )
+				return null;
+			Set<String> product = new HashSet<>();
+			for ( String prefix : prefixes )
+				for ( String suffix : suffixes )
+					product.add(prefix + suffix);
+			return product;
+		}
+
+
+		private static Set<String> crossProductOfAll(List<Info> items)
+		{
+			Set<String> product = Set.of("");
+			for ( Info item : items )
+				if ( (product = crossProduct(product, item.exact)) == null )
+					return null;
+			return product;
+		}
+	}
+
+}
@@ -0,0 +1,277 @@
+package eu.openaire.publications_retriever.util.url;
+
+import eu.openaire.publications_retriever.exceptions.ConnTimeoutException;
+import eu.openaire.publications_retriever.exceptions.DomainCircuitOpenException;
+import eu.openaire.publications_retriever.exceptions.HttpErrorStatusException;
+import eu.openaire.publications_retriever.util.args.ArgsUtils;
+import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.http.DomainCircuitBreaker;
+import eu.openaire.publications_retriever.util.http.HttpConnUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This class holds the input-urls which failed with a transient error (e.g. "HTTP 429", "HTTP 503", a connection-timeout or an open circuit-breaker of their domain), in a time-ordered queue.
+ * Instead of writing the "couldRetry"-outcome of these urls right away, they are retried later in the same run, either along with the next batches or at the end of the input.
+ * The time of each retry is decided by the "Retry-After"-header which the domain may have returned, or by an exponential backoff, for each domain.
+ * Only the final outcome of each url is written to the output.
+ * @author Lampros Smyrnaios
+ */
+public class RetryQueue
+{
+	private static final Logger logger = LoggerFactory.getLogger(RetryQueue.class);
+
+	public static boolean shouldRetryTransientFailures = true;	// Another program, using this software as a library, may want to handle the retries on its own.
+
+	private static final Set<Integer> transientStatusCodes = Set.of(408, 425, 429, 503);
+
+	private static final int maxRetriesPerUrl = 2;
+	private static final Duration baseBackoffTime = Duration.ofSeconds(30);
+	private static final Duration maxWaitingTimeForRetry = Duration.ofMinutes(10);	// If the domain asks us to wait more than that, then we just write the "couldRetry"-outcome, as before. We do not want the program to idle for hours.
+
+	private static final PriorityBlockingQueue<DeferredUrl> deferredUrls = new PriorityBlockingQueue<>(100, (u1, u2) -> u1.retryTime.compareTo(u2.retryTime));
+
+	public static final ConcurrentHashMap<String, Integer> timesUrlsWereDeferred = new ConcurrentHashMap<>();
+	public static final ConcurrentHashMap<String, Integer> timesDomainsHadUrlsDeferred = new ConcurrentHashMap<>();	// Used for the exponential backoff of each domain. It is reset when the domain responds successfully again.
+	public static final ConcurrentHashMap<String, Boolean> deferredIdsWithResult = new ConcurrentHashMap<>();	// The ids with deferred urls, mapped to whether another url of the id has given a result in the meantime.
+
+	public static AtomicInteger numOfDeferredUrls = new AtomicInteger(0);
+	public static AtomicInteger numOfRecoveredUrls = new AtomicInteger(0);
+	public static AtomicInteger numOfSkippedRetries = new AtomicInteger(0);
+
+
+	private static class DeferredUrl
+	{
+		final String urlId;
+		final String sourceUrl;	// The url as it was given in the input, so that it is checked and written in the same way when it is retried.
+		final Instant retryTime;
+
+		DeferredUrl(String urlId, String sourceUrl, Instant retryTime) {
+			this.urlId = urlId;
+			this.sourceUrl = sourceUrl;
+			this.retryTime = retryTime;
+		}
+	}
+
+
+	/**
+	 * This method checks whether the given exception is a transient failure and if so, it puts the url in the queue, to be retried later.
+	 * In that case, the caller should not write any outcome for this url, as it will be written after the retry.
+	 * @param urlId
+	 * @param sourceUrl the url as it was given in the input (not the normalized one)
+	 * @param e
+	 * @return true, if the url was deferred.
+	 */
+	public static boolean deferIfTransientFailure(String urlId, String sourceUrl, Exception e)
+	{
+		if ( !shouldRetryTransientFailures || (sourceUrl == null) )
+			return false;
+
+		if ( !(e instanceof ConnTimeoutException) && !(e instanceof DomainCircuitOpenException)
+				&& !((e instanceof HttpErrorStatusException hese) && transientStatusCodes.contains(hese.getStatusCode())) )
+			return false;
+
+		String domainStr = UrlUtils.getDomainStr(sourceUrl, null);
+		if ( (domainStr == null) || HttpConnUtils.blacklistedDomains.contains(domainStr) )
+			return false;	// It will not be connected anyway.
+
+		String circuitDomainStr = ((e instanceof DomainCircuitOpenException) ? e.getMessage() : domainStr);	// The breaker may belong to the domain of a page which the url redirected to.
+		Instant circuitReopeningTime = DomainCircuitBreaker.getReopeningTime(circuitDomainStr);
+		if ( (e instanceof DomainCircuitOpenException) && (circuitReopeningTime == null) )
+			return false;	// The breaker was closed in the meantime, or the domain was blocked permanently.
+
+		if ( ConnSupportUtils.countInsertAndGetTimes(timesUrlsWereDeferred, sourceUrl) > maxRetriesPerUrl )
+			return false;	// Write its final "couldRetry"-outcome.
+
+		Instant now = Instant.now();
+		Instant retryTime = getBackoffTime(domainStr, now);
+		Instant retryAfterTime = ConnSupportUtils.domainsWithRetryAfterTime.get(domainStr);
+		if ( (retryAfterTime != null) && retryAfterTime.isAfter(retryTime) )
+			retryTime = retryAfterTime;	// The domain told us when to come back.
+		if ( (circuitReopeningTime != null) && circuitReopeningTime.isAfter(retryTime) )
+			retryTime = circuitReopeningTime;	// Do not retry while the circuit-breaker of the domain is still open.
+
+		if ( Duration.between(now, retryTime).compareTo(maxWaitingTimeForRetry) > 0 ) {
+			logger.debug("The url \"" + sourceUrl + "\" will not be retried in this run, as its domain requires waiting until: " + retryTime);
+			return false;
+		}
+
+		if ( (urlId != null) && !urlId.equals("null") )
+			deferredIdsWithResult.putIfAbsent(urlId, false);
+		deferredUrls.add(new DeferredUrl(urlId, sourceUrl, retryTime));
+		numOfDeferredUrls.incrementAndGet();
+		logger.debug("The url \"" + sourceUrl + "\" had a transient failure (" + e.getMessage() + "). It will be retried after: " + retryTime);
+		return true;
+	}
+
+
+	/**
+	 * The backoff-time is doubled for each url of the same domain which gets deferred, up to the "maxWaitingTimeForRetry".
+	 */
+	private static Instant getBackoffTime(String domainStr, Instant now)
+	{
+		int timesDeferred = ConnSupportUtils.countInsertAndGetTimes(timesDomainsHadUrlsDeferred, domainStr);
+		long backoffSeconds = baseBackoffTime.toSeconds() << Math.min((timesDeferred -1), 10);	// Avoid overflowing.
+		backoffSeconds = Math.min(backoffSeconds, maxWaitingTimeForRetry.toSeconds());
+		return now.plusSeconds(backoffSeconds);
+	}
+
+
+	/**
+	 * This method is called when a domain responds successfully, so that the backoff of its next deferred urls starts over.
+	 * @param domainStr
+	 */
+	public static void onSuccessfulConnection(String domainStr)
+	{
+		if ( !timesDomainsHadUrlsDeferred.isEmpty() )	// Avoid the hashing-cost for the usual case.
+			timesDomainsHadUrlsDeferred.remove(domainStr);
+	}
+
+
+	/**
+	 * This method is called when a result was found for the given id, so that its deferred urls, if any, are not retried.
+	 * Otherwise, the id could have two outcomes: the found result and the outcome of the retried url.
+	 * @param urlId
+	 */
+	public static void onResultFoundForId(String urlId)
+	{
+		if ( (urlId != null) && !deferredIdsWithResult.isEmpty() )
+			deferredIdsWithResult.replace(urlId, true);	// Only the ids with deferred urls are marked.
+	}
+
+
+	public static boolean isEmpty() {
+		return deferredUrls.isEmpty();
+	}
+
+
+	/**
+	 * This method discards the deferred urls, without writing their outcome, along with the counts of the deferrals.
+	 * It can be used by an external service, before starting a new run, after the previous one was aborted.
+	 */
+	public static void clearDeferredUrls()
+	{
+		deferredUrls.clear();
+		timesUrlsWereDeferred.clear();
+		timesDomainsHadUrlsDeferred.clear();
+		deferredIdsWithResult.clear();
+	}
+
+
+	/**
+	 * This method adds the tasks for the deferred urls which are due for retrying, in the given list.
+	 * It is called before each batch is executed, so that the retries are using the capacity of the batch.
+	 * @param callableTasks
+	 * @return the number of the added tasks.
+	 */
+	public static int addDueRetryTasks(List<Callable<Boolean>> callableTasks)
+	{
+		Instant now = Instant.now();
+		int numOfAddedTasks = 0;
+		DeferredUrl deferredUrl;
+		while ( ((deferredUrl = deferredUrls.peek()) != null) && !deferredUrl.retryTime.isAfter(now) ) {
+			if ( (deferredUrl = deferredUrls.poll()) == null )
+				break;
+			callableTasks.add(createRetryTask(deferredUrl));
+			numOfAddedTasks ++;
+		}
+		return numOfAddedTasks;
+	}
+
+
+	/**
+	 * This method is called after the whole input was processed. It waits for the deferred urls to become due and retries them, until the queue is empty.
+	 * The urls which fail again with a transient error may be deferred again, up to "maxRetriesPerUrl" times.
+	 */
+	public static void retryRemainingDeferredUrls()
+	{
+		if ( deferredUrls.isEmpty() )
+			return;
+
+		logger.info("Going to retry " + deferredUrls.size() + " urls, which had transient failures.");
+		List<Callable<Boolean>> callableTasks = new ArrayList<>(deferredUrls.size());
+		int retryBatchCount = 0;
+		DeferredUrl nextDeferredUrl;
+		while ( (nextDeferredUrl = deferredUrls.peek()) != null )
+		{
+			if ( Thread.currentThread().isInterrupted() ) {
+				writeOutcomeOfRemainingDeferredUrls();
+				return;
+			}
+
+			Duration waitingTime = Duration.between(Instant.now(), nextDeferredUrl.retryTime);
+			if ( !waitingTime.isNegative() && !waitingTime.isZero() ) {
+				logger.debug("Waiting " + waitingTime.toSeconds() + " seconds, before retrying the next deferred urls.");
+				try {
+					Thread.sleep(waitingTime.toMillis());
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					logger.warn("Interrupted while waiting to retry the deferred urls. Their \"couldRetry\"-outcome will be written.");
+					writeOutcomeOfRemainingDeferredUrls();
+					return;
+				}
+			}
+
+			if ( addDueRetryTasks(callableTasks) > 0 )
+				LoaderAndChecker.executeTasksAndHandleResults(callableTasks, ++retryBatchCount);	// It clears the list and writes the results.
+		}
+	}
+
+
+	private static Callable<Boolean> createRetryTask(DeferredUrl deferredUrl)
+	{
+		return () -> {
+			if ( Thread.currentThread().isInterrupted() ) return false;
+			String sourceUrl = deferredUrl.sourceUrl;
+			if ( Boolean.TRUE.equals(deferredIdsWithResult.get(deferredUrl.urlId)) ) {
+				logger.debug("Skipping the retry of url \"" + sourceUrl + "\", as another url of the id \"" + deferredUrl.urlId + "\" has already given a result.");
+				UrlUtils.addOutputData(deferredUrl.urlId, sourceUrl, "null", UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded at loading time, as the url had a transient error and another url of the same id has already given a result.", "null", null, true, "true", "true", "false", "false", "true", null, "null", "null");
+				numOfSkippedRetries.incrementAndGet();
+				return false;
+			}
+
+			String urlToCheck;
+			if ( (urlToCheck = LoaderAndChecker.handleUrlChecks(deferredUrl.urlId, sourceUrl)) == null )
+				return false;	// The outcome was written inside (e.g. the domain got blocked in the meantime).
+
+			String retrievedUrlToCheck = urlToCheck;
+			if ( (urlToCheck = UrlNormalizationCache.normalize(retrievedUrlToCheck)) == null ) {
+				logger.warn("Could not normalize url: " + retrievedUrlToCheck);
+				UrlUtils.addOutputData(deferredUrl.urlId, sourceUrl, "null", UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded at loading time, due to normalization's problems.", "null", null, true, "true", "false", "false", "false", "false", null, "null", "null");
+				return false;
+			}
+
+			String lowerCaseUrl = retrievedUrlToCheck.toLowerCase();
+			boolean isPossibleDocOrDatasetUrl = ((ArgsUtils.retrieveDocuments && LoaderAndChecker.DOC_URL_FILTER.matcher(lowerCaseUrl).matches())
+												|| (ArgsUtils.retrieveDatasets && LoaderAndChecker.DATASET_URL_FILTER.matcher(lowerCaseUrl).matches()));
+			try {
+				HttpConnUtils.connectAndCheckMimeType(deferredUrl.urlId, sourceUrl, urlToCheck, urlToCheck, null, true, isPossibleDocOrDatasetUrl);
+				numOfRecoveredUrls.incrementAndGet();
+			} catch (Exception e) {
+				LoaderAndChecker.handleException(deferredUrl.urlId, sourceUrl, urlToCheck, e);	// It may be deferred again.
+				return false;
+			}
+			return true;
+		};
+	}
+
+
+	private static void writeOutcomeOfRemainingDeferredUrls()
+	{
+		DeferredUrl deferredUrl;
+		while ( (deferredUrl = deferredUrls.poll()) != null )
+			UrlUtils.addOutputData(deferredUrl.urlId, deferredUrl.sourceUrl, "null", UrlUtils.unreachableDocOrDatasetUrlIndicator, "Discarded at loading time, as the url had a transient error and it could not be retried in this run.", "null", null, true, "true", "true", "false", "false", "true", null, "null", "null");
+	}
+
+}
@@ -0,0 +1,110 @@
+package eu.openaire.publications_retriever.util.url;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class keeps the results of the url-normalization (see "LoaderAndChecker.basicURLNormalizer") and of the production of the fully-formed urls of the internal-links (see "ConnSupportUtils.getFullyFormedUrl()"), in bounded caches.
+ * The same urls are normalized again and again: the navigation-links of the pages of a domain, the urls which are checked again as "remaining" urls of an id and the urls which are logged at the end.
+ * The negative results (the urls which could not be normalized or formed) are kept as well, so the invalid urls do not pay the parsing cost (and the error-logging) more than once.
+ * @author Lampros Smyrnaios
+ */
+public class UrlNormalizationCache
+{
+	public static boolean useUrlCaches = true;	// Keep it "public" and "non-final", in order to be set by external services.
+
+	private static final int maxCacheSize = 50_000;	// Each entry takes less than 500 bytes, so each cache takes up to ~25 MB.
+
+	private static final String noResult = "";	// The caches cannot hold "null" values. A normalized or fully-formed url is never empty.
+
+	private record LinkOfPage(String base, String link) {}	// The "base" is the part of the pageUrl which the link depends on.
+
+	private static final Cache<String, String> normalizedUrlsCache = CacheBuilder.newBuilder().maximumSize(maxCacheSize).build();	// url -> normalizedUrl
+
+	private static final Cache<LinkOfPage, String> fullyFormedUrlsCache = CacheBuilder.newBuilder().maximumSize(maxCacheSize).build();	// (base, link) -> fullyFormedUrl
+
+	public static final AtomicLong numOfNormalizationHits = new AtomicLong(0);
+	public static final AtomicLong numOfNormalizationMisses = new AtomicLong(0);
+	public static final AtomicLong numOfFullyFormedUrlHits = new AtomicLong(0);
+	public static final AtomicLong numOfFullyFormedUrlMisses = new AtomicLong(0);
+
+
+	/**
+	 * @param url
+	 * @return the normalized url, or null, if it could not be normalized.
+	 */
+	public static String normalize(String url)
+	{
+		if ( !useUrlCaches )
+			return LoaderAndChecker.basicURLNormalizer.filter(url);
+
+		String normalizedUrl = normalizedUrlsCache.getIfPresent(url);
+		if ( normalizedUrl != null ) {
+			numOfNormalizationHits.incrementAndGet();
+			return (!normalizedUrl.isEmpty() ? normalizedUrl : null);
+		}
+		numOfNormalizationMisses.incrementAndGet();
+		normalizedUrl = LoaderAndChecker.basicURLNormalizer.filter(url);
+		normalizedUrlsCache.put(url, ((normalizedUrl != null) ? normalizedUrl : noResult));
+		return normalizedUrl;
+	}
+
+
+	/**
+	 * @param pageUrl
+	 * @param link the internal-link, as it was found in the page.
+	 * @return the fully-formed url of the link, or null, if it could not be produced.
+	 */
+	public static String getFullyFormedUrl(String pageUrl, String link)
+	{
+		if ( !useUrlCaches )
+			return ConnSupportUtils.produceFullyFormedUrl(pageUrl, link, null);
+
+		LinkOfPage linkOfPage = new LinkOfPage(getBase(pageUrl, link), link);
+		String fullyFormedUrl = fullyFormedUrlsCache.getIfPresent(linkOfPage);
+		if ( fullyFormedUrl != null ) {
+			numOfFullyFormedUrlHits.incrementAndGet();
+			return (!fullyFormedUrl.isEmpty() ? fullyFormedUrl : null);
+		}
+		numOfFullyFormedUrlMisses.incrementAndGet();
+		fullyFormedUrl = ConnSupportUtils.produceFullyFormedUrl(pageUrl, link, null);
+		fullyFormedUrlsCache.put(linkOfPage, ((fullyFormedUrl != null) ? fullyFormedUrl : noResult));
+		return fullyFormedUrl;
+	}
+
+
+	/**
+	 * The absolute links lead to the same url from every page and the root-relative ones lead to the same url from every page of the same host.
+	 * So, their cached results are shared between the pages, instead of being cached for each page.
+	 * @return the part of the pageUrl which the fully-formed url of the link depends on.
+	 */
+	private static String getBase(String pageUrl, String link)
+	{
+		if ( link.regionMatches(true, 0, "http://", 0, 7) || link.regionMatches(true, 0, "https://", 0, 8) )
+			return "";
+		if ( link.startsWith("/") && !link.startsWith("//") ) {
+			int schemeEnd = pageUrl.indexOf("://");
+			if ( schemeEnd != -1 ) {
+				for ( int i = (schemeEnd +3); i < pageUrl.length(); i++ ) {
+					char c = pageUrl.charAt(i);
+					if ( (c == '/') || (c == '?') || (c == '#') )
+						return pageUrl.substring(0, i);
+				}
+				return pageUrl;
+			}
+		}
+		return pageUrl;
+	}
+
+
+	public static void clearCaches()
+	{
+		normalizedUrlsCache.invalidateAll();
+		fullyFormedUrlsCache.invalidateAll();
+	}
+
+}
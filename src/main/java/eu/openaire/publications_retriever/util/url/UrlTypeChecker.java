@@ -6,6 +6,8 @@ import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -48,6 +50,21 @@ public class UrlTypeChecker
 
 	public static final Pattern PLAIN_DOMAIN_FILTER = Pattern.compile("^https?://[\\w.:-]+(?:/[\\w]{2})?(?:/index." + htOrPhpExtensionsPattern + ")?[/]?(?:\\?(?:locale(?:-attribute)?|ln)=[\\w_-]+)?$");	// Exclude plain domains' urls. Use "ISO 639-1" for language-codes (2 letters directory).
 
+	// All the above filters are also held in a "MultiPatternMatcher", which scans each url once for the literals required by each filter and runs only the filters which may match.
+	public static MultiPatternMatcher URL_FILTERS_MATCHER = null;
+	public static boolean useLiteralPrefilter = true;	// Keep it "public" and "non-final", in order to be set by external services.
+
+	// The indexes of the filters inside the "URL_FILTERS_MATCHER".
+	public static final int URL_DIRECTORY_FILTER_INDEX = 0;
+	public static final int SPECIFIC_DOMAIN_FILTER_INDEX = 1;
+	public static final int NON_VALID_DOCUMENT_INDEX = 2;
+	public static final int PLAIN_DOMAIN_FILTER_INDEX = 3;
+	public static final int URL_FILE_EXTENSION_FILTER_INDEX = 4;
+	public static final int CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER_INDEX = 5;
+	public static final int INTERNAL_LINKS_KEYWORDS_FILTER_INDEX = 6;
+	public static final int INTERNAL_LINKS_FILE_FORMAT_FILTER_INDEX = 7;
+	public static final int PLAIN_PAGE_EXTENSION_FILTER_INDEX = 8;
+
 	// Counters for certain unwanted domains. We show statistics in the end.
 	public static AtomicInteger javascriptPageUrls = new AtomicInteger(0);
 	public static AtomicInteger crawlerSensitiveDomains = new AtomicInteger(0);
@@ -92,61 +109,17 @@ public class UrlTypeChecker
 		if ( logger.isTraceEnabled() )
 			logger.trace("URL_DIRECTORY_FILTER:\n" + URL_DIRECTORY_FILTER);
 
+		// The rules for specific domains are held in the "DomainRules". Here are only the ones which also depend on the path of the url.
 		SPECIFIC_DOMAIN_FILTER =
-			Pattern.compile("^https?://[^/]*(?<=[/.])(?:(?<!drive.)google\\.|goo.gl|gstatic|facebook|fb.me|twitter|(?:meta|xing|baidu|t|x|vk).co|insta(?:gram|paper)|tiktok|youtube|vimeo|linkedin|ebay|bing|(?:amazon|[./]analytics)\\.|s.w.org|wikipedia|myspace|yahoo|mail|pinterest|reddit|tumblr"
-				+ "|www.ccdc.cam.ac.uk|figshare.com/collections/|datadryad.org/stash/dataset/"
-				+ "|evernote|skype|microsoft|adobe|buffer|digg|stumbleupon|addthis|delicious|dailymotion|gostats|blog(?:ger)?|copyright|friendfeed|newsvine|telegram|getpocket"
-				+ "|flipboard|line.me|ok.rudouban|qzone|renren|weibo|doubleclick|bit.ly|github|reviewofbooks|plu.mx"
-				+ "|(?<!files.)wordpress|orcid.org"
-				+ "|auth(?:oriz(?:e|ation)|entication)?\\."
-
-				// Block nearly all the "elsevier.com" urls, as well as the "sciencedirect.com" urls.
-				// The "(linkinghub|api).elsevier.com" urls redirect -automatically or can be redirected manually- to the "sciencedirect.com", where the pdf is provided, BUT they cannot be retrieved.
-				// The "sciencedirect.com" urls provide the pdf BUT! since some time now they require auth-tokens and decoding by javascript methods.
-				// The ideal approach is to acquire an official api-key in order to retrieve the full-text in xml-format. Check: https://dev.elsevier.com/documentation/FullTextRetrievalAPI.wadl
-
-				// The "<...>.pure.elsevier.com" urls give a page which does not contain the docUrl, but a doi-link instead, which leads to another page which contains the docUrl.
-				// The "manuscript.elsevier.com" gives pdfs right away, so it should be allowed.
-				// The "(www|journals).elsevier.com", come mostly from "doi.org"-urls.
-				+ (ArgsUtils.shouldJustDownloadHtmlFiles	// In this case we want to download the html-pages of these domains. No internal links are accessed, so there is minimal overload.
-					? "" : "|(?<!manuscript.)elsevier.com|sciencedirect.com"
-						+ "|(?:static|multimedia|tienda).elsevier."	// Holds generic pdfs with various info about journals etc. or images or unrelated info.
-						+ "|arvojournals.org"	// Avoid this problematic domain, which redirects to another domain, but also adds a special token, which cannot be replicated. Also, it has cookie-issues.
-						+ "|books.openedition.org"	// Avoid this closed-access sub-domain. (other subdomains, like "journals.openedition.org" are fine).
-					)
-
-				+ "|perfdrive."	// Avoid "robot-check domain". It blocks quickly and redirect us to "validate.perfdrive.com".
-				+ "|services.bepress.com"	// Avoid potential malicious domain (Avast had some urls of this domain in the Blacklist).
-				+ "|(?:careers|shop).|myworkdayjobs.com"
-				+ "|editorialmanager.com"	// Avoid the login-only site of peer-reviews and manuscript-submissions.
-
-				// Add domains with a specific blocking-reason, in "capturing-groups", in order to be able to get the matched-group-number and know the exact reason the block occurred.
+			Pattern.compile("^https?://[^/]*(?<=[/.])(?:figshare.com/collections/|datadryad.org/stash/dataset/"
 
-				+ "|(tandfonline.com|persee.fr|papers.ssrn.com|documentation.ird.fr|library.unisa.edu.au|publications.cnr.it)"	// 1. JavaScript-powered domains.
-				// We could "guess" the pdf-link for some of them, but for "persee.fr" for example, there's also a captcha requirement.
-				// The "tandfonline.com" cannot give even direct "/pdf/" urls, as it gives "HTTP 503 Server Error" or "HTTP 403 Forbidden", which urls appear to work when opened in a Browser.
+				// Add rules with a specific blocking-reason, in "capturing-groups", in order to be able to get the matched-group-number and know the exact reason the block occurred.
 
-				+ "|(doaj.org/toc/)"	// 2. Avoid resultPages (containing multiple publication-results).
+				+ "|(doaj.org/toc/)"	// 1. Avoid resultPages (containing multiple publication-results).
 
 				+ (ArgsUtils.shouldJustDownloadHtmlFiles	// In this case we want to download the html-pages of these domains. No internal links are accessed, so there is minimal overload.
-					? "" : "|(dlib.org|saberes.fcecon.unr.edu.ar|eumed.net)"	// 3. Avoid HTML docUrls. These are shown simply inside the html-text of the page. No binary to download.
-							+ "|(rivisteweb.it|wur.nl|remeri.org.mx|cam.ac.uk|scindeks.ceon.rs|egms.de)"	// 4. Avoid pages known to not provide docUrls (just metadata).
-							+ "|(bibliotecadigital.uel.br|cepr.org)"	// 5. Avoid domains requiring login to access docUrls.
-							+ "|(scielosp.org" + docOrDatasetNegativeLookAroundPattern + "|cepr.org|dk.um.si|apospublications.com|jorr.org|rwth-aachen.de|pubmed.ncbi.nlm.nih.gov)"	// 6. Avoid domains which have their DocUrls in larger depth (internalPagesToDocUrls or PreviousOfDocUrls).
-					)
-
-				+ "|(200.17.137.108)"	// 7. Avoid known domains with connectivity problems.
-
-				// Avoid slow urls (taking more than 3secs to connect). This is currently disabled since it was decided to let more pageUrl unblocked.
-				//"handle.net", "doors.doshisha.ac.jp", "opac-ir.lib.osaka-kyoiku.ac.jp"
-				/*
-				// In case these "slow" domain are blocked later, use something like the following when handling them..
-				loggingMessage = "Discarded after matching to domain, known to take long to respond.";
-				logger.debug("Url-\"" + retrievedUrl + "\": " + loggingMessage);
-				UrlUtils.logOutputData(urlId, retrievedUrl, null, UrlUtils.unreachableDocOrDatasetUrlIndicator, loggingMessage, "null", null, true, "true", wasUrlValid, "false", "false", "false", null, null);
-				longToRespondUrls.incrementAndGet();
-				*/
-
+					? "" : "|(scielosp.org" + docOrDatasetNegativeLookAroundPattern + ")"	// 2. Avoid domains which have their DocUrls in larger depth (internalPagesToDocUrls or PreviousOfDocUrls).
+				)
 				+ ")[^/]*/.*$"
 			);
 
@@ -155,6 +128,20 @@ public class UrlTypeChecker
 
 		INTERNAL_LINKS_FILE_FORMAT_FILTER =
 				Pattern.compile(".+format=(?:" + (!ArgsUtils.retrieveDatasets ? "xml|" : "") + htOrPhpExtensionsPattern + "|rss|ris|bib|citation_|events_kml).*");
+
+		// The order must follow the indexes of the filters.
+		URL_FILTERS_MATCHER = new MultiPatternMatcher(List.of(URL_DIRECTORY_FILTER, SPECIFIC_DOMAIN_FILTER, PageCrawler.NON_VALID_DOCUMENT, PLAIN_DOMAIN_FILTER, URL_FILE_EXTENSION_FILTER,
+																CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER, INTERNAL_LINKS_KEYWORDS_FILTER, INTERNAL_LINKS_FILE_FORMAT_FILTER, PLAIN_PAGE_EXTENSION_FILTER),
+														Set.of("http://", "https://"), true);	// Every url contains one of these. The filters are always matched against the lowercase url.
+	}
+
+
+	/**
+	 * @return the bit-mask of the filters which may match the given url. If the prefilter is not used, then all filters are candidates.
+	 */
+	public static long findCandidateFilters(String lowerCaseUrl)
+	{
+		return ((useLiteralPrefilter && (URL_FILTERS_MATCHER != null)) ? URL_FILTERS_MATCHER.findCandidates(lowerCaseUrl) : -1L);
 	}
 
 	
@@ -175,14 +162,23 @@ public class UrlTypeChecker
 			lowerCaseUrl = pageUrl.toLowerCase();
 		// If it's not "null", it means we have already done the transformation in the calling method.
 
+		return shouldNotAcceptPageUrl(urlId, sourceUrl, pageUrl, lowerCaseUrl, calledForPageUrl, findCandidateFilters(lowerCaseUrl));
+	}
+
+
+	/**
+	 * The filters which are not in the given "candidateFilters", cannot match the url, so they are not run.
+	 */
+	private static boolean shouldNotAcceptPageUrl(String urlId, String sourceUrl, String pageUrl, String lowerCaseUrl, boolean calledForPageUrl, long candidateFilters)
+	{
 		String loggingMessage = null;
 		String wasUrlValid = "null";	// Default value to be used, in case the given url matches an unwanted type. We do not know if the url is valid (i.e. if it can be connected and give a non 4XX response) at this point.
 		String groupMatch = null;
 
 		String patternToMatch = URL_DIRECTORY_FILTER.pattern();
 		try {
-			Matcher matcher = URL_DIRECTORY_FILTER.matcher(lowerCaseUrl);
-			if (matcher.matches()) {	// This regex also matches with many other rules, which we do not care to individually capture.
+			Matcher matcher;
+			if ( MultiPatternMatcher.isCandidate(candidateFilters, URL_DIRECTORY_FILTER_INDEX) && (matcher = URL_DIRECTORY_FILTER.matcher(lowerCaseUrl)).matches() ) {	// This regex also matches with many other rules, which we do not care to individually capture.
 				if (calledForPageUrl) {	// For internal-links we don't want to make further checks nor write results in the output, as further links will be checked for that page..
 					if ( ((groupMatch = matcher.group(1)) != null) && !groupMatch.isEmpty()) {
 						ConnSupportUtils.blockSharedSiteSessionDomains(pageUrl, null);
@@ -202,31 +198,53 @@ public class UrlTypeChecker
 				return true;
 			}
 
+			patternToMatch = DomainRules.resourcePath;
+			String host = DomainRules.getHostOfUrl(lowerCaseUrl);
+			DomainRules.Category domainCategory = DomainRules.getBlockingCategory(host);
+			if ( domainCategory != null ) {
+				if ( calledForPageUrl ) {    // For internal-links we don't want to make further checks nor write results in the output, as further links will be checked for that page..
+					switch ( domainCategory ) {
+						case javascript -> {
+							loggingMessage = "Discarded after matching to a JavaScript-using domain, other than the 'sciencedirect.com': '" + host + "'.";
+							javascriptPageUrls.incrementAndGet();
+						}
+						case htmlDocUrls -> {
+							loggingMessage = "Discarded after matching to a site containing the full-text as plain-text inside its HTML: '" + host + "'.";
+							pagesWithHtmlDocUrls.incrementAndGet();
+						}
+						case noDocUrls -> {
+							loggingMessage = "Discarded after matching to a domain which doesn't provide docUrls: '" + host + "'.";
+							pagesNotProvidingDocUrls.incrementAndGet();
+						}
+						case requiresLogin -> {
+							loggingMessage = "Discarded after matching to a domain which needs login to access docFiles: '" + host + "'.";
+							pagesRequireLoginToAccessDocFiles.incrementAndGet();
+						}
+						case largerDepth -> {
+							loggingMessage = "Discarded after matching to a site having its DocUrls in larger depth: '" + host + "'.";
+							pagesWithLargerCrawlingDepth.incrementAndGet();
+						}
+						case connectivityProblems -> {
+							loggingMessage = "Discarded after matching to known domains with connectivity problems: '" + host + "'.";
+							LoaderAndChecker.connProblematicUrls.incrementAndGet();
+						}
+						default -> loggingMessage = "Discarded after matching to a domain with problems: '" + host + "'.";
+					}
+					logger.debug("Url-\"" + pageUrl + "\": " + loggingMessage);
+					UrlUtils.addOutputData(urlId, sourceUrl, pageUrl, UrlUtils.unreachableDocOrDatasetUrlIndicator, loggingMessage, "null", null, true, "true", wasUrlValid, "false", "false", "false", null, "null", "null");
+				}
+				return true;
+			}
+
 			patternToMatch = SPECIFIC_DOMAIN_FILTER.pattern();
-			matcher = SPECIFIC_DOMAIN_FILTER.matcher(lowerCaseUrl);
-			if ( matcher.matches() ) {
+			if ( MultiPatternMatcher.isCandidate(candidateFilters, SPECIFIC_DOMAIN_FILTER_INDEX) && (matcher = SPECIFIC_DOMAIN_FILTER.matcher(lowerCaseUrl)).matches() ) {
 				if ( calledForPageUrl ) {    // For internal-links we don't want to make further checks nor write results in the output, as further links will be checked for that page..
 					if ( ((groupMatch = matcher.group(1)) != null) && !groupMatch.isEmpty() ) {
-						loggingMessage = "Discarded after matching to a JavaScript-using domain, other than the 'sciencedirect.com': '" + groupMatch + "'.";
-						javascriptPageUrls.incrementAndGet();
-					} else if ( ((groupMatch = matcher.group(2)) != null) && !groupMatch.isEmpty() ) {
 						loggingMessage = "Discarded after matching to the Results-directory: 'doaj.org/toc/': '" + groupMatch + "'.";
 						doajResultPageUrls.incrementAndGet();
-					} else if ( ((groupMatch = matcher.group(3)) != null) && !groupMatch.isEmpty() ) {
-						loggingMessage = "Discarded after matching to a site containing the full-text as plain-text inside its HTML: '" + groupMatch + "'.";
-						pagesWithHtmlDocUrls.incrementAndGet();
-					} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && ((groupMatch = matcher.group(4)) != null) && !groupMatch.isEmpty() ) {
-						loggingMessage = "Discarded after matching to a domain which doesn't provide docUrls: '" + groupMatch + "'.";
-						pagesNotProvidingDocUrls.incrementAndGet();
-					} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && ((groupMatch = matcher.group(5)) != null) && !groupMatch.isEmpty() ) {
-						loggingMessage = "Discarded after matching to a domain which needs login to access docFiles: '" + groupMatch + "'.";
-						pagesRequireLoginToAccessDocFiles.incrementAndGet();
-					} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && ((groupMatch = matcher.group(6)) != null) && !groupMatch.isEmpty() ) {
+					} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && ((groupMatch = matcher.group(2)) != null) && !groupMatch.isEmpty() ) {
 						loggingMessage = "Discarded after matching to a site having its DocUrls in larger depth: '" + groupMatch + "'.";
 						pagesWithLargerCrawlingDepth.incrementAndGet();
-					} else if ( !ArgsUtils.shouldJustDownloadHtmlFiles && ((groupMatch = matcher.group(7)) != null) && !groupMatch.isEmpty() ) {
-						loggingMessage = "Discarded after matching to known domains with connectivity problems: '" + groupMatch + "'.";
-						LoaderAndChecker.connProblematicUrls.incrementAndGet();
 					} else
 						loggingMessage = "Discarded after matching to a domain with problems.";
 					logger.debug("Url-\"" + pageUrl + "\": " + loggingMessage);
@@ -236,8 +254,7 @@ public class UrlTypeChecker
 			}
 
 			patternToMatch = PageCrawler.NON_VALID_DOCUMENT.pattern();
-			matcher = PageCrawler.NON_VALID_DOCUMENT.matcher(lowerCaseUrl);
-			if ( matcher.matches() ) {
+			if ( MultiPatternMatcher.isCandidate(candidateFilters, NON_VALID_DOCUMENT_INDEX) && PageCrawler.NON_VALID_DOCUMENT.matcher(lowerCaseUrl).matches() ) {
 				if ( calledForPageUrl ) {    // For internal-links we don't want to make further checks nor write results in the output, as further links will be checked for that page..
 					loggingMessage = "Discarded after matching to a url leading to an invalid document!";
 					logger.debug("Url-\"" + pageUrl + "\": " + loggingMessage);
@@ -248,8 +265,7 @@ public class UrlTypeChecker
 			}
 
 			patternToMatch = PLAIN_DOMAIN_FILTER.pattern();
-			matcher = PLAIN_DOMAIN_FILTER.matcher(lowerCaseUrl);
-			if ( matcher.matches() ) {
+			if ( MultiPatternMatcher.isCandidate(candidateFilters, PLAIN_DOMAIN_FILTER_INDEX) && PLAIN_DOMAIN_FILTER.matcher(lowerCaseUrl).matches() ) {
 				if ( calledForPageUrl ) {    // For internal-links we don't want to make further checks nor write results in the output, as further links will be checked for that page..
 					loggingMessage = "Discarded after matching to a url having only the domain part!";
 					logger.debug("Url-\"" + pageUrl + "\": " + loggingMessage);
@@ -259,8 +275,7 @@ public class UrlTypeChecker
 			}
 
 			patternToMatch = URL_FILE_EXTENSION_FILTER.pattern();
-			matcher = URL_FILE_EXTENSION_FILTER.matcher(lowerCaseUrl);
-			if ( matcher.matches() ) {
+			if ( MultiPatternMatcher.isCandidate(candidateFilters, URL_FILE_EXTENSION_FILTER_INDEX) && URL_FILE_EXTENSION_FILTER.matcher(lowerCaseUrl).matches() ) {
 				if ( calledForPageUrl ) {    // For internal-links we don't want to make further checks nor write results in the output, as further links will be checked for that page..
 					loggingMessage = "Discarded after matching to a url having an irrelevant extension!";
 					logger.debug("Url-\"" + pageUrl + "\": " + loggingMessage);
@@ -271,8 +286,7 @@ public class UrlTypeChecker
 
 			if ( ArgsUtils.shouldDownloadDocFiles ) {
 				patternToMatch = CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER.pattern();
-				matcher = CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER.matcher(lowerCaseUrl);
-				if ( matcher.matches() ) {	// TODO - To be removed when these docExtensions get supported for download.
+				if ( MultiPatternMatcher.isCandidate(candidateFilters, CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER_INDEX) && CURRENTLY_UNSUPPORTED_DOC_EXTENSION_FILTER.matcher(lowerCaseUrl).matches() ) {	// TODO - To be removed when these docExtensions get supported for download.
 					if ( calledForPageUrl ) {    // For internal-links we don't want to make further checks nor write results in the output, as further links will be checked for that page..
 						loggingMessage = "Discarded after matching to a url having an unsupported document extension!";
 						logger.debug("Url-\"" + pageUrl + "\": " + loggingMessage);
@@ -297,10 +311,11 @@ public class UrlTypeChecker
 		// If it's not "null", it means we have already done the transformation in the calling method.
 
 		try {
-			return	shouldNotAcceptPageUrl(null, null, linkStr, lowerCaseLink, false)
-					|| INTERNAL_LINKS_KEYWORDS_FILTER.matcher(lowerCaseLink).matches()
-					|| INTERNAL_LINKS_FILE_FORMAT_FILTER.matcher(lowerCaseLink).matches()
-					|| PLAIN_PAGE_EXTENSION_FILTER.matcher(lowerCaseLink).matches();
+			long candidateFilters = findCandidateFilters(lowerCaseLink);	// A single scan of the link, for all the filters.
+			return	shouldNotAcceptPageUrl(null, null, linkStr, lowerCaseLink, false, candidateFilters)
+					|| (MultiPatternMatcher.isCandidate(candidateFilters, INTERNAL_LINKS_KEYWORDS_FILTER_INDEX) && INTERNAL_LINKS_KEYWORDS_FILTER.matcher(lowerCaseLink).matches())
+					|| (MultiPatternMatcher.isCandidate(candidateFilters, INTERNAL_LINKS_FILE_FORMAT_FILTER_INDEX) && INTERNAL_LINKS_FILE_FORMAT_FILTER.matcher(lowerCaseLink).matches())
+					|| (MultiPatternMatcher.isCandidate(candidateFilters, PLAIN_PAGE_EXTENSION_FILTER_INDEX) && PLAIN_PAGE_EXTENSION_FILTER.matcher(lowerCaseLink).matches());
 		} catch (Exception e) {
 			logger.error("Error when evaluating url \"" + lowerCaseLink + "\" with regexes of \"UrlTypeChecker.shouldNotAcceptInternalLink()\".", e);
 			return true;	// The url is not acceptable.
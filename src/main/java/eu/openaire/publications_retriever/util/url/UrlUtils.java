@@ -1,6 +1,10 @@
 package eu.openaire.publications_retriever.util.url;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 //import com.google.common.collect.HashMultimap;
+import com.google.common.net.InetAddresses;
+import com.google.common.net.InternetDomainName;
 import eu.openaire.publications_retriever.machine_learning.MachineLearning;
 import eu.openaire.publications_retriever.models.IdUrlMimeTypeTriple;
 import eu.openaire.publications_retriever.util.args.ArgsUtils;
@@ -28,6 +32,7 @@ public class UrlUtils
 
 	public static final Pattern URL_TRIPLE = Pattern.compile("^(https?://(?:ww(?:w|\\d)(?:(?:\\w+)?\\.)?)?([\\w.-]+)(?:[:\\d]+)?(?:.*/)?)(?:([^/^;?]*)(?:[;?][^/^=]*(?:=.*)?)?)?$", Pattern.CASE_INSENSITIVE);
 	// URL_TRIPLE regex to group domain, path and ID --> group <1> is the regular PATH, group<2> is the DOMAIN and group <3> is the regular "ID".
+	// The urls are split by the "UrlView", which gives the same groups without running this regex (it is used only as a fallback, for the urls which would make it backtrack).
 	// TODO - Add explanation also for the non-captured groups for better maintenance. For example the "ww(?:w|\\d)" can capture "www", "ww2", "ww3" ect.
 	// The urls given to this regex are not lowercase, so they may start with 'httpS://' which is not that good, but we cannot drop it either. Java connects with it just fine.
 
@@ -80,6 +85,7 @@ public class UrlUtils
 			if ( !finalDocOrDatasetUrl.equals(unreachableDocOrDatasetUrlIndicator) )
 			{
 				sumOfDocUrlsFound.incrementAndGet();
+				RetryQueue.onResultFoundForId(urlId);	// The deferred urls of this id, if any, do not have to be retried.
 
 				// Remove the "temporalId" from urls for "cleaner" output and "already found docOrDatasetUrl"-matching. These IDs will expire eventually anyway.
 				String lowerCaseUrl = finalDocOrDatasetUrl.toLowerCase();
@@ -131,49 +137,41 @@ public class UrlUtils
 	/**
 	 * This method returns the domain of the given url, in lowerCase (for better comparison).
 	 * @param urlStr
-	 * @param matcher
+	 * @param urlView the already-parsed view of the url, or null
 	 * @return domainStr
 	 */
-	public static String getDomainStr(String urlStr, Matcher matcher)
+	public static String getDomainStr(String urlStr, UrlView urlView)
 	{
-		if ( matcher == null )
-			if ( (matcher = getUrlMatcher(urlStr)) == null )
+		if ( urlView == null )
+			if ( (urlView = getUrlView(urlStr)) == null )
 				return null;
 
-		String domainStr = null;
-		try {
-			domainStr = matcher.group(2);	// Group <2> is the DOMAIN.
-		} catch (Exception e) { logger.error("", e); return null; }
-		if ( (domainStr == null) || domainStr.isEmpty() ) {
+		String domainStr = urlView.getDomain();	// We get it in lowerCase as we don't want to store double domains. (it doesn't play any part in connectivity, only the rest of the url is case-sensitive.)
+		if ( domainStr.isEmpty() ) {
 			logger.warn("No domain was extracted from url: \"" + urlStr + "\".");
 			return null;
 		}
-
-		return domainStr.toLowerCase();	// We return it in lowerCase as we don't want to store double domains. (it doesn't play any part in connectivity, only the rest of the url is case-sensitive.)
+		return domainStr;
 	}
 
 
 	/**
 	 * This method returns the path of the given url.
 	 * @param urlStr
-	 * @param matcher
+	 * @param urlView the already-parsed view of the url, or null
 	 * @return pathStr
 	 */
-	public static String getPathStr(String urlStr, Matcher matcher)
+	public static String getPathStr(String urlStr, UrlView urlView)
 	{
-		if ( matcher == null )
-			if ( (matcher = getUrlMatcher(urlStr)) == null )
+		if ( urlView == null )
+			if ( (urlView = getUrlView(urlStr)) == null )
 				return null;
 
-		String pathStr = null;
-		try {
-			pathStr = matcher.group(1);	// Group <1> is the PATH.
-		} catch (Exception e) { logger.error("", e); return null; }
-		if ( (pathStr == null) || pathStr.isEmpty() ) {
+		String pathStr = urlView.getPath();
+		if ( pathStr.isEmpty() ) {
 			logger.warn("No pathStr was extracted from url: \"" + urlStr + "\".");
 			return null;
 		}
-
 		return pathStr;
 	}
 
@@ -189,71 +187,93 @@ public class UrlUtils
 
 
 	/**
-	 * This method returns the path of the given url.
+	 * This method returns the docId of the given url.
 	 * @param urlStr
-	 * @param matcher
-	 * @return pathStr
+	 * @param urlView the already-parsed view of the url, or null
+	 * @return docIdStr
 	 */
-	public static String getDocIdStr(String urlStr, Matcher matcher)
+	public static String getDocIdStr(String urlStr, UrlView urlView)
 	{
-		if ( matcher == null )
-			if ( (matcher = getUrlMatcher(urlStr)) == null )
+		if ( urlView == null )
+			if ( (urlView = getUrlView(urlStr)) == null )
 				return null;
 
-		String docIdStr = null;
-		try {
-			docIdStr = matcher.group(3);	// Group <3> is the docId.
-		} catch (Exception e) { logger.error("", e); return null; }
-		if ( (docIdStr == null) || docIdStr.isEmpty() ) {
+		String docIdStr = urlView.getDocId();
+		if ( docIdStr.isEmpty() ) {
 			logger.warn("No docID was extracted from url: \"" + urlStr + "\".");
 			return null;
 		}
-
 		return docIdStr;
 	}
 
 
-	public static Matcher getUrlMatcher(String urlStr)
+	private static final ThreadLocal<UrlView> lastUrlView = new ThreadLocal<>();	// Each task runs in its own virtual-thread, so the same url is not parsed again by the different methods it passes through.
+
+	/**
+	 * This method returns the view of the given url, which splits it into its domain, path and docId.
+	 * The last view of the current thread is reused, if it is for the same url.
+	 * @param urlStr
+	 * @return the urlView, or null, if the url could not be split.
+	 */
+	public static UrlView getUrlView(String urlStr)
 	{
-		if ( urlStr == null ) {	// Avoid NPE in "Matcher"
-			logger.error("The received \"urlStr\" was null in \"getUrlMatcher()\"!");
+		if ( urlStr == null ) {
+			logger.error("The received \"urlStr\" was null in \"getUrlView()\"!");
 			return null;
 		}
 
-		// If the url ends with "/" then remove it as it's a "mistake" and the last part of it is the "docID" we want.
-		if ( urlStr.endsWith("/") )
-			urlStr = urlStr.substring(0, (urlStr.length() -1));
-		Matcher urlMatcher = UrlUtils.URL_TRIPLE.matcher(urlStr);
-		if ( urlMatcher.matches() )
-			return urlMatcher;
-		else {
-			logger.warn("Unexpected URL_TRIPLE's (" + urlMatcher + ") mismatch for url: \"" + urlStr + "\"");
+		UrlView urlView = lastUrlView.get();
+		if ( (urlView != null) && urlView.getUrl().equals(urlStr) )
+			return urlView;
+
+		urlView = UrlView.parse(urlStr);
+		if ( urlView == null ) {
+			logger.warn("Unexpected URL_TRIPLE's mismatch for url: \"" + urlStr + "\"");
 			return null;
 		}
+		lastUrlView.set(urlView);
+		return urlView;
 	}
 
 
-	public static final Pattern TOP_THREE_LEVEL_DOMAIN_FILTER = Pattern.compile("[\\w.-]*?((?:[\\w-]+.)?[\\w-]+.[\\w-]+)$");
+	private static final int maxRegistrableDomainsCacheSize = 100_000;	// Each entry takes less than 200 bytes, so the cache takes up to ~20 MB.
+
+	private static final Cache<String, String> registrableDomainsCache = CacheBuilder.newBuilder().maximumSize(maxRegistrableDomainsCacheSize).build();	// Domain -> registrableDomain
+
 
 	/**
-	 * This method received the domain as a parameter and tries to return only the top-three-level domain part.
-	 * If the retrieval process fails, it returns the domain as it was given.
-	 * @param domainStr
-	 * @return the top-three-level-domain
+	 * This method receives the domain as a parameter and returns its "registrable" part, which is the label just before its public-suffix (e.g. "a.b.ac.uk" -> "b.ac.uk", "x.y.example.com" -> "example.com").
+	 * The public-suffixes are taken from the "Public Suffix List" which is embedded in Guava. Only the suffixes of the domain-registries are used (not the private ones, like "github.io"), since the hosts under them are usually served by the same servers.
+	 * This is used as the key of the politeness-delay, so that all the sub-domains of a site are grouped together.
+	 * The results are kept in a bounded cache, as the same domains are met again and again.
+	 * If the domain is an ip-address, or it has no known public-suffix, or it is invalid, then it returns the domain as it was given.
+	 * @param domainStr in lowercase
+	 * @return the registrableDomain
 	 */
-	public static String getTopThreeLevelDomain(String domainStr)
+	public static String getRegistrableDomain(String domainStr)
 	{
-		Matcher matcher = TOP_THREE_LEVEL_DOMAIN_FILTER.matcher(domainStr);
-		if ( matcher.matches() ) {
-			try {
-				domainStr = matcher.group(1);
-			} catch (Exception e) {
-				logger.warn("Could not find the group < 1 > when retrieving the top-three-level-domain from \"" + domainStr + "\"");
-				return domainStr;	// It's the domain that was given as parameter.
-			}
-		} else
-			logger.warn("Could not retrieve the top-three-level-domain from \"" + domainStr + "\"");
+		String registrableDomain = registrableDomainsCache.getIfPresent(domainStr);
+		if ( registrableDomain == null ) {
+			registrableDomain = computeRegistrableDomain(domainStr);
+			registrableDomainsCache.put(domainStr, registrableDomain);
+		}
+		return registrableDomain;
+	}
+
 
+	private static String computeRegistrableDomain(String domainStr)
+	{
+		if ( InetAddresses.isInetAddress(domainStr) )
+			return domainStr;
+		try {
+			InternetDomainName domainName = InternetDomainName.from(domainStr);
+			if ( domainName.isUnderRegistrySuffix() )
+				return domainName.topDomainUnderRegistrySuffix().toString();
+			else if ( !domainName.isRegistrySuffix() )
+				logger.warn("Could not find a public-suffix for domain: \"" + domainStr + "\"");
+		} catch (IllegalArgumentException iae) {	// The domain has invalid chars or labels.
+			logger.warn("Could not retrieve the registrable-domain from \"" + domainStr + "\": " + iae.getMessage());
+		}
 		return domainStr;
 	}
 
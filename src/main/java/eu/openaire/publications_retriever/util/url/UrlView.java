@@ -0,0 +1,213 @@
+package eu.openaire.publications_retriever.util.url;
+
+import java.util.regex.Matcher;
+
+
+/**
+ * This class holds the parts of a url (its domain, path and docId), as indexes on the url-string. The strings of the parts are created only when (and if) they are requested, and then they are reused.
+ * The url is split by a hand-written scanner, which gives the same parts as the "UrlUtils.URL_TRIPLE"-regex, without its backtracking.
+ * For the rare urls which would make the regex backtrack (e.g. a "^" char after the last slash), the regex itself is used.
+ * Each task gets the view of its url once (see "UrlUtils.getUrlView()") and carries it through the connection-, crawling- and checking-methods.
+ * @author Lampros Smyrnaios
+ */
+public final class UrlView
+{
+	private final String url;
+	private final int domainStart;
+	private final int domainEnd;
+	private final int pathEnd;	// The path starts from the beginning of the url and includes the last slash.
+	private final int docIdEnd;	// The docId starts right after the path.
+
+	private String domain = null;
+	private String path = null;
+	private String docId = null;
+	private String lowerCaseUrl = null;
+
+
+	private UrlView(String url, int domainStart, int domainEnd, int pathEnd, int docIdEnd)
+	{
+		this.url = url;
+		this.domainStart = domainStart;
+		this.domainEnd = domainEnd;
+		this.pathEnd = pathEnd;
+		this.docIdEnd = docIdEnd;
+	}
+
+
+	/**
+	 * This method splits the given url into its parts, in the same way as the "URL_TRIPLE"-regex.
+	 * @param url
+	 * @return the view of the url, or null, if it is not a valid "http(s)"-url.
+	 */
+	public static UrlView parse(String url)
+	{
+		int length = url.length();
+		if ( url.endsWith("/") )
+			length--;	// This slash is a "mistake" and the last part of the url is the "docID" we want.
+
+		int schemeEnd = getSchemeEnd(url, length);
+		if ( schemeEnd == -1 )
+			return null;
+
+		// Try the 3 cases of the "www"-like prefix, in the order the regex does: "ww(?:w|\d)(?:(?:\w+)?\.)?" with and without its dot-part, or no prefix at all.
+		for ( int prefixCase = 0; prefixCase < 3; prefixCase++ )
+		{
+			int domainStart = getPrefixEnd(url, schemeEnd, length, prefixCase);
+			if ( domainStart == -1 )
+				continue;
+			int domainEnd = domainStart;
+			while ( (domainEnd < length) && isDomainChar(url.charAt(domainEnd)) )
+				domainEnd++;
+			if ( domainEnd == domainStart )
+				continue;	// The domain needs at least one char.
+			return parseRest(url, length, domainStart, domainEnd);
+		}
+		return null;
+	}
+
+
+	/**
+	 * @return the index after the "http(s)://", or -1, if the url does not start with it.
+	 */
+	private static int getSchemeEnd(String url, int length)
+	{
+		if ( (length < 7) || !url.regionMatches(true, 0, "http", 0, 4) )
+			return -1;
+		int index = 4;
+		char c = url.charAt(index);
+		if ( (c == 's') || (c == 'S') )
+			index++;
+		return (url.startsWith("://", index) && ((index +3) <= length)) ? (index +3) : -1;
+	}
+
+
+	/**
+	 * @return the index after the "www"-like prefix of the given case, or -1, if the prefix of this case does not exist.
+	 */
+	private static int getPrefixEnd(String url, int start, int length, int prefixCase)
+	{
+		if ( prefixCase == 2 )
+			return start;	// No prefix.
+
+		if ( ((start +3) > length) || !url.regionMatches(true, start, "ww", 0, 2) )
+			return -1;
+		char c = url.charAt(start +2);
+		if ( (c != 'w') && (c != 'W') && ((c < '0') || (c > '9')) )
+			return -1;
+		int index = (start +3);
+		if ( prefixCase == 1 )
+			return index;	// Without the dot-part.
+
+		while ( (index < length) && isWordChar(url.charAt(index)) )
+			index++;	// The greedy "(?:\w+)?". A shorter run cannot be followed by a dot.
+		return ((index < length) && (url.charAt(index) == '.')) ? (index +1) : -1;
+	}
+
+
+	/**
+	 * This method finds the rest of the parts, after the domain: "(?:[:\d]+)?(?:.*\/)?(?:([^/^;?]*)(?:[;?][^/^=]*(?:=.*)?)?)?$".
+	 * If this is not matched with the greedy domain, then the regex is used, as it would backtrack.
+	 */
+	private static UrlView parseRest(String url, int length, int domainStart, int domainEnd)
+	{
+		int portEnd = domainEnd;
+		for ( char c; (portEnd < length) && (((c = url.charAt(portEnd)) == ':') || ((c >= '0') && (c <= '9'))); )
+			portEnd++;
+
+		int lastSlashIndex = url.lastIndexOf('/', (length -1));
+		int pathEnd = ((lastSlashIndex >= portEnd) ? (lastSlashIndex +1) : portEnd);
+
+		int docIdEnd = pathEnd;
+		char c = 0;
+		while ( (docIdEnd < length) && ((c = url.charAt(docIdEnd)) != ';') && (c != '?') && (c != '^') )
+			docIdEnd++;
+		if ( docIdEnd < length ) {
+			if ( c == '^' )
+				return parseWithRegex(url, length);
+			int index = (docIdEnd +1);
+			while ( (index < length) && ((c = url.charAt(index)) != '/') && (c != '^') && (c != '=') )
+				index++;
+			if ( (index < length) && (c != '=') )
+				return parseWithRegex(url, length);
+		}
+
+		for ( int i = portEnd; i < length; i++ ) {	// The "." of the regex does not match the line-terminators.
+			c = url.charAt(i);
+			if ( (c == '\n') || (c == '\r') || (c == '\u0085') || (c == '\u2028') || (c == '\u2029') )
+				return parseWithRegex(url, length);
+		}
+		return new UrlView(url, domainStart, domainEnd, pathEnd, docIdEnd);
+	}
+
+
+	private static UrlView parseWithRegex(String url, int length)
+	{
+		Matcher matcher = UrlUtils.URL_TRIPLE.matcher(url).region(0, length);
+		if ( !matcher.matches() )
+			return null;
+		int docIdEnd = ((matcher.end(3) != -1) ? matcher.end(3) : matcher.end(1));
+		return new UrlView(url, matcher.start(2), matcher.end(2), matcher.end(1), docIdEnd);
+	}
+
+
+	private static boolean isWordChar(char c) {
+		return (((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) || (c == '_'));
+	}
+
+	private static boolean isDomainChar(char c) {
+		return (isWordChar(c) || (c == '.') || (c == '-'));
+	}
+
+
+	public String getUrl() {
+		return url;
+	}
+
+
+	/**
+	 * @return the domain in lowercase (without the "www"-like prefix), or an empty string.
+	 */
+	public String getDomain()
+	{
+		if ( domain == null )
+			domain = url.substring(domainStart, domainEnd).toLowerCase();
+		return domain;
+	}
+
+
+	/**
+	 * @return the path of the url, from its beginning up to (and including) its last slash.
+	 */
+	public String getPath()
+	{
+		if ( path == null )
+			path = url.substring(0, pathEnd);
+		return path;
+	}
+
+
+	/**
+	 * @return the docId, which is the part after the path, without the parameters. It may be an empty string.
+	 */
+	public String getDocId()
+	{
+		if ( docId == null )
+			docId = url.substring(pathEnd, docIdEnd);
+		return docId;
+	}
+
+
+	public String getLowerCaseUrl()
+	{
+		if ( lowerCaseUrl == null )
+			lowerCaseUrl = url.toLowerCase();
+		return lowerCaseUrl;
+	}
+
+
+	@Override
+	public String toString() {
+		return url;
+	}
+
+}
@@ -0,0 +1,81 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.file.BufferPool;
+import eu.openaire.publications_retriever.util.file.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class contains testing for the "BufferPool", which holds the buffers of the html-reads and the downloads under a memory-budget.
+ * @author Lampros Smyrnaios
+ */
+public class TestBufferPool {
+
+	private static final long defaultMemoryBudget = BufferPool.memoryBudget;
+
+
+	@AfterEach
+	public void restoreBudget()
+	{
+		BufferPool.memoryBudget = defaultMemoryBudget;
+		BufferPool.clearIdleBuffers();
+	}
+
+
+	@Test
+	public void testBuffersAreReused() throws Exception
+	{
+		byte[] bytes = BufferPool.acquireBytes(1000, true);
+		assertEquals(65_536, bytes.length);	// The smallest size-class.
+		BufferPool.release(bytes);
+		assertSame(bytes, BufferPool.acquireBytes(65_536, true));
+		BufferPool.release(bytes);
+
+		char[] chars = BufferPool.acquireChars((FileUtils.mb +1), true);
+		assertEquals((4 * FileUtils.mb), chars.length);
+		BufferPool.release(chars);
+		assertSame(chars, BufferPool.acquireChars((2 * FileUtils.mb), true));
+		BufferPool.release(chars);
+
+		byte[] oversizedBytes = BufferPool.acquireBytes((5 * FileUtils.mb), true);	// Larger than all the classes, so it is not kept.
+		assertEquals((5 * FileUtils.mb), oversizedBytes.length);
+		long reservedBytes = BufferPool.getReservedBytes();
+		BufferPool.release(oversizedBytes);
+		assertEquals((reservedBytes - (5 * FileUtils.mb)), BufferPool.getReservedBytes());
+	}
+
+
+	@Test
+	public void testWaitingForMemory() throws Exception
+	{
+		BufferPool.clearIdleBuffers();
+		BufferPool.memoryBudget = (BufferPool.getReservedBytes() + FileUtils.mb);
+		byte[] firstBuffer = BufferPool.acquireBytes(FileUtils.mb, true);
+
+		AtomicReference<byte[]> secondBuffer = new AtomicReference<>();
+		CountDownLatch acquiredLatch = new CountDownLatch(1);
+		Thread waitingThread = Thread.ofVirtual().start(() -> {
+			try {
+				secondBuffer.set(BufferPool.acquireBytes(FileUtils.mb, true));
+				acquiredLatch.countDown();
+			} catch (InterruptedException ignored) {}
+		});
+		assertFalse(acquiredLatch.await(200, TimeUnit.MILLISECONDS));	// The budget is full, so it waits.
+
+		byte[] growthBuffer = BufferPool.acquireBytes(FileUtils.mb, false);	// A task which already holds a buffer does not wait, it exceeds the budget.
+		assertNotNull(growthBuffer);
+		BufferPool.release(growthBuffer);
+		BufferPool.release(firstBuffer);
+		assertTrue(acquiredLatch.await(5, TimeUnit.SECONDS));
+		waitingThread.join();
+		BufferPool.release(secondBuffer.get());
+	}
+
+}
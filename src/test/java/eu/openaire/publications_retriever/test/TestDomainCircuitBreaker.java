@@ -0,0 +1,97 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.exceptions.DomainBlockedException;
+import eu.openaire.publications_retriever.exceptions.DomainCircuitOpenException;
+import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.http.DomainCircuitBreaker;
+import eu.openaire.publications_retriever.util.http.HttpConnUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class contains testing for the "DomainCircuitBreaker", which blocks the failing domains temporarily.
+ * @author Lampros Smyrnaios
+ */
+public class TestDomainCircuitBreaker {
+
+	private static final long defaultInitialOpenMillis = DomainCircuitBreaker.initialOpenMillis;
+
+	private static final String domain = "failing-domain.org";
+
+
+	@AfterEach
+	public void clearBreakers()
+	{
+		DomainCircuitBreaker.initialOpenMillis = defaultInitialOpenMillis;
+		DomainCircuitBreaker.domainsWithCircuitBreakers.clear();
+		HttpConnUtils.blacklistedDomains.remove(domain);
+	}
+
+
+	@Test
+	public void testFailuresOpenTheBreakerAndSuccessfulProbeClosesIt() throws Exception
+	{
+		DomainCircuitBreaker.initialOpenMillis = 100;
+
+		for ( int i = 1; i < 10; ++i )
+			DomainCircuitBreaker.onFailure(domain, "a test-failure");	// Not enough failures to open the breaker.
+		assertDoesNotThrow(() -> DomainCircuitBreaker.checkIfAllowed(domain));
+
+		assertThrows(DomainCircuitOpenException.class, () -> DomainCircuitBreaker.onFailure(domain, "a test-failure"));
+		assertThrows(DomainCircuitOpenException.class, () -> DomainCircuitBreaker.checkIfAllowed(domain));
+		assertNotNull(DomainCircuitBreaker.getReopeningTime(domain));
+
+		Thread.sleep(200);	// The breaker becomes "half-open".
+		assertDoesNotThrow(() -> DomainCircuitBreaker.checkIfAllowed(domain));	// This is the probe-request.
+		assertThrows(DomainCircuitOpenException.class, () -> DomainCircuitBreaker.checkIfAllowed(domain), "Only one probe-request should be allowed at a time.");
+
+		DomainCircuitBreaker.onSuccess(domain);
+		assertDoesNotThrow(() -> DomainCircuitBreaker.checkIfAllowed(domain));
+		assertNull(DomainCircuitBreaker.getReopeningTime(domain));
+	}
+
+
+	@Test
+	public void testFailedProbesBlockTheDomain() throws Exception
+	{
+		DomainCircuitBreaker.initialOpenMillis = 10;
+
+		for ( int i = 1; i < 10; ++i )
+			DomainCircuitBreaker.onFailure(domain, "a test-failure");
+		assertThrows(DomainCircuitOpenException.class, () -> DomainCircuitBreaker.onFailure(domain, "a test-failure"));
+
+		long openMillis = 10;
+		for ( int probe = 1; probe < 5; ++probe ) {
+			Thread.sleep(openMillis + 50);
+			assertDoesNotThrow(() -> DomainCircuitBreaker.checkIfAllowed(domain));
+			assertThrows(DomainCircuitOpenException.class, () -> DomainCircuitBreaker.onFailure(domain, "a failed probe"));	// It opens again, for double the time.
+			openMillis *= 2;
+		}
+		assertFalse(HttpConnUtils.blacklistedDomains.contains(domain));
+
+		Thread.sleep(openMillis + 50);
+		assertDoesNotThrow(() -> DomainCircuitBreaker.checkIfAllowed(domain));
+		DomainBlockedException blockedException = assertThrows(DomainBlockedException.class, () -> DomainCircuitBreaker.onFailure(domain, "a failed probe"));
+		assertFalse(blockedException instanceof DomainCircuitOpenException, "The domain should be blocked permanently, after its 5th failed probe.");
+		assertTrue(HttpConnUtils.blacklistedDomains.contains(domain));
+	}
+
+
+	@Test
+	public void test503IsIgnored() throws Exception
+	{
+		for ( int i = 0; i < 20; ++i )
+			ConnSupportUtils.on5XXerrorCode(503, domain);
+		assertDoesNotThrow(() -> DomainCircuitBreaker.checkIfAllowed(domain));
+		assertFalse(DomainCircuitBreaker.domainsWithCircuitBreakers.containsKey(domain));
+
+		for ( int i = 1; i < 10; ++i )
+			ConnSupportUtils.on5XXerrorCode(500, domain);
+		assertThrows(DomainCircuitOpenException.class, () -> ConnSupportUtils.on5XXerrorCode(500, domain));
+		assertThrows(DomainCircuitOpenException.class, () -> DomainCircuitBreaker.checkIfAllowed(domain));
+	}
+
+}
@@ -1,23 +1,53 @@
 package eu.openaire.publications_retriever.test;
 
+import eu.openaire.publications_retriever.crawler.BoilerplateLinks;
+import eu.openaire.publications_retriever.crawler.HtmlLinkExtractor;
+import eu.openaire.publications_retriever.crawler.HtmlPageSummary;
+import eu.openaire.publications_retriever.crawler.InternalLinkRanker;
+import eu.openaire.publications_retriever.crawler.LinkElement;
+import eu.openaire.publications_retriever.crawler.MetadataHandler;
 import eu.openaire.publications_retriever.crawler.PageCrawler;
+import eu.openaire.publications_retriever.crawler.ParsingPool;
+import eu.openaire.publications_retriever.crawler.ScoredLink;
+import eu.openaire.publications_retriever.crawler.SpecialUrlsHandler;
 import eu.openaire.publications_retriever.exceptions.*;
+import eu.openaire.publications_retriever.machine_learning.PageStructureMLA;
 import eu.openaire.publications_retriever.util.args.ArgsUtils;
 import eu.openaire.publications_retriever.util.http.ConnSupportUtils;
+import eu.openaire.publications_retriever.util.http.DetectedContentType;
+import eu.openaire.publications_retriever.util.http.HtmlBodyReader;
+import eu.openaire.publications_retriever.util.url.UrlNormalizationCache;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
 import org.junit.jupiter.api.BeforeAll;
-//import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static eu.openaire.publications_retriever.util.http.HttpConnUtils.handleConnection;
 
 
@@ -124,7 +154,7 @@ public class TestLinkExtraction {
 	{
 		String link = null;
 		try {
-			HashMap<String, String> extractedLinksHashSet = getLinksList(exampleHtml, null);
+			HashMap<String, ScoredLink> extractedLinksHashSet = getLinksList(exampleHtml, null);
 			if ( extractedLinksHashSet == null )
 				throw new RuntimeException("No links were extracted from html!");	// Logging is handled inside..
             else if ( extractedLinksHashSet.isEmpty() )
@@ -151,7 +181,7 @@ public class TestLinkExtraction {
 				logger.error("Could not retrieve the HTML-code for pageUrl: " + finalUrl);
 			} else {
                 //logger.debug("HTML:\n" + html);
-                HashMap<String, String> extractedLinksHashSet = getLinksList(html, finalUrl);
+                HashMap<String, ScoredLink> extractedLinksHashSet = getLinksList(html, finalUrl);
                 if ( extractedLinksHashSet == null )
                     throw new RuntimeException("No links were extracted from url: " + exampleUrl);	// Logging is handled inside..
                 else if ( extractedLinksHashSet.isEmpty() )
@@ -169,7 +199,7 @@ public class TestLinkExtraction {
 	public void testExtractAllLinksFromHtml()
 	{
 		try {
-			HashMap<String, String> extractedLinksHashSet = getLinksList(exampleHtml, null);
+			HashMap<String, ScoredLink> extractedLinksHashSet = getLinksList(exampleHtml, null);
 			if ( extractedLinksHashSet == null )
 				return;	// Logging is handled inside..
 
@@ -208,7 +238,7 @@ public class TestLinkExtraction {
             }
 			//logger.debug("HTML:\n" + html);
 
-			HashMap<String, String> extractedLinksHashSet = getLinksList(html, finalUrl);
+			HashMap<String, ScoredLink> extractedLinksHashSet = getLinksList(html, finalUrl);
 			if ( extractedLinksHashSet == null )
 				throw new RuntimeException("No links could be extracted from html!");	// Logging is handled inside..
 
@@ -241,9 +271,562 @@ public class TestLinkExtraction {
 	}
 
 
-	private static HashMap<String, String> getLinksList(String html, String url)
+	private static final List<String> differentialHtmlSamples = List.of(
+			"<html><head><title>T</title><link rel=\"alternate\" type=\"application/pdf\" href=\"/file.pdf\"></head><body class=\"page\"><div id=\"main\"><p>Read the <a href=\"/view\" title=\"View it\">full&nbsp;text</a> here.</p></div></body></html>",
+			"<body><table class=\"files\"><tr><td>File</td><td><a class=\"btn\" href=\"/bitstream/1/paper.pdf?sequence=1\">Download <b>PDF</b><br>(1.2 MB)</a></td></tr></table></body>",
+			"<ul class=\"menu\"><li><a href=\"/a\">A</a><li><a href=\"/b\">B</a><li class=\"last\">C <a href=\"/c\" data-article-url=\"/x\">C</a></ul><p>One<p>Two <a href=\"#\" data-popup=\"/popup.pdf\">popup</a>",
+			"<!DOCTYPE html><html><body><!-- <a href=\"/commented\">no</a> --><script>var s = '<a href=\"/in-script\">no</a>';</script><form action=\"/download?id=5\" class=\"dl\"><input type=\"submit\" value=\"Download\"><a href=\"/inside-form\">in form</a></form></body></html>",
+			"<div class=\"footer\"><a href='/terms' TITLE='Terms &amp; Conditions'>Terms</a></div><a href=/unquoted?x=1&amp;y=2>unquoted</a><a href=\"/first\">first<a href=\"/second\">second</a>",
+			"<header><nav><a href=\"/home\">Home</a></nav></header><section><h2>Files</h2><dl><dt>Main<dd><a href=\"/main.pdf\" type=\"application/pdf\">main</a></dl></section><footer>© <a href=\"/contact\">contact</a></footer>",
+			"<p>Caf&eacute; &#233;&#xE9; &amp &copy 5 &lt; 6 &unknown; <a href=\"/s?a=1&copy=2&amp;b=&#51;\" title=\"&quot;Quoted&quot; &hellip;\">R&amp;D&nbsp;&#8203;paper &#150; &#0;</a> &notit; text</p>"
+	);
+
+
+	/**
+	 * This test checks that the streaming link-extractor gives the same link-elements (attributes, text and structure) as the Jsoup-based extraction.
+	 */
+	@Test
+	public void testStreamingLinkExtractionMatchesJsoup()
+	{
+		for ( String html : differentialHtmlSamples )
+		{
+			List<LinkElement> jsoupElements = HtmlLinkExtractor.extractLinkElementsWithJsoup(html);
+			List<LinkElement> streamingElements = HtmlLinkExtractor.extractLinkElements(html);
+			assertEquals(jsoupElements.size(), streamingElements.size(), "Different number of link-elements for html: " + html);
+			for ( int i = 0; i < jsoupElements.size(); i++ ) {
+				LinkElement jsoupElement = jsoupElements.get(i);
+				LinkElement streamingElement = streamingElements.get(i);
+				assertEquals(jsoupElement.tagName(), streamingElement.tagName());
+				assertEquals(jsoupElement.attributes(), streamingElement.attributes());
+				assertEquals(jsoupElement.text(), streamingElement.text(), "Different text for element: " + jsoupElement);
+				assertEquals(PageStructureMLA.getStructureFingerprint(jsoupElement), PageStructureMLA.getStructureFingerprint(streamingElement), "Different structure for element: " + jsoupElement);
+				assertEquals(jsoupElement.parent().ownText(), streamingElement.parent().ownText(), "Different parent-text for element: " + jsoupElement);
+			}
+		}
+	}
+
+
+	/**
+	 * This test checks that the single-pass summary of a page gives the same meta-data and candidate docLinks as the old regex-scans over the whole html.
+	 */
+	@Test
+	public void testPageSummaryMatchesRegexScans()
+	{
+		List<String> htmlSamples = List.of(
+				"<html><head><meta name=\"DC.rights\" content=\"info:eu-repo/semantics/openAccess\"><META CONTENT=\"Closed Access\" NAME=\"dc.accessRights\" /><meta name=\"citation_title\" content=\"T\"><meta content=\"https://example.org/paper.pdf\" name=\"citation_pdf_url\"></head><body><a href=\"/a\">a</a></body></html>",
+				"<html><head><meta name=\"eprints.document_url\" content=\"http://example.org/1/file.pdf\"/><meta name=\"bepress_citation_pdf_url\" content=\"http://example.org/2.pdf\"><meta name=\"DC.rights\" content=\"http://creativecommons.org/licenses/by/4.0/\"></head><body></body></html>",
+				"<body><div>  /content/files/sayilar/1/paper.pdf </div><div class=\"x\">no-path</div><script>var config = {\"pdfUrl\":\"https:\\/\\/example.org\\/js.pdf\",\"other\":1};</script></body>",
+				"<p>No meta-tags here.</p>"
+		);
+		for ( String html : htmlSamples )
+		{
+			HtmlPageSummary pageSummary = HtmlLinkExtractor.analyzeHtml(html);
+			assertEquals(MetadataHandler.getMetaAccessRightsFromHTML(html), pageSummary.getMetaAccessRights(), "Different metaAccessRights for html: " + html);
+			assertEquals(MetadataHandler.getMetaDocUrlFromHTML(html), pageSummary.getMetaDocUrl(), "Different metaDocUrl for html: " + html);
+			Matcher matcher = SpecialUrlsHandler.Turkjgastroenterol_docUrl_pattern.matcher(html);
+			assertEquals((matcher.find() ? List.of(matcher.group(1)) : List.of()), pageSummary.getCandidateDocLinks(), "Different candidate docLinks for html: " + html);
+			Matcher jsMatcher = PageCrawler.JAVASCRIPT_CODE_PDF_LINK.matcher(html);
+			assertEquals((jsMatcher.matches() ? List.of(jsMatcher.group(1).replace("\\/", "/")) : List.of()), pageSummary.getJavascriptPdfLinks(), "Different javascript pdf-links for html: " + html);
+		}
+	}
+
+
+	/**
+	 * This test checks that the promising internal-links get higher scores than the navigation-links and that they are ranked first.
+	 */
+	@Test
+	public void testInternalLinksAreRankedByScore()
+	{
+		List<LinkElement> elements = HtmlLinkExtractor.extractLinkElements("<body><nav class=\"main-menu\"><a href=\"/about\">About</a></nav><a href=\"/search?q=x\">Search</a>"
+				+ "<div class=\"item-page\"><a href=\"/article/5/view/\">Article</a><div class=\"file-list\"><a href=\"/bitstream/1/paper.pdf\" title=\"Download the full text\">Paper</a></div></div>"
+				+ "<a href=\"/other\">Other</a></body>");
+		HashMap<String, ScoredLink> links = new HashMap<>();
+		for ( LinkElement element : elements ) {
+			String link = element.attr("href");
+			links.put(link, new ScoredLink(0, InternalLinkRanker.getScore(link, element)));
+		}
+		assertTrue(links.get("/bitstream/1/paper.pdf").score() > links.get("/article/5/view/").score());
+		assertTrue(links.get("/article/5/view/").score() > links.get("/other").score());
+		assertTrue(links.get("/other").score() > links.get("/search?q=x").score());
+		assertTrue(links.get("/search?q=x").score() > links.get("/about").score());	// Both its url and its structure are of a navigation-link.
+
+		List<String> rankedLinks = InternalLinkRanker.getRankedLinks(links).stream().map(Map.Entry::getKey).toList();
+		assertEquals(List.of("/bitstream/1/paper.pdf", "/article/5/view/", "/other", "/search?q=x", "/about"), rankedLinks);
+	}
+
+
+	/**
+	 * This test checks that the budget of the remaining-links of a domain adapts to how often they have given a docUrl.
+	 */
+	@Test
+	public void testRemainingLinksBudgetAdapts()
+	{
+		String unfruitfulDomain = "unfruitful.example.org", fruitfulDomain = "fruitful.example.org";
+		try {
+			assertEquals(InternalLinkRanker.maxRemainingLinksToConnect, InternalLinkRanker.getRemainingLinksBudget(unfruitfulDomain));	// Not evaluated yet.
+			for ( int i = 0; i < InternalLinkRanker.timesToCheckRemainingLinksBeforeEvaluate; i++ ) {
+				InternalLinkRanker.recordRemainingLinksOutcome(unfruitfulDomain, false, InternalLinkRanker.maxRemainingLinksToConnect);
+				InternalLinkRanker.recordRemainingLinksOutcome(fruitfulDomain, ((i % 4) == 0), ((i % 3) +1));
+			}
+			int numOfSkippedPages = 0;
+			while ( InternalLinkRanker.getRemainingLinksBudget(unfruitfulDomain) == 0 )
+				numOfSkippedPages ++;
+			assertEquals(49, numOfSkippedPages);	// Then it gets re-checked.
+			assertEquals(5, InternalLinkRanker.getRemainingLinksBudget(fruitfulDomain));	// Its deepest docUrl was found with the 3rd probe, plus 2 extra.
+		} finally {
+			InternalLinkRanker.domainsWithRemainingLinksStats.remove(unfruitfulDomain);
+			InternalLinkRanker.domainsWithRemainingLinksStats.remove(fruitfulDomain);
+		}
+	}
+
+
+	/**
+	 * This test checks that the links which appear in most pages of a domain are dropped from its next pages, while the relative links and the links of each page are kept.
+	 */
+	@Test
+	public void testBoilerplateLinksAreSuppressed() throws Exception
+	{
+		String domain = "boilerplate.example.org";
+		try {
+			for ( int i = 1; i <= BoilerplateLinks.pagesToLearnFrom; i++ ) {
+				assertNull(BoilerplateLinks.getBoilerplateLinkHashes(domain));	// Still being learned.
+				String footerLink = ((i <= 2) ? "" : "<a href=\"/contact\">Contact</a>");	// It appears in 80% of the pages.
+				String sidebarLink = ((i <= 3) ? "" : "<a href=\"/news\">News</a>");	// It appears in 70% of the pages.
+				BoilerplateLinks.learnPageLinks(domain, HtmlLinkExtractor.extractLinkElements("<body><nav><a href=\"https://" + domain + "/about\">About</a></nav>"
+						+ "<a href=\"download\">Download</a><a href=\"/article/" + i + "/view\">Article</a>" + footerLink + sidebarLink + "</body>"));
+			}
+			long[] boilerplateLinkHashes = BoilerplateLinks.getBoilerplateLinkHashes(domain);
+			assertNotNull(boilerplateLinkHashes);
+			assertEquals(2, boilerplateLinkHashes.length);
+			assertTrue(BoilerplateLinks.isBoilerplateLink("https://" + domain + "/about", boilerplateLinkHashes));
+			assertTrue(BoilerplateLinks.isBoilerplateLink("/contact", boilerplateLinkHashes));
+			assertFalse(BoilerplateLinks.isBoilerplateLink("/news", boilerplateLinkHashes));
+			assertFalse(BoilerplateLinks.isBoilerplateLink("download", boilerplateLinkHashes));	// The relative links lead to a different url in each page.
+			assertFalse(BoilerplateLinks.isBoilerplateLink("/article/11/view", boilerplateLinkHashes));
+
+			String pageUrl = "https://" + domain + "/article/11/view";
+			String html = "<body><nav><a href=\"https://" + domain + "/about\">About</a></nav><a href=\"/contact\">Contact</a><a href=\"/article/12/view\">Next article</a></body>";
+			HashMap<String, ScoredLink> links = PageCrawler.extractInternalLinksFromHtml(html, HtmlPageSummary.analyze(html, pageUrl), pageUrl, domain);
+			assertNotNull(links);
+			assertEquals(1, links.size());
+			assertTrue(links.keySet().iterator().next().contains("/article/12/view"));
+		} finally {
+			BoilerplateLinks.domainsWithLinks.invalidate(domain);
+		}
+	}
+
+
+	/**
+	 * This test checks that the domains which never reach the "pagesToLearnFrom", do not keep their counts forever.
+	 */
+	@Test
+	public void testBoilerplateDomainsAreBounded() throws Exception
+	{
+		try {
+			for ( int i = 0; i < 3_000; i++ ) {
+				String domain = "domain" + i + ".example.org";
+				BoilerplateLinks.learnPageLinks(domain, HtmlLinkExtractor.extractLinkElements("<body><a href=\"https://" + domain + "/about\">About</a></body>"));
+			}
+			assertTrue(BoilerplateLinks.domainsWithLinks.size() <= 2_000, "The learned domains should stay bounded: " + BoilerplateLinks.domainsWithLinks.size());
+		} finally {
+			BoilerplateLinks.domainsWithLinks.invalidateAll();
+		}
+	}
+
+
+	/**
+	 * This method builds the structure of the element in the way it was built before the fingerprints, as "tag_class"-lines, in order to compare the results.
+	 */
+	private static String getStructureString(LinkElement element)
+	{
+		StringBuilder sb = new StringBuilder(1000);
+		int elementsCount = 0;
+		do {
+			sb.append(element.tagName().trim());
+			String className = element.className().trim();
+			if ( !className.isEmpty() )
+				sb.append("_").append(className);
+			sb.append("\n");
+			elementsCount ++;
+		} while ( (elementsCount <= 50) && ((element = element.parent()) != null) );
+		return sb.toString();
+	}
+
+
+	/**
+	 * This test checks that two link-elements get the same structure-fingerprint, only when their structure-strings are the same.
+	 */
+	@Test
+	public void testStructureFingerprintsMatchTheStructureStrings()
+	{
+		List<LinkElement> elements = new ArrayList<>();
+		for ( String html : differentialHtmlSamples )
+			elements.addAll(HtmlLinkExtractor.extractLinkElements(html));
+		elements.addAll(HtmlLinkExtractor.extractLinkElements("<div class=\" files \"><a href=\"/1\">1</a></div><div class=\"files\"><a href=\"/2\">2</a></div><div class=\" \"><a href=\"/3\">3</a></div><div><a href=\"/4\">4</a></div>"));
+		StringBuilder deepHtml = new StringBuilder();
+		for ( int i = 0; i < 60; i++ )
+			deepHtml.append("<div class=\"level").append(i % 3).append("\">");
+		deepHtml.append("<a href=\"/deep\">deep</a><span><a href=\"/deeper\">deeper</a></span>");
+		elements.addAll(HtmlLinkExtractor.extractLinkElements(deepHtml.toString()));
+
+		for ( LinkElement element1 : elements ) {
+			String structure1 = getStructureString(element1);
+			long fingerprint1 = PageStructureMLA.getStructureFingerprint(element1);
+			for ( LinkElement element2 : elements )
+				assertEquals(structure1.equals(getStructureString(element2)), (fingerprint1 == PageStructureMLA.getStructureFingerprint(element2)), "Different match for the elements: " + element1 + " and " + element2);
+		}
+	}
+
+
+	/**
+	 * This is a micro-benchmark comparing the CPU-time and the allocated bytes of the structure-strings and the structure-fingerprints, for all the link-elements of a large page.
+	 */
+	@Disabled	// as we want to run it only on demand.
+	@Test
+	public void benchmarkStructureFingerprints()
+	{
+		StringBuilder sb = new StringBuilder(1_100_000);
+		sb.append("<html><body><div class=\"content main\"><table class=\"files\">");
+		for ( int i = 0; sb.length() < 1_000_000; i++ )
+			sb.append("<tr class=\"row\"><td class=\"cell\"><span><a class=\"btn\" href=\"/bitstream/").append(i).append("/paper.pdf\">Download</a></span></td></tr>");
+		sb.append("</table></div></body></html>");
+		List<LinkElement> elements = HtmlLinkExtractor.extractLinkElements(sb.toString());
+
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		for ( int round = 0; round < 10; round++ ) {	// The first rounds are for warming-up.
+			long startCpu = threadMXBean.getCurrentThreadCpuTime();
+			long startBytes = threadMXBean.getCurrentThreadAllocatedBytes();
+			int sumOfHashes = 0;
+			for ( LinkElement element : elements )
+				sumOfHashes += getStructureString(element).hashCode();
+			long stringCpu = (threadMXBean.getCurrentThreadCpuTime() - startCpu);
+			long stringBytes = (threadMXBean.getCurrentThreadAllocatedBytes() - startBytes);
+
+			startCpu = threadMXBean.getCurrentThreadCpuTime();
+			startBytes = threadMXBean.getCurrentThreadAllocatedBytes();
+			long sumOfFingerprints = 0;
+			for ( LinkElement element : elements )
+				sumOfFingerprints += PageStructureMLA.getStructureFingerprint(element);
+			long fingerprintCpu = (threadMXBean.getCurrentThreadCpuTime() - startCpu);
+			long fingerprintBytes = (threadMXBean.getCurrentThreadAllocatedBytes() - startBytes);
+
+			logger.info("Round " + round + ", " + elements.size() + " elements: Strings: " + (stringCpu / 1_000_000) + " ms, " + (stringBytes / 1024) + " KB allocated (" + sumOfHashes + ") | Fingerprints: " + (fingerprintCpu / 1_000_000) + " ms, " + (fingerprintBytes / 1024) + " KB allocated (" + sumOfFingerprints + ").");
+		}
+	}
+
+
+	private static final Pattern SPACE_ONLY_LINE = Pattern.compile("^[\\s]+$");
+
+
+	/**
+	 * This method reads the html in the way it was read before the "HtmlBodyReader", line by line, in order to compare the results.
+	 */
+	private static String readHtmlWithReadLine(byte[] bytes, Charset charset) throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		try ( BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), charset)) ) {
+			String inputLine;
+			while ( (inputLine = br.readLine()) != null )
+				if ( !inputLine.isEmpty() && (inputLine.length() != 1) && !SPACE_ONLY_LINE.matcher(inputLine).matches() )
+					sb.append(inputLine).append(" ");
+		}
+		return sb.toString();
+	}
+
+
+	/**
+	 * This test checks that the "HtmlBodyReader" gives the same html-string as the line-by-line reading, for different line-breaks, whitespace-only lines and multibyte-chars crossing the buffers.
+	 */
+	@Test
+	public void testHtmlBodyReaderMatchesReadLine() throws Exception
+	{
+		StringBuilder largeHtml = new StringBuilder();
+		for ( int i = 0; largeHtml.length() < 300_000; i++ )
+			largeHtml.append("<p>Ελληνικό κείμενο ").append(i).append(" — 日本語のテキスト 😀</p>").append(((i % 3) == 0) ? "\r\n" : ((i % 3) == 1) ? "\n \t \n" : "\r");
+
+		List<String> htmlSamples = List.of("", "\n", "a", "a\n", "ab", "ab\r\n\r\ncd\r", " \t\f\u000B\n x \n", "<html>\n  \n<body>\rx\ry\r\n\n\u00A0\n</body></html>", "line1\u0085line2\u2028\n\r\n", largeHtml.toString());
+		for ( String html : htmlSamples )
+			for ( Charset charset : List.of(StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16) )
+			{
+				byte[] bytes = html.getBytes(charset);
+				String expectedHtml = readHtmlWithReadLine(bytes, charset);
+				String readHtml = HtmlBodyReader.readHtml(new ByteArrayInputStream(bytes), charset, null, ((html.length() % 2) == 0) ? bytes.length : -2);
+				assertEquals(expectedHtml, ((readHtml != null) ? readHtml : ""), "Different html for charset: " + charset + " and html: " + ((html.length() > 100) ? html.substring(0, 100) : html));
+
+				readHtml = HtmlBodyReader.readHtml(new StringReader(html), "<!DOCTYPE html>");
+				assertEquals(("<!DOCTYPE html> " + readHtmlWithReadLine(html.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)), readHtml);
+			}
+	}
+
+
+	/**
+	 * This test checks the content-type which is identified from the first bytes of a response-body, for the pdf-signature, the html-indicators after a BOM or whitespace, and the binary content.
+	 */
+	@Test
+	public void testContentTypeFromMagicBytes()
+	{
+		Object[][] bodiesWithContentTypes = {
+				{ "%PDF-1.7\n%âãÏÓ\n".getBytes(StandardCharsets.ISO_8859_1), "pdf" },
+				{ "%pdf-1.4".getBytes(StandardCharsets.US_ASCII), "pdf" },
+				{ " \r\n\t%PDF-1.5".getBytes(StandardCharsets.US_ASCII), "pdf" },
+				{ "\uFEFF <html lang=\"en\">".getBytes(StandardCharsets.UTF_8), "html" },
+				{ "<!DOCTYPE html>\n<html>".getBytes(StandardCharsets.UTF_8), "html" },
+				{ "\n\n<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\">".getBytes(StandardCharsets.UTF_8), "html" },
+				{ "%PDF".getBytes(StandardCharsets.US_ASCII), "undefined" },	// Not the whole signature.
+				{ "{\"title\": \"Not a pdf, nor an html\"}".getBytes(StandardCharsets.UTF_8), "undefined" },
+				{ new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0x00, 0x00, 0x00, 0x0D, 'I', 'H', 'D', 'R'}, "undefined" },
+				{ new byte[] {0x00, (byte) 0xFF, (byte) 0xFE, 0x7F, (byte) 0x80, 0x01, (byte) 0xC3, 0x28, (byte) 0xA0, (byte) 0xA1, 0x25, 0x50}, "undefined" },
+				{ "\uFEFF \r\n\t ".getBytes(StandardCharsets.UTF_8), null },	// No content to examine.
+				{ new byte[0], null }
+		};
+
+		for ( Object[] bodyWithContentType : bodiesWithContentTypes ) {
+			byte[] body = (byte[]) bodyWithContentType[0];
+			String expectedContentType = (String) bodyWithContentType[1];
+			DetectedContentType detectedContentType = ConnSupportUtils.getContentTypeFromMagicBytes(body, body.length);
+			String bodyDescription = new String(body, StandardCharsets.ISO_8859_1);
+			if ( expectedContentType == null )
+				assertNull(detectedContentType, "Unexpected content-type for body: " + bodyDescription);
+			else {
+				assertNotNull(detectedContentType, "No content-type for body: " + bodyDescription);
+				assertEquals(expectedContentType, detectedContentType.detectedContentType, "Unexpected content-type for body: " + bodyDescription);
+			}
+		}
+
+		byte[] pdfBody = "%PDF-1.7".getBytes(StandardCharsets.US_ASCII);
+		assertEquals("undefined", ConnSupportUtils.getContentTypeFromMagicBytes(pdfBody, 4).detectedContentType, "Only the read bytes should be examined.");
+	}
+
+
+	/**
+	 * This is a micro-benchmark comparing the CPU-time and the allocated bytes of the "HtmlBodyReader" and the line-by-line reading, on a 1 MB page.
+	 */
+	@Disabled	// as we want to run it only on demand.
+	@Test
+	public void benchmarkHtmlBodyReader() throws Exception
+	{
+		StringBuilder sb = new StringBuilder(1_100_000);
+		for ( int i = 0; sb.length() < 1_000_000; i++ )	// About 1 MB.
+			sb.append("    <p class=\"text\">Some text of the paragraph number ").append(i).append(", with <i>some</i> markup &amp; entities.</p>\n").append(((i % 5) == 0) ? "      \n" : "");
+		byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		for ( int round = 0; round < 10; round++ ) {	// The first rounds are for warming-up.
+			long startCpu = threadMXBean.getCurrentThreadCpuTime();
+			long startBytes = threadMXBean.getCurrentThreadAllocatedBytes();
+			StringBuilder lineStrB = new StringBuilder(1_100_000);	// Like the old code, which reused the builder, but allocated a 1 MB "BufferedReader" per page.
+			try ( BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), 1_048_576) ) {
+				String inputLine;
+				while ( (inputLine = br.readLine()) != null )
+					if ( !inputLine.isEmpty() && (inputLine.length() != 1) && !SPACE_ONLY_LINE.matcher(inputLine).matches() )
+						lineStrB.append(inputLine).append(" ");
+			}
+			long readLineCpu = (threadMXBean.getCurrentThreadCpuTime() - startCpu);
+			String lineHtml = lineStrB.toString();
+			long readLineBytes = (threadMXBean.getCurrentThreadAllocatedBytes() - startBytes) - lineStrB.capacity() - lineHtml.length();	// Exclude the builder, which was reused in the old code, and the final html-string.
+
+			startCpu = threadMXBean.getCurrentThreadCpuTime();
+			startBytes = threadMXBean.getCurrentThreadAllocatedBytes();
+			String html = HtmlBodyReader.readHtml(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8, null, bytes.length);
+			long readerCpu = (threadMXBean.getCurrentThreadCpuTime() - startCpu);
+			long readerBytes = (threadMXBean.getCurrentThreadAllocatedBytes() - startBytes) - html.length();	// Exclude the final html-string, which is created by both ways.
+
+			assertEquals(lineHtml, html);
+			logger.info("Round " + round + ": readLine: " + (readLineCpu / 1_000_000) + " ms, " + (readLineBytes / 1024) + " KB allocated | HtmlBodyReader: " + (readerCpu / 1_000_000) + " ms, " + (readerBytes / 1024) + " KB allocated.");
+		}
+	}
+
+
+	/**
+	 * This is a micro-benchmark comparing the CPU-time and the allocated bytes of the streaming link-extractor and the Jsoup-based extraction, on a large page.
+	 */
+	@Disabled	// as we want to run it only on demand.
+	@Test
+	public void benchmarkLinkExtraction()
+	{
+		StringBuilder sb = new StringBuilder(6_000_000);
+		sb.append("<html><head><title>Large page</title></head><body><div class=\"content\">");
+		for ( int i = 0; sb.length() < 5_000_000; i++ )	// About 5 MB.
+			sb.append(differentialHtmlSamples.get(i % differentialHtmlSamples.size())).append("<p class=\"text\">Some text of the paragraph number ").append(i).append(", with <i>some</i> markup &amp; entities.</p>");
+		sb.append("</div></body></html>");
+		String html = sb.toString();
+
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		for ( int round = 0; round < 10; round++ ) {	// The first rounds are for warming-up.
+			long startCpu = threadMXBean.getCurrentThreadCpuTime();
+			long startBytes = threadMXBean.getCurrentThreadAllocatedBytes();
+			int numJsoupLinks = HtmlLinkExtractor.extractLinkElementsWithJsoup(html).size();
+			long jsoupCpu = (threadMXBean.getCurrentThreadCpuTime() - startCpu);
+			long jsoupBytes = (threadMXBean.getCurrentThreadAllocatedBytes() - startBytes);
+
+			startCpu = threadMXBean.getCurrentThreadCpuTime();
+			startBytes = threadMXBean.getCurrentThreadAllocatedBytes();
+			int numStreamingLinks = HtmlLinkExtractor.extractLinkElements(html).size();
+			long streamingCpu = (threadMXBean.getCurrentThreadCpuTime() - startCpu);
+			long streamingBytes = (threadMXBean.getCurrentThreadAllocatedBytes() - startBytes);
+
+			logger.info("Round " + round + ": Jsoup: " + (jsoupCpu / 1_000_000) + " ms, " + (jsoupBytes / 1_048_576) + " MB allocated, " + numJsoupLinks + " links | Streaming: " + (streamingCpu / 1_000_000) + " ms, " + (streamingBytes / 1_048_576) + " MB allocated, " + numStreamingLinks + " links.");
+		}
+	}
+
+
+	/**
+	 * This is a micro-benchmark of the links-extraction throughput, for pages which end with a "DocLinkFoundException", when the stack of the thread is deep (like in the crawling-tasks).
+	 * For comparison, the cost of creating an exception with a stack-trace in the same depth is measured as well.
+	 */
+	@Disabled	// as we want to run it only on demand.
+	@Test
+	public void benchmarkLinkExtractionWithExceptions()
+	{
+		int numOfPages = 20_000, stackDepth = 300;
+		String pageUrl = "https://repository.example.org/handle/123/456";
+		String html = "<html><body><div class=\"item\"><a href=\"/browse\">Browse</a><a href=\"/about\">About</a><a href=\"/bitstream/123/456/paper.pdf\">PDF</a></div></body></html>";
+		HtmlPageSummary pageSummary = HtmlPageSummary.analyze(html, pageUrl);
+		for ( int round = 0; round < 10; round++ ) {	// The first rounds are for warming-up.
+			long start = System.nanoTime();
+			int numOfDocLinks = callAtDepth(stackDepth, () -> {
+				int found = 0;
+				for ( int i = 0; i < numOfPages; i++ ) {
+					try {
+						PageCrawler.extractInternalLinksFromHtml(html, pageSummary, pageUrl, null);
+					} catch (DocLinkFoundException dlfe) {
+						found ++;
+					} catch (Exception e) {
+						logger.error("Unexpected exception: " + e);
+					}
+				}
+				return found;
+			});
+			long extractionNanos = (System.nanoTime() - start);
+
+			start = System.nanoTime();
+			int numOfStackTraces = callAtDepth(stackDepth, () -> {
+				int created = 0;
+				for ( int i = 0; i < numOfPages; i++ )
+					created += ((System.identityHashCode(new Exception()) != 0) ? 1 : 0);	// The stack-trace is filled when the exception is created.
+				return created;
+			});
+			long stackTraceNanos = (System.nanoTime() - start);
+			logger.info("Round " + round + ": " + (numOfPages * 1_000_000_000L / extractionNanos) + " pages/sec, with " + numOfDocLinks + " stackless DocLinkFoundExceptions | The stack-traces alone would cost: " + (stackTraceNanos / numOfStackTraces) + " ns/page (" + (extractionNanos / numOfPages) + " ns/page for the extraction).");
+		}
+	}
+
+
+	private static int callAtDepth(int depth, java.util.function.IntSupplier task)
+	{
+		return ((depth == 0) ? task.getAsInt() : callAtDepth(depth -1, task));
+	}
+
+
+	@Test
+	public void testParsingPoolKeepsTheExceptions() throws Exception
+	{
+		String pageUrl = "https://repository.example.org/handle/123/789";
+		String docHtml = "<html><body><div class=\"item\"><a href=\"/browse\">Browse</a><a href=\"/bitstream/123/789/paper.pdf\">PDF</a></div></body></html>";
+		String plainHtml = "<html><body><div class=\"item\"><a href=\"/browse\">Browse</a><a href=\"/items/123/789/files\">Files</a></div></body></html>";
+
+		AtomicReference<Object> docLinkOutcome = new AtomicReference<>();
+		AtomicReference<Object> linksOutcome = new AtomicReference<>();
+		Thread taskThread = Thread.ofVirtual().start(() -> {	// Like the crawling-tasks, which hand their pages to the parsing-pool.
+			try {
+				linksOutcome.set(ParsingPool.extractInternalLinksFromHtml(plainHtml, ParsingPool.analyze(plainHtml, pageUrl), pageUrl, null));
+				docLinkOutcome.set(ParsingPool.extractInternalLinksFromHtml(docHtml, ParsingPool.analyze(docHtml, pageUrl), pageUrl, null));
+			} catch (Exception e) {
+				docLinkOutcome.set(e);
+			}
+		});
+		taskThread.join();
+
+		assertTrue((linksOutcome.get() instanceof HashMap<?, ?> links) && links.containsKey("/items/123/789/files"));
+		assertTrue(docLinkOutcome.get() instanceof DocLinkFoundException);	// The exact exception of the parsing-thread reaches the task, along with its docLink.
+		assertEquals("/bitstream/123/789/paper.pdf", ((DocLinkFoundException) docLinkOutcome.get()).getMessage());
+		assertTrue(ParsingPool.numOfParsedPages.get() >= 4);
+	}
+
+
+	/**
+	 * This test checks that the cached results of the url-normalization and of the fully-formed urls (including the negative ones) are the same as the uncached ones, in every page.
+	 */
+	@Test
+	public void testUrlNormalizationCache()
+	{
+		List<String> pageUrls = List.of("https://example.org/handle/1/2", "https://example.org/article/view/5?lang=en", "http://other.example.org:8080/records/7", "https://example.org");
+		List<String> links = List.of("https://example.org/about", "HTTP://example.org/Contact/", "/bitstream/1/paper.pdf", "//cdn.example.org/x.js", "download", "../files/paper.pdf", "?page=2&amp;sort=desc", "http://[invalid", "/a b/c");
+		try {
+			for ( int round = 0; round < 2; round++ ) {	// The second round takes the results from the caches.
+				for ( String pageUrl : pageUrls ) {
+					for ( String link : links ) {
+						UrlNormalizationCache.useUrlCaches = false;
+						String expectedFullUrl = ConnSupportUtils.getFullyFormedUrl(pageUrl, link, null);
+						String expectedNormalizedUrl = ((expectedFullUrl != null) ? UrlNormalizationCache.normalize(expectedFullUrl) : null);
+						UrlNormalizationCache.useUrlCaches = true;
+						String fullUrl = ConnSupportUtils.getFullyFormedUrl(pageUrl, link, null);
+						assertEquals(expectedFullUrl, fullUrl, "Different fully-formed url for link \"" + link + "\" in page: " + pageUrl);
+						assertEquals(expectedNormalizedUrl, ((fullUrl != null) ? UrlNormalizationCache.normalize(fullUrl) : null), "Different normalized url for link \"" + link + "\" in page: " + pageUrl);
+					}
+				}
+			}
+			assertNull(UrlNormalizationCache.normalize("http://[invalid"));	// The negative results are cached as well.
+			assertNull(UrlNormalizationCache.normalize("http://[invalid"));
+			assertTrue(UrlNormalizationCache.numOfNormalizationHits.get() > 0);
+			assertTrue(UrlNormalizationCache.numOfFullyFormedUrlHits.get() > 0);
+		} finally {
+			UrlNormalizationCache.useUrlCaches = true;
+			UrlNormalizationCache.clearCaches();
+		}
+	}
+
+
+	/**
+	 * This is a micro-benchmark comparing the CPU-time of forming and normalizing all the links of link-heavy pages of the same domain, with and without the "UrlNormalizationCache".
+	 */
+	@Disabled	// as we want to run it only on demand.
+	@Test
+	public void benchmarkUrlNormalizationCache()
+	{
+		int numOfPages = 200;
+		List<String> pageUrls = new ArrayList<>(numOfPages);
+		List<List<String>> linksOfPages = new ArrayList<>(numOfPages);
+		for ( int i = 0; i < numOfPages; i++ ) {
+			pageUrls.add("https://repository.example.org/handle/123456789/" + i);
+			List<String> links = new ArrayList<>(400);
+			for ( int j = 0; j < 300; j++ )	// The navigation, footer and sidebar links, which are the same in all the pages.
+				links.add(((j % 2) == 0) ? ("/browse?type=subject&amp;value=" + j) : ("https://repository.example.org/community-list/" + j + "/"));
+			for ( int j = 0; j < 100; j++ )	// The links of the page.
+				links.add("/bitstream/handle/123456789/" + i + "/file" + j + ".pdf?sequence=" + j);
+			linksOfPages.add(links);
+		}
+
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		try {
+			for ( int round = 0; round < 10; round++ ) {	// The first rounds are for warming-up.
+				long[] cpuTimes = new long[2];
+				for ( int useCaches = 0; useCaches <= 1; useCaches++ ) {
+					UrlNormalizationCache.useUrlCaches = (useCaches == 1);
+					UrlNormalizationCache.clearCaches();
+					long startCpu = threadMXBean.getCurrentThreadCpuTime();
+					for ( int i = 0; i < numOfPages; i++ ) {
+						String pageUrl = pageUrls.get(i);
+						for ( String link : linksOfPages.get(i) ) {
+							String fullUrl = ConnSupportUtils.getFullyFormedUrl(pageUrl, link, null);
+							if ( fullUrl != null )
+								UrlNormalizationCache.normalize(fullUrl);
+						}
+					}
+					cpuTimes[useCaches] = (threadMXBean.getCurrentThreadCpuTime() - startCpu);
+				}
+				logger.info("Round " + round + ", " + (numOfPages * 400) + " links: Without the caches: " + (cpuTimes[0] / 1_000_000) + " ms | With the caches: " + (cpuTimes[1] / 1_000_000) + " ms.");
+			}
+		} finally {
+			UrlNormalizationCache.useUrlCaches = true;
+			UrlNormalizationCache.clearCaches();
+		}
+	}
+
+
+	private static HashMap<String, ScoredLink> getLinksList(String html, String url)
 	{
-		HashMap<String, String> extractedLinksHashMap = new HashMap<>();
+		HashMap<String, ScoredLink> extractedLinksHashMap = new HashMap<>();
 		try {
 			extractedLinksHashMap = PageCrawler.extractInternalLinksFromHtml(html, url);
 			if ( extractedLinksHashMap == null || extractedLinksHashMap.size() == 0 )
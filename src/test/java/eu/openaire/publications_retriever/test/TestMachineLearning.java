@@ -0,0 +1,100 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.machine_learning.MachineLearning;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class contains testing for the per-domain models of the "MachineLearning".
+ * @author Lampros Smyrnaios
+ */
+public class TestMachineLearning {
+
+	@AfterEach
+	public void clearModels()
+	{
+		MachineLearning.clearModels();
+	}
+
+
+	@Test
+	public void testPredictionNeedsSupport()
+	{
+		String domain = "example.org";
+		MachineLearning.gatherMLData("https://example.org/article/view/1", "https://example.org/article/download/1.pdf", domain);
+		assertTrue(MachineLearning.hasSuccessPath(domain, "https://example.org/article/view/"));
+		assertFalse(MachineLearning.hasSuccessPath("other.org", "https://example.org/article/view/"));
+		assertFalse(MachineLearning.shouldRunPrediction("https://example.org/article/view/3", domain, null), "A pair which was seen only once should not be used.");
+
+		MachineLearning.gatherMLData("https://example.org/article/view/2", "https://example.org/article/download/2.pdf", domain);
+		assertTrue(MachineLearning.shouldRunPrediction("https://example.org/article/view/3", domain, null));
+		assertFalse(MachineLearning.shouldRunPrediction("https://example.org/unknown/path/3", domain, null));
+	}
+
+
+	@Test
+	public void testModelIsBoundedUnderConcurrentGathering() throws Exception
+	{
+		String domain = "bounded.org";
+		List<Thread> threads = new ArrayList<>();
+		for ( int t = 0; t < 8; ++t ) {
+			int threadNum = t;
+			threads.add(Thread.ofVirtual().start(() -> {
+				for ( int i = 0; i < 200; ++i )
+					MachineLearning.gatherMLData("https://bounded.org/path" + threadNum + "_" + i + "/view/" + i, "https://bounded.org/download/" + i + ".pdf", domain);
+			}));
+		}
+		for ( Thread thread : threads )
+			thread.join();
+
+		int numOfKnownPaths = 0;
+		for ( int t = 0; t < 8; ++t )
+			for ( int i = 0; i < 200; ++i )
+				if ( MachineLearning.hasSuccessPath(domain, "https://bounded.org/path" + t + "_" + i + "/view/") )
+					numOfKnownPaths ++;
+		assertTrue(numOfKnownPaths > 0);
+		assertTrue(numOfKnownPaths <= 100, "The docPage-paths of a domain should stay bounded: " + numOfKnownPaths);
+	}
+
+
+	@Test
+	public void testFailingDomainSleepsAndThenIsDisabled()
+	{
+		String domain = "failing.org";
+		String pagePath = "https://failing.org/article/view/";
+		MachineLearning.gatherMLData(pagePath + "1", "https://failing.org/article/download/1.pdf", domain);
+		MachineLearning.gatherMLData(pagePath + "2", "https://failing.org/article/download/2.pdf", domain);
+
+		// The predicted docUrls do not exist in the (empty) internal-links of the pages, so all the predictions fail, without connecting.
+		for ( int i = 0; i < 20; ++i ) {
+			assertTrue(MachineLearning.shouldRunPrediction(pagePath + "3", domain, null));
+			assertFalse(MachineLearning.predictInternalDocUrl("id", pagePath + "3", pagePath + "3", domain, null, new HashMap<>()));
+		}
+
+		// The first round failed, so the domain sleeps for its next 200 pages.
+		for ( int i = 0; i < 200; ++i )
+			assertFalse(MachineLearning.shouldRunPrediction(pagePath + "3", domain, null), "The domain should be in \"sleep-mode\" for page: " + i);
+		assertTrue(MachineLearning.shouldRunPrediction(pagePath + "3", domain, null), "The domain should wake up, after its \"sleep-mode\".");
+
+		// Two more failed rounds disable the MLA for this domain.
+		for ( int round = 2; round <= 3; ++round )
+			for ( int i = 0; i < 20; ++i )
+				assertFalse(MachineLearning.predictInternalDocUrl("id", pagePath + "3", pagePath + "3", domain, null, new HashMap<>()));
+		assertFalse(MachineLearning.shouldRunPrediction(pagePath + "3", domain, null));
+		assertFalse(MachineLearning.hasSuccessPath(domain, pagePath));
+
+		// The disabled domain does not learn again, even though its model was dropped.
+		MachineLearning.gatherMLData(pagePath + "4", "https://failing.org/article/download/4.pdf", domain);
+		MachineLearning.gatherMLData(pagePath + "5", "https://failing.org/article/download/5.pdf", domain);
+		assertFalse(MachineLearning.hasSuccessPath(domain, pagePath));
+		assertFalse(MachineLearning.shouldRunPrediction(pagePath + "6", domain, null));
+	}
+
+}
@@ -0,0 +1,104 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.file.FileUtils;
+import eu.openaire.publications_retriever.util.file.MemoryAdmission;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class contains testing for the "MemoryAdmission", which keeps the memory of the in-flight pages under a budget.
+ * @author Lampros Smyrnaios
+ */
+public class TestMemoryAdmission {
+
+	private static final long defaultMemoryBudget = MemoryAdmission.memoryBudget;
+
+
+	@AfterEach
+	public void restoreBudget()
+	{
+		MemoryAdmission.memoryBudget = defaultMemoryBudget;
+	}
+
+
+	@Test
+	public void testWaitingForMemory() throws Exception
+	{
+		long initialAdmittedBytes = MemoryAdmission.getAdmittedBytes();
+		MemoryAdmission.memoryBudget = (initialAdmittedBytes + (4L * MemoryAdmission.memoryPerHtmlChar * FileUtils.mb));
+		long firstPageBytes = MemoryAdmission.admit(3L * FileUtils.mb);
+
+		CountDownLatch admittedLatch = new CountDownLatch(1);
+		AtomicReference<Long> secondPageBytes = new AtomicReference<>();
+		Thread waitingThread = Thread.ofVirtual().start(() -> {
+			try {
+				secondPageBytes.set(MemoryAdmission.admit(2L * FileUtils.mb));
+				admittedLatch.countDown();
+			} catch (InterruptedException ignored) {}
+		});
+		assertFalse(admittedLatch.await(200, TimeUnit.MILLISECONDS));	// The in-flight pages would exceed the budget, so it waits.
+
+		firstPageBytes = MemoryAdmission.resize(firstPageBytes, "x".repeat(FileUtils.mb));	// The actual html was smaller than its "Content-Length", so the rest is given back.
+		assertTrue(admittedLatch.await(5, TimeUnit.SECONDS));
+		waitingThread.join();
+		MemoryAdmission.release(firstPageBytes);
+		MemoryAdmission.release(secondPageBytes.get());
+		assertEquals(initialAdmittedBytes, MemoryAdmission.getAdmittedBytes());
+	}
+
+
+	@Test
+	public void testSmallPagesDoNotBargePastWaitingLargePage() throws Exception
+	{
+		long initialAdmittedBytes = MemoryAdmission.getAdmittedBytes();
+		MemoryAdmission.memoryBudget = (initialAdmittedBytes + (4L * MemoryAdmission.memoryPerHtmlChar * FileUtils.mb));
+		long firstPageBytes = MemoryAdmission.admit(3L * FileUtils.mb);
+
+		AtomicInteger admissionsCounter = new AtomicInteger(0);
+		AtomicInteger largePageOrder = new AtomicInteger(0);
+		AtomicInteger smallPageOrder = new AtomicInteger(0);
+		AtomicReference<Long> largePageBytes = new AtomicReference<>();
+		AtomicReference<Long> smallPageBytes = new AtomicReference<>();
+		CountDownLatch largePageLatch = new CountDownLatch(1);
+		CountDownLatch smallPageLatch = new CountDownLatch(1);
+
+		Thread largePageThread = Thread.ofVirtual().start(() -> {
+			try {
+				largePageBytes.set(MemoryAdmission.admit(2L * FileUtils.mb));	// It does not fit in the remaining budget.
+				largePageOrder.set(admissionsCounter.incrementAndGet());
+				largePageLatch.countDown();
+			} catch (InterruptedException ignored) {}
+		});
+		assertFalse(largePageLatch.await(200, TimeUnit.MILLISECONDS));
+
+		Thread smallPageThread = Thread.ofVirtual().start(() -> {
+			try {
+				smallPageBytes.set(MemoryAdmission.admit(1_000));	// It fits in the remaining budget, but it arrived after the large page.
+				smallPageOrder.set(admissionsCounter.incrementAndGet());
+				smallPageLatch.countDown();
+			} catch (InterruptedException ignored) {}
+		});
+		assertFalse(smallPageLatch.await(200, TimeUnit.MILLISECONDS), "A new page should wait behind the waiting large page.");
+
+		MemoryAdmission.release(firstPageBytes);
+		assertTrue(largePageLatch.await(5, TimeUnit.SECONDS));
+		assertTrue(smallPageLatch.await(5, TimeUnit.SECONDS));
+		largePageThread.join();
+		smallPageThread.join();
+		assertEquals(1, largePageOrder.get());
+		assertEquals(2, smallPageOrder.get());
+
+		MemoryAdmission.release(largePageBytes.get());
+		MemoryAdmission.release(smallPageBytes.get());
+		assertEquals(initialAdmittedBytes, MemoryAdmission.getAdmittedBytes());
+	}
+
+}
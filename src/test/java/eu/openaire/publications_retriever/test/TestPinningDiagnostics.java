@@ -0,0 +1,55 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.args.ArgsUtils;
+import eu.openaire.publications_retriever.util.diagnostics.PinningDiagnostics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class contains testing for the "PinningDiagnostics", which reports the sites where the virtual-threads were pinned.
+ * Since Java 24, the virtual-threads are not pinned while blocking inside a monitor, so the pins cannot be reproduced reliably here; the lifecycle of the recording is tested instead.
+ * @author Lampros Smyrnaios
+ */
+public class TestPinningDiagnostics {
+
+	@AfterEach
+	public void disableDiagnostics()
+	{
+		PinningDiagnostics.stopAndReport();
+		PinningDiagnostics.usePinningDiagnostics = false;
+		PinningDiagnostics.clearPinSites();
+	}
+
+
+	@Test
+	public void testArgumentEnablesDiagnostics()
+	{
+		assertFalse(PinningDiagnostics.usePinningDiagnostics);
+		ArgsUtils.parseArgs(new String[] {"-pinningDiagnostics"});
+		assertTrue(PinningDiagnostics.usePinningDiagnostics);
+	}
+
+
+	@Test
+	public void testRecordingIsStartedOnlyWhenEnabled()
+	{
+		PinningDiagnostics.start();
+		assertFalse(PinningDiagnostics.isRecording(), "The recording should not start, without the \"-pinningDiagnostics\" argument.");
+
+		PinningDiagnostics.usePinningDiagnostics = true;
+		PinningDiagnostics.start();
+		assertTrue(PinningDiagnostics.isRecording());
+		PinningDiagnostics.start();	// A second call should not start another recording.
+		assertTrue(PinningDiagnostics.isRecording());
+
+		PinningDiagnostics.stopAndReport();
+		assertFalse(PinningDiagnostics.isRecording());
+
+		PinningDiagnostics.start();	// It can be restarted, e.g. by an external service which runs the program multiple times.
+		assertTrue(PinningDiagnostics.isRecording());
+	}
+
+}
@@ -0,0 +1,59 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.exceptions.ConnTimeoutException;
+import eu.openaire.publications_retriever.exceptions.HttpErrorStatusException;
+import eu.openaire.publications_retriever.util.url.RetryQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class contains testing for the "RetryQueue", which defers the urls with transient failures, in order to be retried later in the same run.
+ * @author Lampros Smyrnaios
+ */
+public class TestRetryQueue {
+
+	@AfterEach
+	public void clearDeferredUrls()
+	{
+		RetryQueue.shouldRetryTransientFailures = true;
+		RetryQueue.clearDeferredUrls();
+	}
+
+
+	@Test
+	public void testOnlyTransientFailuresAreDeferred()
+	{
+		String url = "https://www.retry-example.org/article/1";
+		assertFalse(RetryQueue.deferIfTransientFailure("id_1", url, new HttpErrorStatusException("HTTP 404 Not Found", 404)));
+		assertFalse(RetryQueue.deferIfTransientFailure("id_1", url, new RuntimeException("Unexpected")));
+		assertTrue(RetryQueue.isEmpty());
+
+		assertTrue(RetryQueue.deferIfTransientFailure("id_1", url, new HttpErrorStatusException("HTTP 429 Too Many Requests", 429)));
+		assertFalse(RetryQueue.isEmpty());
+		assertTrue(RetryQueue.deferIfTransientFailure("id_2", "https://www.retry-example.org/article/2", new ConnTimeoutException()));
+
+		assertEquals(Boolean.FALSE, RetryQueue.deferredIdsWithResult.get("id_1"));
+		RetryQueue.onResultFoundForId("id_1");
+		assertEquals(Boolean.TRUE, RetryQueue.deferredIdsWithResult.get("id_1"), "The deferred url of an id which has already given a result, should not be retried.");
+
+		RetryQueue.shouldRetryTransientFailures = false;
+		assertFalse(RetryQueue.deferIfTransientFailure("id_3", "https://www.retry-example.org/article/3", new HttpErrorStatusException("HTTP 429 Too Many Requests", 429)));
+	}
+
+
+	@Test
+	public void testUrlIsDeferredUpToMaxRetries()
+	{
+		String url = "https://www.retry-example.org/article/1";
+		HttpErrorStatusException e = new HttpErrorStatusException("HTTP 503 Service Unavailable", 503);
+		assertTrue(RetryQueue.deferIfTransientFailure("id_1", url, e));
+		assertTrue(RetryQueue.deferIfTransientFailure("id_1", url, e));
+		assertFalse(RetryQueue.deferIfTransientFailure("id_1", url, e), "The url should get its final outcome, after being retried 2 times.");
+
+		assertTrue(RetryQueue.deferIfTransientFailure("id_2", "https://www.retry-example.org/article/2", e), "Another url of the same domain can still be deferred.");
+	}
+
+}
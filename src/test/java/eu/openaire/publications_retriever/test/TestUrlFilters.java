@@ -0,0 +1,320 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.crawler.RepositoryPlatforms;
+import eu.openaire.publications_retriever.crawler.SpecialUrlsHandler;
+import eu.openaire.publications_retriever.machine_learning.DocUrlRuleMiner;
+import eu.openaire.publications_retriever.machine_learning.MinedDocUrlRules;
+import eu.openaire.publications_retriever.util.url.DomainRules;
+import eu.openaire.publications_retriever.util.url.MultiPatternMatcher;
+import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
+import eu.openaire.publications_retriever.util.url.UrlUtils;
+import eu.openaire.publications_retriever.util.url.UrlView;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class contains testing for the url-filters of the "UrlTypeChecker", their literal-prefilter, the "DomainRules", the "SpecialUrlRules", the "RepositoryPlatforms", the mined docUrl-rules, the "UrlView" and the registrable-domains.
+ * @author Lampros Smyrnaios
+ */
+public class TestUrlFilters {
+
+	private static final Logger logger = LoggerFactory.getLogger(TestUrlFilters.class);
+
+	private static final Pattern JSON_URL = Pattern.compile("\"url\":\"([^\"]+)\"");
+
+	private static final List<String> testUrls = new ArrayList<>();
+
+
+	@BeforeAll
+	public static void setup() throws IOException
+	{
+		UrlTypeChecker.setRuntimeInitializedRegexes();
+
+		try ( Stream<Path> files = Files.list(Paths.get("testData", "justUrls")) ) {
+			for ( Path file : files.toList() )
+				for ( String line : Files.readAllLines(file) )
+					if ( !line.isBlank() && !line.equals("url") )
+						testUrls.add(line.trim());
+		}
+		try ( Stream<Path> files = Files.list(Paths.get("testData", "idUrlPairs")) ) {
+			for ( Path file : files.toList() )
+				for ( String line : Files.readAllLines(file) ) {
+					Matcher matcher = JSON_URL.matcher(line);
+					if ( matcher.find() )
+						testUrls.add(matcher.group(1).replace("\\/", "/"));
+				}
+		}
+
+		// Some internal-links, which match each of the filters.
+		testUrls.addAll(List.of("https://www.example.org/", "https://www.example.org/en/index.html", "https://www.example.org/handle/123/browse?type=author",
+				"https://www.example.org/login?return=/article/1", "https://www.example.org/article/1/export?format=bib", "https://www.example.org/article/1/cover.jpg",
+				"https://www.example.org/article/1/data.docx", "https://www.example.org/about.php", "https://twitter.com/share?url=https://www.example.org/",
+				"https://www.example.org/política-de-privacidad", "https://www.example.org/wp-content/uploads/2020/01/template.pdf", "mailto:info@example.org",
+				"https://www.example.org/article/view/1/2?lang=en", "https://www.example.org/article/1/#comments", "https://www.example.org/feed/rss"));
+	}
+
+
+	@Test
+	public void testPrefilterKeepsAllMatchingFilters()
+	{
+		MultiPatternMatcher matcher = UrlTypeChecker.URL_FILTERS_MATCHER;
+		int numOfSkippedRuns = 0, numOfMatches = 0;
+		for ( String url : testUrls ) {
+			String lowerCaseUrl = url.toLowerCase();
+			long candidates = matcher.findCandidates(lowerCaseUrl);
+			for ( int i = 0; i <= UrlTypeChecker.PLAIN_PAGE_EXTENSION_FILTER_INDEX; i++ ) {
+				boolean matches = matcher.getPattern(i).matcher(lowerCaseUrl).matches();
+				if ( matches )
+					numOfMatches ++;
+				assertEquals(matches, matcher.matches(candidates, i, lowerCaseUrl), "The prefilter gave a different result for pattern-" + i + " and url: " + url);
+				if ( !MultiPatternMatcher.isCandidate(candidates, i) )
+					numOfSkippedRuns ++;
+			}
+		}
+		logger.info("Checked " + testUrls.size() + " urls. The filters matched " + numOfMatches + " times and " + numOfSkippedRuns + " regex-runs were skipped by the prefilter.");
+		assertTrue(numOfMatches > 0);
+		assertTrue(numOfSkippedRuns > 0);
+	}
+
+
+	@Test
+	public void testInternalLinksAreEvaluatedTheSame()
+	{
+		try {
+			for ( String url : testUrls ) {
+				UrlTypeChecker.useLiteralPrefilter = false;
+				boolean expected = UrlTypeChecker.shouldNotAcceptInternalLink(url, null);
+				UrlTypeChecker.useLiteralPrefilter = true;
+				assertEquals(expected, UrlTypeChecker.shouldNotAcceptInternalLink(url, null), "Different evaluation for url: " + url);
+			}
+		} finally {
+			UrlTypeChecker.useLiteralPrefilter = true;
+		}
+	}
+
+
+	@Test
+	public void testDomainRules()
+	{
+		assertEquals("www.google.gr", DomainRules.getHostOfUrl("https://user@www.google.gr:8080/search?q=x"));
+		assertEquals("example.org", DomainRules.getHostOfUrl("http://example.org?a=b"));
+		assertNull(DomainRules.getHostOfUrl("ftp://example.org/file"));
+
+		assertEquals(DomainRules.Category.problematic, DomainRules.getCategory("scholar.google.com"));
+		assertEquals(DomainRules.Category.problematic, DomainRules.getCategory("www.google.co.uk"));
+		assertEquals(DomainRules.Category.allowed, DomainRules.getCategory("drive.google.com"));	// The most specific rule wins.
+		assertEquals(DomainRules.Category.allowed, DomainRules.getCategory("manuscript.elsevier.com"));
+		assertEquals(DomainRules.Category.problematic, DomainRules.getCategory("linkinghub.elsevier.com"));
+		assertEquals(DomainRules.Category.problematic, DomainRules.getCategory("www.ccdc.cam.ac.uk"));
+		assertEquals(DomainRules.Category.noDocUrls, DomainRules.getCategory("www.repository.cam.ac.uk"));
+		assertEquals(DomainRules.Category.javascript, DomainRules.getCategory("www.tandfonline.com"));
+		assertEquals(DomainRules.Category.problematic, DomainRules.getCategory("mail.example.org"));	// A label-rule.
+		assertNull(DomainRules.getCategory("example.mail"));	// The top-level-domain is not checked by the label-rules.
+		assertNull(DomainRules.getCategory("notgoogle.com"));
+		assertNull(DomainRules.getCategory("journals.openedition.org"));
+
+		assertTrue(DomainRules.isNotBlockable("doi.org"));
+		assertTrue(DomainRules.isNotBlockable("dx.doi.org"));
+		assertFalse(DomainRules.isNotBlockable("zenodo.org.example.com"));
+		assertNull(DomainRules.getBlockingCategory("zenodo.org"));
+	}
+
+
+	@Test
+	public void testSpecialUrlRules()
+	{
+		assertEquals("https://europepmc.org/backend/ptpmcrender.fcgi?accid=PMC1234567&blobtype=pdf", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://europepmc.org/articles/PMC1234567"));
+		assertEquals("https://europepmc.org/backend/ptpmcrender.fcgi?accid=PMC7654321&blobtype=pdf", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://europepmc.org/article/pmc/pmc7654321/"));
+		assertEquals("http://manuscript.elsevier.com/S0001/pdf/S0001.pdf", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://manuscript.elsevier.com/S0001/pdf/S0001.pdf"));
+		assertEquals("https://ntrs.nasa.gov/api/citations/20200001234/downloads/20200001234.pdf", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://ntrs.nasa.gov/citations/20200001234"));
+		assertEquals("https://www.frontiersin.org/articles/10.3389/fphys.2018.00414/pdf", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://www.frontiersin.org/articles/10.3389/fphys.2018.00414/full"));
+		assertEquals("https://www.frontiersin.org/article/10.3389/feart.2017.00079/pdf", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://www.frontiersin.org/article/10.3389/feart.2017.00079"));
+		assertThrows(RuntimeException.class, () -> SpecialUrlsHandler.checkAndHandleSpecialUrls("https://www.frontiersin.org/journals/physiology"));
+		assertEquals("https://psyarxiv.com/e9uk7/download", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://psyarxiv.com/e9uk7/"));
+		assertEquals("https://www.ijcseonline.org/pub_paper/48-IJCSE-07375.pdf", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://www.ijcseonline.org/pdf_paper_view.php?paper_id=4547&48-IJCSE-07375.pdf"));
+		assertEquals("https://ieeexplore.ieee.org/stampPDF/getPDF.jsp?tp=&arnumber=8924293", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://ieeexplore.ieee.org/document/8924293"));
+		assertEquals("https://osf.io/2xpq7/download", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://osf.io/2xpq7"));
+		assertEquals("https://api.osf.io/v2/x", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://api.osf.io/v2/x"));	// The "osf.io"-rules are for the exact host only.
+		assertEquals("https://onlinelibrary.wiley.com/doi/pdfdirect/10.1111/polp.12377?download=true", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://onlinelibrary.wiley.com/doi/abs/10.1111/polp.12377"));
+		assertEquals("https://www.scielo.br/j/bjb/a/64jBbrbZ8hG3fvhy6d6nczj/?&format=pdf&lang=en", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://www.scielo.br/j/bjb/a/64jBbrbZ8hG3fvhy6d6nczj/?amp;format=pdf&lang=en"));
+		assertEquals("https://doi.org/10.1039/C6OB01382A", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://dx.doi.org/https:/doi.org/10.1039/C6OB01382A"));
+		assertEquals("http://dergipark.org.tr/beuscitech/issue/40162/477737", SpecialUrlsHandler.checkAndHandleSpecialUrls("http://dergipark.gov.tr/beuscitech/issue/40162/477737"));
+		assertEquals("https://www.example.org/article/ntrs.nasa.gov/citations/1", SpecialUrlsHandler.checkAndHandleSpecialUrls("https://www.example.org/article/ntrs.nasa.gov/citations/1"));	// Only the host of the url is matched.
+	}
+
+
+	@Test
+	public void testRepositoryPlatforms()
+	{
+		assertEquals(RepositoryPlatforms.Platform.ojs, RepositoryPlatforms.getPlatformOfGenerator("Open Journal Systems 3.3.0.10"));
+		assertEquals(RepositoryPlatforms.Platform.dspace, RepositoryPlatforms.getPlatformOfGenerator("DSpace 6.3"));
+		assertNull(RepositoryPlatforms.getPlatformOfGenerator("WordPress 6.1"));
+
+		try {
+			assertNull(RepositoryPlatforms.getDerivedDocUrl("https://journals.example.org/index.php/jr/article/view/123/456", "journals.example.org"));	// The platform is not known yet.
+			RepositoryPlatforms.fingerprint("journals.example.org", "https://journals.example.org/index.php/jr/issue/view/12", "Open Journal Systems 3.3.0.10");
+			assertEquals("https://journals.example.org/index.php/jr/article/download/123/456", RepositoryPlatforms.getDerivedDocUrl("https://journals.example.org/index.php/jr/article/view/123/456", "journals.example.org"));
+			assertNull(RepositoryPlatforms.getDerivedDocUrl("https://journals.example.org/index.php/jr/article/view/123", "journals.example.org"));	// The galley is not known.
+
+			// A single path-shape is not enough to fingerprint a domain.
+			RepositoryPlatforms.fingerprint("repository.example.org", "https://repository.example.org/handle/123456789/1", null);
+			assertNull(RepositoryPlatforms.getDerivedDocUrl("https://repository.example.org/handle/123456789/2", "repository.example.org"));
+			RepositoryPlatforms.fingerprint("repository.example.org", "https://repository.example.org/handle/123456789/2", null);
+			assertEquals("https://repository.example.org/bitstream/handle/123456789/3/?sequence=1", RepositoryPlatforms.getDerivedDocUrl("https://repository.example.org/handle/123456789/3/", "repository.example.org"));
+			assertEquals("https://repository.example.org/xmlui/bitstream/handle/123456789/3/?sequence=1", RepositoryPlatforms.getDerivedDocUrl("https://repository.example.org/xmlui/handle/123456789/3", "repository.example.org"));
+			assertNull(RepositoryPlatforms.getDerivedDocUrl("https://repository.example.org/jspui/handle/123456789/3", "repository.example.org"));
+
+			RepositoryPlatforms.fingerprint("digital.example.org", "https://digital.example.org/islandora/object/repo:1", "Islandora");
+			assertEquals("https://digital.example.org/islandora/object/repo:1234/datastream/OBJ/download", RepositoryPlatforms.getDerivedDocUrl("https://digital.example.org/islandora/object/repo:1234/", "digital.example.org"));
+		} finally {
+			RepositoryPlatforms.domainsPlatforms.clear();
+		}
+	}
+
+
+	@Test
+	public void testDocUrlRuleMining(@TempDir Path tempDir) throws IOException
+	{
+		Path outputFile = tempDir.resolve("output.json");
+		Files.write(outputFile, List.of(
+				"{\"id\":\"1\",\"sourceUrl\":\"https://doi.org/10.1/1\",\"pageUrl\":\"https://journals.example.org/index.php/jr/article/view/11\",\"docUrl\":\"https://journals.example.org/index.php/jr/article/download/11/\"}",
+				"{\"id\":\"2\",\"sourceUrl\":\"https://doi.org/10.1/2\",\"pageUrl\":\"https://journals.example.org/index.php/jr/article/view/12\",\"docUrl\":\"https://journals.example.org/index.php/jr/article/download/12/\"}",
+				"{\"id\":\"3\",\"sourceUrl\":\"https://doi.org/10.1/3\",\"pageUrl\":\"https://journals.example.org/index.php/jr/article/view/13/\",\"docUrl\":\"https://journals.example.org/index.php/jr/article/download/13/\"}",
+				"{\"id\":\"4\",\"sourceUrl\":\"https://doi.org/10.1/4\",\"pageUrl\":\"https://journals.example.org/index.php/jr/article/view/14\",\"docUrl\":\"unreachable\"}",
+				"{\"id\":\"5\",\"sourceUrl\":\"https://doi.org/10.1/5\",\"pageUrl\":\"https://journals.example.org/index.php/jr/article/view/15\",\"docUrl\":\"https://journals.example.org/index.php/jr/article/download/15/99\"}",	// The "99" is not in the pageUrl.
+				"{\"id\":\"6\",\"sourceUrl\":\"https://other.example.com/a/1.pdf\",\"pageUrl\":\"https://other.example.com/a/1.pdf\",\"docUrl\":\"https://other.example.com/a/1.pdf\"}",
+				"{\"id\":\"7\",\"sourceUrl\":\"https://other.example.com/rec/2\",\"pageUrl\":\"https://other.example.com/rec/2\",\"docUrl\":\"https://files.example.com/rec/2/file.pdf\"}"));
+
+		List<MinedDocUrlRules.MinedRule> minedRules = DocUrlRuleMiner.mineRules(List.of(outputFile));
+		assertEquals(1, minedRules.size(), "Mined rules: " + minedRules);
+		MinedDocUrlRules.MinedRule minedRule = minedRules.get(0);
+		assertEquals("journals.example.org", minedRule.domain());
+		assertEquals("/index.php/jr/article/view/{1}", minedRule.pageShape());
+		assertEquals("/index.php/jr/article/download/{1}/", minedRule.docTemplate());
+		assertEquals(3, minedRule.support());
+		assertEquals(60.0, minedRule.precision(), 0.01);	// The failed record and the non-derivable docUrl count against it.
+
+		Path rulesFile = tempDir.resolve("rules.tsv");
+		DocUrlRuleMiner.writeRules(minedRules, rulesFile);
+		try {
+			assertEquals(1, MinedDocUrlRules.loadRules(rulesFile));
+			assertEquals("http://journals.example.org/index.php/jr/article/download/123/", MinedDocUrlRules.getDocUrl("http://journals.example.org/index.php/jr/article/view/123", "journals.example.org"));
+			assertNull(MinedDocUrlRules.getDocUrl("http://journals.example.org/index.php/jr/issue/view/123", "journals.example.org"));
+			assertNull(MinedDocUrlRules.getDocUrl("http://journals.example.org/index.php/jr/article/view/123", "other.example.org"));
+		} finally {
+			MinedDocUrlRules.clearRules();
+		}
+	}
+
+
+	@Test
+	public void testRegistrableDomain()
+	{
+		assertEquals("b.ac.uk", UrlUtils.getRegistrableDomain("a.b.ac.uk"));
+		assertEquals("d.ac.uk", UrlUtils.getRegistrableDomain("c.d.ac.uk"));
+		assertEquals("example.com", UrlUtils.getRegistrableDomain("x.y.example.com"));
+		assertEquals("openedition.org", UrlUtils.getRegistrableDomain("journals.openedition.org"));
+		assertEquals("github.io", UrlUtils.getRegistrableDomain("user.github.io"));	// Only the suffixes of the registries are used.
+		assertEquals("200.17.137.108", UrlUtils.getRegistrableDomain("200.17.137.108"));
+		assertEquals("localhost", UrlUtils.getRegistrableDomain("localhost"));
+		assertEquals("ac.uk", UrlUtils.getRegistrableDomain("ac.uk"));
+	}
+
+
+	@Test
+	public void testUrlViewGivesTheSamePartsAsTheRegex()
+	{
+		List<String> urls = new ArrayList<>(testUrls);
+		urls.addAll(List.of("http://ww2.example.org:8080/a/b/doc.pdf", "https://WWW.Example.ORG/Path/Doc;jsessionid=1?x=y", "https://wwwexample.org/", "https://www.org",
+				"https://example.org/a/b?q=/c", "https://example.org/a/doc^1", "https://example.org/a/doc?x/y", "https://example.org/a/doc;x^y", "https://www2.sub.example.org/?",
+				"http://example.org//", "https://example.org:443", "https://ww.example.org/a", "https://example.org/a\nb/c", "https://-/x", "https://.../doc", "ftp://example.org/file"));
+
+		for ( String url : urls ) {
+			String urlStr = (url.endsWith("/") ? url.substring(0, (url.length() -1)) : url);
+			Matcher matcher = UrlUtils.URL_TRIPLE.matcher(urlStr);
+			UrlView urlView = UrlView.parse(url);
+			if ( !matcher.matches() ) {
+				assertNull(urlView, "The view should be null for url: " + url);
+				continue;
+			}
+			assertNotNull(urlView, "The view should not be null for url: " + url);
+			assertEquals(matcher.group(2).toLowerCase(), urlView.getDomain(), "Different domain for url: " + url);
+			assertEquals(matcher.group(1), urlView.getPath(), "Different path for url: " + url);
+			assertEquals(((matcher.group(3) != null) ? matcher.group(3) : ""), urlView.getDocId(), "Different docId for url: " + url);
+			assertEquals(url.toLowerCase(), urlView.getLowerCaseUrl());
+		}
+	}
+
+
+	@Disabled	// as we want to run it only on demand.
+	@Test
+	public void benchmarkUrlView()
+	{
+		int rounds = 50;
+		for ( int warmup = 0; warmup < 2; warmup++ ) {
+			long start = System.nanoTime();
+			int sumOfLengths = 0;
+			for ( int round = 0; round < rounds; round++ )
+				for ( String url : testUrls ) {
+					Matcher matcher = UrlUtils.URL_TRIPLE.matcher(url.endsWith("/") ? url.substring(0, (url.length() -1)) : url);
+					if ( matcher.matches() )
+						sumOfLengths += (matcher.group(2).toLowerCase().length() + matcher.group(1).length() + ((matcher.group(3) != null) ? matcher.group(3).length() : 0));
+				}
+			long regexTime = (System.nanoTime() - start);
+
+			start = System.nanoTime();
+			int sumOfViewLengths = 0;
+			for ( int round = 0; round < rounds; round++ )
+				for ( String url : testUrls ) {
+					UrlView urlView = UrlView.parse(url);
+					if ( urlView != null )
+						sumOfViewLengths += (urlView.getDomain().length() + urlView.getPath().length() + urlView.getDocId().length());
+				}
+			long viewTime = (System.nanoTime() - start);
+			if ( warmup == 1 ) {
+				logger.info("URL_TRIPLE-regex: " + (regexTime / 1_000_000) + " ms, UrlView: " + (viewTime / 1_000_000) + " ms, for " + (rounds * testUrls.size()) + " urls.");
+				assertEquals(sumOfLengths, sumOfViewLengths);
+			}
+		}
+	}
+
+
+	@Disabled	// as we want to run it only on demand.
+	@Test
+	public void benchmarkUrlFilters()
+	{
+		int rounds = 20;
+		for ( int warmup = 0; warmup < 2; warmup++ ) {
+			for ( boolean usePrefilter : new boolean[] {false, true} ) {
+				UrlTypeChecker.useLiteralPrefilter = usePrefilter;
+				long start = System.nanoTime();
+				int numOfRejected = 0;
+				for ( int round = 0; round < rounds; round++ )
+					for ( String url : testUrls )
+						if ( UrlTypeChecker.shouldNotAcceptInternalLink(url, null) )
+							numOfRejected ++;
+				if ( warmup == 1 )
+					logger.info((usePrefilter ? "With" : "Without") + " the prefilter: " + ((System.nanoTime() - start) / 1_000_000) + " ms for " + (rounds * testUrls.size()) + " evaluations (" + numOfRejected + " rejected).");
+			}
+		}
+		UrlTypeChecker.useLiteralPrefilter = true;
+	}
+
+}
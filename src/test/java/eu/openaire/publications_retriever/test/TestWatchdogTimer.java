@@ -0,0 +1,144 @@
+package eu.openaire.publications_retriever.test;
+
+import eu.openaire.publications_retriever.util.timer.HashedWheelTimer;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+/**
+ * This class contains testing for the "hashed-wheel"-timer, which is used for the watchdogs of the downloads and the html-reads.
+ * @author Lampros Smyrnaios
+ */
+public class TestWatchdogTimer {
+
+	private static final Logger logger = LoggerFactory.getLogger(TestWatchdogTimer.class);
+
+
+	@Test
+	public void testExpirationAndCancellation() throws Exception
+	{
+		HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 8);
+		try {
+			CountDownLatch expiredLatch = new CountDownLatch(2);
+			AtomicInteger cancelledRuns = new AtomicInteger(0);
+
+			HashedWheelTimer.Timeout shortTimeout = timer.schedule(expiredLatch::countDown, 20, TimeUnit.MILLISECONDS);
+			HashedWheelTimer.Timeout longTimeout = timer.schedule(expiredLatch::countDown, 250, TimeUnit.MILLISECONDS);	// More than one round of the wheel.
+			HashedWheelTimer.Timeout cancelledTimeout = timer.schedule(cancelledRuns::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+			assertTrue(cancelledTimeout.cancel());
+			assertFalse(cancelledTimeout.cancel());	// It is already cancelled.
+
+			assertTrue(expiredLatch.await(5, TimeUnit.SECONDS));
+			assertTrue(shortTimeout.isExpired());
+			assertTrue(longTimeout.isExpired());
+			assertFalse(longTimeout.cancel());	// It has already expired.
+			assertTrue(cancelledTimeout.isCancelled());
+			assertEquals(0, cancelledRuns.get());
+			assertEquals(0, timer.getNumOfPendingTimeouts());
+		} finally {
+			timer.stop();
+		}
+
+		assertThrows(RejectedExecutionException.class, () -> timer.schedule(() -> {}, 1, TimeUnit.SECONDS));
+	}
+
+
+	@Test
+	public void testWatchdogInterruptsThread() throws Exception
+	{
+		HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 64);
+		try {
+			AtomicBoolean wasInterrupted = new AtomicBoolean(false);
+			Thread sleepingThread = Thread.ofVirtual().start(() -> {
+				HashedWheelTimer.Timeout timeoutTask = timer.schedule(Thread.currentThread()::interrupt, 50, TimeUnit.MILLISECONDS);
+				try {
+					Thread.sleep(10_000);
+				} catch (InterruptedException ie) {
+					wasInterrupted.set(true);
+				} finally {
+					timeoutTask.cancel();
+				}
+			});
+			sleepingThread.join(5_000);
+			assertFalse(sleepingThread.isAlive());
+			assertTrue(wasInterrupted.get(), "The thread was not interrupted by the watchdog!");
+		} finally {
+			timer.stop();
+		}
+	}
+
+
+	/**
+	 * This is a micro-benchmark comparing the scheduling and cancellation of 100_000 outstanding watchdogs, between the "hashed-wheel"-timer and a "ScheduledThreadPoolExecutor".
+	 * It mimics the usage of the watchdogs: each Virtual Thread schedules one, keeps it outstanding and cancels it.
+	 */
+	@Disabled	// as we want to run it only on demand.
+	@Test
+	public void benchmarkOutstandingWatchdogs() throws Exception
+	{
+		int numOfTimers = 100_000;
+		int rounds = 10;
+
+		HashedWheelTimer wheelTimer = new HashedWheelTimer("benchmark-timer", 100, TimeUnit.MILLISECONDS, 512);
+		ScheduledExecutorService scheduledExecutor = Executors.newScheduledThreadPool(2, r -> {
+			Thread t = Executors.defaultThreadFactory().newThread(r);
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			for ( int round = 0; round < rounds; round++ ) {	// The first rounds are for warming-up.
+				long wheelNanos = runConcurrently(numOfTimers, () -> {
+					HashedWheelTimer.Timeout timeout = wheelTimer.schedule(() -> {}, 30, TimeUnit.SECONDS);
+					return timeout::cancel;
+				});
+				long executorNanos = runConcurrently(numOfTimers, () -> {
+					ScheduledFuture<?> future = scheduledExecutor.schedule(() -> {}, 30, TimeUnit.SECONDS);
+					return () -> future.cancel(false);
+				});
+				logger.info("Round " + round + ": HashedWheelTimer: " + (wheelNanos / numOfTimers) + " ns/timer | ScheduledThreadPoolExecutor: " + (executorNanos / numOfTimers) + " ns/timer, for " + numOfTimers + " outstanding timers (schedule + cancel).");
+			}
+		} finally {
+			wheelTimer.stop();
+			scheduledExecutor.shutdownNow();
+		}
+	}
+
+
+	/**
+	 * It returns the total nanoseconds spent inside the scheduling and the cancellation calls, excluding the overhead of the Virtual Threads themselves.
+	 */
+	private static long runConcurrently(int numOfTimers, Callable<Runnable> scheduler) throws Exception
+	{
+		CountDownLatch allScheduled = new CountDownLatch(numOfTimers);
+		CountDownLatch startCancelling = new CountDownLatch(1);
+		LongAdder spentNanos = new LongAdder();
+		try ( ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor() ) {
+			for ( int i = 0; i < numOfTimers; i++ ) {
+				executor.submit(() -> {
+					long start = System.nanoTime();
+					Runnable canceller = scheduler.call();
+					spentNanos.add(System.nanoTime() - start);
+					allScheduled.countDown();
+					startCancelling.await();	// Keep all the timers outstanding at the same time.
+					start = System.nanoTime();
+					canceller.run();
+					spentNanos.add(System.nanoTime() - start);
+					return null;
+				});
+			}
+			allScheduled.await();
+			startCancelling.countDown();
+		}	// Waits for all tasks to finish.
+		return spentNanos.sum();
+	}
+
+}
@@ -12,6 +12,7 @@ import eu.openaire.publications_retriever.util.http.HttpConnUtils;
 import eu.openaire.publications_retriever.util.url.LoaderAndChecker;
 import eu.openaire.publications_retriever.util.url.UrlTypeChecker;
 import eu.openaire.publications_retriever.util.url.UrlUtils;
+import eu.openaire.publications_retriever.util.url.UrlView;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,7 +23,6 @@ import java.net.http.HttpResponse;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Set;
-import java.util.regex.Matcher;
 
 
 /**
@@ -973,18 +973,18 @@ public class UrlChecker {
 	{
 		logger.info("Checking \"URL_TRIPLE\"-REGEX on url: \"" + url + "\".");
 
-		Matcher urlMatcher = UrlUtils.getUrlMatcher(url);
-		if ( urlMatcher == null )
+		UrlView urlView = UrlUtils.getUrlView(url);
+		if ( urlView == null )
 			return false;
 
 		String urlPart;
-		if ( (urlPart = UrlUtils.getDomainStr(url, urlMatcher)) != null )
+		if ( (urlPart = UrlUtils.getDomainStr(url, urlView)) != null )
 			logger.info("\t\tDomain: \"" + urlPart + "\"");
 
-		if ( (urlPart = UrlUtils.getPathStr(url, urlMatcher)) != null )
+		if ( (urlPart = UrlUtils.getPathStr(url, urlView)) != null )
 			logger.info("\t\tPath: \"" + urlPart + "\"");
 		
-		if ( (urlPart = UrlUtils.getDocIdStr(url, urlMatcher)) != null )
+		if ( (urlPart = UrlUtils.getDocIdStr(url, urlView)) != null )
 			logger.info("\t\tDocID: \"" + urlPart + "\"");
 
 		return true;